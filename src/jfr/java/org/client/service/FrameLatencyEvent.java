@@ -0,0 +1,99 @@
+package org.client.service;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**--------------------------------------------------------------------------------------------
+ * JFR event with the stage breakdown of one frame, emitted by the StageTracer once the frame
+ * was presented (or rendered). Built apart from the main sources (src/jfr) where the JDK has
+ * jdk.jfr, and found by the StageTracer through its Emitter; only allocated while a recording
+ * enables it. Stages the frame did not go through have no duration (Long.MIN_VALUE,
+ * shown as N/A); the stack trace would only show the draining thread.
+ * --------------------------------------------------------------------------------------------*/
+@Name("org.client.FrameLatency")
+@Label("Frame Latency")
+@Category({ "Stream Client" })
+@Description("Time a frame spent in each stage of the receive pipeline")
+@StackTrace(false)
+class FrameLatencyEvent extends Event
+{
+	private static final EventType TYPE = EventType.getEventType(FrameLatencyEvent.class);
+
+	@Label("Sequence Number")
+	int sequenceNumber;
+
+	@Label("Hand-off")
+	@Description("Arrival to parsing by the playout thread")
+	@Timespan(Timespan.MICROSECONDS)
+	long handOff;
+
+	@Label("Jitter Buffer")
+	@Timespan(Timespan.MICROSECONDS)
+	long jitterBuffer;
+
+	@Label("Assembly")
+	@Description("Leaving the jitter buffer to decode start, including the wait for the decoders")
+	@Timespan(Timespan.MICROSECONDS)
+	long assembly;
+
+	@Label("Decode")
+	@Timespan(Timespan.MICROSECONDS)
+	long decode;
+
+	@Label("Presentation")
+	@Description("Decode end to the hand-over to the listener")
+	@Timespan(Timespan.MICROSECONDS)
+	long presentation;
+
+	@Label("Render")
+	@Description("Hand-over to display by an FX pulse")
+	@Timespan(Timespan.MICROSECONDS)
+	long render;
+
+	@Label("Total")
+	@Description("Arrival of the first packet to display, or to the hand-over when not rendered")
+	@Timespan(Timespan.MICROSECONDS)
+	long total;
+
+	/** Hands the frames of a StageTracer over to #emit(). */
+	static class Emitter implements StageTracer.FrameSink
+	{
+		@Override
+		public void emit(int sequenceNumber, long[] times, int row)
+		{
+			FrameLatencyEvent.emit(sequenceNumber, times, row);
+		}
+	}
+
+	/** Commits an event for the frame timeline at the given row of stage times, if enabled. */
+	static void emit(int sequenceNumber, long[] times, int row)
+	{
+		if (!TYPE.isEnabled())
+			return;
+
+		FrameLatencyEvent event = new FrameLatencyEvent();
+		event.sequenceNumber = sequenceNumber;
+		event.handOff = micros(times, row, StageTracer.RECEIVE, StageTracer.PARSE);
+		event.jitterBuffer = micros(times, row, StageTracer.ENQUEUE, StageTracer.DEQUEUE);
+		event.assembly = micros(times, row, StageTracer.DEQUEUE, StageTracer.DECODE_START);
+		event.decode = micros(times, row, StageTracer.DECODE_START, StageTracer.DECODE_END);
+		event.presentation = micros(times, row, StageTracer.DECODE_END, StageTracer.PRESENT);
+		event.render = micros(times, row, StageTracer.PRESENT, StageTracer.RENDER);
+		event.total = micros(times, row, StageTracer.RECEIVE,
+				times[row + StageTracer.RENDER] != 0 ? StageTracer.RENDER : StageTracer.PRESENT);
+		event.commit();
+	}
+
+	private static long micros(long[] times, int row, int from, int to)
+	{
+		long start = times[row + from];
+		long end = times[row + to];
+		return start == 0 || end == 0 ? Long.MIN_VALUE : (end - start) / 1000;
+	}
+}
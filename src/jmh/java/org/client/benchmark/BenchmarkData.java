@@ -0,0 +1,70 @@
+package org.client.benchmark;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+/**--------------------------------------------------------------------------------------------
+ * Shared benchmark fixtures.
+ * --------------------------------------------------------------------------------------------*/
+final class BenchmarkData
+{
+	private BenchmarkData() {}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Encodes a synthetic frame (gradient plus noise, so it compresses like camera footage).
+	 * --------------------------------------------------------------------------------------------*/
+	static byte[] jpegFrame(int width, int height) throws IOException
+	{
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setPaint(new GradientPaint(0, 0, Color.BLUE, width, height, Color.ORANGE));
+		graphics.fillRect(0, 0, width, height);
+		graphics.dispose();
+
+		Random random = new Random(42);
+		for (int i = 0; i < width * height / 8; i++)
+			image.setRGB(random.nextInt(width), random.nextInt(height), random.nextInt());
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		ImageIO.write(image, "jpeg", output);
+		return output.toByteArray();
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Builds a sequence number pattern: "inOrder", "reordered" (adjacent swaps) or "lossy" (5% loss).
+	 * Numbers start close to the 16-bit wrap so the wraparound path is exercised as well.
+	 * --------------------------------------------------------------------------------------------*/
+	static int[] sequence(String pattern, int count)
+	{
+		Random random = new Random(7);
+		int[] sequence = new int[count];
+		int next = 65536 - count / 2;
+		int length = 0;
+
+		for (int i = 0; i < count; i++, next++)
+		{
+			if ("lossy".equals(pattern) && random.nextInt(100) < 5)
+				continue;
+			sequence[length++] = next & 0xFFFF;
+		}
+
+		if ("reordered".equals(pattern))
+		{
+			for (int i = 0; i + 1 < length; i += 2 + random.nextInt(4))
+			{
+				int swap = sequence[i];
+				sequence[i] = sequence[i + 1];
+				sequence[i + 1] = swap;
+			}
+		}
+		return Arrays.copyOf(sequence, length);
+	}
+}
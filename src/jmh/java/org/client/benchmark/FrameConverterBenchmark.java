@@ -0,0 +1,69 @@
+package org.client.benchmark;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import javafx.scene.image.Image;
+
+import org.client.model.DecodedFrame;
+import org.client.service.FrameConverter;
+import org.client.service.FramePool;
+import org.client.service.JpegDecoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**--------------------------------------------------------------------------------------------
+ * JPEG decode benchmarks: FrameConverter.convert (decode + FX conversion) and the bare
+ * pooled JpegDecoder used by the decode pipeline.
+ * --------------------------------------------------------------------------------------------*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class FrameConverterBenchmark
+{
+	@Param({"320x240", "640x480", "1280x720"})
+	String resolution;
+
+	private byte[] jpeg;
+	private FrameConverter converter;
+	private JpegDecoder decoder;
+	private FramePool framePool;
+	private DecodedFrame frame;
+
+	@Setup
+	public void setup() throws IOException
+	{
+		String[] size = resolution.split("x");
+		jpeg = BenchmarkData.jpegFrame(Integer.parseInt(size[0]), Integer.parseInt(size[1]));
+
+		converter = new FrameConverter();
+		decoder = new JpegDecoder();
+		framePool = new FramePool(1);
+		frame = new DecodedFrame(0, 0);
+	}
+
+	@Benchmark
+	public Image convert() throws IOException
+	{
+		return converter.convert(jpeg);
+	}
+
+	@Benchmark
+	public DecodedFrame decodePooled() throws IOException
+	{
+		decoder.decode(frame, framePool, jpeg, 0, jpeg.length);
+		return frame;
+	}
+}
@@ -0,0 +1,62 @@
+package org.client.benchmark;
+
+import java.awt.Image;
+import java.awt.image.BufferedImage;
+import java.util.concurrent.TimeUnit;
+
+import org.client.service.FrameSynchronizer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**--------------------------------------------------------------------------------------------
+ * FrameSynchronizer addFrame/nextFrame benchmarks under in-order, reordered and lossy input.
+ * Each invocation pushes a batch of frames through a fresh synchronizer.
+ * --------------------------------------------------------------------------------------------*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrameSynchronizerBenchmark
+{
+	private static final int BATCH = 1024;
+
+	@Param({"inOrder", "reordered", "lossy"})
+	String pattern;
+
+	private int[] sequence;
+	private Image frame;
+
+	@Setup
+	public void setup()
+	{
+		sequence = BenchmarkData.sequence(pattern, BATCH);
+		frame = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public int addAndNext()
+	{
+		FrameSynchronizer synchronizer = new FrameSynchronizer(128);
+		int shown = 0;
+		for (int i = 0; i < sequence.length; i++)
+		{
+			synchronizer.addFrame(frame, sequence[i]);
+			if (synchronizer.nextFrame() != null)
+				shown++;
+		}
+		return shown;
+	}
+}
@@ -0,0 +1,56 @@
+package org.client.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.client.model.RtcpPacket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**--------------------------------------------------------------------------------------------
+ * RtcpPacket construct/encode/parse benchmarks.
+ * --------------------------------------------------------------------------------------------*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RtcpPacketBenchmark
+{
+	private byte[] packet;
+	private int packetLength;
+
+	@Setup
+	public void setup()
+	{
+		RtcpPacket rtcpPacket = new RtcpPacket(0.25f, 42, 65000);
+		packet = new byte[rtcpPacket.getlength()];
+		packetLength = rtcpPacket.getpacket(packet);
+	}
+
+	@Benchmark
+	public RtcpPacket construct()
+	{
+		return new RtcpPacket(0.25f, 42, 65000);
+	}
+
+	@Benchmark
+	public int constructAndEncode()
+	{
+		return new RtcpPacket(0.25f, 42, 65000).getpacket(packet);
+	}
+
+	@Benchmark
+	public RtcpPacket parse()
+	{
+		return new RtcpPacket(packet, packetLength);
+	}
+}
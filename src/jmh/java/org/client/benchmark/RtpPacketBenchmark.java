@@ -0,0 +1,92 @@
+package org.client.benchmark;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.client.model.RtpPacket;
+import org.client.model.RtpPacketView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**--------------------------------------------------------------------------------------------
+ * RtpPacket parse/serialize benchmarks.
+ * --------------------------------------------------------------------------------------------*/
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RtpPacketBenchmark
+{
+	@Param({"1400", "14000"})
+	int payloadSize;
+
+	private byte[] payload;
+	private byte[] packet;
+	private int packetLength;
+	private ByteBuffer directPacket;
+	private RtpPacket rtpPacket;
+	private final RtpPacketView view = new RtpPacketView();
+	private byte[] output;
+
+	@Setup
+	public void setup()
+	{
+		payload = new byte[payloadSize];
+		rtpPacket = new RtpPacket(26, 1234, 567890, payload, payloadSize);
+		packet = new byte[payloadSize + 12];
+		packetLength = rtpPacket.getpacket(packet);
+		output = new byte[packetLength];
+
+		directPacket = ByteBuffer.allocateDirect(packetLength);
+		directPacket.put(packet, 0, packetLength).flip();
+	}
+
+	@Benchmark
+	public RtpPacket parse()
+	{
+		return new RtpPacket(packet, packetLength);
+	}
+
+	@Benchmark
+	public int parseAndCopyPayload()
+	{
+		return new RtpPacket(packet, packetLength).getpayload(output);
+	}
+
+	@Benchmark
+	public int viewHeap()
+	{
+		view.wrap(ByteBuffer.wrap(packet, 0, packetLength));
+		return view.getSequenceNumber() + view.getTimestamp() + view.getPayloadLength();
+	}
+
+	@Benchmark
+	public int viewDirect()
+	{
+		view.wrap(directPacket, 0, packetLength);
+		return view.getSequenceNumber() + view.getTimestamp() + view.getPayloadLength();
+	}
+
+	@Benchmark
+	public RtpPacket construct()
+	{
+		return new RtpPacket(26, 1234, 567890, payload, payloadSize);
+	}
+
+	@Benchmark
+	public int serialize()
+	{
+		return rtpPacket.getpacket(output);
+	}
+}
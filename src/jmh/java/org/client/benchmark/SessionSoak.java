@@ -0,0 +1,163 @@
+package org.client.benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.client.service.Histogram;
+import org.client.service.SessionConfig;
+import org.client.service.SessionManager;
+import org.client.service.SessionThreads;
+import org.client.service.StreamListener;
+import org.client.service.StreamSession;
+import org.client.service.StreamStats;
+
+/**--------------------------------------------------------------------------------------------
+ * Session soak benchmark (not a JMH benchmark: one long run with many live sessions).
+ * Opens N sessions through a SessionManager against an in-process StandInServer, then reports
+ * heap and threads per session and the scheduling latency seen by the listeners:
+ *   delivery - server send to onRawFrame (includes the playout tick period),
+ *   tick     - lateness of each playout tick against its period.
+ * System properties: soak.sessions (1000), soak.threads (virtual|platform, default virtual),
+ * soak.seconds (30), soak.fps (10), soak.payload (bytes, 1000).
+ * 10k sessions need about 4 file descriptors per session (ulimit -n).
+ * --------------------------------------------------------------------------------------------*/
+public class SessionSoak
+{
+	private static final int OPEN_BATCH = 256;		// sessions connecting at once
+
+	private static final Histogram delivery = new Histogram();		// us
+	private static final Histogram tickLateness = new Histogram();	// us
+
+	/** Per-session listener recording latencies. */
+	private static final class SoakListener implements StreamListener
+	{
+		private final long periodNanos;
+		private long lastTick;
+
+		SoakListener(long periodMillis)
+		{
+			periodNanos = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+		}
+
+		@Override
+		public void onRawFrame(StreamSession session, int sequenceNumber, byte[] payload, int length)
+		{
+			if (length < 8)
+				return;
+			long sent = 0;
+			for (int i = 0; i < 8; i++)
+				sent = (sent << 8) | (payload[i] & 0xFF);
+			delivery.record((System.nanoTime() - sent) / 1000);
+		}
+
+		@Override
+		public void onStatistics(StreamSession session, StreamStats stats)
+		{
+			long now = System.nanoTime();
+			if (lastTick != 0)
+				tickLateness.record((now - lastTick - periodNanos) / 1000);
+			lastTick = now;
+		}
+	}
+
+	public static void main(String[] args) throws Exception
+	{
+		int sessionCount = Integer.getInteger("soak.sessions", 1000);
+		String threadMode = System.getProperty("soak.threads", SessionThreads.MODE_VIRTUAL);
+		int seconds = Integer.getInteger("soak.seconds", 30);
+		int framesPerSecond = Integer.getInteger("soak.fps", 10);
+		int payloadSize = Integer.getInteger("soak.payload", 1000);
+
+		// the client prints every packet; keep the console for the report
+		PrintStream report = System.out;
+		System.setOut(new PrintStream(new OutputStream() {
+			@Override
+			public void write(int b) {}
+			@Override
+			public void write(byte[] b, int off, int len) {}
+		}));
+
+		report.println("Soak: " + sessionCount + " sessions, " + threadMode + " threads (virtual supported: "
+					   + SessionThreads.isVirtualSupported() + "), " + framesPerSecond + " fps, "
+					   + payloadSize + " B payload, " + seconds + " s");
+
+		StandInServer server = new StandInServer(framesPerSecond, payloadSize);
+		long baselineHeap = usedHeap();
+		int baselineThreads = ManagementFactory.getThreadMXBean().getThreadCount();
+
+		SessionManager manager = new SessionManager();
+		long openStart = System.nanoTime();
+		int failed = 0;
+		for (int first = 0; first < sessionCount; first += OPEN_BATCH)
+		{
+			List<CompletableFuture<Boolean>> batch = new ArrayList<CompletableFuture<Boolean>>();
+			for (int i = first; i < Math.min(sessionCount, first + OPEN_BATCH); i++)
+			{
+				SessionConfig config = new SessionConfig();
+				config.serverHost = "127.0.0.1";
+				config.rtspPort = server.getRtspPort();
+				config.rtcpServerPort = server.getRtcpPort();
+				config.rtpPort = 0;
+				config.rtpPortRangeStart = 20000;
+				config.rtpPortRangeEnd = 60000;
+				config.rtpBufferSize = 12 + payloadSize + 64;
+				config.ringCapacity = 16;
+				config.rtpReceiveBufferSize = 0;
+				config.jitterBufferCapacity = 16;
+				config.playoutDelay = 0;
+				config.decode = false;
+				config.threadMode = threadMode;
+				batch.add(manager.open(manager.createSession(config, new SoakListener(config.playoutPeriod))));
+			}
+			for (CompletableFuture<Boolean> opened : batch)
+			{
+				try
+				{
+					if (!opened.join())
+						failed++;
+				}
+				catch (RuntimeException ex)
+				{
+					failed++;
+				}
+			}
+		}
+		long openMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - openStart);
+
+		// let every session reach steady state before measuring
+		Thread.sleep(2000);
+		long heapPerSession = (usedHeap() - baselineHeap) / Math.max(1, sessionCount);
+		int threads = ManagementFactory.getThreadMXBean().getThreadCount() - baselineThreads;
+		delivery.reset();
+		tickLateness.reset();
+
+		Thread.sleep(TimeUnit.SECONDS.toMillis(seconds));
+
+		report.println("Opened " + (sessionCount - failed) + "/" + sessionCount + " sessions in " + openMillis
+					   + " ms, playing at server: " + server.getPlayingCount());
+		report.println("Heap per session: " + heapPerSession + " B, platform threads added: " + threads);
+		report.println("Delivery latency: " + delivery + " us");
+		report.println("Tick lateness:    " + tickLateness + " us");
+		report.println(manager.getSnapshot());
+
+		manager.closeAll();
+		server.stop();
+		System.exit(0);
+	}
+
+	private static long usedHeap() throws InterruptedException
+	{
+		Runtime runtime = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++)
+		{
+			System.gc();
+			Thread.sleep(100);
+		}
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
@@ -0,0 +1,282 @@
+package org.client.benchmark;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+
+/**--------------------------------------------------------------------------------------------
+ * Local stand-in for the streaming server, sized for thousands of sessions.
+ * One selector thread answers the reference client's RTSP requests (200 OK for everything) and
+ * one sender thread streams small RTP packets to every playing session. Each payload starts
+ * with the System.nanoTime() of its send, so an in-process client can measure delivery latency;
+ * it is not JPEG, so a dynamic payload type (96) keeps it out of the RFC 2435 depacketizer. RTCP reports are received on a bound channel and dropped.
+ * --------------------------------------------------------------------------------------------*/
+final class StandInServer
+{
+	private final ServerSocketChannel rtspChannel;
+	private static final int PAYLOAD_TYPE = 96;
+
+	private final DatagramChannel rtpChannel;
+	private final DatagramChannel rtcpChannel;
+	private final Selector selector;
+	private final ConcurrentHashMap<InetSocketAddress, int[]> playing = new ConcurrentHashMap<InetSocketAddress, int[]>();
+
+	private final long framePeriodNanos;
+	private final int payloadSize;
+	private volatile boolean running = true;
+	private final Thread rtspThread;
+	private final Thread senderThread;
+
+	/**--------------------------------------------------------------------------------------------
+	 * Per-connection RTSP parser state; the reference client ends a request with its last
+	 * header line (Transport, Accept or Session) instead of an empty line.
+	 * --------------------------------------------------------------------------------------------*/
+	private static final class Connection
+	{
+		final StringBuilder line = new StringBuilder();
+		String method;
+		String sequenceNumber = "0";
+		int clientPort;
+		InetSocketAddress target;
+	}
+
+	StandInServer(int framesPerSecond, int payloadSize) throws IOException
+	{
+		this.framePeriodNanos = 1000000000L / framesPerSecond;
+		this.payloadSize = Math.max(8, payloadSize);
+
+		selector = Selector.open();
+		rtspChannel = ServerSocketChannel.open();
+		rtspChannel.bind(new InetSocketAddress("127.0.0.1", 0), 4096);
+		rtspChannel.configureBlocking(false);
+		rtspChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+		rtpChannel = DatagramChannel.open();
+		rtcpChannel = DatagramChannel.open();
+		rtcpChannel.bind(new InetSocketAddress("127.0.0.1", 0));
+
+		rtspThread = new Thread(new Runnable() {
+			@Override
+			public void run()
+			{
+				serveRtsp();
+			}
+		}, "standin-rtsp");
+		senderThread = new Thread(new Runnable() {
+			@Override
+			public void run()
+			{
+				sendRtp();
+			}
+		}, "standin-rtp");
+		rtspThread.setDaemon(true);
+		senderThread.setDaemon(true);
+		rtspThread.start();
+		senderThread.start();
+	}
+
+	int getRtspPort()
+	{
+		return rtspChannel.socket().getLocalPort();
+	}
+
+	int getRtcpPort()
+	{
+		return rtcpChannel.socket().getLocalPort();
+	}
+
+	int getPlayingCount()
+	{
+		return playing.size();
+	}
+
+	void stop() throws IOException
+	{
+		running = false;
+		selector.wakeup();
+		try
+		{
+			rtspThread.join(1000);
+			senderThread.join(1000);
+		}
+		catch (InterruptedException ie)
+		{
+			Thread.currentThread().interrupt();
+		}
+		for (SelectionKey key : selector.keys())
+			key.channel().close();
+		selector.close();
+		rtpChannel.close();
+		rtcpChannel.close();
+	}
+
+	private void serveRtsp()
+	{
+		ByteBuffer input = ByteBuffer.allocate(4096);
+		while (running)
+		{
+			try
+			{
+				selector.select(100);
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext())
+				{
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (!key.isValid())
+						continue;
+
+					if (key.isAcceptable())
+					{
+						SocketChannel client;
+						while ((client = rtspChannel.accept()) != null)
+						{
+							client.configureBlocking(false);
+							client.register(selector, SelectionKey.OP_READ, new Connection());
+						}
+					}
+					else if (key.isReadable())
+						read(key, input);
+				}
+			}
+			catch (IOException ioe)
+			{
+				if (running)
+					System.err.println("Stand-in server: " + ioe);
+			}
+		}
+	}
+
+	private void read(SelectionKey key, ByteBuffer input) throws IOException
+	{
+		SocketChannel client = (SocketChannel) key.channel();
+		Connection connection = (Connection) key.attachment();
+		input.clear();
+		int count;
+		try
+		{
+			count = client.read(input);
+		}
+		catch (IOException ioe)
+		{
+			count = -1;
+		}
+		if (count < 0)
+		{
+			if (connection.target != null)
+				playing.remove(connection.target);
+			key.cancel();
+			client.close();
+			return;
+		}
+
+		for (int i = 0; i < count; i++)
+		{
+			char c = (char) input.get(i);
+			if (c == '\r')
+				continue;
+			if (c != '\n')
+			{
+				connection.line.append(c);
+				continue;
+			}
+
+			String line = connection.line.toString().trim();
+			connection.line.setLength(0);
+			if (onLine(connection, line))
+				respond(client, connection);
+		}
+	}
+
+	/** Returns true when the line completes a request. */
+	private boolean onLine(Connection connection, String line)
+	{
+		// the empty line ending an RFC 2326 request carries nothing the reference protocol needs
+		if (line.isEmpty())
+			return false;
+		if (connection.method == null)
+		{
+			int end = line.indexOf(' ');
+			connection.method = end < 0 ? line : line.substring(0, end);
+			return false;
+		}
+
+		if (line.startsWith("CSeq:"))
+			connection.sequenceNumber = line.substring(5).trim();
+		else if (line.startsWith("Transport:"))
+		{
+			int start = line.indexOf("client_port=");
+			if (start >= 0)
+			{
+				String port = line.substring(start + 12).trim();
+				int end = port.indexOf('-');
+				connection.clientPort = Integer.parseInt(end < 0 ? port : port.substring(0, end).trim());
+			}
+			return true;
+		}
+		return line.startsWith("Session:") || line.startsWith("Accept:");
+	}
+
+	private void respond(SocketChannel client, Connection connection) throws IOException
+	{
+		String method = connection.method;
+		connection.method = null;
+
+		if ("PLAY".equals(method))
+		{
+			connection.target = new InetSocketAddress("127.0.0.1", connection.clientPort);
+			playing.put(connection.target, new int[1]);
+		}
+		else if (("PAUSE".equals(method) || "TEARDOWN".equals(method)) && connection.target != null)
+			playing.remove(connection.target);
+
+		String response = "RTSP/1.0 200 OK\r\nCSeq: " + connection.sequenceNumber + "\r\nSession: 123456\r\n";
+		ByteBuffer output = ByteBuffer.wrap(response.getBytes(StandardCharsets.US_ASCII));
+		while (output.hasRemaining())
+			client.write(output);
+	}
+
+	private void sendRtp()
+	{
+		ByteBuffer packet = ByteBuffer.allocateDirect(12 + payloadSize);
+		long next = System.nanoTime();
+		while (running)
+		{
+			for (Map.Entry<InetSocketAddress, int[]> target : playing.entrySet())
+			{
+				int sequenceNumber = target.getValue()[0]++;
+				packet.clear();
+				packet.put((byte) 0x80).put((byte) (0x80 | PAYLOAD_TYPE)).putShort((short) sequenceNumber);
+				packet.putInt((int) (System.currentTimeMillis())).putInt(0x5EED);
+				packet.putLong(System.nanoTime());
+				packet.position(packet.capacity());
+				packet.flip();
+				try
+				{
+					rtpChannel.send(packet, target.getKey());
+				}
+				catch (IOException ioe)
+				{
+					// session gone, it is removed on its TEARDOWN or disconnect
+				}
+			}
+
+			next += framePeriodNanos;
+			long delay = next - System.nanoTime();
+			if (delay > 0)
+				LockSupport.parkNanos(delay);
+			else
+				next = System.nanoTime();
+		}
+	}
+}
@@ -0,0 +1,297 @@
+/* ----------------------------------------------------------
+   HeadlessClient
+   usage: java org.client.HeadlessClient [options]
+     --host <host>          RTSP server host (default: localhost)
+     --port <port>          RTSP server port (default: 13569)
+     --video <file>         requested video file name
+     --rtp-port <port>      local RTP port (default: 25000)
+     --duration <seconds>   stop after the given time (default: run until killed)
+     --record <file>        append received JPEG frames to an MJPEG file
+     --decode               decode frames (then discard them)
+     --tcp                  receive RTP/RTCP interleaved on the RTSP connection
+     --sessions <count>     run count concurrent sessions on shared threads,
+                            each on its own free RTP port pair (default: 1)
+     --channels <a,b,...>   zap through the videos, switching every --switch seconds
+                            (default: 2), with --standby warm sessions (default: 2)
+                            playing on standby, or only set up with --no-prebuffer
+     --metrics-port <port>  serve Prometheus metrics on http://host:port/metrics
+                            (default: -Dclient.metrics.port, off)
+     --trace-packets        log the header of every RTP packet (logger "packets")
+   Frames are discarded unless --record is given (single session only).
+   -Dclient.threads=virtual runs the session loops on virtual threads (Java 21+).
+   -Dclient.log.<logger>=off|error|warn|info|debug|trace sets the level of a logger
+   (session, packets), -Dclient.log.level the default (info).
+   ---------------------------------------------------------- */
+package org.client;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.List;
+
+import org.client.service.Log;
+import org.client.service.MetricsExporter;
+import org.client.service.SessionConfig;
+import org.client.service.SessionManager;
+import org.client.service.SessionPool;
+import org.client.service.StreamListener;
+import org.client.service.StreamSession;
+import org.client.service.StreamStats;
+
+public class HeadlessClient implements StreamListener
+{
+	private static final Log LOG = Log.get("client");
+	private static final long STATS_INTERVAL = 1000;	// ms
+
+	private static int metricsPort = Integer.getInteger("client.metrics.port", -1);	// -1 when not exported
+
+	private final OutputStream recorder;	// null when frames are discarded
+	private long frameCount;
+	private long lastStatsTime;
+
+	public HeadlessClient(OutputStream recorder)
+	{
+		this.recorder = recorder;
+	}
+
+	/**---------------------------------------------------------------------------------------
+	 * Main executor.
+	 * ---------------------------------------------------------------------------------------*/
+	public static void main(String[] args) throws Exception
+	{
+		SessionConfig config = SessionConfig.fromSystemProperties();
+		config.decode = false;
+		long duration = 0;
+		String recordFile = null;
+		int sessionCount = 1;
+		String[] channels = null;
+		long switchInterval = 2000;
+
+		for (int i = 0; i < args.length; i++)
+		{
+			String arg = args[i];
+			if ("--decode".equals(arg))
+				config.decode = true;
+			else if ("--tcp".equals(arg))
+				config.rtpTransport = SessionConfig.RTP_TRANSPORT_TCP;
+			else if ("--no-prebuffer".equals(arg))
+				config.standbyPrebuffer = false;
+			else if ("--trace-packets".equals(arg))
+				Log.get("packets").setLevel(Log.TRACE);
+			else if (i + 1 >= args.length)
+				usage("Missing value for " + arg);
+			else if ("--host".equals(arg))
+				config.serverHost = args[++i];
+			else if ("--port".equals(arg))
+				config.rtspPort = Integer.parseInt(args[++i]);
+			else if ("--video".equals(arg))
+				config.videoFileName = args[++i];
+			else if ("--rtp-port".equals(arg))
+				config.rtpPort = Integer.parseInt(args[++i]);
+			else if ("--duration".equals(arg))
+				duration = Long.parseLong(args[++i]) * 1000;
+			else if ("--record".equals(arg))
+				recordFile = args[++i];
+			else if ("--sessions".equals(arg))
+				sessionCount = Integer.parseInt(args[++i]);
+			else if ("--channels".equals(arg))
+				channels = args[++i].split(",");
+			else if ("--switch".equals(arg))
+				switchInterval = (long) (Double.parseDouble(args[++i]) * 1000);
+			else if ("--standby".equals(arg))
+				config.standbySessions = Integer.parseInt(args[++i]);
+			else if ("--metrics-port".equals(arg))
+				metricsPort = Integer.parseInt(args[++i]);
+			else
+				usage("Unknown option " + arg);
+		}
+
+		if (sessionCount > 1)
+		{
+			runSessions(config, sessionCount, duration);
+			return;
+		}
+		if (channels != null)
+		{
+			runChannels(config, channels, switchInterval, duration);
+			return;
+		}
+
+		OutputStream recorder = recordFile == null ? null : new BufferedOutputStream(new FileOutputStream(recordFile), 1 << 16);
+		final StreamSession session = new StreamSession(config, new HeadlessClient(recorder));
+		exportMetrics(Collections.singletonList(session));
+
+		// tear the session down when the JVM is stopped
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run()
+			{
+				if (session.getState() != StreamSession.INIT)
+					teardown(session);
+			}
+		});
+
+		try
+		{
+			session.connect().join();
+			if (!session.setup().join() || !session.play().join())
+				throw new IllegalStateException("Server refused the session");
+		}
+		catch (RuntimeException ex)
+		{
+			LOG.error("Exception caught: {}", ex);
+			session.close();
+			System.exit(1);
+		}
+
+		if (duration > 0)
+			Thread.sleep(duration);
+		else
+			Thread.currentThread().join();
+
+		LOG.info("{}", session.getMetrics().toString());
+		if (session.getTracer() != null)
+			LOG.info("{}", session.getTracer().toString());
+		teardown(session);
+		if (recorder != null)
+			recorder.close();
+		System.exit(0);
+	}
+
+	/** Serves the metrics of the sessions when a metrics port was given. */
+	private static void exportMetrics(List<StreamSession> sessions) throws IOException
+	{
+		if (metricsPort >= 0)
+			new MetricsExporter(sessions).start(metricsPort);
+	}
+
+	/**---------------------------------------------------------------------------------------
+	 * Runs many sessions through a SessionManager and prints aggregate statistics.
+	 * ---------------------------------------------------------------------------------------*/
+	private static void runSessions(SessionConfig template, int sessionCount, long duration) throws Exception
+	{
+		final SessionManager manager = new SessionManager();
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run()
+			{
+				manager.closeAll();
+			}
+		});
+		exportMetrics(manager.getSessions());
+
+		for (int i = 0; i < sessionCount; i++)
+		{
+			SessionConfig config = template.copy();
+			config.rtpPort = 0;
+			StreamSession session = manager.createSession(config, new StreamListener() {});
+			if (!manager.open(session).join())
+				manager.closeSession(session);
+		}
+
+		long end = duration > 0 ? System.currentTimeMillis() + duration : Long.MAX_VALUE;
+		while (System.currentTimeMillis() < end)
+		{
+			Thread.sleep(STATS_INTERVAL);
+			LOG.info("{}", manager.getSnapshot());
+		}
+		System.exit(0);
+	}
+
+	/**---------------------------------------------------------------------------------------
+	 * Switches through the channels of a SessionPool and prints the switch times.
+	 * ---------------------------------------------------------------------------------------*/
+	private static void runChannels(SessionConfig template, String[] channels, long switchInterval, long duration) throws Exception
+	{
+		final SessionManager manager = new SessionManager();
+		final SessionPool pool = new SessionPool(manager, template, new HeadlessClient(null),
+				template.standbySessions, template.standbyPrebuffer);
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run()
+			{
+				// tears down the pooled sessions as well
+				manager.closeAll();
+			}
+		});
+		exportMetrics(manager.getSessions());
+
+		pool.switchTo(channels[0]).join();
+		for (int i = 1; i < channels.length && i <= template.standbySessions; i++)
+			pool.warm(channels[i]).join();
+
+		long end = duration > 0 ? System.currentTimeMillis() + duration : Long.MAX_VALUE;
+		for (int i = 1; System.currentTimeMillis() < end; i++)
+		{
+			Thread.sleep(switchInterval);
+			String channel = channels[i % channels.length];
+			try
+			{
+				pool.switchTo(channel).join();
+			}
+			catch (RuntimeException ex)
+			{
+				LOG.error("Exception caught: {}", ex);
+				continue;
+			}
+			Thread.sleep(Math.min(switchInterval / 2, 500));
+			LOG.at(Log.INFO, "[Switch] Channel: {}, First frame after: {} ms, Standby: {}")
+				.arg(channel).arg(pool.getLastSwitchMillis()).arg(pool.getStandbyChannels().toString()).log();
+		}
+		System.exit(0);
+	}
+
+	/** Tears a session down, waiting for the server's response. */
+	private static void teardown(StreamSession session)
+	{
+		try
+		{
+			session.teardown().join();
+		}
+		catch (RuntimeException ex)
+		{
+			LOG.error("Exception caught: {}", ex);
+			session.close();
+		}
+	}
+
+	private static void usage(String message)
+	{
+		LOG.error(message);
+		LOG.info("usage: java org.client.HeadlessClient [--host <host>] [--port <port>] [--video <file>]"
+				 + " [--rtp-port <port>] [--duration <seconds>] [--record <file>] [--decode] [--tcp] [--sessions <count>]"
+				 + " [--channels <a,b,...> [--switch <seconds>] [--standby <count>] [--no-prebuffer]]"
+				 + " [--metrics-port <port>] [--trace-packets]");
+		System.exit(2);
+	}
+
+	@Override
+	public void onRawFrame(StreamSession session, int sequenceNumber, byte[] payload, int length)
+	{
+		frameCount++;
+		if (recorder == null)
+			return;
+
+		try
+		{
+			recorder.write(payload, 0, length);
+		}
+		catch (IOException ioe)
+		{
+			LOG.error("Exception caught: {}", ioe);
+		}
+	}
+
+	@Override
+	public void onStatistics(StreamSession session, StreamStats stats)
+	{
+		long now = System.currentTimeMillis();
+		if (now - lastStatsTime >= STATS_INTERVAL)
+		{
+			lastStatsTime = now;
+			LOG.info("{}, Frames: {}", stats.toString(), frameCount);
+		}
+	}
+}
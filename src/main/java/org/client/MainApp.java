@@ -14,6 +14,7 @@ import javafx.scene.layout.AnchorPane;
 import javafx.scene.layout.BorderPane;
 import javafx.stage.Stage;
 import javafx.stage.WindowEvent;
+import javafx.util.Callback;
 
 import org.client.ui.StreamClientController;
 
@@ -46,9 +47,14 @@ public class MainApp extends Application
 			public void handle(WindowEvent event) { System.exit(0); }
         });
 
+		// connect, bind the RTP/RTCP sockets and warm up the decoders while the layouts load
+		StreamClientController clientController = new StreamClientController();
+		clientController.setApplication(this);
+		clientController.connect();
+
         // init and show UI components
 		initRootLayout();
-		showStreamClient();
+		showStreamClient(clientController);
 	}
 
 	/**---------------------------------------------------------------------------------------
@@ -72,23 +78,24 @@ public class MainApp extends Application
 	}
 
 	/**---------------------------------------------------------------------------------------
-	 * Configures and shows StreamClient's layout inside root layout.
+	 * Configures and shows StreamClient's layout inside root layout, bound to the given
+	 * (already connecting) controller.
 	 * ---------------------------------------------------------------------------------------*/
-	private void showStreamClient()
+	private void showStreamClient(final StreamClientController clientController)
 	{
 		try
 		{
 			// Load client's layout from fxml file.
 			FXMLLoader loader = new FXMLLoader();
 			loader.setLocation(getClass().getResource("/org/client/ui/StreamClientLayout.fxml"));
+			loader.setControllerFactory(new Callback<Class<?>, Object>() {
+				@Override
+				public Object call(Class<?> type) { return clientController; }
+			});
 			AnchorPane streamClient = (AnchorPane) loader.load();
 
 			// set client's layout in the center of root
 			rootLayout.setCenter(streamClient);
-
-			StreamClientController clientController = loader.getController();
-			clientController.setApplication(this);
-			clientController.connect();
 		}
 		catch (IOException exception) { exception.printStackTrace(); }
 	}
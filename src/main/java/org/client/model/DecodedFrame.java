@@ -0,0 +1,38 @@
+package org.client.model;
+
+import java.awt.image.BufferedImage;
+
+/**--------------------------------------------------------------------------------------------
+ * Decoded video frame, tagged with the RTP fields it was received with.
+ * --------------------------------------------------------------------------------------------*/
+public class DecodedFrame
+{
+	public int sequenceNumber;		// RTP sequence number of the frame
+	public int timeStamp;			// RTP timestamp of the frame
+	public BufferedImage image;		// decoded pixels (pooled destination image)
+	public long decodeNanos;		// time spent decoding, negative if decoding failed
+	public long presentationNanos;	// System.nanoTime() the frame is due for display, 0 if unscheduled
+	public long arrivalNanos;		// System.nanoTime() the last packet of the frame arrived, 0 if unknown
+
+	public DecodedFrame(int sequenceNumber, int timeStamp)
+	{
+		this.sequenceNumber = sequenceNumber;
+		this.timeStamp = timeStamp;
+	}
+
+	public int getWidth()
+	{
+		return image == null ? 0 : image.getWidth();
+	}
+
+	public int getHeight()
+	{
+		return image == null ? 0 : image.getHeight();
+	}
+
+	@Override
+	public String toString() {
+		return "[Frame] SequenceNumber: " + sequenceNumber + ", TimeStamp: " + timeStamp
+			   + ", Size: " + getWidth() + "x" + getHeight() + ", Decode: " + decodeNanos / 1000 + " us";
+	}
+}
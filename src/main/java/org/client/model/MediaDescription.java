@@ -0,0 +1,84 @@
+package org.client.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**--------------------------------------------------------------------------------------------
+ * SDP media description (RFC 4566 5.14): an m= line with its attributes.
+ * Payload formats are described by a=rtpmap lines; static payload types without one fall back
+ * to their RFC 3551 encoding and clock rate.
+ * --------------------------------------------------------------------------------------------*/
+public class MediaDescription
+{
+	public String type;					// video, audio...
+	public int port;					// 0 when negotiated by RTSP
+	public String protocol;				// RTP/AVP
+	public final List<Integer> formats = new ArrayList<Integer>();		// RTP payload types, in preference order
+	public final Map<Integer, String> encodingNames = new HashMap<Integer, String>();	// a=rtpmap by payload type
+	public final Map<Integer, Integer> clockRates = new HashMap<Integer, Integer>();
+	public final Map<Integer, String> formatParameters = new HashMap<Integer, String>();	// a=fmtp by payload type
+	public final Map<String, String> attributes = new LinkedHashMap<String, String>();	// all a= lines, by name
+	public String control;				// a=control, stream URL or relative to the session
+	public double frameRate;			// a=framerate, 0 if not given
+	public int width;					// a=framesize, a=x-dimensions or a=cliprect, 0 if not given
+	public int height;
+
+	/** Returns the encoding name of a payload type (e.g. JPEG), or null if unknown. */
+	public String getEncodingName(int payloadType)
+	{
+		String name = encodingNames.get(payloadType);
+		return name != null ? name : staticEncodingName(payloadType);
+	}
+
+	/** Returns the RTP clock rate of a payload type, or 0 if unknown. */
+	public int getClockRate(int payloadType)
+	{
+		Integer clockRate = clockRates.get(payloadType);
+		if (clockRate != null)
+			return clockRate;
+		return staticEncodingName(payloadType) != null ? staticClockRate(payloadType) : 0;
+	}
+
+	/** Returns true if the payload type has an explicit a=rtpmap line. */
+	public boolean isMapped(int payloadType)
+	{
+		return clockRates.containsKey(payloadType);
+	}
+
+	/** Returns the first payload type, or -1 if there is none. */
+	public int getPrimaryFormat()
+	{
+		return formats.isEmpty() ? -1 : formats.get(0);
+	}
+
+	/** RFC 3551 static video and common audio payload types. */
+	private static String staticEncodingName(int payloadType)
+	{
+		switch (payloadType)
+		{
+			case 0: return "PCMU";
+			case 8: return "PCMA";
+			case 14: return "MPA";
+			case 26: return "JPEG";
+			case 31: return "H261";
+			case 32: return "MPV";
+			case 34: return "H263";
+			default: return null;
+		}
+	}
+
+	private static int staticClockRate(int payloadType)
+	{
+		return payloadType == 0 || payloadType == 8 ? 8000 : 90000;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "[Media] Type: " + type + ", Formats: " + formats + ", Encodings: " + encodingNames
+			   + ", Clock: " + clockRates + ", FrameRate: " + frameRate + ", Size: " + width + "x" + height;
+	}
+}
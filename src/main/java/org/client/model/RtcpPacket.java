@@ -2,7 +2,7 @@ package org.client.model;
 
 import java.nio.ByteBuffer;
 
-// RR: Receiver Report RTCP Packet
+// RR: Receiver Report RTCP Packet (RFC 3550 section 6.4.2)
 
 //		 0				   1				   2				   3
 //		 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
@@ -11,9 +11,9 @@ import java.nio.ByteBuffer;
 //		+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
 //		|					 SSRC of packet sender					 |
 //		+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+
-// report |						   fraction lost					   |
+// report |				 SSRC_1 (SSRC of first source)				 |
 // block  +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
-//   1	|			  cumulative number of packets lost				|
+//   1	| fraction lost |	   cumulative number of packets lost	   |
 //		+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
 //		|		   extended highest sequence number received		   |
 //		+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
@@ -26,56 +26,60 @@ import java.nio.ByteBuffer;
 
 public class RtcpPacket
 {
+	public final static int SR = 200;		// Sender Report packet type
+	public final static int RR = 201;		// Receiver Report packet type
+
 	final static int HEADER_SIZE = 8;
 	final static int BODY_SIZE = 24;
+	public final static int REPORT_BLOCK_SIZE = BODY_SIZE;
+	public final static int MAX_REPORT_COUNT = 31;
 
 	public int version;			// Version number 2
 	public int padding;			// Padding of packet
 	public int reportCount; 	// Reception report count = 1 for one receiver
 	public int payloadType;		// 201 for Receiver Report
-	public int length;			// 1 source is always 32 bytes: 8 header, 24 body
-	public int ssrc;			// Ssrc of sender
-	public float fractionLost;	// The fraction of RTP data packets from sender lost since the previous RR packet was sent
-	public int numLost;			// The total number of RTP data packets from sender that have been lost since the beginning of reception.
-	public int highSeqNumber;	// Highest sequence number received
-	public int jitter;			// Not used
-	public int LSR;				// Not used
-	public int DLSR;			// Not used
+	public int length;			// Length in 32-bit words minus one: 7 for one report block
+	public int ssrc;			// Ssrc of sender (this receiver)
+	public int sourceSsrc;		// Ssrc of the source the report block is about
+	public int fractionLost;	// Fraction of RTP data packets lost since the previous RR, 8-bit fixed point (x/256)
+	public int numLost;			// The total number of RTP data packets from sender that have been lost since the beginning of reception (24-bit signed).
+	public int highSeqNumber;	// Extended highest sequence number received
+	public int jitter;			// Interarrival jitter, in RTP timestamp units
+	public int LSR;				// Middle 32 bits of the NTP timestamp of the last SR received
+	public int DLSR;			// Delay since the last SR, in 1/65536 seconds
 
 	public byte[] header;	// Bitstream of header
 	public byte[] body;		// Bitstream of the body
 
-	// Constructor from field values
+	// Constructor from field values (fraction lost as a float in [0, 1])
 	public RtcpPacket(float fractionLost, int cumLost, int highSeqNb)
+	{
+		this(0, 0, toFixedPoint(fractionLost), cumLost, highSeqNb, 0, 0, 0);
+	}
+
+	// Constructor from all report block values
+	public RtcpPacket(int ssrc, int sourceSsrc, int fractionLost, int cumLost, int highSeqNb, int jitter, int lsr, int dlsr)
 	{
 		version = 2;
 		padding = 0;
 		reportCount = 1;
-		payloadType = 201;
-		length = 32;
-		//Other fields not used
+		payloadType = RR;
+		length = (HEADER_SIZE + BODY_SIZE) / 4 - 1;
 
-		this.fractionLost = fractionLost;
-		this.numLost = cumLost;
+		this.ssrc = ssrc;
+		this.sourceSsrc = sourceSsrc;
+		this.fractionLost = fractionLost & 0xFF;
+		this.numLost = clampLost(cumLost);
 		this.highSeqNumber = highSeqNb;
+		this.jitter = jitter;
+		this.LSR = lsr;
+		this.DLSR = dlsr;
 
 		//Construct the bitstreams
 		header = new byte[HEADER_SIZE];
 		body = new byte[BODY_SIZE];
-
-   		header[0] = (byte)((version << 6) | (padding << 5) | reportCount);
-		header[1] = (byte)(payloadType & 0xFF);
-		header[2] = (byte)(length >> 8);
-		header[3] = (byte)(length & 0xFF);
-		header[4] = (byte)(ssrc >> 24);
-		header[5] = (byte)(ssrc >> 16);
-		header[6] = (byte)(ssrc >> 8);
-		header[7] = (byte)(ssrc & 0xFF);
-
-		ByteBuffer bb = ByteBuffer.wrap(body);
-		bb.putFloat(fractionLost);
-		bb.putInt(cumLost);
-		bb.putInt(highSeqNb);
+		writeHeader(ByteBuffer.wrap(header), RR, reportCount, HEADER_SIZE + BODY_SIZE, ssrc);
+		writeReportBlock(ByteBuffer.wrap(body), sourceSsrc, fractionLost, cumLost, highSeqNb, jitter, lsr, dlsr);
 	}
 
 	// Constructor from bit stream
@@ -89,15 +93,66 @@ public class RtcpPacket
 
 		// Parse header fields
 		version = (header[0] & 0xFF) >> 6;
+		padding = (header[0] >> 5) & 0x1;
+		reportCount = header[0] & 0x1F;
 		payloadType = header[1] & 0xFF;
 		length = (header[3] & 0xFF) + ((header[2] & 0xFF) << 8);
 		ssrc = (header[7] & 0xFF) + ((header[6] & 0xFF) << 8) + ((header[5] & 0xFF) << 16) + ((header[4] & 0xFF) << 24);
 
 		// Parse body fields
 		ByteBuffer bb = ByteBuffer.wrap(body); // big-endian by default
-		fractionLost = bb.getFloat();
-		numLost = bb.getInt();
+		sourceSsrc = bb.getInt();
+		int lost = bb.getInt();
+		fractionLost = lost >>> 24;
+		numLost = (lost << 8) >> 8;			// sign-extend the 24-bit count
 		highSeqNumber = bb.getInt();
+		jitter = bb.getInt();
+		LSR = bb.getInt();
+		DLSR = bb.getInt();
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Writes a common RTCP header at the buffer position.
+	 * @param packetLength - total packet length in bytes, a multiple of 4
+	 * --------------------------------------------------------------------------------------------*/
+	public static void writeHeader(ByteBuffer buffer, int payloadType, int count, int packetLength, int ssrc)
+	{
+		buffer.put((byte) ((2 << 6) | (count & 0x1F)));
+		buffer.put((byte) payloadType);
+		buffer.putShort((short) (packetLength / 4 - 1));
+		buffer.putInt(ssrc);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Writes one 24-byte reception report block at the buffer position.
+	 * The cumulative loss is clamped to the 24-bit signed range.
+	 * --------------------------------------------------------------------------------------------*/
+	public static void writeReportBlock(ByteBuffer buffer, int sourceSsrc, int fractionLost, int cumLost,
+			int highSeqNb, int jitter, int lsr, int dlsr)
+	{
+		buffer.putInt(sourceSsrc);
+		buffer.putInt(((fractionLost & 0xFF) << 24) | (clampLost(cumLost) & 0xFFFFFF));
+		buffer.putInt(highSeqNb);
+		buffer.putInt(jitter);
+		buffer.putInt(lsr);
+		buffer.putInt(dlsr);
+	}
+
+	/** Converts a loss fraction in [0, 1] to the 8-bit fixed point representation. */
+	public static int toFixedPoint(float fraction)
+	{
+		return Math.max(0, Math.min(255, (int) (fraction * 256)));
+	}
+
+	private static int clampLost(int lost)
+	{
+		return Math.max(-0x800000, Math.min(0x7FFFFF, lost));
+	}
+
+	/** Returns the fraction lost as a float in [0, 1). */
+	public float getFractionLost()
+	{
+		return fractionLost / 256f;
 	}
 
 	//--------------------------
@@ -123,7 +178,9 @@ public class RtcpPacket
 
 	@Override
 	public String toString() {
-		return "[RTCP] Version: " + version + ", Fraction Lost: " + fractionLost
-			   + ", Cumulative Lost: " + numLost + ", Highest Seq Num: " + highSeqNumber;
+		return "[RTCP] Version: " + version + ", SSRC: " + Integer.toHexString(sourceSsrc)
+			   + ", Fraction Lost: " + getFractionLost() + ", Cumulative Lost: " + numLost
+			   + ", Highest Seq Num: " + highSeqNumber + ", Jitter: " + jitter
+			   + ", LSR: " + Integer.toHexString(LSR) + ", DLSR: " + DLSR;
 	}
-}
\ No newline at end of file
+}
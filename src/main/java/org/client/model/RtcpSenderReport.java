@@ -0,0 +1,87 @@
+package org.client.model;
+
+import java.nio.ByteBuffer;
+
+// SR: Sender Report RTCP Packet (RFC 3550 section 6.4.1), sender info part
+
+//		 0				   1				   2				   3
+//		 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+//		+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+// header |V=2|P|	RC   |   PT=SR=200   |			 length			|
+//		+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+//		|						 SSRC of sender						|
+//		+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+
+// sender |			  NTP timestamp, most significant word			 |
+// info   +-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+//		|			 NTP timestamp, least significant word			 |
+//		+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+//		|						 RTP timestamp						 |
+//		+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+//		|					 sender's packet count					 |
+//		+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+//		|					  sender's octet count					 |
+//		+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+
+
+/**--------------------------------------------------------------------------------------------
+ * RTCP Sender Report parser.
+ * Walks a compound RTCP datagram and picks the sender info out of its SR packet, if any.
+ * A single instance is meant to be reused for every datagram received.
+ * --------------------------------------------------------------------------------------------*/
+public class RtcpSenderReport
+{
+	static final int SENDER_INFO_END = 28;		// header + SSRC + sender info
+
+	public int ssrc;				// SSRC of the media sender
+	public long ntpTimestamp;		// 64-bit NTP wallclock timestamp
+	public int rtpTimestamp;		// RTP timestamp corresponding to the NTP timestamp
+	public int packetCount;			// packets sent since the start of transmission
+	public int octetCount;			// payload octets sent since the start of transmission
+
+	/**--------------------------------------------------------------------------------------------
+	 * Parses the first SR of the compound packet between buffer position and limit.
+	 * Returns false if the datagram is not RTCP or carries no SR.
+	 * --------------------------------------------------------------------------------------------*/
+	public boolean parse(ByteBuffer buffer)
+	{
+		int offset = buffer.position();
+		int end = buffer.limit();
+
+		while (offset + 4 <= end)
+		{
+			int first = buffer.get(offset) & 0xFF;
+			if ((first >> 6) != 2)
+				return false;
+
+			int packetType = buffer.get(offset + 1) & 0xFF;
+			int packetLength = 4 * ((buffer.getShort(offset + 2) & 0xFFFF) + 1);
+			if (offset + packetLength > end)
+				return false;
+
+			if (packetType == RtcpPacket.SR && packetLength >= SENDER_INFO_END)
+			{
+				ssrc = buffer.getInt(offset + 4);
+				ntpTimestamp = buffer.getLong(offset + 8);
+				rtpTimestamp = buffer.getInt(offset + 16);
+				packetCount = buffer.getInt(offset + 20);
+				octetCount = buffer.getInt(offset + 24);
+				return true;
+			}
+			offset += packetLength;
+		}
+		return false;
+	}
+
+	/** Returns the middle 32 bits of the NTP timestamp, as echoed in the LSR field of reports. */
+	public int getMiddleNtp()
+	{
+		return (int) (ntpTimestamp >>> 16);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "[RTCP-SR] SSRC: " + Integer.toHexString(ssrc) + ", NTP: " + Long.toHexString(ntpTimestamp)
+			   + ", RTP: " + (rtpTimestamp & 0xFFFFFFFFL) + ", Packets: " + (packetCount & 0xFFFFFFFFL)
+			   + ", Octets: " + (octetCount & 0xFFFFFFFFL);
+	}
+}
@@ -1,6 +1,6 @@
 package org.client.model;
 
-import java.util.Arrays;
+import java.nio.ByteBuffer;
 
 public class RtpPacket
 {
@@ -18,15 +18,13 @@ public class RtpPacket
 	public int timeStamp;				// (32 bits) reflects sampling instant of the 1st octet of RTP data packet
 	public int ssrc = 1337;				// (32 bits) identifies synchronization source (server identifier)
 
-	// RTP header Bitstream
-	public byte[] header;
+	// RTP packet bitstream (header + payload) and the view used to read it
+	private ByteBuffer packetBuffer;
+	private final RtpPacketView view = new RtpPacketView();
 
 	// RTP payload size
 	public int payloadSize;
 
-	// RTP payload Bitstream
-	public byte[] payload;
-
 	//------------------------------------------------------------------------------
 	// Constructor of an RtpPacket object from header fields and payload bitstream.
 	//------------------------------------------------------------------------------
@@ -37,61 +35,46 @@ public class RtpPacket
 		this.sequenceNumber = frameNum;
 		this.timeStamp = time;
 
-		// initialize header bistream:
-		header = new byte[HEADER_SIZE];
-
-		// fill RTP packet header (to set n-th bit use: var | 1 << 7-n)
-		// payloadType gets promoted to int (padding with 1s, & 0x000000FF clears them out)
-		header[0] = (byte)((version << 6) | (padding << 5) | (extension << 4) | csrcCount);
-		header[1] = (byte)((marker << 7) | (payloadType & 0x000000FF));
-		header[2] = (byte)(sequenceNumber >> 8);		// retrieves upper 8 bits by shifting right by 8 bits
-		header[3] = (byte)(sequenceNumber & 0xFF);		// same as & 0x000000FF, retrieves lower 8 bits, clears out others
-		header[4] = (byte)(timeStamp >> 24);
-		header[5] = (byte)(timeStamp >> 16);
-		header[6] = (byte)(timeStamp >> 8);
-		header[7] = (byte)(timeStamp & 0xFF);
-		header[8] = (byte)(ssrc >> 24);
-		header[9] = (byte)(ssrc >> 16);
-		header[10] = (byte)(ssrc >> 8);
-		header[11] = (byte)(ssrc & 0xFF);
-
-		// fill RTP packet data section
+		// fill RTP packet header and data section in a single buffer
 		payloadSize = dataLength;
-		payload = new byte[dataLength];
-		payload = Arrays.copyOf(data, payloadSize);
+		packetBuffer = ByteBuffer.allocate(HEADER_SIZE + dataLength);
+		RtpPacketView.writeHeader(packetBuffer, 0, marker, payloadType, sequenceNumber, timeStamp, ssrc);
+		System.arraycopy(data, 0, packetBuffer.array(), HEADER_SIZE, dataLength);
+		view.wrap(packetBuffer, 0, HEADER_SIZE + dataLength);
 	}
 
 	//------------------------------------------------------------------------------
 	// RtpPacket constructor from the packet bistream.
+	// The bitstream is wrapped, not copied: it must not be reused while the packet is in use.
 	//------------------------------------------------------------------------------
 	public RtpPacket(byte[] packet, int packetSize)
+	{
+		this(ByteBuffer.wrap(packet, 0, packetSize));
+	}
+
+	//------------------------------------------------------------------------------
+	// RtpPacket constructor from the remaining bytes of a buffer (no copy).
+	//------------------------------------------------------------------------------
+	public RtpPacket(ByteBuffer packet)
 	{
 		ssrc = 0;
 
 		// check if total packet size is lower than the header size
-		if (packetSize >= HEADER_SIZE)
+		if (view.wrap(packet))
 		{
-			// retrieve header bytes
-			header = new byte[HEADER_SIZE];
-			for (int i = 0; i < HEADER_SIZE; i++) {
-				header[i] = packet[i];
-			}
-
-			// retrieve payload bytes
-			payloadSize = packetSize - HEADER_SIZE;
-			payload = new byte[payloadSize];
-			for (int i = HEADER_SIZE; i < packetSize; i++)
-				payload[i-HEADER_SIZE] = packet[i];
+			packetBuffer = packet;
+			payloadSize = view.getPayloadLength();
 
 			// interpret non-constant header fields
-			version = (header[0] & 0xFF) >>> 6;
-			payloadType = header[1] & 0x7F;
-			sequenceNumber = (header[3] & 0xFF)
-					+ ((header[2] & 0xFF) << 8);
-			timeStamp = (header[7] & 0xFF)
-					+ ((header[6] & 0xFF) << 8)
-					+ ((header[5] & 0xFF) << 16)
-					+ ((header[4] & 0xFF) << 24);
+			version = view.getVersion();
+			padding = view.getPadding();
+			extension = view.getExtension();
+			csrcCount = view.getCsrcCount();
+			marker = view.getMarker();
+			payloadType = view.getPayloadType();
+			sequenceNumber = view.getSequenceNumber();
+			timeStamp = view.getTimestamp();
+			ssrc = view.getSsrc();
 		}
 	}
 
@@ -99,11 +82,14 @@ public class RtpPacket
 	//getpayload: return the payload bistream of the RTPpacket and its size
 	//--------------------------
 	public int getpayload(byte[] data) {
+		return packetBuffer == null ? 0 : view.copyPayload(data, 0);
+	}
 
-		for (int i = 0; i < payloadSize; i++)
-			data[i] = payload[i];
-
-		return(payloadSize);
+	//--------------------------
+	//payload: return the payload as a slice of the packet buffer (no copy)
+	//--------------------------
+	public ByteBuffer payload() {
+		return packetBuffer == null ? ByteBuffer.allocate(0) : view.payload();
 	}
 
 	//--------------------------
@@ -117,7 +103,7 @@ public class RtpPacket
 	//getlength: return the total length of the RTP packet
 	//--------------------------
 	public int getlength() {
-		return(payloadSize + HEADER_SIZE);
+		return packetBuffer == null ? 0 : view.getLength();
 	}
 
 	//--------------------------
@@ -125,14 +111,13 @@ public class RtpPacket
 	//--------------------------
 	public int getpacket(byte[] packet)
 	{
-		//construct the packet = header + payload
-		for (int i=0; i < HEADER_SIZE; i++)
-			packet[i] = header[i];
-		for (int i=0; i < payloadSize; i++)
-			packet[i+HEADER_SIZE] = payload[i];
+		int length = getlength();
+		ByteBuffer source = packetBuffer.duplicate();
+		source.limit(source.position() + length);
+		source.get(packet, 0, length);
 
 		//return total size of the packet
-		return(payloadSize + HEADER_SIZE);
+		return length;
 	}
 
 	//--------------------------
@@ -156,21 +141,4 @@ public class RtpPacket
 	public int getPayloadType() {
 		return(payloadType);
 	}
-
-	//--------------------------
-	//print headers without the SSRC
-	//--------------------------
-	public void printHeader()
-	{
-		System.out.print("[RTP-Header] ");
-		System.out.println("Version: " + version
-						   + ", Padding: " + padding
-						   + ", Extension: " + extension
-						   + ", CC: " + csrcCount
-						   + ", Marker: " + marker
-						   + ", PayloadType: " + payloadType
-						   + ", SequenceNumber: " + sequenceNumber
-						   + ", TimeStamp: " + timeStamp);
-
-	}
 }
\ No newline at end of file
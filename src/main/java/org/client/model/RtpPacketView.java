@@ -0,0 +1,201 @@
+package org.client.model;
+
+import java.nio.ByteBuffer;
+
+//		 0                   1                   2                   3
+//		 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+//		+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+//		|V=2|P|X|  CC   |M|     PT      |       sequence number         |
+//		+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+//		|                           timestamp                           |
+//		+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+//		|           synchronization source (SSRC) identifier            |
+//		+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+=+
+//		|            contributing source (CSRC) identifiers             |
+//		|                             ....                              |
+//		+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+
+/**--------------------------------------------------------------------------------------------
+ * Flyweight RTP packet view.
+ * Reads header fields straight out of a (heap or direct) ByteBuffer with absolute gets,
+ * so parsing neither copies nor allocates. A single view is meant to be re-wrapped
+ * around every received buffer; it is only valid until the buffer is recycled.
+ * --------------------------------------------------------------------------------------------*/
+public class RtpPacketView
+{
+	public static final int HEADER_SIZE = 12;
+
+	private ByteBuffer buffer;
+	private int offset;			// index of the first header byte
+	private int length;			// total packet length
+	private int headerLength;	// fixed header + CSRC list + extension
+	private int payloadLength;	// payload without padding
+
+	/**--------------------------------------------------------------------------------------------
+	 * Wraps the view around the remaining bytes of the buffer (position to limit).
+	 * Returns false if the bytes do not form a valid RTP packet.
+	 * --------------------------------------------------------------------------------------------*/
+	public boolean wrap(ByteBuffer buffer)
+	{
+		return wrap(buffer, buffer.position(), buffer.remaining());
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Wraps the view around length bytes of the buffer starting at offset.
+	 * Returns false if the bytes do not form a valid RTP packet.
+	 * --------------------------------------------------------------------------------------------*/
+	public boolean wrap(ByteBuffer buffer, int offset, int length)
+	{
+		this.buffer = buffer;
+		this.offset = offset;
+		this.length = length;
+		this.headerLength = 0;
+		this.payloadLength = 0;
+
+		if (length < HEADER_SIZE)
+			return false;
+
+		int header = HEADER_SIZE + 4 * getCsrcCount();
+		if (getExtension() != 0)
+		{
+			if (length < header + 4)
+				return false;
+			header += 4 + 4 * (buffer.getShort(offset + header + 2) & 0xFFFF);
+		}
+
+		int paddingLength = getPadding() != 0 ? buffer.get(offset + length - 1) & 0xFF : 0;
+		if (header + paddingLength > length)
+			return false;
+
+		headerLength = header;
+		payloadLength = length - header - paddingLength;
+		return true;
+	}
+
+	public int getVersion()
+	{
+		return (buffer.get(offset) & 0xFF) >>> 6;
+	}
+
+	public int getPadding()
+	{
+		return (buffer.get(offset) >>> 5) & 0x01;
+	}
+
+	public int getExtension()
+	{
+		return (buffer.get(offset) >>> 4) & 0x01;
+	}
+
+	public int getCsrcCount()
+	{
+		return buffer.get(offset) & 0x0F;
+	}
+
+	public int getMarker()
+	{
+		return (buffer.get(offset + 1) >>> 7) & 0x01;
+	}
+
+	public int getPayloadType()
+	{
+		return buffer.get(offset + 1) & 0x7F;
+	}
+
+	public int getSequenceNumber()
+	{
+		return buffer.getShort(offset + 2) & 0xFFFF;
+	}
+
+	public int getTimestamp()
+	{
+		return buffer.getInt(offset + 4);
+	}
+
+	public int getSsrc()
+	{
+		return buffer.getInt(offset + 8);
+	}
+
+	/** Returns the total packet length, header included. */
+	public int getLength()
+	{
+		return length;
+	}
+
+	public int getHeaderLength()
+	{
+		return headerLength;
+	}
+
+	/** Returns the absolute index of the first payload byte in the underlying buffer. */
+	public int getPayloadOffset()
+	{
+		return offset + headerLength;
+	}
+
+	public int getPayloadLength()
+	{
+		return payloadLength;
+	}
+
+	/** Returns the underlying buffer. */
+	public ByteBuffer getBuffer()
+	{
+		return buffer;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns the payload as a slice sharing the underlying buffer (no bytes are copied).
+	 * --------------------------------------------------------------------------------------------*/
+	public ByteBuffer payload()
+	{
+		ByteBuffer duplicate = buffer.duplicate();
+		duplicate.limit(getPayloadOffset() + payloadLength).position(getPayloadOffset());
+		return duplicate.slice();
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Copies the payload into the destination array and returns the number of bytes copied.
+	 * --------------------------------------------------------------------------------------------*/
+	public int copyPayload(byte[] destination, int destinationOffset)
+	{
+		int payloadOffset = getPayloadOffset();
+		if (buffer.hasArray())
+			System.arraycopy(buffer.array(), buffer.arrayOffset() + payloadOffset, destination, destinationOffset, payloadLength);
+		else
+		{
+			// direct buffer: one bulk get through a duplicate keeps the caller's position untouched
+			ByteBuffer duplicate = buffer.duplicate();
+			duplicate.limit(payloadOffset + payloadLength).position(payloadOffset);
+			duplicate.get(destination, destinationOffset, payloadLength);
+		}
+		return payloadLength;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Writes a fixed RTP header (no CSRC, no extension, no padding) at the given index.
+	 * --------------------------------------------------------------------------------------------*/
+	public static void writeHeader(ByteBuffer destination, int index, int marker, int payloadType,
+			int sequenceNumber, int timeStamp, int ssrc)
+	{
+		destination.put(index, (byte)(2 << 6));
+		destination.put(index + 1, (byte)((marker << 7) | (payloadType & 0x7F)));
+		destination.putShort(index + 2, (short) sequenceNumber);
+		destination.putInt(index + 4, timeStamp);
+		destination.putInt(index + 8, ssrc);
+	}
+
+	@Override
+	public String toString()
+	{
+		return "Version: " + getVersion()
+			   + ", Padding: " + getPadding()
+			   + ", Extension: " + getExtension()
+			   + ", CC: " + getCsrcCount()
+			   + ", Marker: " + getMarker()
+			   + ", PayloadType: " + getPayloadType()
+			   + ", SequenceNumber: " + getSequenceNumber()
+			   + ", TimeStamp: " + getTimestamp();
+	}
+}
@@ -0,0 +1,37 @@
+package org.client.model;
+
+/**--------------------------------------------------------------------------------------------
+ * RTP payload (or reassembled frame) with the header fields it was received with.
+ * The data array is reused: holders are recycled, and the array only grows.
+ * --------------------------------------------------------------------------------------------*/
+public class RtpPayload
+{
+	public byte[] data;				// payload bytes, from index 0
+	public int length;				// valid bytes in data
+	public int payloadType;			// RTP payload type
+	public int marker;				// RTP marker bit, set on the last packet of a frame
+	public int sequenceNumber;		// RTP sequence number (of the first packet for a frame)
+	public int timeStamp;			// RTP timestamp
+	public long arrivalNanos;		// System.nanoTime() the (last) packet arrived, 0 if unknown
+
+	public RtpPayload(int capacity)
+	{
+		data = new byte[capacity];
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Makes sure the data array holds at least capacity bytes; the contents are not preserved.
+	 * --------------------------------------------------------------------------------------------*/
+	public byte[] ensureCapacity(int capacity)
+	{
+		if (data == null || data.length < capacity)
+			data = new byte[capacity];
+		return data;
+	}
+
+	@Override
+	public String toString() {
+		return "[Payload] PayloadType: " + payloadType + ", SequenceNumber: " + sequenceNumber
+			   + ", TimeStamp: " + timeStamp + ", Marker: " + marker + ", Length: " + length;
+	}
+}
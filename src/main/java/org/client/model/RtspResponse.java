@@ -0,0 +1,91 @@
+package org.client.model;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**--------------------------------------------------------------------------------------------
+ * RTSP response: status line, headers (looked up case-insensitively) and body.
+ * Repeated headers are combined into one comma separated value.
+ * --------------------------------------------------------------------------------------------*/
+public class RtspResponse
+{
+	private static final byte[] NO_BODY = new byte[0];
+
+	public String version;				// e.g. RTSP/1.0
+	public int statusCode;				// e.g. 200
+	public String reasonPhrase;			// e.g. OK
+	public final Map<String, String> headers = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+	public byte[] body = NO_BODY;		// Content-Length bytes
+
+	/** Returns the value of a header, or null if the response has none. */
+	public String getHeader(String name)
+	{
+		return headers.get(name);
+	}
+
+	/** Adds a header, appending to the value of a repeated one. */
+	public void addHeader(String name, String value)
+	{
+		String previous = headers.get(name);
+		headers.put(name, previous == null ? value : previous + ", " + value);
+	}
+
+	/** Returns the CSeq header, or -1 if missing or malformed. */
+	public int getCSeq()
+	{
+		return parseInt(getHeader("CSeq"), -1);
+	}
+
+	/** Returns the Content-Length header, or 0 if missing or malformed. */
+	public int getContentLength()
+	{
+		return Math.max(0, parseInt(getHeader("Content-Length"), 0));
+	}
+
+	/** Returns the session identifier without its parameters (e.g. ;timeout=60), or null. */
+	public String getSession()
+	{
+		String session = getHeader("Session");
+		if (session == null)
+			return null;
+		int end = session.indexOf(';');
+		return (end < 0 ? session : session.substring(0, end)).trim();
+	}
+
+	/** Returns true for a 2xx status. */
+	public boolean isSuccess()
+	{
+		return statusCode >= 200 && statusCode < 300;
+	}
+
+	/** Returns the body decoded as UTF-8 (e.g. a session description). */
+	public String getBodyText()
+	{
+		return new String(body, StandardCharsets.UTF_8);
+	}
+
+	private static int parseInt(String value, int defaultValue)
+	{
+		if (value == null)
+			return defaultValue;
+		try
+		{
+			return Integer.parseInt(value.trim());
+		}
+		catch (NumberFormatException nfe)
+		{
+			return defaultValue;
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder text = new StringBuilder(128);
+		text.append(version).append(' ').append(statusCode).append(' ').append(reasonPhrase);
+		for (Map.Entry<String, String> header : headers.entrySet())
+			text.append("\n").append(header.getKey()).append(": ").append(header.getValue());
+		return text.toString();
+	}
+}
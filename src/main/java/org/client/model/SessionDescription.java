@@ -0,0 +1,221 @@
+package org.client.model;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**--------------------------------------------------------------------------------------------
+ * SDP session description (RFC 4566), as returned by DESCRIBE.
+ * Parsing is lenient: unknown and malformed lines are skipped, so a partial description still
+ * yields whatever it does describe. The text is kept to be cached as received.
+ * --------------------------------------------------------------------------------------------*/
+public class SessionDescription
+{
+	public String text;					// the description as received
+	public int version;					// v=
+	public String originUsername;		// o= <username> <sess-id> <sess-version> <nettype> <addrtype> <address>
+	public String sessionId;
+	public String sessionVersion;		// changes whenever the description is modified
+	public String originAddress;
+	public String sessionName;			// s=
+	public String control;				// a=control at session level
+	public final Map<String, String> attributes = new LinkedHashMap<String, String>();	// session level a= lines
+	public final List<MediaDescription> media = new ArrayList<MediaDescription>();
+
+	/**--------------------------------------------------------------------------------------------
+	 * Parses an SDP text; returns an empty description (no media) for anything else.
+	 * --------------------------------------------------------------------------------------------*/
+	public static SessionDescription parse(String text)
+	{
+		SessionDescription description = new SessionDescription();
+		description.text = text;
+
+		MediaDescription current = null;
+		for (String line : text.split("\r?\n"))
+		{
+			if (line.length() < 2 || line.charAt(1) != '=')
+				continue;
+
+			String value = line.substring(2).trim();
+			switch (line.charAt(0))
+			{
+				case 'v':
+					description.version = parseInt(value, 0);
+					break;
+				case 'o':
+					description.parseOrigin(value);
+					break;
+				case 's':
+					description.sessionName = value;
+					break;
+				case 'm':
+					current = parseMedia(value);
+					if (current != null)
+						description.media.add(current);
+					break;
+				case 'a':
+					if (current != null)
+						parseMediaAttribute(current, value);
+					else
+						description.parseAttribute(value);
+					break;
+				default:
+					break;
+			}
+		}
+		return description;
+	}
+
+	/** Returns the first media description of a type (e.g. video), or null. */
+	public MediaDescription getMedia(String type)
+	{
+		for (MediaDescription description : media)
+		{
+			if (type.equals(description.type))
+				return description;
+		}
+		return null;
+	}
+
+	/** Returns true if the other description has the same origin session id and version. */
+	public boolean isSameVersion(SessionDescription other)
+	{
+		return other != null && sessionVersion != null && sessionVersion.equals(other.sessionVersion)
+			   && (sessionId == null ? other.sessionId == null : sessionId.equals(other.sessionId));
+	}
+
+	private void parseOrigin(String value)
+	{
+		String[] fields = value.split("\\s+");
+		if (fields.length < 6)
+			return;
+		originUsername = fields[0];
+		sessionId = fields[1];
+		sessionVersion = fields[2];
+		originAddress = fields[5];
+	}
+
+	private void parseAttribute(String value)
+	{
+		int colon = value.indexOf(':');
+		String name = colon < 0 ? value : value.substring(0, colon);
+		String attribute = colon < 0 ? "" : value.substring(colon + 1).trim();
+		attributes.put(name, attribute);
+		if ("control".equals(name))
+			control = attribute;
+	}
+
+	/** m=<media> <port>[/<count>] <proto> <fmt> ... */
+	private static MediaDescription parseMedia(String value)
+	{
+		String[] fields = value.split("\\s+");
+		if (fields.length < 3)
+			return null;
+
+		MediaDescription description = new MediaDescription();
+		description.type = fields[0];
+		int slash = fields[1].indexOf('/');
+		description.port = parseInt(slash < 0 ? fields[1] : fields[1].substring(0, slash), 0);
+		description.protocol = fields[2];
+		for (int i = 3; i < fields.length; i++)
+		{
+			int format = parseInt(fields[i], -1);
+			if (format >= 0 && format < 128)
+				description.formats.add(format);
+		}
+		return description;
+	}
+
+	private static void parseMediaAttribute(MediaDescription description, String value)
+	{
+		int colon = value.indexOf(':');
+		String name = colon < 0 ? value : value.substring(0, colon);
+		String attribute = colon < 0 ? "" : value.substring(colon + 1).trim();
+		description.attributes.put(name, attribute);
+
+		if ("rtpmap".equals(name))
+		{
+			// a=rtpmap:<payload type> <encoding name>/<clock rate>[/<encoding parameters>]
+			String[] fields = attribute.split("[\\s/]+");
+			int payloadType = fields.length < 3 ? -1 : parseInt(fields[0], -1);
+			int clockRate = fields.length < 3 ? 0 : parseInt(fields[2], 0);
+			if (payloadType >= 0 && clockRate > 0)
+			{
+				description.encodingNames.put(payloadType, fields[1]);
+				description.clockRates.put(payloadType, clockRate);
+			}
+		}
+		else if ("fmtp".equals(name))
+		{
+			int space = attribute.indexOf(' ');
+			int payloadType = space < 0 ? -1 : parseInt(attribute.substring(0, space), -1);
+			if (payloadType >= 0)
+				description.formatParameters.put(payloadType, attribute.substring(space + 1).trim());
+		}
+		else if ("control".equals(name))
+			description.control = attribute;
+		else if ("framerate".equals(name))
+			description.frameRate = parseDouble(attribute);
+		else if ("framesize".equals(name))
+		{
+			// a=framesize:<payload type> <width>-<height>
+			String[] fields = attribute.split("[\\s\\-]+");
+			if (fields.length >= 3)
+				setSize(description, fields[1], fields[2]);
+		}
+		else if ("x-dimensions".equals(name))
+		{
+			// a=x-dimensions:<width>,<height>
+			String[] fields = attribute.split(",");
+			if (fields.length >= 2)
+				setSize(description, fields[0], fields[1]);
+		}
+		else if ("cliprect".equals(name) && description.width == 0)
+		{
+			// a=cliprect:<top>,<left>,<bottom>,<right>
+			String[] fields = attribute.split(",");
+			if (fields.length >= 4)
+			{
+				description.width = Math.max(0, parseInt(fields[3], 0) - parseInt(fields[1], 0));
+				description.height = Math.max(0, parseInt(fields[2], 0) - parseInt(fields[0], 0));
+			}
+		}
+	}
+
+	private static void setSize(MediaDescription description, String width, String height)
+	{
+		description.width = Math.max(0, parseInt(width, 0));
+		description.height = Math.max(0, parseInt(height, 0));
+	}
+
+	private static int parseInt(String value, int defaultValue)
+	{
+		try
+		{
+			return Integer.parseInt(value.trim());
+		}
+		catch (NumberFormatException nfe)
+		{
+			return defaultValue;
+		}
+	}
+
+	private static double parseDouble(String value)
+	{
+		try
+		{
+			return Double.parseDouble(value.trim());
+		}
+		catch (NumberFormatException nfe)
+		{
+			return 0;
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		return "[SDP] Session: " + sessionId + ", Version: " + sessionVersion + ", Name: " + sessionName + ", Media: " + media;
+	}
+}
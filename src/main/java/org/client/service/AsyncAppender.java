@@ -0,0 +1,231 @@
+package org.client.service;
+
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.TimeZone;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**--------------------------------------------------------------------------------------------
+ * Asynchronous appender behind Log.
+ * Loggers copy their records into a preallocated ring (bounded multi-producer queue: a claim is
+ * one CAS, publishing one ordered write, per-slot sequence numbers tell the states apart). A
+ * slot is claimed, filled and published within #append() without running caller code, so the
+ * writer never waits for a slot that will not be published. A daemon thread formats whatever
+ * was published into one text batch and writes it with a single call, so the stream lock is
+ * taken once per batch instead of once per line. A full ring discards new records and counts them rather than blocking the caller.
+ * The writer sleeps between batches and is woken early by records of level INFO or higher,
+ * so packet traces are batched while state changes and errors show up right away.
+ * --------------------------------------------------------------------------------------------*/
+class AsyncAppender implements Runnable
+{
+	private static final long IDLE_WAIT = 10000000;	// ns the writer sleeps without new records
+	private static final int BATCH = 256;			// records written per call at most
+
+	private final PrintStream out;
+	private final Log.Record[] records;
+	private final int mask;
+	private final AtomicLongArray sequences;	// position: free, position + 1: published, claimed in between
+	private final AtomicLong tail = new AtomicLong();	// next position claimed
+	private final LongAdder dropped = new LongAdder();
+	private final Thread writer;
+	private volatile boolean idle;
+	private volatile long written;				// records written so far (writer thread)
+
+	// writer thread only
+	private long head;
+	private final StringBuilder text = new StringBuilder(16384);
+	private final TimeZone timeZone = TimeZone.getDefault();
+
+	/** Creates an appender; capacity is rounded up to the next power of two. */
+	AsyncAppender(PrintStream out, int requestedCapacity)
+	{
+		int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+		this.out = out;
+		this.mask = capacity - 1;
+		this.records = new Log.Record[capacity];
+		this.sequences = new AtomicLongArray(capacity);
+		for (int i = 0; i < capacity; i++)
+		{
+			records[i] = new Log.Record(this);
+			sequences.set(i, i);
+		}
+
+		writer = new Thread(this, "log-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/** Copies a record into the ring (any thread), or counts a drop if the ring is full. */
+	void append(Log.Record staged)
+	{
+		long position = claim();
+		if (position < 0)
+			return;
+		Log.Record record = records[(int) position & mask];
+		record.copyFrom(staged);
+		sequences.lazySet((int) position & mask, position + 1);
+		if (record.level <= Log.INFO && idle)
+			LockSupport.unpark(writer);
+	}
+
+	/** Claims the next free slot and returns its position, or -1 if the ring is full. */
+	private long claim()
+	{
+		long position = tail.get();
+		while (true)
+		{
+			long sequence = sequences.get((int) position & mask);
+			if (sequence == position)
+			{
+				if (tail.compareAndSet(position, position + 1))
+					break;
+				position = tail.get();
+			}
+			else if (sequence < position)
+			{
+				// the writer has not freed the slot of the previous lap yet
+				dropped.increment();
+				return -1;
+			}
+			else
+				position = tail.get();
+		}
+		return position;
+	}
+
+	long getDropped()
+	{
+		return dropped.sum();
+	}
+
+	/** Waits until the records claimed before the call are written, at most timeout ms. */
+	void flush(long timeout)
+	{
+		long target = tail.get();
+		long deadline = System.nanoTime() + timeout * 1000000;
+		while (written < target && System.nanoTime() < deadline)
+		{
+			LockSupport.unpark(writer);
+			LockSupport.parkNanos(1000000);
+		}
+	}
+
+	@Override
+	public void run()
+	{
+		while (true)
+		{
+			if (writeBatch() > 0)
+				continue;
+			idle = true;
+			if (!isPublished(head))
+				LockSupport.parkNanos(this, IDLE_WAIT);
+			idle = false;
+		}
+	}
+
+	private boolean isPublished(long position)
+	{
+		return sequences.get((int) position & mask) == position + 1;
+	}
+
+	/** Formats the published records into one batch, frees their slots and writes the batch. */
+	private int writeBatch()
+	{
+		int count = 0;
+		while (count < BATCH && isPublished(head))
+		{
+			int index = (int) head & mask;
+			Log.Record record = records[index];
+			int length = text.length();
+			try
+			{
+				format(record);
+			}
+			catch (RuntimeException ex)
+			{
+				// e.g. a failing toString() of an argument, the writer must keep running
+				text.setLength(length);
+				text.append("Log record of ").append(record.logger.getName()).append(" failed: ").append(ex)
+					.append(System.lineSeparator());
+			}
+			// drop the references, the slot may wait a long time for its next record
+			record.thread = null;
+			for (int i = 0; i < record.argumentCount; i++)
+				record.objects[i] = null;
+			sequences.lazySet(index, head + mask + 1);
+			head++;
+			count++;
+		}
+		if (count == 0)
+			return 0;
+
+		byte[] bytes = text.toString().getBytes(StandardCharsets.UTF_8);
+		text.setLength(0);
+		out.write(bytes, 0, bytes.length);
+		out.flush();
+		written = head;
+		return count;
+	}
+
+	/** Appends a record as "HH:mm:ss.SSS LEVEL [thread] logger: message key=value ...". */
+	private void format(Log.Record record)
+	{
+		long time = (record.millis + timeZone.getOffset(record.millis)) % 86400000;
+		appendPadded(time / 3600000, 2).append(':');
+		appendPadded(time / 60000 % 60, 2).append(':');
+		appendPadded(time / 1000 % 60, 2).append('.');
+		appendPadded(time % 1000, 3).append(' ');
+		text.append(Log.LEVEL_NAMES[record.level]).append(' ');
+		String threadName = record.thread.getName();
+		if (!threadName.isEmpty())
+			text.append('[').append(threadName).append("] ");
+		text.append(record.logger.getName()).append(": ");
+
+		// positional arguments replace the {} of the message in order, fields follow it
+		String message = record.message;
+		int argument = 0;
+		int start = 0;
+		int placeholder;
+		while ((placeholder = message.indexOf("{}", start)) >= 0)
+		{
+			while (argument < record.argumentCount && record.keys[argument] != null)
+				argument++;
+			if (argument == record.argumentCount)
+				break;
+			text.append(message, start, placeholder);
+			appendValue(record, argument++);
+			start = placeholder + 2;
+		}
+		text.append(message, start, message.length());
+
+		for (int i = 0; i < record.argumentCount; i++)
+		{
+			if (record.keys[i] == null)
+				continue;
+			text.append(' ').append(record.keys[i]).append('=');
+			appendValue(record, i);
+		}
+		text.append(System.lineSeparator());
+	}
+
+	private void appendValue(Log.Record record, int argument)
+	{
+		Object object = record.objects[argument];
+		if (object != null)
+			text.append(object);
+		else
+			text.append(record.values[argument]);
+	}
+
+	private StringBuilder appendPadded(long value, int digits)
+	{
+		for (long limit = 10; --digits > 0; limit *= 10)
+			if (value < limit)
+				text.append('0');
+		return text.append(value);
+	}
+}
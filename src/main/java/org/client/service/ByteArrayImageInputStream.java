@@ -0,0 +1,66 @@
+package org.client.service;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**--------------------------------------------------------------------------------------------
+ * Reusable ImageInputStream over a byte array region.
+ * Unlike MemoryCacheImageInputStream it neither copies the data nor allocates cache blocks,
+ * and #reset(byte[], int, int) points it at the next frame without creating a new stream.
+ * --------------------------------------------------------------------------------------------*/
+public class ByteArrayImageInputStream extends ImageInputStreamImpl
+{
+	private byte[] data = new byte[0];
+	private int offset;
+	private int length;
+
+	/**--------------------------------------------------------------------------------------------
+	 * Rewinds the stream over a new data region.
+	 * --------------------------------------------------------------------------------------------*/
+	public void reset(byte[] data, int offset, int length)
+	{
+		this.data = data;
+		this.offset = offset;
+		this.length = length;
+		streamPos = 0;
+		flushedPos = 0;
+		bitOffset = 0;
+	}
+
+	@Override
+	public int read()
+	{
+		bitOffset = 0;
+		if (streamPos >= length)
+			return -1;
+		return data[offset + (int) streamPos++] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] buffer, int bufferOffset, int count)
+	{
+		bitOffset = 0;
+		if (count == 0)
+			return 0;
+		if (streamPos >= length)
+			return -1;
+
+		int available = (int) Math.min(count, length - streamPos);
+		System.arraycopy(data, offset + (int) streamPos, buffer, bufferOffset, available);
+		streamPos += available;
+		return available;
+	}
+
+	@Override
+	public long length()
+	{
+		return length;
+	}
+
+	@Override
+	public void close()
+	{
+		data = new byte[0];
+		length = 0;
+		streamPos = 0;
+	}
+}
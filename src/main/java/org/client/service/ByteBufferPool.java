@@ -0,0 +1,87 @@
+package org.client.service;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**--------------------------------------------------------------------------------------------
+ * Fixed-size ByteBuffer pool.
+ * Buffers are pre-allocated (heap or direct) and recycled through a bounded array-backed queue,
+ * so steady-state acquire/release does not allocate. An empty pool falls back to allocation
+ * and counts a miss; releasing into a full pool lets the buffer be garbage collected.
+ * --------------------------------------------------------------------------------------------*/
+public class ByteBufferPool
+{
+	private final ArrayBlockingQueue<ByteBuffer> freeBuffers;
+	private final int bufferSize;
+	private final boolean direct;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public ByteBufferPool(int poolSize, int bufferSize, boolean direct)
+	{
+		this.freeBuffers = new ArrayBlockingQueue<ByteBuffer>(poolSize);
+		this.bufferSize = bufferSize;
+		this.direct = direct;
+
+		for (int i = 0; i < poolSize; i++)
+			freeBuffers.offer(allocate());
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns a cleared buffer, allocating a new one if the pool is exhausted.
+	 * --------------------------------------------------------------------------------------------*/
+	public ByteBuffer acquire()
+	{
+		ByteBuffer buffer = freeBuffers.poll();
+		if (buffer == null)
+		{
+			misses.incrementAndGet();
+			return allocate();
+		}
+		hits.incrementAndGet();
+		buffer.clear();
+		return buffer;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns a buffer to the pool. Buffers of a different size are ignored.
+	 * --------------------------------------------------------------------------------------------*/
+	public void release(ByteBuffer buffer)
+	{
+		if (buffer != null && buffer.capacity() == bufferSize && buffer.isDirect() == direct)
+			freeBuffers.offer(buffer);
+	}
+
+	private ByteBuffer allocate()
+	{
+		return direct ? ByteBuffer.allocateDirect(bufferSize) : ByteBuffer.allocate(bufferSize);
+	}
+
+	public int getBufferSize()
+	{
+		return bufferSize;
+	}
+
+	public boolean isDirect()
+	{
+		return direct;
+	}
+
+	/** Returns the number of buffers currently available. */
+	public int available()
+	{
+		return freeBuffers.size();
+	}
+
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	public long getMisses()
+	{
+		return misses.get();
+	}
+}
@@ -0,0 +1,311 @@
+package org.client.service;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.ThreadFactory;
+
+/**--------------------------------------------------------------------------------------------
+ * Non-blocking NIO RTP receiver implementation.
+ * The DatagramChannel is registered with a SelectorLoop, either a dedicated one or a loop
+ * shared by many sessions; every wakeup drains all datagrams that are available into pooled
+ * (typically direct) buffers, so idle periods cost a select() call instead of a thrown socket
+ * timeout and one thread can serve any number of sessions.
+ * Alternatively the channel stays blocking and is drained by a thread of its own, typically a
+ * virtual one: a blocking DatagramChannel.receive() only parks a virtual thread, unlike the
+ * DatagramSocket adaptor, which pins its carrier thread while it waits.
+ * --------------------------------------------------------------------------------------------*/
+public class ChannelRtpReceiver implements RtpReceiver, SelectorLoop.Handler
+{
+	private static final Log LOG = Log.get("rtp");
+
+	private final DatagramChannel channel;
+	private final SelectorLoop loop;			// null in blocking mode
+	private final boolean ownsLoop;				// dedicated loop, stopped with the receiver
+	private final ThreadFactory blockingThreads;	// blocking mode receive thread factory
+	private Thread blockingThread;
+	private final SpscRingBuffer<ByteBuffer> ring;
+	private final ByteBufferPool pool;
+
+	private volatile boolean running;
+	private ByteBuffer buffer;					// spare buffer, selector thread only
+	private ReceptionStatistics statistics;		// null when not collected
+
+	// written by selector thread only
+	private volatile long receivedPackets;
+	private volatile long wakeups;
+	private volatile int maxBatchSize;
+
+	/**--------------------------------------------------------------------------------------------
+	 * Opens and binds the channel and receives on a dedicated selector thread.
+	 * @param port - local RTP port
+	 * @param receiveBufferSize - requested SO_RCVBUF size in bytes, ignored if not positive
+	 * --------------------------------------------------------------------------------------------*/
+	public ChannelRtpReceiver(int port, int receiveBufferSize, SpscRingBuffer<ByteBuffer> ring, ByteBufferPool pool)
+			throws IOException
+	{
+		this(openChannel(port), receiveBufferSize, (SelectorLoop) null, ring, pool);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Receives on an already bound channel.
+	 * @param loop - shared selector loop, or null for a dedicated one
+	 * --------------------------------------------------------------------------------------------*/
+	public ChannelRtpReceiver(DatagramChannel channel, int receiveBufferSize, SelectorLoop loop,
+			SpscRingBuffer<ByteBuffer> ring, ByteBufferPool pool) throws IOException
+	{
+		this(channel, receiveBufferSize, loop, null, ring, pool);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Receives on an already bound channel in blocking mode, on a thread of the given factory.
+	 * --------------------------------------------------------------------------------------------*/
+	public ChannelRtpReceiver(DatagramChannel channel, int receiveBufferSize, ThreadFactory blockingThreads,
+			SpscRingBuffer<ByteBuffer> ring, ByteBufferPool pool) throws IOException
+	{
+		this(channel, receiveBufferSize, null, blockingThreads, ring, pool);
+	}
+
+	private ChannelRtpReceiver(DatagramChannel channel, int receiveBufferSize, SelectorLoop loop,
+			ThreadFactory blockingThreads, SpscRingBuffer<ByteBuffer> ring, ByteBufferPool pool) throws IOException
+	{
+		this.channel = channel;
+		this.ring = ring;
+		this.pool = pool;
+		this.blockingThreads = blockingThreads;
+		try
+		{
+			if (receiveBufferSize > 0)
+				channel.setOption(StandardSocketOptions.SO_RCVBUF, receiveBufferSize);
+			channel.configureBlocking(blockingThreads != null);
+
+			ownsLoop = loop == null && blockingThreads == null;
+			this.loop = ownsLoop ? new SelectorLoop("rtp-nio-receiver") : loop;
+		}
+		catch (IOException ioe)
+		{
+			channel.close();
+			throw ioe;
+		}
+	}
+
+	/** Opens a channel bound to the given local port. */
+	static DatagramChannel openChannel(int port) throws IOException
+	{
+		DatagramChannel channel = DatagramChannel.open();
+		try
+		{
+			channel.bind(new InetSocketAddress(port));
+		}
+		catch (IOException ioe)
+		{
+			channel.close();
+			throw ioe;
+		}
+		return channel;
+	}
+
+	@Override
+	public synchronized void start()
+	{
+		if (running)
+			return;
+
+		running = true;
+		if (blockingThreads != null)
+		{
+			blockingThread = blockingThreads.newThread(new Runnable() {
+				@Override
+				public void run()
+				{
+					receiveBlocking();
+				}
+			});
+			blockingThread.start();
+			return;
+		}
+
+		loop.register(this);
+		if (ownsLoop)
+			loop.start();
+	}
+
+	@Override
+	public void stop()
+	{
+		Thread receiveThread;
+		synchronized (this)
+		{
+			running = false;
+			if (blockingThreads == null)
+			{
+				if (ownsLoop)
+				{
+					loop.stop();
+					onDeregistered();
+				}
+				else
+					loop.deregister(this);
+			}
+			receiveThread = blockingThread;
+			blockingThread = null;
+		}
+
+		// closing the channel also unblocks a pending blocking receive
+		try
+		{
+			channel.close();
+		}
+		catch (IOException ioe)
+		{
+			LOG.error("Exception caught: {}", ioe);
+		}
+
+		// joined outside the monitor, a virtual thread would otherwise pin its carrier
+		if (receiveThread != null)
+		{
+			try { receiveThread.join(1000); }
+			catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
+		}
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Blocking mode receive loop; every datagram is handed over as soon as it arrives.
+	 * --------------------------------------------------------------------------------------------*/
+	private void receiveBlocking()
+	{
+		while (running)
+		{
+			try
+			{
+				if (buffer == null)
+					buffer = pool.acquire();
+
+				channel.receive(buffer);
+				receivedPackets++;
+				buffer.flip();
+				if (statistics != null)
+					statistics.onRtpPacket(buffer, System.nanoTime());
+
+				// a full ring drops the packet (the overflow is counted by the ring) and keeps the buffer
+				if (ring.offer(buffer))
+					buffer = null;
+				else
+					buffer.clear();
+			}
+			catch (IOException ioe)
+			{
+				if (!channel.isOpen())
+					break;
+				LOG.error("Exception caught: {}", ioe);
+			}
+		}
+		onDeregistered();
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Drains every datagram queued in the socket; called by the selector thread on OP_READ.
+	 * --------------------------------------------------------------------------------------------*/
+	@Override
+	public void onReadable()
+	{
+		wakeups++;
+		int batchSize = 0;
+		long arrivalNanos = statistics != null ? System.nanoTime() : 0;
+		try
+		{
+			while (true)
+			{
+				if (buffer == null)
+					buffer = pool.acquire();
+
+				if (channel.receive(buffer) == null)
+					break;
+
+				batchSize++;
+				buffer.flip();
+				if (statistics != null)
+					statistics.onRtpPacket(buffer, arrivalNanos);
+
+				// a full ring drops the packet (the overflow is counted by the ring) and keeps the buffer
+				if (ring.offer(buffer))
+					buffer = null;
+				else
+					buffer.clear();
+			}
+		}
+		catch (IOException ioe)
+		{
+			if (channel.isOpen())
+				LOG.error("Exception caught: {}", ioe);
+		}
+
+		receivedPackets += batchSize;
+		if (batchSize > maxBatchSize)
+			maxBatchSize = batchSize;
+	}
+
+	/** Returns the spare buffer to the pool once the selector thread let go of the channel. */
+	@Override
+	public void onDeregistered()
+	{
+		pool.release(buffer);
+		buffer = null;
+	}
+
+	@Override
+	public DatagramChannel getChannel()
+	{
+		return channel;
+	}
+
+	/** Returns the selector loop this receiver is registered with, or null in blocking mode. */
+	public SelectorLoop getLoop()
+	{
+		return loop;
+	}
+
+	@Override
+	public boolean isRunning()
+	{
+		return running;
+	}
+
+	@Override
+	public long getReceivedPackets()
+	{
+		return receivedPackets;
+	}
+
+	/** Returns the number of selector wakeups that found data. */
+	public long getWakeups()
+	{
+		return wakeups;
+	}
+
+	/** Returns the largest number of datagrams drained in a single wakeup. */
+	public int getMaxBatchSize()
+	{
+		return maxBatchSize;
+	}
+
+	@Override
+	public SpscRingBuffer<ByteBuffer> getRing()
+	{
+		return ring;
+	}
+
+	@Override
+	public ByteBufferPool getPool()
+	{
+		return pool;
+	}
+
+	@Override
+	public void setStatistics(ReceptionStatistics statistics)
+	{
+		this.statistics = statistics;
+	}
+}
@@ -0,0 +1,57 @@
+package org.client.service;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**--------------------------------------------------------------------------------------------
+ * Monotonic counter, striped (LongAdder) so threads incrementing it concurrently, e.g. the
+ * decoder threads, do not contend on one cache line. Reading sums the stripes.
+ * A counter may instead read a total its owner keeps anyway from a supplier (cheap and thread
+ * safe), e.g. the packet counts of StreamStats; such a counter cannot be incremented.
+ * --------------------------------------------------------------------------------------------*/
+public class Counter extends Metric
+{
+	private final LongSupplier supplier;	// null for a counter incremented through this
+	private final LongAdder value;
+
+	public Counter()
+	{
+		this.supplier = null;
+		this.value = new LongAdder();
+	}
+
+	public Counter(LongSupplier supplier)
+	{
+		this.supplier = supplier;
+		this.value = null;
+	}
+
+	public void increment()
+	{
+		add(1);
+	}
+
+	public void add(long amount)
+	{
+		if (value == null)
+			throw new UnsupportedOperationException("Counter reads its value from a supplier");
+		value.add(amount);
+	}
+
+	public long get()
+	{
+		return supplier != null ? supplier.getAsLong() : value.sum();
+	}
+
+	@Override
+	public String getType()
+	{
+		return COUNTER;
+	}
+
+	@Override
+	public String toString()
+	{
+		return Long.toString(get());
+	}
+}
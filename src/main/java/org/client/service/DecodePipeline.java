@@ -0,0 +1,364 @@
+package org.client.service;
+
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+import org.client.model.DecodedFrame;
+
+/**--------------------------------------------------------------------------------------------
+ * Parallel JPEG decode pipeline.
+ * Frames submitted by a single producer are decoded by a fixed pool of worker threads, each
+ * reusing its own ImageReader, and handed back to a single consumer in submission order.
+ * Decoding renders into pooled destination images, and decode tasks and the work queue are
+ * preallocated, so steady-state decoding does not allocate per frame.
+ * At most maxInFlight frames may be submitted but not yet polled; beyond that #offer()
+ * refuses new frames so the caller can push back on its own input.
+ * --------------------------------------------------------------------------------------------*/
+public class DecodePipeline
+{
+	private static final Log LOG = Log.get("decode");
+
+	private static final long WARM_UP_GATHER_TIMEOUT = 1000;	// ms the warm-up waits for every thread to start
+
+	private final ThreadPoolExecutor workers;
+	private final Semaphore permits;
+	private final FramePool framePool;
+	private final DecodeTask[] tasks;								// reused, indexed by ticket
+	private final AtomicReferenceArray<DecodedFrame> completed;	// decoded frames indexed by ticket
+	private final int mask;
+
+	private long nextTicket;		// producer side
+	private long nextOutput;		// consumer side
+	private volatile Runnable completionHandler;	// notified by the decoders, may be null
+	private volatile Consumer<byte[]> dataReleaseHandler;	// receives encoded data once decoded, may be null
+	private volatile StageTracer tracer;			// stamps decode start and end, may be null
+
+	private final ThreadLocal<JpegDecoder> decoders = new ThreadLocal<JpegDecoder>() {
+		@Override
+		protected JpegDecoder initialValue()
+		{
+			return new JpegDecoder();
+		}
+	};
+
+	// statistics
+	private final Counter decodedCount = new Counter();
+	private final Counter failedCount = new Counter();
+	private final Counter decodeNanos = new Counter();
+	private final Histogram decodeTimes = new Histogram();		// us per decoded frame
+	private long rejectedCount;
+
+	/**--------------------------------------------------------------------------------------------
+	 * @param threads - number of decoder threads
+	 * @param maxInFlight - frames that may be queued, decoding or awaiting #poll()
+	 * @param framePool - pool supplying destination frames; consumers release polled frames to it
+	 * --------------------------------------------------------------------------------------------*/
+	public DecodePipeline(int threads, int maxInFlight, FramePool framePool)
+	{
+		int size = 1;
+		while (size < maxInFlight)
+			size <<= 1;
+
+		this.framePool = framePool;
+		mask = size - 1;
+		completed = new AtomicReferenceArray<DecodedFrame>(size);
+		tasks = new DecodeTask[size];
+		for (int i = 0; i < size; i++)
+			tasks[i] = new DecodeTask();
+
+		permits = new Semaphore(maxInFlight);
+		workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(size), new ThreadFactory() {
+			private final AtomicInteger count = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "frame-decoder-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/** Returns a default decoder thread count for this machine. */
+	public static int defaultThreads()
+	{
+		return Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Submits a JPEG frame for decoding (producer thread only). The data array must not be
+	 * modified until the frame comes out of #poll(). The presentation time (System#nanoTime(),
+	 * 0 for as soon as possible) and the arrival time of the frame (0 if unknown) are carried
+	 * over to the decoded frame.
+	 * Returns false if the pipeline is saturated.
+	 * --------------------------------------------------------------------------------------------*/
+	public boolean offer(byte[] data, int offset, int length, int sequenceNumber, int timeStamp, long presentationNanos,
+						 long arrivalNanos)
+	{
+		if (!permits.tryAcquire())
+		{
+			rejectedCount++;
+			return false;
+		}
+
+		long ticket = nextTicket++;
+		DecodeTask task = tasks[(int) ticket & mask];
+		task.index = (int) ticket & mask;
+		task.frame = framePool.acquire(sequenceNumber, timeStamp);
+		task.frame.presentationNanos = presentationNanos;
+		task.frame.arrivalNanos = arrivalNanos;
+		task.data = data;
+		task.offset = offset;
+		task.length = length;
+		workers.execute(task);
+		return true;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns the next frame in submission order if it has been decoded, null otherwise
+	 * (consumer thread only). Frames that failed to decode are skipped. The caller must
+	 * release the returned frame to the frame pool once it is done with it.
+	 * --------------------------------------------------------------------------------------------*/
+	public DecodedFrame poll()
+	{
+		while (true)
+		{
+			int index = (int) nextOutput & mask;
+			DecodedFrame frame = completed.get(index);
+			if (frame == null)
+				return null;
+
+			completed.set(index, null);
+			nextOutput++;
+			permits.release();
+
+			if (frame.decodeNanos >= 0)
+				return frame;
+			framePool.release(frame);
+		}
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Decodes one frame on the calling thread with its own reader (used for warm-up as well).
+	 * Returns false if decoding failed.
+	 * --------------------------------------------------------------------------------------------*/
+	public boolean decode(DecodedFrame frame, byte[] data, int offset, int length)
+	{
+		long start = System.nanoTime();
+		try
+		{
+			decoders.get().decode(frame, framePool, data, offset, length);
+
+			frame.decodeNanos = System.nanoTime() - start;
+			StageTracer stageTracer = tracer;
+			if (stageTracer != null)
+			{
+				stageTracer.record(StageTracer.DECODE_START, frame.sequenceNumber, start);
+				stageTracer.record(StageTracer.DECODE_END, frame.sequenceNumber, start + frame.decodeNanos);
+			}
+			decodeNanos.add(frame.decodeNanos);
+			decodeTimes.record(frame.decodeNanos / 1000);
+			decodedCount.increment();
+			return true;
+		}
+		catch (IOException | RuntimeException ex)
+		{
+			frame.decodeNanos = -1;
+			failedCount.increment();
+			LOG.warn("Frame decode failed: {}", ex);
+			return false;
+		}
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Starts the decoder threads and has each one decode a frame repeatedly into a scratch pool,
+	 * so the first stream frame finds the ImageIO plugins registered, the thread's reader created
+	 * and the decode path compiled. Call before the first #offer(); the warm-up takes permits, so
+	 * frames offered meanwhile may be refused.
+	 * @return completes once every thread is done
+	 * --------------------------------------------------------------------------------------------*/
+	public CompletableFuture<Void> warmUp(final byte[] data, final int iterations)
+	{
+		final CompletableFuture<Void> done = new CompletableFuture<Void>();
+		final int threads = workers.getCorePoolSize();
+		if (!permits.tryAcquire(threads))
+		{
+			done.complete(null);
+			return done;
+		}
+
+		final CountDownLatch gathered = new CountDownLatch(threads);
+		final AtomicInteger remaining = new AtomicInteger(threads);
+		Runnable warmUpTask = new Runnable() {
+			@Override
+			public void run()
+			{
+				try
+				{
+					// hold every thread until all have a task, so each one warms up its own reader
+					gathered.countDown();
+					gathered.await(WARM_UP_GATHER_TIMEOUT, TimeUnit.MILLISECONDS);
+
+					FramePool scratchPool = new FramePool(1);
+					DecodedFrame frame = new DecodedFrame(0, 0);
+					JpegDecoder decoder = decoders.get();
+					for (int i = 0; i < iterations; i++)
+						decoder.decode(frame, scratchPool, data, 0, data.length);
+				}
+				catch (IOException | RuntimeException ex)
+				{
+					LOG.error("Exception caught: {}", ex);
+				}
+				catch (InterruptedException ie)
+				{
+					// shut down
+					Thread.currentThread().interrupt();
+				}
+				finally
+				{
+					permits.release();
+					if (remaining.decrementAndGet() == 0)
+						done.complete(null);
+				}
+			}
+		};
+
+		workers.prestartAllCoreThreads();
+		for (int i = 0; i < threads; i++)
+		{
+			try
+			{
+				workers.execute(warmUpTask);
+			}
+			catch (RejectedExecutionException ree)
+			{
+				// shut down
+				permits.release();
+				if (remaining.decrementAndGet() == 0)
+					done.complete(null);
+			}
+		}
+		return done;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Sets a callback run on the decoder thread after every completed frame, so a consumer can
+	 * wait for frames instead of polling. Must return quickly.
+	 * --------------------------------------------------------------------------------------------*/
+	public void setCompletionHandler(Runnable completionHandler)
+	{
+		this.completionHandler = completionHandler;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Sets a callback receiving every submitted data array once the decoders are done with it,
+	 * e.g. to recycle pooled frame buffers (decoder thread).
+	 * --------------------------------------------------------------------------------------------*/
+	public void setDataReleaseHandler(Consumer<byte[]> dataReleaseHandler)
+	{
+		this.dataReleaseHandler = dataReleaseHandler;
+	}
+
+	/** Sets the tracer stamping decode start and end of every frame, or null. */
+	public void setTracer(StageTracer tracer)
+	{
+		this.tracer = tracer;
+	}
+
+	/** Returns true if #offer() would currently refuse a frame. */
+	public boolean isSaturated()
+	{
+		return permits.availablePermits() == 0;
+	}
+
+	/** Stops the decoder threads; frames still queued are abandoned. */
+	public void shutdown()
+	{
+		workers.shutdownNow();
+	}
+
+	public FramePool getFramePool()
+	{
+		return framePool;
+	}
+
+	public long getDecodedCount()
+	{
+		return decodedCount.get();
+	}
+
+	public long getFailedCount()
+	{
+		return failedCount.get();
+	}
+
+	/** Returns the number of frames refused because the pipeline was saturated. */
+	public long getRejectedCount()
+	{
+		return rejectedCount;
+	}
+
+	/** Returns the average decode time per frame, ns. */
+	public long getAverageDecodeNanos()
+	{
+		long count = decodedCount.get();
+		return count == 0 ? 0 : decodeNanos.get() / count;
+	}
+
+	/** Adds the decode counters and times to a registry. */
+	public void registerMetrics(MetricsRegistry registry)
+	{
+		registry.register("frames_decoded", "Frames decoded", decodedCount);
+		registry.register("frames_decode_failed", "Frames that failed to decode", failedCount);
+		registry.register("decode_time_us", "Decode time per frame", decodeTimes);
+	}
+
+	/** Returns the histogram of decode times per frame, us. */
+	public Histogram getDecodeTimes()
+	{
+		return decodeTimes;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Reusable decode work item, one per in-flight slot.
+	 * --------------------------------------------------------------------------------------------*/
+	private class DecodeTask implements Runnable
+	{
+		int index;
+		DecodedFrame frame;
+		byte[] data;
+		int offset;
+		int length;
+
+		@Override
+		public void run()
+		{
+			DecodedFrame decoded = frame;
+			byte[] encoded = data;
+			decode(decoded, encoded, offset, length);
+			frame = null;
+			data = null;
+			completed.set(index, decoded);
+
+			Consumer<byte[]> releaseHandler = dataReleaseHandler;
+			if (releaseHandler != null)
+				releaseHandler.accept(encoded);
+
+			Runnable handler = completionHandler;
+			if (handler != null)
+				handler.run();
+		}
+	}
+}
@@ -0,0 +1,32 @@
+package org.client.service;
+
+import org.client.model.RtpPayload;
+
+/**--------------------------------------------------------------------------------------------
+ * Payload format specific frame reassembly.
+ * A depacketizer receives the payloads of one stream in sequence order (after the jitter
+ * buffer) and turns them into complete encoded frames written to pooled frame buffers.
+ * Implementations are registered per RTP payload type in Depacketizers. Not thread safe: used
+ * from the playout thread only.
+ * --------------------------------------------------------------------------------------------*/
+public interface Depacketizer
+{
+	/**--------------------------------------------------------------------------------------------
+	 * Consumes the next payload of the stream; the payload is not retained. Returns true when a
+	 * frame was completed: it has been written to frame (timestamp, sequence number of its first
+	 * packet, length) and frame.data now belongs to the caller, who releases it to the pool.
+	 * --------------------------------------------------------------------------------------------*/
+	boolean push(RtpPayload payload, RtpPayload frame, long nowNanos);
+
+	/** Discards a partially assembled frame older than the reassembly timeout. */
+	void expire(long nowNanos);
+
+	/** Discards any partially assembled frame and cached state. */
+	void reset();
+
+	/** Returns the number of frames completed. */
+	long getFrameCount();
+
+	/** Returns the number of incomplete frames discarded (missing fragments or timeout). */
+	long getDiscardedCount();
+}
@@ -0,0 +1,72 @@
+package org.client.service;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**--------------------------------------------------------------------------------------------
+ * Depacketizer registry keyed on RTP payload type.
+ * Static payload types are registered up front; dynamic ones (96-127) are bound per session
+ * from the session description, by the encoding name of their a=rtpmap line. Unknown payload
+ * types get a PassThroughDepacketizer.
+ * --------------------------------------------------------------------------------------------*/
+public final class Depacketizers
+{
+	/** Creates a depacketizer writing frames to the given pool. */
+	public interface Factory
+	{
+		Depacketizer create(FrameBufferPool framePool, long timeoutMillis);
+	}
+
+	private static final ConcurrentHashMap<Integer, Factory> FACTORIES = new ConcurrentHashMap<Integer, Factory>();
+	private static final ConcurrentHashMap<String, Factory> ENCODINGS = new ConcurrentHashMap<String, Factory>();
+
+	static
+	{
+		Factory jpeg = new Factory() {
+			@Override
+			public Depacketizer create(FrameBufferPool framePool, long timeoutMillis)
+			{
+				return new JpegDepacketizer(framePool, timeoutMillis);
+			}
+		};
+		register(JpegDepacketizer.PAYLOAD_TYPE, jpeg);
+		registerEncoding(JpegDepacketizer.ENCODING_NAME, jpeg);
+	}
+
+	private Depacketizers()
+	{
+	}
+
+	/** Registers (or replaces) the format of a payload type for all sessions created afterwards. */
+	public static void register(int payloadType, Factory factory)
+	{
+		FACTORIES.put(payloadType, factory);
+	}
+
+	/** Registers (or replaces) the format of an encoding name (a=rtpmap, case-insensitive). */
+	public static void registerEncoding(String encodingName, Factory factory)
+	{
+		ENCODINGS.put(encodingName.toUpperCase(Locale.ROOT), factory);
+	}
+
+	/** Returns the factory of an encoding name, or null if none is registered. */
+	public static Factory getEncoding(String encodingName)
+	{
+		return encodingName == null ? null : ENCODINGS.get(encodingName.toUpperCase(Locale.ROOT));
+	}
+
+	/** Returns the factory of a payload type, or null if none is registered. */
+	public static Factory get(int payloadType)
+	{
+		return FACTORIES.get(payloadType);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns a new depacketizer for the payload type, passing payloads through if it is unknown.
+	 * --------------------------------------------------------------------------------------------*/
+	public static Depacketizer create(int payloadType, FrameBufferPool framePool, long timeoutMillis)
+	{
+		Factory factory = FACTORIES.get(payloadType);
+		return factory != null ? factory.create(framePool, timeoutMillis) : new PassThroughDepacketizer(framePool);
+	}
+}
@@ -0,0 +1,99 @@
+package org.client.service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**--------------------------------------------------------------------------------------------
+ * Encoded frame buffer pool.
+ * Recycles the byte arrays reassembled frames are written to between the depacketizer (playout
+ * thread) and the decoders. Arrays are sized in powers of two and a request larger than the
+ * array polled counts as a miss and allocates a bigger one, so the pool converges on the
+ * largest frame of the stream. Thread safe.
+ * --------------------------------------------------------------------------------------------*/
+public class FrameBufferPool
+{
+	private static final int MIN_SIZE = 1 << 12;
+
+	private final ArrayBlockingQueue<byte[]> freeBuffers;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public FrameBufferPool(int capacity)
+	{
+		freeBuffers = new ArrayBlockingQueue<byte[]>(capacity);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Fills the pool with buffers of at least the given size, e.g. from the expected frame size.
+	 * --------------------------------------------------------------------------------------------*/
+	public void preallocate(int size)
+	{
+		while (freeBuffers.remainingCapacity() > 0)
+		{
+			if (!freeBuffers.offer(new byte[roundUp(size)]))
+				break;
+		}
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns an array of at least minLength bytes; its contents are undefined.
+	 * --------------------------------------------------------------------------------------------*/
+	public byte[] acquire(int minLength)
+	{
+		byte[] buffer = freeBuffers.poll();
+		if (buffer != null && buffer.length >= minLength)
+		{
+			hits.incrementAndGet();
+			return buffer;
+		}
+
+		misses.incrementAndGet();
+		return new byte[roundUp(minLength)];
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns an array to the pool once the frame has been decoded or dropped.
+	 * --------------------------------------------------------------------------------------------*/
+	public void release(byte[] buffer)
+	{
+		if (buffer != null)
+			freeBuffers.offer(buffer);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns a copy of the first length bytes in a larger array from this pool; the old array
+	 * is released.
+	 * --------------------------------------------------------------------------------------------*/
+	public byte[] grow(byte[] buffer, int length, int minLength)
+	{
+		byte[] grown = acquire(minLength);
+		System.arraycopy(buffer, 0, grown, 0, length);
+		release(buffer);
+		return grown;
+	}
+
+	private static int roundUp(int size)
+	{
+		int rounded = MIN_SIZE;
+		while (rounded < size && rounded > 0)
+			rounded <<= 1;
+		return rounded > 0 ? rounded : size;
+	}
+
+	/** Returns the number of buffers currently available. */
+	public int available()
+	{
+		return freeBuffers.size();
+	}
+
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	public long getMisses()
+	{
+		return misses.get();
+	}
+}
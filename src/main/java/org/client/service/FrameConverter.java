@@ -2,21 +2,28 @@ package org.client.service;
 
 import java.awt.Graphics2D;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 
 import javafx.embed.swing.SwingFXUtils;
 import javafx.scene.image.Image;
+import javafx.scene.image.WritableImage;
 
-import javax.imageio.ImageIO;
+import org.client.model.DecodedFrame;
 
 
 /**--------------------------------------------------------------------------------------------------------
  * Frame converter implementation.
+ * Decodes through a reused ImageReader into a pooled destination and converts into a reused
+ * FX image, so repeated conversions of same-sized frames do not allocate images.
+ * Not thread safe: use one converter per thread.
  * --------------------------------------------------------------------------------------------------------*/
 public class FrameConverter
 {
+	private final FramePool framePool = new FramePool(1);
+	private final JpegDecoder decoder = new JpegDecoder();
+	private final DecodedFrame frame = new DecodedFrame(0, 0);
+	private WritableImage fxImage;
+
 	public Image convertImage(java.awt.Image awtImage) throws IOException
 	{
 		BufferedImage bImg ;
@@ -28,15 +35,19 @@ public class FrameConverter
 		    graphics.drawImage(awtImage, 0, 0, null);
 		    graphics.dispose();
 		}
-		Image fxImage = SwingFXUtils.toFXImage(bImg, null);
-		return fxImage;
+		return toFXImage(bImg);
 	}
 
 	public Image convert(byte[] imageAsBytes) throws IOException
 	{
-		InputStream in = new ByteArrayInputStream(imageAsBytes);
-		BufferedImage bufferedimage = ImageIO.read(in);
-		Image fxImage = SwingFXUtils.toFXImage(bufferedimage, null);
+		decoder.decode(frame, framePool, imageAsBytes, 0, imageAsBytes.length);
+		return toFXImage(frame.image);
+	}
+
+	/** Converts into the previous FX image when its size matches (SwingFXUtils re-allocates otherwise). */
+	private Image toFXImage(BufferedImage bImg)
+	{
+		fxImage = SwingFXUtils.toFXImage(bImg, fxImage);
 		return fxImage;
 	}
-}
\ No newline at end of file
+}
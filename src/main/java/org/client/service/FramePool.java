@@ -0,0 +1,101 @@
+package org.client.service;
+
+import java.awt.image.BufferedImage;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.client.model.DecodedFrame;
+
+/**--------------------------------------------------------------------------------------------
+ * Decoded frame pool.
+ * Recycles DecodedFrame holders together with their pre-sized TYPE_INT_RGB destination images,
+ * which the JPEG decoder renders into directly. A frame of the wrong size counts as a miss and
+ * gets a new image, so the pool adapts to resolution changes. Thread safe.
+ * --------------------------------------------------------------------------------------------*/
+public class FramePool
+{
+	public static final int IMAGE_TYPE = BufferedImage.TYPE_INT_RGB;
+
+	private final ArrayBlockingQueue<DecodedFrame> freeFrames;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	public FramePool(int capacity)
+	{
+		freeFrames = new ArrayBlockingQueue<DecodedFrame>(capacity);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Fills the pool with frames of the given size ahead of the first decode.
+	 * --------------------------------------------------------------------------------------------*/
+	public void preallocate(int width, int height)
+	{
+		while (freeFrames.remainingCapacity() > 0)
+		{
+			DecodedFrame frame = new DecodedFrame(0, 0);
+			frame.image = new BufferedImage(width, height, IMAGE_TYPE);
+			if (!freeFrames.offer(frame))
+				break;
+		}
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns a frame holder; its image may be null or of any size until #ensureImage() is called.
+	 * --------------------------------------------------------------------------------------------*/
+	public DecodedFrame acquire(int sequenceNumber, int timeStamp)
+	{
+		DecodedFrame frame = freeFrames.poll();
+		if (frame == null)
+			frame = new DecodedFrame(sequenceNumber, timeStamp);
+
+		frame.sequenceNumber = sequenceNumber;
+		frame.timeStamp = timeStamp;
+		frame.decodeNanos = 0;
+		frame.presentationNanos = 0;
+		frame.arrivalNanos = 0;
+		return frame;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Makes sure the frame carries a destination image of the given size and returns it.
+	 * --------------------------------------------------------------------------------------------*/
+	public BufferedImage ensureImage(DecodedFrame frame, int width, int height)
+	{
+		BufferedImage image = frame.image;
+		if (image != null && image.getWidth() == width && image.getHeight() == height)
+		{
+			hits.incrementAndGet();
+			return image;
+		}
+
+		misses.incrementAndGet();
+		frame.image = new BufferedImage(width, height, IMAGE_TYPE);
+		return frame.image;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns a frame to the pool once it has been displayed or dropped.
+	 * --------------------------------------------------------------------------------------------*/
+	public void release(DecodedFrame frame)
+	{
+		if (frame != null)
+			freeFrames.offer(frame);
+	}
+
+	/** Returns the number of frames currently available. */
+	public int available()
+	{
+		return freeFrames.size();
+	}
+
+	public long getHits()
+	{
+		return hits.get();
+	}
+
+	public long getMisses()
+	{
+		return misses.get();
+	}
+}
@@ -1,21 +1,22 @@
 package org.client.service;
 
 import java.awt.Image;
-import java.util.ArrayDeque;
 
 /**--------------------------------------------------------------------------------------------
- * Frame synchronizer implementation. TODO: needs refactoring
+ * Frame synchronizer implementation.
+ * Thin wrapper around a zero-delay JitterBuffer: frames are released in sequence order and
+ * the last frame is repeated while the next one is missing.
  * --------------------------------------------------------------------------------------------*/
 public class FrameSynchronizer
 {
-	private ArrayDeque<Image> queue;
-	private int currentSequenceNumber;
+	private static final long MAX_DELAY = 1000;		// ms
+
+	private JitterBuffer<Image> buffer;
 	private Image lastImage;
 
 	public FrameSynchronizer(int bufferSize)
 	{
-		currentSequenceNumber = 1;
-		queue = new ArrayDeque<Image>(bufferSize);
+		buffer = new JitterBuffer<Image>(bufferSize, 0, MAX_DELAY);
 	}
 
 	/**--------------------------------------------------------------------------------------------
@@ -23,27 +24,23 @@ public class FrameSynchronizer
 	 * --------------------------------------------------------------------------------------------*/
 	public void addFrame(Image image, int seqNum)
 	{
-		if (seqNum < currentSequenceNumber)
-			queue.add(lastImage);
-		else if (seqNum > currentSequenceNumber)
-		{
-			for (int i = currentSequenceNumber; i < seqNum; i++)
-			{
-				queue.add(lastImage);
-			}
-			queue.add(image);
-		}
-		else
-			queue.add(image);
+		buffer.insert(image, seqNum, System.nanoTime());
 	}
 
 	/**--------------------------------------------------------------------------------------------
-	 * Returns next synchronized frame.
+	 * Returns next synchronized frame, or the previous one if the next frame is not available.
 	 * --------------------------------------------------------------------------------------------*/
 	public Image nextFrame()
 	{
-		currentSequenceNumber++;
-		lastImage = queue.peekLast();
-		return queue.remove();
+		Image image = buffer.pop(System.nanoTime());
+		if (image != null)
+			lastImage = image;
+		return lastImage;
+	}
+
+	/** Returns the underlying jitter buffer (statistics). */
+	public JitterBuffer<Image> getBuffer()
+	{
+		return buffer;
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,46 @@
+package org.client.service;
+
+import java.util.function.DoubleSupplier;
+
+/**--------------------------------------------------------------------------------------------
+ * Current value of something: set by its owner, or read from a supplier each time the gauge
+ * is read (the supplier must be cheap and thread safe).
+ * --------------------------------------------------------------------------------------------*/
+public class Gauge extends Metric
+{
+	private final DoubleSupplier supplier;	// null for a set gauge
+	private volatile double value;
+
+	public Gauge()
+	{
+		this(null);
+	}
+
+	public Gauge(DoubleSupplier supplier)
+	{
+		this.supplier = supplier;
+	}
+
+	public void set(double value)
+	{
+		this.value = value;
+	}
+
+	public double get()
+	{
+		return supplier == null ? value : supplier.getAsDouble();
+	}
+
+	@Override
+	public String getType()
+	{
+		return GAUGE;
+	}
+
+	@Override
+	public String toString()
+	{
+		double current = get();
+		return current == (long) current ? Long.toString((long) current) : String.format("%.3f", current);
+	}
+}
@@ -0,0 +1,158 @@
+package org.client.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**--------------------------------------------------------------------------------------------
+ * Log-linear (HDR style) histogram of non-negative values, e.g. latencies in microseconds.
+ * Every power of two is split into 8 linear sub-buckets, so any recorded value is reported
+ * within 12.5% over its whole range, in a fixed 512-bucket array. Recording is one atomic
+ * increment plus striped sum and max, from any number of threads; no locks, no allocation.
+ * Readers take a Snapshot, whose percentiles are consistent with its own counts.
+ * --------------------------------------------------------------------------------------------*/
+public class Histogram extends Metric
+{
+	private static final int SUB_BUCKET_BITS = 3;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	static final int BUCKETS = 64 * SUB_BUCKETS;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/** Records a value; negative values count as 0. */
+	public void record(long value)
+	{
+		value = Math.max(0, value);
+		counts.incrementAndGet(index(value));
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	/** Returns the bucket of a value. */
+	static int index(long value)
+	{
+		if (value < SUB_BUCKETS)
+			return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS
+			   + (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+	}
+
+	/** Returns the highest value counted in a bucket. */
+	static long upperBound(int index)
+	{
+		if (index < SUB_BUCKETS)
+			return index;
+		int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+		return ((SUB_BUCKETS + index % SUB_BUCKETS + 1L) << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Copies the current counts into a snapshot, which may be reused (no allocation then).
+	 * Values recorded meanwhile may or may not be included.
+	 * --------------------------------------------------------------------------------------------*/
+	public Snapshot snapshot(Snapshot snapshot)
+	{
+		long count = 0;
+		for (int i = 0; i < BUCKETS; i++)
+		{
+			long bucket = counts.get(i);
+			snapshot.counts[i] = bucket;
+			count += bucket;
+		}
+		snapshot.count = count;
+		snapshot.sum = sum.sum();
+		snapshot.max = max.get();
+		return snapshot;
+	}
+
+	public Snapshot snapshot()
+	{
+		return snapshot(new Snapshot());
+	}
+
+	/** Forgets every recorded value; values recorded concurrently may survive in part. */
+	public void reset()
+	{
+		for (int i = 0; i < BUCKETS; i++)
+			counts.set(i, 0);
+		sum.reset();
+		max.reset();
+	}
+
+	@Override
+	public String getType()
+	{
+		return HISTOGRAM;
+	}
+
+	@Override
+	public String toString()
+	{
+		return snapshot().toString();
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Point in time copy of a histogram.
+	 * --------------------------------------------------------------------------------------------*/
+	public static class Snapshot
+	{
+		final long[] counts = new long[BUCKETS];
+		long count;
+		long sum;
+		long max;
+
+		public long getCount()
+		{
+			return count;
+		}
+
+		public long getSum()
+		{
+			return sum;
+		}
+
+		public long getMax()
+		{
+			return max;
+		}
+
+		public double getMean()
+		{
+			return count == 0 ? 0 : (double) sum / count;
+		}
+
+		/** Returns the value at or below which the given percentage (0 to 100) of values lie. */
+		public long getPercentile(double percentile)
+		{
+			long rank = (long) Math.ceil(count * percentile / 100.0);
+			long seen = 0;
+			for (int i = 0; i < BUCKETS; i++)
+			{
+				seen += counts[i];
+				if (seen >= rank && seen > 0)
+					return Math.min(upperBound(i), max);
+			}
+			return 0;
+		}
+
+		/** Adds the counts of another snapshot, e.g. to sum up sessions. */
+		public void add(Snapshot other)
+		{
+			for (int i = 0; i < BUCKETS; i++)
+				counts[i] += other.counts[i];
+			count += other.count;
+			sum += other.sum;
+			max = Math.max(max, other.max);
+		}
+
+		@Override
+		public String toString()
+		{
+			return "n=" + count + " p50=" + getPercentile(50) + " p99=" + getPercentile(99)
+				   + " p99.9=" + getPercentile(99.9) + " max=" + max;
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package org.client.service;
+
+import java.nio.ByteBuffer;
+
+/**--------------------------------------------------------------------------------------------
+ * RTP over TCP receiver (RTSP interleaved transport, RFC 2326 10.12).
+ * Takes the packets interleaved on the RTSP connection as it reads them: packets on the RTP
+ * channel are copied into pooled buffers (position 0, limit = packet length) and published
+ * through the ring buffer, packets on the RTCP channel are fed into the reception statistics.
+ * The channel numbers are those the server confirmed in its SETUP response.
+ * --------------------------------------------------------------------------------------------*/
+public class InterleavedTransport implements RtpReceiver, RtspConnection.InterleavedHandler
+{
+	public static final int MAGIC = '$';	// first byte of an interleaved packet
+
+	private final RtspConnection connection;
+	private final SpscRingBuffer<ByteBuffer> ring;
+	private final ByteBufferPool pool;
+
+	private volatile int rtpChannel;
+	private volatile int rtcpChannel;
+	private volatile boolean running;
+	private ByteBuffer buffer;						// reading thread only, kept while the ring is full
+	private volatile long receivedPackets;			// written by the reading thread only
+	private volatile long receivedRtcpPackets;
+	private volatile long oversizeCount;			// packets larger than the pooled buffers
+	private ReceptionStatistics statistics;			// null when not collected
+
+	InterleavedTransport(RtspConnection connection, int rtpChannel, int rtcpChannel,
+			SpscRingBuffer<ByteBuffer> ring, ByteBufferPool pool)
+	{
+		this.connection = connection;
+		this.rtpChannel = rtpChannel;
+		this.rtcpChannel = rtcpChannel;
+		this.ring = ring;
+		this.pool = pool;
+	}
+
+	@Override
+	public synchronized void start()
+	{
+		if (running)
+			return;
+
+		running = true;
+		connection.setInterleavedHandler(this);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Stops taking packets; the RTSP connection is left open for the caller to close.
+	 * --------------------------------------------------------------------------------------------*/
+	@Override
+	public synchronized void stop()
+	{
+		running = false;
+		connection.setInterleavedHandler(null);
+	}
+
+	@Override
+	public void onInterleaved(int channel, ByteBuffer packet)
+	{
+		if (!running)
+			return;
+
+		if (channel == rtpChannel)
+		{
+			if (buffer == null)
+				buffer = pool.acquire();
+			if (packet.remaining() > buffer.capacity())
+			{
+				oversizeCount++;
+				return;
+			}
+
+			buffer.clear();
+			buffer.put(packet);
+			buffer.flip();
+			receivedPackets++;
+			if (statistics != null)
+				statistics.onRtpPacket(buffer, System.nanoTime());
+
+			// a full ring drops the packet (the overflow is counted by the ring) and keeps the buffer
+			if (ring.offer(buffer))
+				buffer = null;
+		}
+		else if (channel == rtcpChannel)
+		{
+			receivedRtcpPackets++;
+			if (statistics != null)
+				statistics.onRtcpPacket(packet, System.nanoTime());
+		}
+	}
+
+	/** Sets the channels the server confirmed in its SETUP response. */
+	public void setChannels(int rtpChannel, int rtcpChannel)
+	{
+		this.rtpChannel = rtpChannel;
+		this.rtcpChannel = rtcpChannel;
+	}
+
+	@Override
+	public boolean isRunning()
+	{
+		return running;
+	}
+
+	@Override
+	public long getReceivedPackets()
+	{
+		return receivedPackets;
+	}
+
+	/** Returns the number of RTCP packets received on the RTCP channel. */
+	public long getReceivedRtcpPackets()
+	{
+		return receivedRtcpPackets;
+	}
+
+	/** Returns the number of RTP packets skipped because they did not fit a pooled buffer. */
+	public long getOversizeCount()
+	{
+		return oversizeCount;
+	}
+
+	public int getRtpChannel()
+	{
+		return rtpChannel;
+	}
+
+	public int getRtcpChannel()
+	{
+		return rtcpChannel;
+	}
+
+	@Override
+	public ByteBufferPool getPool()
+	{
+		return pool;
+	}
+
+	@Override
+	public SpscRingBuffer<ByteBuffer> getRing()
+	{
+		return ring;
+	}
+
+	@Override
+	public void setStatistics(ReceptionStatistics statistics)
+	{
+		this.statistics = statistics;
+	}
+}
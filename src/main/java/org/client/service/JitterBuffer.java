@@ -0,0 +1,313 @@
+package org.client.service;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**--------------------------------------------------------------------------------------------
+ * Jitter buffer implementation.
+ * Fixed-capacity circular array indexed by extended RTP sequence number. Items are held for
+ * the target playout delay (measured from arrival) so reordered packets can slot in; a missing
+ * packet is given up once the item following the gap is due, items older than the maximum
+ * playout delay are dropped, and packets arriving after their slot was played are discarded.
+ * Insert and pop are O(1) amortized. Not thread safe: use from a single consumer thread.
+ * --------------------------------------------------------------------------------------------*/
+public class JitterBuffer<T>
+{
+	private static final long EMPTY = Long.MIN_VALUE;
+
+	private final Object[] items;
+	private final long[] sequences;		// extended sequence number held by each slot, EMPTY if free
+	private final long[] arrivalTimes;	// arrival time of each slot, ns
+	private final int[] timestamps;		// RTP timestamp of each slot
+	private final int capacity;
+	private final int mask;
+
+	private final SequenceExtender extender = new SequenceExtender();
+	private long nextSequence = EMPTY;	// next extended sequence number to play
+	private long lastSequence = -1;		// extended sequence number of the last item played
+	private int lastTimestamp;			// RTP timestamp of the last item played
+	private int occupancy;
+
+	private long targetDelay;			// ns
+	private long maxDelay;				// ns
+	private Consumer<? super T> discardHandler;
+
+	// statistics
+	private long insertedCount;
+	private long playedCount;
+	private long lateDropCount;			// arrived after their slot was played
+	private long staleDropCount;		// waited longer than the maximum playout delay
+	private long overflowDropCount;		// evicted to make room for newer items
+	private long duplicateCount;
+	private long missingCount;			// never arrived, skipped at playout
+
+	/**--------------------------------------------------------------------------------------------
+	 * @param requestedCapacity - slot count, rounded up to a power of two
+	 * @param targetDelayMillis - how long an item is held before it may be played
+	 * @param maxDelayMillis - items held longer than this are dropped instead of played
+	 * --------------------------------------------------------------------------------------------*/
+	public JitterBuffer(int requestedCapacity, long targetDelayMillis, long maxDelayMillis)
+	{
+		int size = 1;
+		while (size < requestedCapacity)
+			size <<= 1;
+
+		capacity = size;
+		mask = size - 1;
+		items = new Object[size];
+		sequences = new long[size];
+		arrivalTimes = new long[size];
+		timestamps = new int[size];
+		Arrays.fill(sequences, EMPTY);
+
+		setMaxDelay(maxDelayMillis);
+		setTargetDelay(targetDelayMillis);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Inserts an item by its 16-bit RTP sequence number.
+	 * Returns false if the item was discarded (late or duplicate).
+	 * --------------------------------------------------------------------------------------------*/
+	public boolean insert(T item, int sequenceNumber, long arrivalNanos)
+	{
+		return insert(item, sequenceNumber, 0, arrivalNanos);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Inserts an item with its RTP timestamp, see #getLastTimestamp(). The arrival time is the
+	 * reference the target delay is measured from; a caller pacing by media time may pass the
+	 * local time mapped from the timestamp instead.
+	 * --------------------------------------------------------------------------------------------*/
+	public boolean insert(T item, int sequenceNumber, int timestamp, long arrivalNanos)
+	{
+		long extended = extender.extend(sequenceNumber);
+		if (nextSequence == EMPTY)
+			nextSequence = extended;
+
+		if (extended < nextSequence)
+		{
+			lateDropCount++;
+			discard(item);
+			return false;
+		}
+
+		// too far ahead of the playout point: evict the oldest slots to make room
+		if (extended - nextSequence >= capacity)
+			skipTo(extended - capacity + 1);
+
+		int index = (int) extended & mask;
+		if (sequences[index] == extended)
+		{
+			duplicateCount++;
+			discard(item);
+			return false;
+		}
+
+		items[index] = item;
+		sequences[index] = extended;
+		arrivalTimes[index] = arrivalNanos;
+		timestamps[index] = timestamp;
+		occupancy++;
+		insertedCount++;
+		return true;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns the next item in sequence order if it is due, null otherwise.
+	 * --------------------------------------------------------------------------------------------*/
+	@SuppressWarnings("unchecked")
+	public T pop(long nowNanos)
+	{
+		while (occupancy > 0)
+		{
+			int index = (int) nextSequence & mask;
+			if (sequences[index] == nextSequence)
+			{
+				long age = nowNanos - arrivalTimes[index];
+				if (age < targetDelay)
+					return null;
+
+				T item = (T) items[index];
+				int timestamp = timestamps[index];
+				clear(index);
+				nextSequence++;
+
+				if (age > maxDelay)
+				{
+					staleDropCount++;
+					discard(item);
+					continue;
+				}
+				playedCount++;
+				lastSequence = nextSequence - 1;
+				lastTimestamp = timestamp;
+				return item;
+			}
+
+			// gap at the playout point: wait for the missing item until its successor is due
+			long successor = nextSequence + 1;
+			while (sequences[(int) successor & mask] != successor)
+				successor++;
+
+			if (nowNanos - arrivalTimes[(int) successor & mask] < targetDelay)
+				return null;
+
+			missingCount += successor - nextSequence;
+			nextSequence = successor;
+		}
+		return null;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Advances the playout point, dropping the items it passes over.
+	 * --------------------------------------------------------------------------------------------*/
+	@SuppressWarnings("unchecked")
+	private void skipTo(long sequence)
+	{
+		long distance = sequence - nextSequence;
+		long end = distance > capacity ? nextSequence + capacity : sequence;
+
+		for (long s = nextSequence; s < end; s++)
+		{
+			int index = (int) s & mask;
+			if (sequences[index] == s)
+			{
+				overflowDropCount++;
+				T item = (T) items[index];
+				clear(index);
+				discard(item);
+			}
+			else
+				missingCount++;
+		}
+		if (distance > capacity)
+			missingCount += distance - capacity;
+
+		nextSequence = sequence;
+	}
+
+	private void clear(int index)
+	{
+		items[index] = null;
+		sequences[index] = EMPTY;
+		occupancy--;
+	}
+
+	private void discard(T item)
+	{
+		if (discardHandler != null && item != null)
+			discardHandler.accept(item);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Drops every buffered item and forgets the sequence state.
+	 * --------------------------------------------------------------------------------------------*/
+	@SuppressWarnings("unchecked")
+	public void reset()
+	{
+		for (int i = 0; i < capacity; i++)
+		{
+			if (sequences[i] != EMPTY)
+			{
+				T item = (T) items[i];
+				clear(i);
+				discard(item);
+			}
+		}
+		extender.reset();
+		nextSequence = EMPTY;
+		lastSequence = -1;
+	}
+
+	/** Sets a callback receiving every item the buffer drops, e.g. to recycle pooled buffers. */
+	public void setDiscardHandler(Consumer<? super T> discardHandler)
+	{
+		this.discardHandler = discardHandler;
+	}
+
+	public void setTargetDelay(long targetDelayMillis)
+	{
+		targetDelay = Math.min(targetDelayMillis, getMaxDelay()) * 1000000L;
+	}
+
+	public long getTargetDelay()
+	{
+		return targetDelay / 1000000L;
+	}
+
+	public void setMaxDelay(long maxDelayMillis)
+	{
+		maxDelay = maxDelayMillis * 1000000L;
+		if (targetDelay > maxDelay)
+			targetDelay = maxDelay;
+	}
+
+	public long getMaxDelay()
+	{
+		return maxDelay / 1000000L;
+	}
+
+	public int capacity()
+	{
+		return capacity;
+	}
+
+	/** Returns the number of items currently buffered. */
+	public int getOccupancy()
+	{
+		return occupancy;
+	}
+
+	/** Returns the highest extended sequence number inserted, or -1. */
+	public long getHighestSequence()
+	{
+		return extender.getHighest();
+	}
+
+	/** Returns the extended sequence number of the last item returned by #pop(), or -1. */
+	public long getLastSequence()
+	{
+		return lastSequence;
+	}
+
+	/** Returns the RTP timestamp of the last item returned by #pop(). */
+	public int getLastTimestamp()
+	{
+		return lastTimestamp;
+	}
+
+	public long getInsertedCount()
+	{
+		return insertedCount;
+	}
+
+	public long getPlayedCount()
+	{
+		return playedCount;
+	}
+
+	public long getLateDropCount()
+	{
+		return lateDropCount;
+	}
+
+	public long getStaleDropCount()
+	{
+		return staleDropCount;
+	}
+
+	public long getOverflowDropCount()
+	{
+		return overflowDropCount;
+	}
+
+	public long getDuplicateCount()
+	{
+		return duplicateCount;
+	}
+
+	public long getMissingCount()
+	{
+		return missingCount;
+	}
+}
@@ -0,0 +1,75 @@
+package org.client.service;
+
+import java.awt.Color;
+import java.awt.GradientPaint;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+
+import org.client.model.DecodedFrame;
+
+/**--------------------------------------------------------------------------------------------
+ * JPEG decoder implementation.
+ * Owns one ImageReader, its read parameters and an input stream, all reused across frames,
+ * and decodes straight into the frame's pooled destination image.
+ * Not thread safe: use one decoder per thread.
+ * --------------------------------------------------------------------------------------------*/
+public class JpegDecoder
+{
+	private final ImageReader reader;
+	private final ImageReadParam param;
+	private final ByteArrayImageInputStream input = new ByteArrayImageInputStream();
+
+	public JpegDecoder()
+	{
+		Iterator<ImageReader> iterator = ImageIO.getImageReadersByFormatName("jpeg");
+		if (!iterator.hasNext())
+			throw new IllegalStateException("No JPEG ImageReader available");
+		reader = iterator.next();
+		param = reader.getDefaultReadParam();
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Encodes a synthetic JPEG frame (a gradient) for warming up decoders before the stream starts.
+	 * --------------------------------------------------------------------------------------------*/
+	public static byte[] createTestFrame(int width, int height) throws IOException
+	{
+		BufferedImage image = new BufferedImage(width, height, FramePool.IMAGE_TYPE);
+		Graphics2D graphics = image.createGraphics();
+		graphics.setPaint(new GradientPaint(0, 0, Color.BLUE, width, height, Color.ORANGE));
+		graphics.fillRect(0, 0, width, height);
+		graphics.dispose();
+
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		if (!ImageIO.write(image, "jpeg", output))
+			throw new IOException("No JPEG ImageWriter available");
+		return output.toByteArray();
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Decodes a JPEG image into the frame, taking a correctly sized destination from the pool.
+	 * --------------------------------------------------------------------------------------------*/
+	public void decode(DecodedFrame frame, FramePool framePool, byte[] data, int offset, int length) throws IOException
+	{
+		try
+		{
+			input.reset(data, offset, length);
+			reader.setInput(input, true, true);
+
+			BufferedImage destination = framePool.ensureImage(frame, reader.getWidth(0), reader.getHeight(0));
+			param.setDestination(destination);
+			reader.read(0, param);
+		}
+		finally
+		{
+			param.setDestination(null);
+			reader.setInput(null);
+		}
+	}
+}
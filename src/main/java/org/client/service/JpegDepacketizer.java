@@ -0,0 +1,460 @@
+package org.client.service;
+
+import javax.imageio.plugins.jpeg.JPEGHuffmanTable;
+import javax.imageio.plugins.jpeg.JPEGQTable;
+
+import org.client.model.RtpPayload;
+
+//		RFC 2435 main JPEG header, followed by the optional restart marker and quantization
+//		table headers, then the entropy coded scan data:
+//		 0                   1                   2                   3
+//		 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1 2 3 4 5 6 7 8 9 0 1
+//		+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+//		| Type-specific |              Fragment Offset                  |
+//		+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+//		|      Type     |       Q       |     Width     |     Height    |
+//		+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+-+
+
+/**--------------------------------------------------------------------------------------------
+ * JPEG depacketizer (RFC 2435, static payload type 26).
+ * Fragments carry raw scan data at a byte offset; they are appended to a reassembly buffer
+ * while the offsets stay contiguous and the frame completes with the marker bit. The JPEG
+ * headers RFC 2435 strips (quantization tables derived from Q or sent in-band, frame, Huffman,
+ * restart interval and scan headers) are then rebuilt in front of the scan data, so the result
+ * is a baseline JFIF image any decoder accepts. A frame with a missing fragment is discarded,
+ * as is one not completed within the reassembly timeout.
+ * Payloads starting with an SOI marker are whole JPEG images (the format the reference server
+ * sends) and are passed through unchanged.
+ * --------------------------------------------------------------------------------------------*/
+public class JpegDepacketizer implements Depacketizer
+{
+	public static final int PAYLOAD_TYPE = 26;
+	public static final String ENCODING_NAME = "JPEG";
+	public static final int CLOCK_RATE = 90000;
+
+	private static final int MAIN_HEADER_SIZE = 8;
+	private static final int RESTART_HEADER_SIZE = 4;
+	private static final int QUANT_HEADER_SIZE = 4;
+
+	private static final int[] ZIGZAG = zigzag();		// natural index of each zig-zag position
+
+	private final FrameBufferPool framePool;
+	private final long timeout;				// ns
+
+	// frame being reassembled
+	private boolean assembling;
+	private boolean broken;					// a fragment is missing, wait for the next frame
+	private int timeStamp;
+	private int sequenceNumber;				// of the first fragment
+	private long startNanos;
+	private byte[] scan;					// reassembly buffer (pooled)
+	private int scanLength;
+	private int type;
+	private int quality;
+	private int width;
+	private int height;
+	private int restartInterval;
+
+	// quantization tables in zig-zag order, as found in the quantization table header or computed from Q
+	private final byte[] tables = new byte[4 * 128];
+	private int tablesLength;
+	private int tablesPrecision;
+	private int tablesQuality = -1;			// Q the tables belong to
+
+	// statistics
+	private long frameCount;
+	private long discardedCount;
+
+	public JpegDepacketizer(FrameBufferPool framePool, long timeoutMillis)
+	{
+		this.framePool = framePool;
+		this.timeout = timeoutMillis * 1000000L;
+	}
+
+	@Override
+	public boolean push(RtpPayload payload, RtpPayload frame, long nowNanos)
+	{
+		byte[] data = payload.data;
+		int length = payload.length;
+
+		// a whole JFIF image in one packet
+		if (length >= 2 && (data[0] & 0xFF) == 0xFF && (data[1] & 0xFF) == 0xD8)
+		{
+			discard();
+			frame.data = framePool.acquire(length);
+			System.arraycopy(data, 0, frame.data, 0, length);
+			frame.length = length;
+			completed(payload, frame, payload.sequenceNumber);
+			return true;
+		}
+
+		if (length < MAIN_HEADER_SIZE)
+			return false;
+
+		int fragmentOffset = (data[1] & 0xFF) << 16 | (data[2] & 0xFF) << 8 | (data[3] & 0xFF);
+		int fragmentType = data[4] & 0xFF;
+		int fragmentQuality = data[5] & 0xFF;
+		int position = MAIN_HEADER_SIZE;
+
+		if (assembling && payload.timeStamp != timeStamp)
+			discard();	// the previous frame lost its last fragment
+
+		if (!assembling)
+		{
+			if (fragmentOffset != 0 || broken && payload.timeStamp == timeStamp)
+			{
+				// joined mid-frame or already gave up on it: skip to the next frame
+				broken = true;
+				timeStamp = payload.timeStamp;
+				return false;
+			}
+			assembling = true;
+			broken = false;
+			timeStamp = payload.timeStamp;
+			sequenceNumber = payload.sequenceNumber;
+			startNanos = nowNanos;
+			scanLength = 0;
+			type = fragmentType;
+			quality = fragmentQuality;
+			width = (data[6] & 0xFF) * 8;
+			height = (data[7] & 0xFF) * 8;
+			restartInterval = 0;
+		}
+
+		if (fragmentType >= 64 && fragmentType <= 127)
+		{
+			if (length < position + RESTART_HEADER_SIZE)
+				return fail();
+			if (fragmentOffset == 0)
+				restartInterval = (data[position] & 0xFF) << 8 | (data[position + 1] & 0xFF);
+			position += RESTART_HEADER_SIZE;
+		}
+
+		if (fragmentQuality >= 128 && fragmentOffset == 0)
+		{
+			if (length < position + QUANT_HEADER_SIZE)
+				return fail();
+			int precision = data[position + 1] & 0xFF;
+			int tableLength = (data[position + 2] & 0xFF) << 8 | (data[position + 3] & 0xFF);
+			position += QUANT_HEADER_SIZE;
+			if (tableLength > 0)
+			{
+				if (length < position + tableLength || tableLength > tables.length)
+					return fail();
+				System.arraycopy(data, position, tables, 0, tableLength);
+				tablesLength = tableLength;
+				tablesPrecision = precision;
+				tablesQuality = fragmentQuality;
+				position += tableLength;
+			}
+		}
+
+		if (fragmentOffset != scanLength)
+			return fail();
+
+		int fragmentLength = length - position;
+		if (scan == null || scan.length < scanLength + fragmentLength)
+			scan = scan == null ? framePool.acquire(scanLength + fragmentLength)
+					: framePool.grow(scan, scanLength, scanLength + fragmentLength);
+		System.arraycopy(data, position, scan, scanLength, fragmentLength);
+		scanLength += fragmentLength;
+
+		if (payload.marker == 0)
+			return false;
+
+		assembling = false;
+		return buildFrame(payload, frame);
+	}
+
+	/** Gives up on the current frame; the rest of its fragments are skipped. */
+	private boolean fail()
+	{
+		discard();
+		broken = true;
+		return false;
+	}
+
+	private void discard()
+	{
+		if (assembling)
+		{
+			assembling = false;
+			discardedCount++;
+		}
+	}
+
+	private void completed(RtpPayload payload, RtpPayload frame, int firstSequenceNumber)
+	{
+		frame.payloadType = payload.payloadType;
+		frame.marker = 1;
+		frame.sequenceNumber = firstSequenceNumber;
+		frame.timeStamp = payload.timeStamp;
+		frameCount++;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Writes headers, scan data and EOI of the completed frame into a pooled buffer.
+	 * --------------------------------------------------------------------------------------------*/
+	private boolean buildFrame(RtpPayload payload, RtpPayload frame)
+	{
+		if (quality < 128)
+		{
+			if (tablesQuality != quality)
+				makeTables(quality);
+		}
+		else if (tablesQuality != quality || tablesLength == 0)
+		{
+			// dynamic tables were not sent with this frame
+			discardedCount++;
+			return false;
+		}
+
+		// types 128-255 are dynamic, their parameters would come from the session setup (none here)
+		int baseType = type & 0x3F;
+		if (type >= 128 || baseType > 1 || width == 0 || height == 0)
+		{
+			discardedCount++;
+			return false;
+		}
+
+		int headerLength = headerLength();
+		byte[] buffer = framePool.acquire(headerLength + scanLength + 2);
+		int index = writeHeaders(buffer, baseType);
+		System.arraycopy(scan, 0, buffer, index, scanLength);
+		index += scanLength;
+
+		// encoders may or may not send the EOI marker
+		if (scanLength < 2 || (scan[scanLength - 2] & 0xFF) != 0xFF || (scan[scanLength - 1] & 0xFF) != 0xD9)
+		{
+			buffer[index++] = (byte) 0xFF;
+			buffer[index++] = (byte) 0xD9;
+		}
+
+		frame.data = buffer;
+		frame.length = index;
+		completed(payload, frame, sequenceNumber);
+		return true;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Computes the luminance and chrominance tables for a Q factor of 1..99 (RFC 2435 appendix A),
+	 * scaling the example tables of the JPEG standard.
+	 * --------------------------------------------------------------------------------------------*/
+	private void makeTables(int q)
+	{
+		int factor = Math.max(1, Math.min(99, q));
+		int scale = q < 50 ? 5000 / factor : 200 - factor * 2;
+
+		int[] luma = JPEGQTable.K1Luminance.getTable();
+		int[] chroma = JPEGQTable.K2Chrominance.getTable();
+		for (int i = 0; i < 64; i++)
+		{
+			tables[i] = (byte) Math.max(1, Math.min(255, (luma[ZIGZAG[i]] * scale + 50) / 100));
+			tables[64 + i] = (byte) Math.max(1, Math.min(255, (chroma[ZIGZAG[i]] * scale + 50) / 100));
+		}
+		tablesLength = 128;
+		tablesPrecision = 0;
+		tablesQuality = q;
+	}
+
+	private int headerLength()
+	{
+		int length = 2 + 18;								// SOI, APP0 (JFIF)
+		for (int table = 0, index = 0; index < tablesLength; table++)
+		{
+			int size = (tablesPrecision >> table & 1) != 0 ? 128 : 64;
+			length += 5 + size;								// DQT
+			index += size;
+		}
+		length += 19;										// SOF0
+		if (restartInterval != 0)
+			length += 6;									// DRI
+		length += huffmanLength(JPEGHuffmanTable.StdDCLuminance) + huffmanLength(JPEGHuffmanTable.StdACLuminance)
+				+ huffmanLength(JPEGHuffmanTable.StdDCChrominance) + huffmanLength(JPEGHuffmanTable.StdACChrominance);
+		return length + 14;									// SOS
+	}
+
+	private static int huffmanLength(JPEGHuffmanTable table)
+	{
+		return 5 + 16 + table.getValues().length;
+	}
+
+	/** Writes the JFIF headers (RFC 2435 appendix A MakeHeaders) and returns their length. */
+	private int writeHeaders(byte[] buffer, int baseType)
+	{
+		int index = 0;
+		buffer[index++] = (byte) 0xFF;
+		buffer[index++] = (byte) 0xD8;
+
+		// APP0: JFIF 1.01, no density, no thumbnail
+		index = marker(buffer, index, 0xE0, 14);
+		buffer[index++] = 'J';
+		buffer[index++] = 'F';
+		buffer[index++] = 'I';
+		buffer[index++] = 'F';
+		buffer[index++] = 0;
+		buffer[index++] = 1;
+		buffer[index++] = 1;
+		buffer[index++] = 0;
+		index = putShort(buffer, index, 1);
+		index = putShort(buffer, index, 1);
+		buffer[index++] = 0;
+		buffer[index++] = 0;
+
+		// DQT, one segment per table
+		for (int table = 0, offset = 0; offset < tablesLength; table++)
+		{
+			boolean wide = (tablesPrecision >> table & 1) != 0;
+			int size = wide ? 128 : 64;
+			index = marker(buffer, index, 0xDB, 1 + size);
+			buffer[index++] = (byte) ((wide ? 0x10 : 0) | table);
+			System.arraycopy(tables, offset, buffer, index, size);
+			index += size;
+			offset += size;
+		}
+
+		// SOF0: baseline, 3 components, luminance subsampled 2x1 (type 0) or 2x2 (type 1)
+		index = marker(buffer, index, 0xC0, 15);
+		buffer[index++] = 8;
+		index = putShort(buffer, index, height);
+		index = putShort(buffer, index, width);
+		buffer[index++] = 3;
+		buffer[index++] = 0;
+		buffer[index++] = (byte) (baseType == 0 ? 0x21 : 0x22);
+		buffer[index++] = 0;
+		buffer[index++] = 1;
+		buffer[index++] = 0x11;
+		buffer[index++] = (byte) (tablesLength > 64 ? 1 : 0);
+		buffer[index++] = 2;
+		buffer[index++] = 0x11;
+		buffer[index++] = (byte) (tablesLength > 64 ? 1 : 0);
+
+		if (restartInterval != 0)
+		{
+			index = marker(buffer, index, 0xDD, 2);
+			index = putShort(buffer, index, restartInterval);
+		}
+
+		index = huffman(buffer, index, JPEGHuffmanTable.StdDCLuminance, 0x00);
+		index = huffman(buffer, index, JPEGHuffmanTable.StdACLuminance, 0x10);
+		index = huffman(buffer, index, JPEGHuffmanTable.StdDCChrominance, 0x01);
+		index = huffman(buffer, index, JPEGHuffmanTable.StdACChrominance, 0x11);
+
+		// SOS: all three components, full spectral range
+		index = marker(buffer, index, 0xDA, 10);
+		buffer[index++] = 3;
+		buffer[index++] = 0;
+		buffer[index++] = 0x00;
+		buffer[index++] = 1;
+		buffer[index++] = 0x11;
+		buffer[index++] = 2;
+		buffer[index++] = 0x11;
+		buffer[index++] = 0;
+		buffer[index++] = 63;
+		buffer[index++] = 0;
+		return index;
+	}
+
+	/** Writes a marker and its segment length (payload length + 2). */
+	private static int marker(byte[] buffer, int index, int marker, int length)
+	{
+		buffer[index++] = (byte) 0xFF;
+		buffer[index++] = (byte) marker;
+		return putShort(buffer, index, length + 2);
+	}
+
+	private static int putShort(byte[] buffer, int index, int value)
+	{
+		buffer[index++] = (byte) (value >> 8);
+		buffer[index++] = (byte) value;
+		return index;
+	}
+
+	private static int huffman(byte[] buffer, int index, JPEGHuffmanTable table, int tableClassAndId)
+	{
+		short[] lengths = table.getLengths();
+		short[] values = table.getValues();
+		index = marker(buffer, index, 0xC4, 1 + 16 + values.length);
+		buffer[index++] = (byte) tableClassAndId;
+		for (int i = 0; i < 16; i++)
+			buffer[index++] = (byte) lengths[i];
+		for (int i = 0; i < values.length; i++)
+			buffer[index++] = (byte) values[i];
+		return index;
+	}
+
+	/** Returns the natural (row-major) index of every position of the 8x8 zig-zag scan. */
+	private static int[] zigzag()
+	{
+		int[] order = new int[64];
+		int row = 0;
+		int column = 0;
+		for (int i = 0; i < 64; i++)
+		{
+			order[i] = row * 8 + column;
+			if ((row + column) % 2 == 0)
+			{
+				// moving up and to the right
+				if (column == 7)
+					row++;
+				else if (row == 0)
+					column++;
+				else
+				{
+					row--;
+					column++;
+				}
+			}
+			else
+			{
+				// moving down and to the left
+				if (row == 7)
+					column++;
+				else if (column == 0)
+					row++;
+				else
+				{
+					row++;
+					column--;
+				}
+			}
+		}
+		return order;
+	}
+
+	@Override
+	public void expire(long nowNanos)
+	{
+		if (assembling && nowNanos - startNanos > timeout)
+		{
+			discard();
+			broken = true;
+		}
+	}
+
+	@Override
+	public void reset()
+	{
+		discard();
+		broken = false;
+		tablesQuality = -1;
+		tablesLength = 0;
+		if (scan != null)
+		{
+			framePool.release(scan);
+			scan = null;
+		}
+	}
+
+	@Override
+	public long getFrameCount()
+	{
+		return frameCount;
+	}
+
+	@Override
+	public long getDiscardedCount()
+	{
+		return discardedCount;
+	}
+}
@@ -0,0 +1,253 @@
+package org.client.service;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**--------------------------------------------------------------------------------------------
+ * Named logger writing through the shared AsyncAppender.
+ * Callers hand over a message with {} placeholders and its arguments; the record is copied into
+ * a preallocated ring and formatted later by the appender's thread, so logging neither builds
+ * Strings nor takes the PrintStream lock on the calling thread. Disabled levels cost one
+ * volatile read; hot paths should check #isEnabled() before gathering arguments.
+ * Levels come from -Dclient.log.<name>, else -Dclient.log.level (default info), and may be
+ * changed at any time, e.g. Log.get("packets").setLevel(Log.TRACE) to trace every RTP packet.
+ * Arguments are rendered after the call returns: pass numbers, Strings or other immutable values.
+ * --------------------------------------------------------------------------------------------*/
+public class Log
+{
+	public static final int OFF = -1;
+	public static final int ERROR = 0;
+	public static final int WARN = 1;
+	public static final int INFO = 2;
+	public static final int DEBUG = 3;
+	public static final int TRACE = 4;
+
+	static final String[] LEVEL_NAMES = { "ERROR", "WARN", "INFO", "DEBUG", "TRACE" };
+	static final int MAX_ARGUMENTS = 8;			// further arguments of a record are ignored
+
+	private static final ConcurrentHashMap<String, Log> LOGGERS = new ConcurrentHashMap<String, Log>();
+	private static final AsyncAppender APPENDER = new AsyncAppender(System.out, Integer.getInteger("client.log.capacity", 4096));
+	private static final Record DISCARDED = new Record(null);
+	private static final ThreadLocal<Record> STAGED = ThreadLocal.withInitial(() -> new Record(APPENDER));
+
+	static
+	{
+		Runtime.getRuntime().addShutdownHook(new Thread(Log::flush, "log-flush"));
+	}
+
+	private final String name;
+	private volatile int level;
+
+	/**--------------------------------------------------------------------------------------------
+	 * Log record, filled by the logging thread in a record of its own and copied into the ring by
+	 * #log(), so a record given up halfway (e.g. an argument that threw) holds up nothing.
+	 * Records of disabled levels or a full ring are discarded.
+	 * --------------------------------------------------------------------------------------------*/
+	public static final class Record
+	{
+		final AsyncAppender appender;	// null for the shared discarded record
+		Log logger;
+		int level;
+		String message;
+		long millis;
+		Thread thread;
+		final String[] keys = new String[MAX_ARGUMENTS];		// null for positional arguments
+		final Object[] objects = new Object[MAX_ARGUMENTS];
+		final long[] values = new long[MAX_ARGUMENTS];			// used where objects is null
+		int argumentCount;
+
+		Record(AsyncAppender appender)
+		{
+			this.appender = appender;
+		}
+
+		/** Adds the argument for the next {} of the message. */
+		public Record arg(long value)
+		{
+			return add(null, null, value);
+		}
+
+		public Record arg(Object value)
+		{
+			return add(null, value == null ? "null" : value, 0);
+		}
+
+		/** Adds a key=value field, written after the message. */
+		public Record field(String key, long value)
+		{
+			return add(key, null, value);
+		}
+
+		public Record field(String key, Object value)
+		{
+			return add(key, value == null ? "null" : value, 0);
+		}
+
+		private Record add(String key, Object object, long value)
+		{
+			if (appender != null && argumentCount < MAX_ARGUMENTS)
+			{
+				keys[argumentCount] = key;
+				objects[argumentCount] = object;
+				values[argumentCount] = value;
+				argumentCount++;
+			}
+			return this;
+		}
+
+		/** Hands a copy of the record over to the appender. */
+		public void log()
+		{
+			if (appender != null)
+			{
+				appender.append(this);
+				// the arguments are in the ring now, do not keep them alive
+				for (int i = 0; i < argumentCount; i++)
+					objects[i] = null;
+			}
+		}
+
+		void start(Log logger, int level, String message)
+		{
+			this.logger = logger;
+			this.level = level;
+			this.message = message;
+			this.millis = System.currentTimeMillis();
+			this.thread = Thread.currentThread();
+			this.argumentCount = 0;
+		}
+
+		void copyFrom(Record record)
+		{
+			logger = record.logger;
+			level = record.level;
+			message = record.message;
+			millis = record.millis;
+			thread = record.thread;
+			argumentCount = record.argumentCount;
+			System.arraycopy(record.keys, 0, keys, 0, argumentCount);
+			System.arraycopy(record.objects, 0, objects, 0, argumentCount);
+			System.arraycopy(record.values, 0, values, 0, argumentCount);
+		}
+	}
+
+	private Log(String name)
+	{
+		this.name = name;
+		this.level = parseLevel(System.getProperty("client.log." + name, System.getProperty("client.log.level", "info")));
+	}
+
+	/** Returns the logger of a name, e.g. of a component, creating it on first use. */
+	public static Log get(String name)
+	{
+		Log logger = LOGGERS.get(name);
+		return logger != null ? logger : LOGGERS.computeIfAbsent(name, Log::new);
+	}
+
+	/** Returns the level of a name (error, warn, info, debug, trace or off), INFO if unknown. */
+	public static int parseLevel(String name)
+	{
+		if ("off".equalsIgnoreCase(name))
+			return OFF;
+		for (int level = ERROR; level <= TRACE; level++)
+			if (LEVEL_NAMES[level].equalsIgnoreCase(name))
+				return level;
+		return INFO;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public int getLevel()
+	{
+		return level;
+	}
+
+	/** Sets the most detailed level logged; takes effect for all threads right away. */
+	public void setLevel(int level)
+	{
+		this.level = level;
+	}
+
+	public boolean isEnabled(int level)
+	{
+		return level <= this.level;
+	}
+
+	public boolean isDebugEnabled()
+	{
+		return DEBUG <= level;
+	}
+
+	public boolean isTraceEnabled()
+	{
+		return TRACE <= level;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Starts a record of the given level; add its arguments and fields, then call Record#log().
+	 * The record belongs to the calling thread and is reused by its next call, so do not log
+	 * while building one. Returns a record discarding everything if the level is disabled.
+	 * --------------------------------------------------------------------------------------------*/
+	public Record at(int level, String message)
+	{
+		if (!isEnabled(level))
+			return DISCARDED;
+		Record record = STAGED.get();
+		record.start(this, level, message);
+		return record;
+	}
+
+	public void error(String message)
+	{
+		at(ERROR, message).log();
+	}
+
+	public void error(String message, Object argument)
+	{
+		at(ERROR, message).arg(argument).log();
+	}
+
+	public void warn(String message)
+	{
+		at(WARN, message).log();
+	}
+
+	public void warn(String message, Object argument)
+	{
+		at(WARN, message).arg(argument).log();
+	}
+
+	public void info(String message)
+	{
+		at(INFO, message).log();
+	}
+
+	public void info(String message, Object argument)
+	{
+		at(INFO, message).arg(argument).log();
+	}
+
+	public void info(String message, Object first, Object second)
+	{
+		at(INFO, message).arg(first).arg(second).log();
+	}
+
+	public void debug(String message, Object argument)
+	{
+		at(DEBUG, message).arg(argument).log();
+	}
+
+	/** Returns the number of records discarded because the ring was full. */
+	public static long getDropped()
+	{
+		return APPENDER.getDropped();
+	}
+
+	/** Waits (up to a second) until the records logged so far are written, e.g. before exiting. */
+	public static void flush()
+	{
+		APPENDER.flush(1000);
+	}
+}
@@ -0,0 +1,187 @@
+package org.client.service;
+
+/**--------------------------------------------------------------------------------------------
+ * Media clock.
+ * Maps RTP timestamps onto the local System#nanoTime() clock. The offset between the two is
+ * the smallest transit time (arrival minus media time) of the fastest packets, so queuing delay
+ * does not leak into the mapping. Sender and receiver clocks drift apart - software senders
+ * pacing with sleep() by a few percent - so the minimum is tracked per window, the skew between
+ * consecutive window minima is extrapolated, and the offset follows at a bounded slew rate so
+ * presentation times never jump. A timestamp discontinuity beyond the resync threshold (stream
+ * switch, server restart) re-anchors the clock.
+ * Not thread safe: use from the playout thread.
+ * --------------------------------------------------------------------------------------------*/
+public class MediaClock
+{
+	private static final long NANOS_PER_SECOND = 1000000000L;
+
+	private int clockRate;
+	private final long window;				// ns per minimum window
+	private final long resyncThreshold;		// ns
+	private final double maxSlew;			// offset change per elapsed time
+
+	private boolean synced;
+	private int lastTimestamp;
+	private long extendedTimestamp;			// unwrapped, relative to the anchor packet
+	private long offset;					// local minus media time, ns
+	private long lastUpdate;
+
+	// windowed minimum transit
+	private long windowStart;
+	private long windowMin;
+	private long windowMinTime;
+	private long lastMin = Long.MAX_VALUE;	// minimum of the last complete window
+	private long lastMinTime;
+	private double skew;					// change of the minimum transit per ns
+	private boolean converging;				// until the skew is known, downward corrections apply at once
+
+	// statistics
+	private long resyncCount;
+
+	/**--------------------------------------------------------------------------------------------
+	 * @param clockRate - RTP timestamp units per second
+	 * @param windowMillis - length of a minimum tracking window
+	 * @param resyncMillis - transit change treated as a discontinuity
+	 * @param maxSlew - maximum offset correction per unit of elapsed time, e.g. 0.05 (50 ms/s)
+	 * --------------------------------------------------------------------------------------------*/
+	public MediaClock(int clockRate, long windowMillis, long resyncMillis, double maxSlew)
+	{
+		this.clockRate = clockRate;
+		this.window = windowMillis * 1000000L;
+		this.resyncThreshold = resyncMillis * 1000000L;
+		this.maxSlew = maxSlew;
+	}
+
+	public MediaClock(int clockRate)
+	{
+		this(clockRate, 1000, 3000, 0.05);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Updates the mapping with the arrival time of a packet.
+	 * --------------------------------------------------------------------------------------------*/
+	public void onPacket(int rtpTimestamp, long arrivalNanos)
+	{
+		if (!synced)
+		{
+			sync(rtpTimestamp, arrivalNanos);
+			return;
+		}
+
+		extendedTimestamp += rtpTimestamp - lastTimestamp;	// wraps correctly in int arithmetic
+		lastTimestamp = rtpTimestamp;
+
+		long transit = arrivalNanos - toMediaNanos(extendedTimestamp);
+		if (Math.abs(transit - offset) > resyncThreshold)
+		{
+			resyncCount++;
+			sync(rtpTimestamp, arrivalNanos);
+			return;
+		}
+
+		if (transit < windowMin)
+		{
+			windowMin = transit;
+			windowMinTime = arrivalNanos;
+		}
+		if (arrivalNanos - windowStart >= window)
+		{
+			if (lastMin != Long.MAX_VALUE && windowMinTime > lastMinTime)
+			{
+				double measured = (double) (windowMin - lastMin) / (windowMinTime - lastMinTime);
+				skew = converging ? measured : skew + 0.5 * (measured - skew);
+				skew = Math.max(-maxSlew, Math.min(maxSlew, skew));
+				converging = false;
+			}
+			lastMin = windowMin;
+			lastMinTime = windowMinTime;
+			windowMin = Long.MAX_VALUE;
+			windowStart = arrivalNanos;
+		}
+
+		// the path delay now, extrapolated from the minima seen
+		long base = windowMin == Long.MAX_VALUE ? Long.MAX_VALUE
+				: windowMin + (long) (skew * (arrivalNanos - windowMinTime));
+		if (lastMin != Long.MAX_VALUE)
+			base = Math.min(base, lastMin + (long) (skew * (arrivalNanos - lastMinTime)));
+
+		long step = (long) (maxSlew * (arrivalNanos - lastUpdate));
+		lastUpdate = arrivalNanos;
+
+		if (converging && base < offset)
+			offset = base;
+		else
+			offset += Math.max(-step, Math.min(step, base - offset));
+	}
+
+	private void sync(int rtpTimestamp, long arrivalNanos)
+	{
+		synced = true;
+		converging = true;
+		lastTimestamp = rtpTimestamp;
+		extendedTimestamp = 0;
+		offset = arrivalNanos;
+		lastUpdate = arrivalNanos;
+		windowStart = arrivalNanos;
+		windowMin = arrivalNanos;
+		windowMinTime = arrivalNanos;
+		lastMin = Long.MAX_VALUE;
+		skew = 0;
+	}
+
+	/** Converts timestamp units into ns without overflowing for long streams. */
+	private long toMediaNanos(long timestamp)
+	{
+		return timestamp / clockRate * NANOS_PER_SECOND + timestamp % clockRate * NANOS_PER_SECOND / clockRate;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns the local time at which media with the given timestamp left the sender, as seen
+	 * through the fastest path; add the playout delay to get its presentation time.
+	 * The timestamp is interpreted relative to the most recent one (within half the wrap range).
+	 * --------------------------------------------------------------------------------------------*/
+	public long toLocal(int rtpTimestamp)
+	{
+		return toMediaNanos(extendedTimestamp + (rtpTimestamp - lastTimestamp)) + offset;
+	}
+
+	/** Forgets the mapping, e.g. after a pause; the next packet re-anchors the clock. */
+	public void reset()
+	{
+		synced = false;
+	}
+
+	public boolean isSynced()
+	{
+		return synced;
+	}
+
+	/** Returns the current local minus media time offset, ns. */
+	public long getOffset()
+	{
+		return offset;
+	}
+
+	/** Returns the measured drift of the sender clock against the local clock, ppm. */
+	public double getDrift()
+	{
+		return skew * 1e6;
+	}
+
+	public long getResyncCount()
+	{
+		return resyncCount;
+	}
+
+	public int getClockRate()
+	{
+		return clockRate;
+	}
+
+	/** Changes the timestamp rate (e.g. as announced by the session description) and resets. */
+	public void setClockRate(int clockRate)
+	{
+		this.clockRate = clockRate;
+		reset();
+	}
+}
@@ -0,0 +1,15 @@
+package org.client.service;
+
+/**--------------------------------------------------------------------------------------------
+ * Base of the metrics kept in a MetricsRegistry: a Counter, a Gauge or a Histogram. Metrics
+ * are updated without locks from any thread and can be read at any time.
+ * --------------------------------------------------------------------------------------------*/
+public abstract class Metric
+{
+	public static final String COUNTER = "counter";
+	public static final String GAUGE = "gauge";
+	public static final String HISTOGRAM = "histogram";
+
+	/** Returns the kind of metric: #COUNTER, #GAUGE or #HISTOGRAM. */
+	public abstract String getType();
+}
@@ -0,0 +1,384 @@
+package org.client.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**--------------------------------------------------------------------------------------------
+ * Prometheus endpoint for the metrics of a set of sessions.
+ * Serves GET /metrics from an embedded HTTP server in the text exposition format (0.0.4): every
+ * metric of every session's MetricsRegistry, labelled with the session's SSRC and video.
+ * Counters get the _total suffix; metrics in ms or us are converted to seconds, histograms (in
+ * us) to cumulative buckets at powers of two (64 us to 33 s). Metric families and session
+ * labels are encoded once; a scrape renders straight into a reused byte buffer, so steady-state
+ * scrapes do not allocate (the HTTP exchange itself aside). Opt-in: only runs once started.
+ * --------------------------------------------------------------------------------------------*/
+public class MetricsExporter implements HttpHandler
+{
+	private static final Log LOG = Log.get("metrics");
+
+	private static final String PREFIX = "client_";
+	private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+	private static final int FIRST_BUCKET = 6;		// le = 2^6 - 1 us
+	private static final int LAST_BUCKET = 25;		// le = 2^25 - 1 us, then +Inf
+
+	private final List<StreamSession> sessions;		// live, e.g. SessionManager#getSessions()
+	private final ArrayList<Family> families = new ArrayList<Family>();
+	private final HashMap<String, Family> familiesByName = new HashMap<String, Family>();
+	private final IdentityHashMap<StreamSession, byte[]> labels = new IdentityHashMap<StreamSession, byte[]>();
+	private final Histogram.Snapshot histogram = new Histogram.Snapshot();
+	private final Output output = new Output();
+	private final int[] bucketIndexes = new int[LAST_BUCKET - FIRST_BUCKET + 1];	// last histogram bucket below each bound
+	private final byte[][] bucketBounds = new byte[LAST_BUCKET - FIRST_BUCKET + 1][];	// ,le="..."} of each bound
+
+	private HttpServer server;
+	private ExecutorService executor;
+
+	/** Metric family: one name, help and type, one sample (set) per session. */
+	private static final class Family
+	{
+		final String name;		// registry name
+		final String type;
+		final byte[] header;	// # HELP and # TYPE lines
+		final byte[] sample;	// exposition name, without suffixes
+		final long divisor;		// to seconds: 1000 for ms, 1000000 for us, 1 for unitless
+
+		Family(MetricsRegistry.Entry entry)
+		{
+			name = entry.name;
+			type = entry.metric.getType();
+			long unit = 1;
+			String base = entry.name;
+			if (base.endsWith("_ms"))
+				unit = 1000;
+			else if (base.endsWith("_us"))
+				unit = 1000000;
+			if (unit != 1)
+				base = base.substring(0, base.lastIndexOf('_')) + "_seconds";
+			divisor = unit;
+
+			String exposed = PREFIX + base + (Metric.COUNTER.equals(type) ? "_total" : "");
+			header = ("# HELP " + exposed + " " + entry.help.replace("\\", "\\\\").replace("\n", "\\n") + "\n"
+					  + "# TYPE " + exposed + " " + type + "\n").getBytes(StandardCharsets.UTF_8);
+			sample = exposed.getBytes(StandardCharsets.UTF_8);
+		}
+	}
+
+	/** @param sessions - the sessions to export, read at every scrape */
+	public MetricsExporter(List<StreamSession> sessions)
+	{
+		this.sessions = sessions;
+		for (int i = 0; i < bucketIndexes.length; i++)
+		{
+			long bound = 1L << (FIRST_BUCKET + i);
+			bucketIndexes[i] = Histogram.index(bound) - 1;
+			Output text = new Output();
+			text.ascii(",le=\"");
+			text.micros(bound - 1, 1000000);
+			text.ascii("\"} ");
+			bucketBounds[i] = text.toBytes();
+		}
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Starts serving /metrics on the port (0 for any free one) on a daemon thread.
+	 * --------------------------------------------------------------------------------------------*/
+	public synchronized void start(int port) throws IOException
+	{
+		if (server != null)
+			return;
+		executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "metrics-exporter");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		server = HttpServer.create(new InetSocketAddress(port), 0);
+		server.createContext("/metrics", this);
+		server.setExecutor(executor);
+		server.start();
+		LOG.info("Metrics served on http://localhost:{}/metrics", getPort());
+	}
+
+	public synchronized void stop()
+	{
+		if (server == null)
+			return;
+		server.stop(0);
+		executor.shutdownNow();
+		server = null;
+	}
+
+	/** Returns the port served on, or -1 when not started. */
+	public synchronized int getPort()
+	{
+		return server == null ? -1 : server.getAddress().getPort();
+	}
+
+	@Override
+	public void handle(HttpExchange exchange) throws IOException
+	{
+		try
+		{
+			if (!"GET".equals(exchange.getRequestMethod()) && !"HEAD".equals(exchange.getRequestMethod()))
+			{
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			synchronized (this)
+			{
+				int length = render();
+				exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+				if ("HEAD".equals(exchange.getRequestMethod()))
+				{
+					exchange.sendResponseHeaders(200, -1);
+					return;
+				}
+				exchange.sendResponseHeaders(200, length);
+				OutputStream body = exchange.getResponseBody();
+				body.write(output.buffer, 0, length);
+				body.close();
+			}
+		}
+		catch (IOException | RuntimeException ex)
+		{
+			LOG.error("Exception caught: {}", ex);
+		}
+		finally
+		{
+			exchange.close();
+		}
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Renders the exposition into the reused buffer.
+	 * @return the number of bytes rendered
+	 * --------------------------------------------------------------------------------------------*/
+	synchronized int render()
+	{
+		output.length = 0;
+		int sessionCount = 0;
+		for (int s = 0; s < sessions.size(); s++)
+		{
+			StreamSession session = session(s);
+			if (session == null)
+				break;
+			sessionCount++;
+			MetricsRegistry registry = session.getMetrics();
+			for (int e = 0; e < registry.size(); e++)
+			{
+				MetricsRegistry.Entry entry = registry.getEntry(e);
+				if (!familiesByName.containsKey(entry.name))
+				{
+					Family family = new Family(entry);
+					familiesByName.put(entry.name, family);
+					families.add(family);
+				}
+			}
+		}
+		if (labels.size() > sessionCount)
+			labels.keySet().retainAll(sessions);
+
+		for (int f = 0; f < families.size(); f++)
+		{
+			Family family = families.get(f);
+			output.bytes(family.header);
+			for (int s = 0; s < sessions.size(); s++)
+			{
+				StreamSession session = session(s);
+				if (session == null)
+					break;
+				Metric metric = session.getMetrics().get(family.name);
+				if (metric == null || !metric.getType().equals(family.type))
+					continue;
+				byte[] sessionLabels = labels(session);
+				if (metric instanceof Counter)
+					sample(family, "", sessionLabels).integer(((Counter) metric).get());
+				else if (metric instanceof Gauge)
+					sample(family, "", sessionLabels).decimal(((Gauge) metric).get() / family.divisor);
+				else if (metric instanceof Histogram)
+					histogram(family, sessionLabels, (Histogram) metric);
+				output.ascii("\n");
+			}
+		}
+		return output.length;
+	}
+
+	/** Writes the cumulative buckets, sum and count of a histogram; the last line is left open. */
+	private void histogram(Family family, byte[] sessionLabels, Histogram metric)
+	{
+		Histogram.Snapshot snapshot = metric.snapshot(histogram);
+		long cumulative = 0;
+		int bound = 0;
+		for (int i = 0; i <= bucketIndexes[bucketIndexes.length - 1]; i++)
+		{
+			cumulative += snapshot.counts[i];
+			if (i == bucketIndexes[bound])
+			{
+				output.bytes(family.sample).ascii("_bucket{").bytes(sessionLabels).bytes(bucketBounds[bound]);
+				output.integer(cumulative).ascii("\n");
+				bound++;
+			}
+		}
+		output.bytes(family.sample).ascii("_bucket{").bytes(sessionLabels).ascii(",le=\"+Inf\"} ");
+		output.integer(snapshot.getCount()).ascii("\n");
+		sample(family, "_sum", sessionLabels).micros(snapshot.getSum(), family.divisor);
+		output.ascii("\n");
+		sample(family, "_count", sessionLabels).integer(snapshot.getCount());
+	}
+
+	/** Starts a sample line: name, suffix and labels, up to the value. */
+	private Output sample(Family family, String suffix, byte[] sessionLabels)
+	{
+		return output.bytes(family.sample).ascii(suffix).ascii("{").bytes(sessionLabels).ascii("} ");
+	}
+
+	private StreamSession session(int index)
+	{
+		try
+		{
+			return sessions.get(index);
+		}
+		catch (IndexOutOfBoundsException ioobe)
+		{
+			// closed meanwhile
+			return null;
+		}
+	}
+
+	/** Returns the label pairs of a session, encoded on first use. */
+	private byte[] labels(StreamSession session)
+	{
+		byte[] encoded = labels.get(session);
+		if (encoded == null)
+		{
+			String video = session.getConfig().videoFileName;
+			Output text = new Output();
+			text.ascii("ssrc=\"").integer(session.getSsrc() & 0xFFFFFFFFL).ascii("\",video=\"")
+				.ascii(video == null ? "" : video.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n"))
+				.ascii("\"");
+			encoded = text.toBytes();
+			labels.put(session, encoded);
+		}
+		return encoded;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Growable byte buffer writing ASCII text and numbers without intermediate Strings.
+	 * --------------------------------------------------------------------------------------------*/
+	private static final class Output
+	{
+		byte[] buffer = new byte[8192];
+		int length;
+
+		private void ensure(int extra)
+		{
+			if (length + extra > buffer.length)
+				buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+		}
+
+		Output bytes(byte[] bytes)
+		{
+			ensure(bytes.length);
+			System.arraycopy(bytes, 0, buffer, length, bytes.length);
+			length += bytes.length;
+			return this;
+		}
+
+		/** Writes a String of 7-bit characters (others become '?'). */
+		Output ascii(String text)
+		{
+			ensure(text.length());
+			for (int i = 0; i < text.length(); i++)
+			{
+				char c = text.charAt(i);
+				buffer[length++] = (byte) (c < 128 ? c : '?');
+			}
+			return this;
+		}
+
+		Output integer(long value)
+		{
+			ensure(20);
+			if (value < 0)
+			{
+				if (value == Long.MIN_VALUE)
+					return ascii("-9223372036854775808");
+				buffer[length++] = '-';
+				value = -value;
+			}
+			int start = length;
+			do
+			{
+				buffer[length++] = (byte) ('0' + value % 10);
+				value /= 10;
+			}
+			while (value != 0);
+			// digits were written least significant first
+			for (int i = start, j = length - 1; i < j; i++, j--)
+			{
+				byte digit = buffer[i];
+				buffer[i] = buffer[j];
+				buffer[j] = digit;
+			}
+			return this;
+		}
+
+		/** Writes value / divisor with up to 6 decimals, e.g. us as seconds. */
+		Output micros(long value, long divisor)
+		{
+			if (divisor == 1)
+				return integer(value);
+			if (value < 0)
+			{
+				ascii("-");
+				value = -value;
+			}
+			integer(value / divisor);
+			long fraction = value % divisor;
+			if (fraction == 0)
+				return this;
+			ensure(7);
+			buffer[length++] = '.';
+			for (long digit = divisor / 10; digit > 0 && fraction > 0; digit /= 10)
+			{
+				buffer[length++] = (byte) ('0' + fraction / digit);
+				fraction %= digit;
+			}
+			return this;
+		}
+
+		/** Writes a double with up to 6 decimals, or NaN and +Inf/-Inf. */
+		Output decimal(double value)
+		{
+			if (Double.isNaN(value))
+				return ascii("NaN");
+			if (Double.isInfinite(value))
+				return ascii(value > 0 ? "+Inf" : "-Inf");
+			if (Math.abs(value) >= 9e12)
+				return integer((long) value);
+			return micros(Math.round(value * 1000000), 1000000);
+		}
+
+		byte[] toBytes()
+		{
+			return Arrays.copyOf(buffer, length);
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package org.client.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**--------------------------------------------------------------------------------------------
+ * Named metrics of a session (or any other component), in registration order.
+ * Registration is meant for setup time; reading walks a copy-on-write list, so the UI, RTCP
+ * and exporters can read every metric at any time without locks while the session threads
+ * keep updating them. Registering a name twice returns the metric registered first.
+ * --------------------------------------------------------------------------------------------*/
+public class MetricsRegistry
+{
+	private final ConcurrentHashMap<String, Entry> byName = new ConcurrentHashMap<String, Entry>();
+	private final CopyOnWriteArrayList<Entry> entries = new CopyOnWriteArrayList<Entry>();
+
+	/** Registered metric with its name and description. */
+	public static class Entry
+	{
+		public final String name;		// lower case with underscores, ending with the unit, e.g. decode_time_us
+		public final String help;
+		public final Metric metric;
+
+		Entry(String name, String help, Metric metric)
+		{
+			this.name = name;
+			this.help = help;
+			this.metric = metric;
+		}
+	}
+
+	public Counter counter(String name, String help)
+	{
+		return register(name, help, new Counter());
+	}
+
+	/** Registers a counter reading a monotonic total from the supplier. */
+	public Counter counter(String name, String help, LongSupplier supplier)
+	{
+		return register(name, help, new Counter(supplier));
+	}
+
+	/** Registers a gauge reading its value from the supplier. */
+	public Gauge gauge(String name, String help, DoubleSupplier supplier)
+	{
+		return register(name, help, new Gauge(supplier));
+	}
+
+	public Histogram histogram(String name, String help)
+	{
+		return register(name, help, new Histogram());
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Registers a metric owned by a component, e.g. the decode times of the DecodePipeline.
+	 * @return the metric, or the one registered before under that name
+	 * --------------------------------------------------------------------------------------------*/
+	@SuppressWarnings("unchecked")
+	public <T extends Metric> T register(String name, String help, T metric)
+	{
+		Entry entry = new Entry(name, help, metric);
+		Entry registered = byName.putIfAbsent(name, entry);
+		if (registered != null)
+		{
+			if (!registered.metric.getClass().equals(metric.getClass()))
+				throw new IllegalArgumentException("Metric " + name + " is a " + registered.metric.getType());
+			return (T) registered.metric;
+		}
+		entries.add(entry);
+		return metric;
+	}
+
+	/** Returns the metric registered under the name, or null. */
+	public Metric get(String name)
+	{
+		Entry entry = byName.get(name);
+		return entry == null ? null : entry.metric;
+	}
+
+	/** Returns the number of registered metrics. */
+	public int size()
+	{
+		return entries.size();
+	}
+
+	/** Returns a registered metric by registration order, without allocating (e.g. for exporters). */
+	public Entry getEntry(int index)
+	{
+		return entries.get(index);
+	}
+
+	/** Returns the registered metrics in registration order. */
+	public List<Entry> getEntries()
+	{
+		return Collections.unmodifiableList(entries);
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder text = new StringBuilder("[Metrics]");
+		String separator = " ";
+		for (Entry entry : entries)
+		{
+			text.append(separator).append(entry.name).append(": ");
+			if (entry.metric instanceof Histogram)
+				text.append('{').append(entry.metric).append('}');
+			else
+				text.append(entry.metric);
+			separator = ", ";
+		}
+		return text.toString();
+	}
+}
@@ -0,0 +1,54 @@
+package org.client.service;
+
+import org.client.model.RtpPayload;
+
+/**--------------------------------------------------------------------------------------------
+ * Depacketizer for payload formats carrying one whole frame per packet (and for payload types
+ * without a registered format): every payload is a frame.
+ * --------------------------------------------------------------------------------------------*/
+public class PassThroughDepacketizer implements Depacketizer
+{
+	private final FrameBufferPool framePool;
+	private long frameCount;
+
+	public PassThroughDepacketizer(FrameBufferPool framePool)
+	{
+		this.framePool = framePool;
+	}
+
+	@Override
+	public boolean push(RtpPayload payload, RtpPayload frame, long nowNanos)
+	{
+		frame.data = framePool.acquire(payload.length);
+		System.arraycopy(payload.data, 0, frame.data, 0, payload.length);
+		frame.length = payload.length;
+		frame.payloadType = payload.payloadType;
+		frame.marker = 1;
+		frame.sequenceNumber = payload.sequenceNumber;
+		frame.timeStamp = payload.timeStamp;
+		frameCount++;
+		return true;
+	}
+
+	@Override
+	public void expire(long nowNanos)
+	{
+	}
+
+	@Override
+	public void reset()
+	{
+	}
+
+	@Override
+	public long getFrameCount()
+	{
+		return frameCount;
+	}
+
+	@Override
+	public long getDiscardedCount()
+	{
+		return 0;
+	}
+}
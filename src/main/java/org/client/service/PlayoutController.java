@@ -0,0 +1,255 @@
+package org.client.service;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**--------------------------------------------------------------------------------------------
+ * Adaptive playout delay controller.
+ * Sizes the jitter buffer target from the recent distribution of packet delay variation: every
+ * packet entering the buffer contributes its transit time (insert time minus media timestamp)
+ * relative to the fastest packet in the window, and the target is a quantile of that spread
+ * plus a margin. The quantile rises with the loss rate at the playout point (late and missing
+ * packets), so bursts buy more headroom. The applied delay moves gradually - quickly upwards,
+ * slowly downwards - which plays media slightly slower or faster instead of freezing or
+ * skipping; every such adjustment is counted as a time-stretch event.
+ * Confined to the playout thread.
+ * --------------------------------------------------------------------------------------------*/
+public class PlayoutController
+{
+	private static final int WINDOW = 256;				// delay samples considered, packets
+	private static final double BASE_QUANTILE = 0.95;	// on a clean network
+	private static final double MAX_QUANTILE = 0.995;
+	private static final double LOSS_WEIGHT = 5.0;		// quantile increase per unit loss rate
+	private static final double GROW_RATE = 0.25;		// max delay increase per ms of playout (25% slow-down)
+	private static final double SHRINK_RATE = 0.05;		// max delay decrease per ms of playout (5% speed-up)
+	private static final double HYSTERESIS = 5;			// ms below the applied delay before shrinking
+	private static final double LOSS_SMOOTHING = 0.05;	// EWMA weight of a tick's loss rate
+
+	private final long minDelay;		// ms
+	private final long ceiling;			// ms
+	private final long margin;			// ms added to the quantile
+	private int clockRate;
+
+	// delay variation window
+	private final long[] transits = new long[WINDOW];	// µs
+	private final int[] histogram;						// ms buckets up to the ceiling
+	private int sampleCount;
+	private int sampleIndex;
+
+	// media timestamp unwrapping
+	private boolean timestampValid;
+	private int lastTimestamp;
+	private long extendedTimestamp;
+
+	// controller state
+	private double lossRate;
+	private double desiredDelay;		// ms
+	private double appliedDelay;		// ms
+	private long lastTickNanos;
+	private long lastPlayed;
+	private long lastLost;
+
+	// underrun detection
+	private long lastFrameNanos;
+	private double frameInterval;		// ms, EWMA of the media time between played frames
+	private boolean underrun;
+
+	// metrics
+	private long underruns;
+	private long expansions;
+	private long compressions;
+
+	/**--------------------------------------------------------------------------------------------
+	 * @param initialDelay - playout delay before enough samples were collected, ms
+	 * @param minDelay - lower bound of the target, ms
+	 * @param ceiling - upper bound of the target (latency ceiling), ms
+	 * @param margin - safety margin added to the delay quantile, ms
+	 * @param clockRate - RTP timestamp units per second
+	 * --------------------------------------------------------------------------------------------*/
+	public PlayoutController(long initialDelay, long minDelay, long ceiling, long margin, int clockRate)
+	{
+		this.minDelay = minDelay;
+		this.ceiling = Math.max(minDelay, ceiling);
+		this.margin = margin;
+		this.clockRate = clockRate;
+		histogram = new int[(int) this.ceiling + 1];
+		desiredDelay = appliedDelay = clamp(initialDelay);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Records the transit sample of a packet entering the jitter buffer.
+	 * --------------------------------------------------------------------------------------------*/
+	public void onPacket(int rtpTimestamp, long insertNanos)
+	{
+		if (!timestampValid)
+		{
+			timestampValid = true;
+			extendedTimestamp = 0;
+		}
+		else
+			extendedTimestamp += rtpTimestamp - lastTimestamp;	// wraps correctly in int arithmetic
+		lastTimestamp = rtpTimestamp;
+
+		long mediaMicros = extendedTimestamp * 1000000L / clockRate;
+		transits[sampleIndex] = TimeUnit.NANOSECONDS.toMicros(insertNanos) - mediaMicros;
+		sampleIndex = (sampleIndex + 1) % WINDOW;
+		if (sampleCount < WINDOW)
+			sampleCount++;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Updates the target once per playout tick and applies it to the jitter buffer.
+	 * @return the applied target delay, ms
+	 * --------------------------------------------------------------------------------------------*/
+	public long onTick(JitterBuffer<?> jitterBuffer, long nowNanos)
+	{
+		long played = jitterBuffer.getPlayedCount();
+		long lost = jitterBuffer.getLateDropCount() + jitterBuffer.getMissingCount();
+		updateLossRate(played - lastPlayed, lost - lastLost);
+		detectUnderrun(played - lastPlayed, jitterBuffer.getOccupancy(), nowNanos);
+		lastPlayed = played;
+		lastLost = lost;
+
+		double elapsed = lastTickNanos == 0 ? 0 : (nowNanos - lastTickNanos) / 1e6;
+		lastTickNanos = nowNanos;
+
+		if (sampleCount >= WINDOW / 8)
+			desiredDelay = clamp(quantile(Math.min(MAX_QUANTILE, BASE_QUANTILE + LOSS_WEIGHT * lossRate)) + margin);
+
+		// move gradually towards the desired delay
+		if (desiredDelay > appliedDelay)
+		{
+			appliedDelay = Math.min(desiredDelay, appliedDelay + Math.max(1, GROW_RATE * elapsed));
+			expansions++;
+		}
+		else if (desiredDelay < appliedDelay - HYSTERESIS)
+		{
+			appliedDelay = Math.max(desiredDelay, appliedDelay - Math.max(1, SHRINK_RATE * elapsed));
+			compressions++;
+		}
+
+		long target = Math.round(appliedDelay);
+		jitterBuffer.setTargetDelay(target);
+		return target;
+	}
+
+	private void updateLossRate(long played, long lost)
+	{
+		if (played + lost > 0)
+			lossRate += LOSS_SMOOTHING * ((double) lost / (played + lost) - lossRate);
+	}
+
+	/** Counts an underrun when nothing is left to play although a frame is overdue. */
+	private void detectUnderrun(long played, int occupancy, long nowNanos)
+	{
+		if (played > 0)
+		{
+			if (lastFrameNanos != 0)
+			{
+				double interval = (nowNanos - lastFrameNanos) / 1e6 / played;
+				frameInterval = frameInterval == 0 ? interval : frameInterval + 0.1 * (interval - frameInterval);
+			}
+			lastFrameNanos = nowNanos;
+			underrun = false;
+			return;
+		}
+
+		if (!underrun && lastFrameNanos != 0 && frameInterval > 0 && occupancy == 0
+				&& (nowNanos - lastFrameNanos) / 1e6 > 1.5 * frameInterval)
+		{
+			underrun = true;
+			underruns++;
+		}
+	}
+
+	/** Returns the given quantile of the transit spread in the window, ms. */
+	private double quantile(double quantile)
+	{
+		long fastest = Long.MAX_VALUE;
+		for (int i = 0; i < sampleCount; i++)
+			fastest = Math.min(fastest, transits[i]);
+
+		Arrays.fill(histogram, 0);
+		for (int i = 0; i < sampleCount; i++)
+			histogram[(int) Math.min(ceiling, (transits[i] - fastest) / 1000)]++;
+
+		long rank = (long) Math.ceil(quantile * sampleCount);
+		long seen = 0;
+		for (int bucket = 0; bucket < histogram.length; bucket++)
+		{
+			seen += histogram[bucket];
+			if (seen >= rank)
+				return bucket + 1;
+		}
+		return ceiling;
+	}
+
+	private double clamp(double delay)
+	{
+		return Math.max(minDelay, Math.min(ceiling, delay));
+	}
+
+	/** Forgets all samples, e.g. after a pause; the current delay is kept as the starting point. */
+	public void reset()
+	{
+		sampleCount = 0;
+		sampleIndex = 0;
+		timestampValid = false;
+		lastTickNanos = 0;
+		lastFrameNanos = 0;
+		underrun = false;
+	}
+
+	/** Changes the timestamp rate (e.g. as announced by the session description) and resets. */
+	public void setClockRate(int clockRate)
+	{
+		this.clockRate = clockRate;
+		reset();
+	}
+
+	/** Returns the applied target delay, ms. */
+	public long getTargetDelay()
+	{
+		return Math.round(appliedDelay);
+	}
+
+	/** Returns the delay the controller is converging to, ms. */
+	public long getDesiredDelay()
+	{
+		return Math.round(desiredDelay);
+	}
+
+	/** Returns the smoothed fraction of packets lost at the playout point. */
+	public double getLossRate()
+	{
+		return lossRate;
+	}
+
+	public long getCeiling()
+	{
+		return ceiling;
+	}
+
+	public long getUnderruns()
+	{
+		return underruns;
+	}
+
+	/** Returns the number of ticks that slowed playout down to grow the delay. */
+	public long getExpansions()
+	{
+		return expansions;
+	}
+
+	/** Returns the number of ticks that sped playout up to shrink the delay. */
+	public long getCompressions()
+	{
+		return compressions;
+	}
+
+	/** Returns the number of time-stretch adjustments in either direction. */
+	public long getTimeStretchEvents()
+	{
+		return expansions + compressions;
+	}
+}
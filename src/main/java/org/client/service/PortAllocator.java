@@ -0,0 +1,109 @@
+package org.client.service;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**--------------------------------------------------------------------------------------------
+ * RTP/RTCP port pair allocator.
+ * Binds an even RTP port and the next odd port for RTCP (RFC 3550 convention), scanning a
+ * port range until both binds succeed. Binding is the reservation, so concurrent sessions in
+ * one process (or several processes) never get the same pair. The scan resumes after the last
+ * allocated pair, so opening N sessions costs O(N) binds rather than O(N^2).
+ * --------------------------------------------------------------------------------------------*/
+public class PortAllocator
+{
+	private static final AtomicInteger nextPort = new AtomicInteger();	// scan start hint
+
+	/**--------------------------------------------------------------------------------------------
+	 * Bound RTP/RTCP channel pair (blocking mode).
+	 * --------------------------------------------------------------------------------------------*/
+	public static class PortPair
+	{
+		public final DatagramChannel rtpChannel;
+		public final DatagramChannel rtcpChannel;
+		public final int rtpPort;
+
+		PortPair(DatagramChannel rtpChannel, DatagramChannel rtcpChannel, int rtpPort)
+		{
+			this.rtpChannel = rtpChannel;
+			this.rtcpChannel = rtcpChannel;
+			this.rtpPort = rtpPort;
+		}
+
+		public int getRtcpPort()
+		{
+			return rtpPort + 1;
+		}
+
+		public void close()
+		{
+			closeQuietly(rtpChannel);
+			closeQuietly(rtcpChannel);
+		}
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Binds the given RTP port and the next one.
+	 * --------------------------------------------------------------------------------------------*/
+	public static PortPair bind(int rtpPort) throws IOException
+	{
+		DatagramChannel rtpChannel = DatagramChannel.open();
+		DatagramChannel rtcpChannel = null;
+		try
+		{
+			rtpChannel.bind(new InetSocketAddress(rtpPort));
+			rtcpChannel = DatagramChannel.open();
+			rtcpChannel.bind(new InetSocketAddress(rtpPort + 1));
+			return new PortPair(rtpChannel, rtcpChannel, rtpPort);
+		}
+		catch (IOException ioe)
+		{
+			closeQuietly(rtpChannel);
+			closeQuietly(rtcpChannel);
+			throw ioe;
+		}
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Binds the first free even/odd port pair within [firstPort, lastPort].
+	 * --------------------------------------------------------------------------------------------*/
+	public static PortPair allocate(int firstPort, int lastPort) throws IOException
+	{
+		int first = (firstPort + 1) & ~1;
+		int pairs = (lastPort - first + 1) / 2;
+		if (pairs <= 0)
+			throw new IOException("Invalid RTP port range " + firstPort + "-" + lastPort);
+
+		int start = Math.floorMod((nextPort.get() - first) / 2, pairs);
+		for (int i = 0; i < pairs; i++)
+		{
+			int port = first + 2 * ((start + i) % pairs);
+			try
+			{
+				PortPair pair = bind(port);
+				nextPort.set(port + 2);
+				return pair;
+			}
+			catch (IOException ioe)
+			{
+				// in use, try the next pair
+			}
+		}
+		throw new IOException("No free RTP/RTCP port pair in range " + firstPort + "-" + lastPort);
+	}
+
+	private static void closeQuietly(DatagramChannel channel)
+	{
+		try
+		{
+			if (channel != null)
+				channel.close();
+		}
+		catch (IOException ioe)
+		{
+			// nothing to do
+		}
+	}
+}
@@ -0,0 +1,168 @@
+package org.client.service;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import org.client.model.DecodedFrame;
+
+/**--------------------------------------------------------------------------------------------
+ * Presentation scheduler.
+ * Consumes the decode pipeline on its own thread and releases every decoded frame at its
+ * presentation time (DecodedFrame#presentationNanos), parking until the frame is due instead of
+ * polling on a fixed tick. Decoders unpark the thread whenever a frame completes. Frames that
+ * miss their deadline by more than the tolerance are dropped rather than shown late; frames
+ * without a presentation time are released as soon as they are decoded.
+ * --------------------------------------------------------------------------------------------*/
+public class PresentationScheduler implements Runnable
+{
+	private static final Log LOG = Log.get("presentation");
+
+	private final DecodePipeline decodePipeline;
+	private final Consumer<DecodedFrame> presenter;
+	private final ThreadFactory threadFactory;
+	private final long lateTolerance;		// ns
+
+	private volatile boolean running;
+	private volatile Thread thread;
+
+	// statistics
+	private volatile long presentedCount;
+	private volatile long lateDropCount;
+	private volatile long maxLateness;		// ns, of the frames presented
+
+	/**--------------------------------------------------------------------------------------------
+	 * @param decodePipeline - pipeline whose single consumer this scheduler becomes
+	 * @param presenter - receives due frames and owns them afterwards
+	 * @param threadFactory - creates the presentation thread
+	 * @param lateToleranceMillis - lateness beyond which a frame is dropped
+	 * --------------------------------------------------------------------------------------------*/
+	public PresentationScheduler(DecodePipeline decodePipeline, Consumer<DecodedFrame> presenter,
+			ThreadFactory threadFactory, long lateToleranceMillis)
+	{
+		this.decodePipeline = decodePipeline;
+		this.presenter = presenter;
+		this.threadFactory = threadFactory;
+		this.lateTolerance = lateToleranceMillis * 1000000L;
+	}
+
+	public synchronized void start()
+	{
+		if (running)
+			return;
+
+		running = true;
+		thread = threadFactory.newThread(this);
+		decodePipeline.setCompletionHandler(new Runnable() {
+			@Override
+			public void run()
+			{
+				Thread presentationThread = thread;
+				if (presentationThread != null)
+					LockSupport.unpark(presentationThread);
+			}
+		});
+		thread.start();
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Stops the presentation thread; frames not presented yet go back to the frame pool.
+	 * --------------------------------------------------------------------------------------------*/
+	public void stop()
+	{
+		Thread stopped;
+		synchronized (this)
+		{
+			if (!running)
+				return;
+			running = false;
+			stopped = thread;
+			thread = null;
+			decodePipeline.setCompletionHandler(null);
+		}
+
+		// join outside the monitor: a virtual thread must not block while holding it
+		LockSupport.unpark(stopped);
+		try
+		{
+			stopped.join(1000);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Override
+	public void run()
+	{
+		DecodedFrame frame = null;
+		while (running)
+		{
+			if (frame == null)
+			{
+				frame = decodePipeline.poll();
+				if (frame == null)
+				{
+					LockSupport.park(this);
+					continue;
+				}
+			}
+
+			long lateness = frame.presentationNanos == 0 ? 0 : System.nanoTime() - frame.presentationNanos;
+			if (lateness < 0)
+			{
+				LockSupport.parkNanos(this, -lateness);
+				continue;
+			}
+
+			if (lateness > lateTolerance)
+			{
+				lateDropCount++;
+				decodePipeline.getFramePool().release(frame);
+			}
+			else
+			{
+				if (lateness > maxLateness)
+					maxLateness = lateness;
+				presentedCount++;
+				try
+				{
+					presenter.accept(frame);
+				}
+				catch (RuntimeException ex)
+				{
+					// keep presenting
+					LOG.error("Exception caught: {}", ex);
+				}
+			}
+			frame = null;
+		}
+
+		if (frame != null)
+			decodePipeline.getFramePool().release(frame);
+	}
+
+	public boolean isRunning()
+	{
+		return running;
+	}
+
+	/** Returns the number of frames released to the presenter. */
+	public long getPresentedCount()
+	{
+		return presentedCount;
+	}
+
+	/** Returns the number of decoded frames dropped for missing their deadline. */
+	public long getLateDropCount()
+	{
+		return lateDropCount;
+	}
+
+	/** Returns the largest lateness of a presented frame, ns. */
+	public long getMaxLateness()
+	{
+		return maxLateness;
+	}
+}
@@ -0,0 +1,176 @@
+package org.client.service;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.client.model.RtcpPacket;
+import org.client.model.RtcpSenderReport;
+
+/**--------------------------------------------------------------------------------------------
+ * Per-SSRC RFC 3550 reception statistics of a session.
+ * RTP packets are accounted for on the receiver thread as they arrive, so jitter reflects the
+ * network rather than the playout cadence; RTCP Sender Reports feed LSR/DLSR; receiver reports
+ * are encoded from the current state of every source.
+ * The receiver thread also stamps the arrival time of each sequence number, for the playout
+ * thread to measure receive-to-display latency, and records the inter-arrival times.
+ * --------------------------------------------------------------------------------------------*/
+public class ReceptionStatistics
+{
+	private volatile int clockRate;
+	private final ConcurrentHashMap<Integer, SourceStatistics> sources = new ConcurrentHashMap<Integer, SourceStatistics>();
+	private final RtcpSenderReport senderReport = new RtcpSenderReport();	// RTCP receive thread only
+
+	private volatile SourceStatistics lastSource;	// receiver thread fast path, usually the only source
+	private volatile long firstArrivalNanos;		// arrival of the first RTP packet, 0 before
+
+	private static final int ARRIVAL_SLOTS = 1024;	// well beyond the packets waiting in ring and jitter buffer
+	private final AtomicLongArray arrivals = new AtomicLongArray(ARRIVAL_SLOTS);	// by sequence number
+	private final Histogram interArrivalTimes = new Histogram();	// us between consecutive packets
+	private long lastArrivalNanos;					// receiver thread only
+
+	/** @param clockRate - RTP timestamp units per second of the received media */
+	public ReceptionStatistics(int clockRate)
+	{
+		this.clockRate = clockRate;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Accounts for a received RTP datagram (position to limit); the buffer is not modified.
+	 * --------------------------------------------------------------------------------------------*/
+	public void onRtpPacket(ByteBuffer datagram, long arrivalNanos)
+	{
+		int offset = datagram.position();
+		if (datagram.remaining() < 12 || (datagram.get(offset) & 0xC0) != 0x80)
+			return;
+
+		if (firstArrivalNanos == 0)
+			firstArrivalNanos = arrivalNanos;
+		else
+			interArrivalTimes.record((arrivalNanos - lastArrivalNanos) / 1000);
+		lastArrivalNanos = arrivalNanos;
+
+		short sequenceNumber = datagram.getShort(offset + 2);
+		arrivals.lazySet(sequenceNumber & (ARRIVAL_SLOTS - 1), arrivalNanos);
+		int ssrc = datagram.getInt(offset + 8);
+		source(ssrc).onPacket(sequenceNumber, datagram.getInt(offset + 4), arrivalNanos);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Accounts for a received RTCP datagram; only Sender Reports are of interest.
+	 * --------------------------------------------------------------------------------------------*/
+	public void onRtcpPacket(ByteBuffer datagram, long arrivalNanos)
+	{
+		if (senderReport.parse(datagram))
+			source(senderReport.ssrc).onSenderReport(senderReport.getMiddleNtp(), arrivalNanos);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Writes a Receiver Report with one block per source (at most 31) at the buffer position.
+	 * @param ssrc - SSRC of this receiver
+	 * @return the number of bytes written
+	 * --------------------------------------------------------------------------------------------*/
+	public int writeReceiverReport(ByteBuffer buffer, int ssrc, long nowNanos)
+	{
+		int count = Math.min(RtcpPacket.MAX_REPORT_COUNT, sources.size());
+		int length = 8 + count * RtcpPacket.REPORT_BLOCK_SIZE;
+		int start = buffer.position();
+		RtcpPacket.writeHeader(buffer, RtcpPacket.RR, count, length, ssrc);
+
+		int written = 0;
+		for (SourceStatistics source : sources.values())
+		{
+			if (written == count)
+				break;
+			source.writeReportBlock(buffer, nowNanos);
+			written++;
+		}
+
+		// a source added meanwhile is reported next time; fix the header if one went missing
+		if (written < count)
+		{
+			length = 8 + written * RtcpPacket.REPORT_BLOCK_SIZE;
+			buffer.position(start);
+			RtcpPacket.writeHeader(buffer, RtcpPacket.RR, written, length, ssrc);
+			buffer.position(start + length);
+		}
+		return length;
+	}
+
+	private SourceStatistics source(int ssrc)
+	{
+		SourceStatistics source = lastSource;
+		if (source != null && source.getSsrc() == ssrc)
+			return source;
+
+		source = sources.get(ssrc);
+		if (source == null)
+		{
+			SourceStatistics created = new SourceStatistics(ssrc, clockRate);
+			source = sources.putIfAbsent(ssrc, created);
+			if (source == null)
+				source = created;
+		}
+		lastSource = source;
+		return source;
+	}
+
+	/** Returns the source of the most recent packet, or null before the first one. */
+	public SourceStatistics getActiveSource()
+	{
+		return lastSource;
+	}
+
+	/** Returns the System.nanoTime() the first RTP packet arrived at, 0 before it. */
+	public long getFirstArrivalNanos()
+	{
+		return firstArrivalNanos;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns the System.nanoTime() the packet with the given sequence number arrived at, as
+	 * long as fewer than 1024 packets arrived since; 0 if unknown.
+	 * --------------------------------------------------------------------------------------------*/
+	public long getArrivalNanos(int sequenceNumber)
+	{
+		return arrivals.get(sequenceNumber & (ARRIVAL_SLOTS - 1));
+	}
+
+	/** Adds the inter-arrival times to a registry. */
+	public void registerMetrics(MetricsRegistry registry)
+	{
+		registry.register("inter_arrival_us", "Time between consecutive RTP packets", interArrivalTimes);
+	}
+
+	/** Returns the histogram of the times between consecutive RTP packets, us. */
+	public Histogram getInterArrivalTimes()
+	{
+		return interArrivalTimes;
+	}
+
+	public Collection<SourceStatistics> getSources()
+	{
+		return Collections.unmodifiableCollection(sources.values());
+	}
+
+	public int getClockRate()
+	{
+		return clockRate;
+	}
+
+	/** Changes the timestamp rate of the sources received from now on; call before the first packet. */
+	public void setClockRate(int clockRate)
+	{
+		this.clockRate = clockRate;
+	}
+
+	/** Forgets all sources, e.g. when a new stream is set up. */
+	public void reset()
+	{
+		sources.clear();
+		lastSource = null;
+		firstArrivalNanos = 0;
+	}
+}
@@ -0,0 +1,143 @@
+package org.client.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.ThreadFactory;
+
+/**--------------------------------------------------------------------------------------------
+ * RTCP receiver.
+ * Reads the RTCP datagrams the server sends to the session's RTCP port (Sender Reports
+ * carrying the NTP/RTP timestamp pair) into the session's reception statistics. Runs either on
+ * a selector loop, with the channel in non-blocking mode, or as a blocking loop on a thread of
+ * its own. The channel is shared with the RTCP sender and is not closed here.
+ * --------------------------------------------------------------------------------------------*/
+public class RtcpReceiver implements SelectorLoop.Handler
+{
+	private static final Log LOG = Log.get("rtcp");
+
+	private static final int MAX_RTCP_SIZE = 1500;
+
+	private final DatagramChannel channel;
+	private final ReceptionStatistics statistics;
+	private final ByteBuffer buffer = ByteBuffer.allocate(MAX_RTCP_SIZE);	// receive thread only
+
+	private SelectorLoop loop;
+	private Thread thread;
+	private volatile boolean running;
+	private volatile long receivedPackets;
+
+	public RtcpReceiver(DatagramChannel channel, ReceptionStatistics statistics)
+	{
+		this.channel = channel;
+		this.statistics = statistics;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Starts receiving on the loop; the channel must be in non-blocking mode.
+	 * --------------------------------------------------------------------------------------------*/
+	public synchronized void start(SelectorLoop loop)
+	{
+		if (running)
+			return;
+
+		running = true;
+		this.loop = loop;
+		loop.register(this);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Starts a blocking receive loop on a thread of the factory; the channel must be blocking.
+	 * --------------------------------------------------------------------------------------------*/
+	public synchronized void start(ThreadFactory threadFactory)
+	{
+		if (running)
+			return;
+
+		running = true;
+		thread = threadFactory.newThread(new Runnable() {
+			@Override
+			public void run()
+			{
+				receiveBlocking();
+			}
+		});
+		thread.start();
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Stops receiving; a blocking loop ends when the channel is closed.
+	 * --------------------------------------------------------------------------------------------*/
+	public synchronized void stop()
+	{
+		running = false;
+		if (loop != null)
+		{
+			loop.deregister(this);
+			loop = null;
+		}
+		thread = null;
+	}
+
+	@Override
+	public void onReadable()
+	{
+		try
+		{
+			long arrivalNanos = System.nanoTime();
+			while (true)
+			{
+				buffer.clear();
+				if (channel.receive(buffer) == null)
+					break;
+				buffer.flip();
+				receivedPackets++;
+				statistics.onRtcpPacket(buffer, arrivalNanos);
+			}
+		}
+		catch (IOException ioe)
+		{
+			if (channel.isOpen())
+				LOG.error("Exception caught: {}", ioe);
+		}
+	}
+
+	private void receiveBlocking()
+	{
+		while (running)
+		{
+			try
+			{
+				buffer.clear();
+				channel.receive(buffer);
+				buffer.flip();
+				receivedPackets++;
+				statistics.onRtcpPacket(buffer, System.nanoTime());
+			}
+			catch (IOException ioe)
+			{
+				if (!channel.isOpen())
+					break;
+				LOG.error("Exception caught: {}", ioe);
+			}
+		}
+	}
+
+	@Override
+	public void onDeregistered()
+	{
+		// nothing pooled
+	}
+
+	@Override
+	public DatagramChannel getChannel()
+	{
+		return channel;
+	}
+
+	/** Returns the number of RTCP datagrams received. */
+	public long getReceivedPackets()
+	{
+		return receivedPackets;
+	}
+}
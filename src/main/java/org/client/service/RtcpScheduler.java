@@ -0,0 +1,95 @@
+package org.client.service;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**--------------------------------------------------------------------------------------------
+ * Times the RTCP receiver reports of the sessions sharing a scheduled executor.
+ * Intervals follow RFC 3550 6.3.1 (A.7): reports of all reporting sessions together stay
+ * within the RTCP share of the session bandwidth, receivers getting 3/4 of it. The sessions of
+ * one scheduler are counted as the receivers of a single RTP session with the server as its
+ * sender, so the interval of every session grows with their number and the report rate of
+ * the whole client stays within the RTCP share of one stream. Each interval is randomized to
+ * [0.5, 1.5] times the computed one, so sessions that started together drift apart instead of
+ * reporting in bursts, and divided by e - 3/2 to make up for timer reconsideration (RFC 3550
+ * 6.3.3), which RtcpService applies when the timer fires: a report is only sent if it is due
+ * by a newly drawn interval as well, so on average it waits longer than the first draw.
+ * --------------------------------------------------------------------------------------------*/
+public class RtcpScheduler
+{
+	private static final double COMPENSATION = Math.E - 1.5;
+	private static final double RECEIVER_SHARE = 0.75;	// of the RTCP bandwidth while senders are 1/4 of the members at most
+
+	private final ScheduledExecutorService executor;
+	private final AtomicInteger reporters = new AtomicInteger();	// sessions sending reports
+
+	/**--------------------------------------------------------------------------------------------
+	 * @param executor - shared executor the reports are sent on; sending one never blocks it (see
+	 * StreamSession#sendRtcp())
+	 * --------------------------------------------------------------------------------------------*/
+	public RtcpScheduler(ScheduledExecutorService executor)
+	{
+		this.executor = executor;
+	}
+
+	/** Counts a session starting to send reports. */
+	void join()
+	{
+		reporters.incrementAndGet();
+	}
+
+	/** Counts a session no longer sending reports. */
+	void leave()
+	{
+		reporters.decrementAndGet();
+	}
+
+	/** Returns the number of sessions sending reports. */
+	public int getReporters()
+	{
+		return reporters.get();
+	}
+
+	ScheduledFuture<?> schedule(Runnable report, long delayNanos)
+	{
+		return executor.schedule(report, delayNanos, TimeUnit.NANOSECONDS);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns the randomized delay of the next report of a session, ns.
+	 * @param averageSize - average compound RTCP packet size, including UDP and IP headers, bytes
+	 * @param sessionBandwidth - bandwidth of one session, bytes/s, or 0 if not known yet
+	 * @param fraction - share of the session bandwidth RTCP may take (RFC 3550: 0.05)
+	 * @param minInterval - interval never undercut, ms (RFC 3550: 5000, halved for the first report)
+	 * @param initial - true before the first report of the session
+	 * --------------------------------------------------------------------------------------------*/
+	public long nextInterval(double averageSize, double sessionBandwidth, double fraction, long minInterval, boolean initial)
+	{
+		return (long) (interval(Math.max(1, reporters.get()), 1, averageSize, sessionBandwidth * fraction,
+				initial ? minInterval / 2.0 : minInterval) * (ThreadLocalRandom.current().nextDouble() + 0.5)
+				/ COMPENSATION * 1000000);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns the deterministic RFC 3550 report interval of a member that did not send, ms.
+	 * @param rtcpBandwidth - bytes/s of RTCP for all members together, 0 when unknown
+	 * --------------------------------------------------------------------------------------------*/
+	static double interval(int receivers, int senders, double averageSize, double rtcpBandwidth, double minInterval)
+	{
+		if (rtcpBandwidth <= 0)
+			return minInterval;
+
+		int members = receivers + senders;
+		int sharing = members;
+		if (senders <= members * 0.25)
+		{
+			// receivers share 3/4 of the bandwidth among themselves
+			rtcpBandwidth *= RECEIVER_SHARE;
+			sharing = receivers;
+		}
+		return Math.max(minInterval, averageSize * sharing / rtcpBandwidth * 1000);
+	}
+}
@@ -0,0 +1,155 @@
+package org.client.service;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ScheduledFuture;
+import java.util.function.BiConsumer;
+
+import org.client.model.RtcpPacket;
+
+/**----------------------------------------------------------------------------------------------
+ * RtcpSender implementation.
+ * Is responsible for sending RTCP control packets for QoS feedback.
+ * Reports are timed by an RtcpScheduler on a shared scheduled executor, at randomized RFC 3550
+ * intervals with timer reconsideration (A.7 OnExpire): when the timer fires the interval is
+ * computed anew, from the current number of reporting sessions and bandwidth, and a report only
+ * goes out if it is due by that interval too, else the timer is set to the new time. Reports are
+ * encoded into one preallocated buffer per session. Sending never blocks the
+ * scheduler's thread: a report that cannot go out right away counts as failed.
+ * ----------------------------------------------------------------------------------------------*/
+public class RtcpService
+{
+	private static final Log LOG = Log.get("rtcp");
+	private static final int IP_UDP_HEADER_SIZE = 28;	// counted into the average report size (IPv4)
+
+	StreamSession session;
+	private final RtcpScheduler scheduler;
+
+	private final ByteBuffer reportBuffer = ByteBuffer.allocate(8 + RtcpPacket.MAX_REPORT_COUNT * RtcpPacket.REPORT_BLOCK_SIZE);
+	private InetSocketAddress serverAddress;	// RTCP destination, resolved on first send
+	private final Counter sentReports = new Counter();
+	private final Counter failedReports = new Counter();
+	private volatile long interval;				// last computed interval, ns
+	private final BiConsumer<Void, Throwable> onSent = (sent, failure) -> {
+		if (failure == null)
+			sentReports.increment();
+		else
+		{
+			failedReports.increment();
+			LOG.warn("RTCP report not sent: {}", failure);
+		}
+	};
+
+	// guarded by this, reports are sent holding it too
+	private ReportTask currentTask;				// reports of the current start, null when stopped
+	private ScheduledFuture<?> scheduledReport;
+	private double averageSize = 8 + RtcpPacket.REPORT_BLOCK_SIZE + IP_UDP_HEADER_SIZE;	// bytes (RFC 3550 avg_rtcp_size)
+	private boolean initial;					// no report sent since started
+	private long lastReport;					// System.nanoTime() of the last report, or of the start (RFC 3550 tp)
+
+	/**----------------------------------------------------------------------------------------------
+	 * Reports of one start, rescheduling themselves until stopped; a later start begins new ones.
+	 * ----------------------------------------------------------------------------------------------*/
+	private class ReportTask implements Runnable
+	{
+		@Override
+		public void run()
+		{
+			sendReport(this);
+		}
+	}
+
+	public RtcpService(StreamSession session, RtcpScheduler scheduler)
+	{
+		this.session = session;
+		this.scheduler = scheduler;
+	}
+
+	/** Registers the report counters and the current interval. */
+	public void registerMetrics(MetricsRegistry registry)
+	{
+		registry.register("rtcp_reports_sent", "RTCP receiver reports sent", sentReports);
+		registry.register("rtcp_reports_failed", "RTCP receiver reports that could not be sent", failedReports);
+		registry.gauge("rtcp_interval_ms", "Randomized interval before the next RTCP report", () -> interval / 1e6);
+	}
+
+	public long getSentReports()
+	{
+		return sentReports.get();
+	}
+
+	public long getFailedReports()
+	{
+		return failedReports.get();
+	}
+
+	/**----------------------------------------------------------------------------------------------
+	 * Sends an RFC 3550 Receiver Report with a block for every source received.
+	 * ----------------------------------------------------------------------------------------------*/
+	private synchronized void sendReport(ReportTask task)
+	{
+		// a report of a stopped start may still have been running
+		if (task != currentTask)
+			return;
+
+		// reconsideration: the members or the bandwidth may have changed since the timer was set
+		long now = System.nanoTime();
+		long due = lastReport + nextInterval();
+		if (due - now > 0)
+		{
+			scheduledReport = scheduler.schedule(currentTask, due - now);
+			return;
+		}
+
+		if (serverAddress == null)
+			serverAddress = new InetSocketAddress(session.getServerIp(), session.getConfig().rtcpServerPort);
+
+		reportBuffer.clear();
+		int length = session.getReceptionStatistics().writeReceiverReport(reportBuffer, session.getSsrc(), System.nanoTime());
+		reportBuffer.flip();
+
+		// the packet is copied or sent before the call returns, the buffer may be reused
+		session.sendRtcp(reportBuffer, serverAddress).whenComplete(onSent);
+
+		averageSize = (length + IP_UDP_HEADER_SIZE) / 16.0 + averageSize * 15 / 16;
+		initial = false;
+		lastReport = now;
+		scheduledReport = scheduler.schedule(currentTask, nextInterval());
+	}
+
+	/** Returns a new randomized interval and keeps it as the current one, ns (lock held). */
+	private long nextInterval()
+	{
+		SessionConfig config = session.getConfig();
+		double bandwidth = config.rtcpSessionBandwidth > 0 ? config.rtcpSessionBandwidth : session.getStats().getDataRate();
+		interval = scheduler.nextInterval(averageSize, bandwidth, config.rtcpBandwidthFraction, config.rtcpMinInterval, initial);
+		return interval;
+	}
+
+	/**----------------------------------------------------------------------------------------------
+	 * Start sending RTCP packets.
+	 * ----------------------------------------------------------------------------------------------*/
+	public synchronized void startSend()
+	{
+		if (currentTask != null)
+			return;
+		currentTask = new ReportTask();
+		initial = true;
+		scheduler.join();
+		lastReport = System.nanoTime();
+		scheduledReport = scheduler.schedule(currentTask, nextInterval());
+	}
+
+	/**----------------------------------------------------------------------------------------------
+	 * Stop sending RTCP packets.
+	 * ----------------------------------------------------------------------------------------------*/
+	public synchronized void stopSend()
+	{
+		if (currentTask == null)
+			return;
+		currentTask = null;
+		scheduler.leave();
+		scheduledReport.cancel(false);
+		scheduledReport = null;
+	}
+}
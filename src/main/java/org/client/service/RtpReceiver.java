@@ -0,0 +1,33 @@
+package org.client.service;
+
+import java.nio.ByteBuffer;
+
+/**--------------------------------------------------------------------------------------------
+ * RTP receive transport.
+ * Implementations drain datagrams on a receive thread (or the thread reading the RTSP connection,
+ * when interleaved) into pooled buffers (position 0, limit = datagram length) and publish them
+ * through a single-producer ring buffer.
+ * The consumer owns every polled buffer and must release it back to #getPool().
+ * --------------------------------------------------------------------------------------------*/
+public interface RtpReceiver
+{
+	/** Starts receiving (no-op if already running). */
+	void start();
+
+	/** Stops receiving and waits for the receive thread to finish. */
+	void stop();
+
+	boolean isRunning();
+
+	/** Returns the total number of datagrams read from the network. */
+	long getReceivedPackets();
+
+	/** Returns the ring buffer this receiver feeds. */
+	SpscRingBuffer<ByteBuffer> getRing();
+
+	/** Returns the pool the polled buffers must be released to. */
+	ByteBufferPool getPool();
+
+	/** Sets the statistics every datagram is accounted to on arrival; call before #start(). */
+	void setStatistics(ReceptionStatistics statistics);
+}
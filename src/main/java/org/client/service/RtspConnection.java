@@ -0,0 +1,554 @@
+package org.client.service;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.client.model.RtspResponse;
+
+/**--------------------------------------------------------------------------------------------
+ * Asynchronous RTSP connection over a SocketChannel.
+ * Requests are written by the calling thread and return a future completed with the response
+ * carrying the same CSeq, so any number of requests can be pipelined. Responses are read either
+ * on a selector loop, with the channel in non-blocking mode, or by a blocking loop on a thread
+ * of its own, and parsed incrementally; interleaved RTP/RTCP packets go to the interleaved
+ * handler. Futures complete on the reading thread: dependent actions must not block it.
+ * Requests fail with a TimeoutException if unanswered, and with an IOException when the
+ * connection breaks.
+ * --------------------------------------------------------------------------------------------*/
+class RtspConnection implements SelectorLoop.Handler, RtspResponseParser.Listener
+{
+	private static final Log LOG = Log.get("rtsp");
+
+	/**--------------------------------------------------------------------------------------------
+	 * Receives packets interleaved on the connection (reading thread).
+	 * --------------------------------------------------------------------------------------------*/
+	interface InterleavedHandler
+	{
+		/** The packet is only valid during the call. */
+		void onInterleaved(int channel, ByteBuffer packet);
+	}
+
+	static final String CRLF = "\r\n";
+	private static final int READ_BUFFER_SIZE = 16384;
+	private static final long WRITE_TIMEOUT = 2000000000L;	// full send buffer wait, ns
+
+	private final String uri;						// request URI
+	private final boolean legacyFraming;			// no empty line after the headers
+	private final SelectorLoop loop;				// null for a blocking read thread
+	private final ThreadFactory threadFactory;		// connect and blocking read threads
+	private final ScheduledExecutorService timer;	// response timeouts
+	private final long responseTimeout;				// ms
+	private final long idleTimeout;					// ms
+	private final RtspResponseParser parser;		// used holding its lock, also by the timer
+	private ScheduledFuture<?> responseEnd;			// ends a response without empty line, guarded by parser
+
+	private SocketChannel channel;
+	private volatile boolean closed;
+	private ByteBuffer input = ByteBuffer.allocate(READ_BUFFER_SIZE);	// reading thread only
+	private volatile InterleavedHandler interleavedHandler;
+
+	private final ReentrantLock writeLock = new ReentrantLock();
+	private final StringBuilder requestText = new StringBuilder(256);	// guarded by writeLock
+	private ByteBuffer frame = emptyFrame();							// unsent rest of the last packet, guarded by writeLock
+	private int sequenceNumber;											// last CSeq sent, guarded by writeLock
+	private final AtomicBoolean handingOver = new AtomicBoolean();		// a blocking connection's packet write is running
+	private ByteBuffer handedOver = emptyFrame();						// its frame, guarded by handingOver
+
+	private final Map<Integer, Pending> pending = new LinkedHashMap<Integer, Pending>();	// by CSeq, in send order
+
+	/** Request waiting for its response. */
+	private static class Pending
+	{
+		final CompletableFuture<RtspResponse> future = new CompletableFuture<RtspResponse>();
+		ScheduledFuture<?> timeout;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * @param uri - the request URI (presentation or stream)
+	 * @param legacyFraming - omit the empty line ending requests and accept responses without it
+	 * @param loop - selector loop reading the connection, or null for a blocking read thread
+	 * @param threadFactory - factory of the connecting (and blocking read) thread
+	 * @param timer - executor timing the response timeouts
+	 * @param responseTimeout - time a request waits for its response, ms
+	 * @param idleTimeout - time without data that ends a response lacking the empty line, ms
+	 * --------------------------------------------------------------------------------------------*/
+	RtspConnection(String uri, boolean legacyFraming, SelectorLoop loop, ThreadFactory threadFactory,
+			ScheduledExecutorService timer, long responseTimeout, long idleTimeout)
+	{
+		this.uri = uri;
+		this.legacyFraming = legacyFraming;
+		this.loop = loop;
+		this.threadFactory = threadFactory;
+		this.timer = timer;
+		this.responseTimeout = responseTimeout;
+		this.idleTimeout = idleTimeout;
+		this.parser = new RtspResponseParser(this, legacyFraming);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Resolves the server and connects on a thread of the factory, which then keeps reading in
+	 * blocking mode or hands the channel over to the selector loop.
+	 * @return the server address once connected
+	 * --------------------------------------------------------------------------------------------*/
+	CompletableFuture<InetSocketAddress> connect(final String host, final int port)
+	{
+		final CompletableFuture<InetSocketAddress> connected = new CompletableFuture<InetSocketAddress>();
+		threadFactory.newThread(new Runnable() {
+			@Override
+			public void run()
+			{
+				InetSocketAddress address = new InetSocketAddress(host, port);
+				try
+				{
+					if (address.isUnresolved())
+						throw new UnknownHostException(host);
+					SocketChannel socketChannel = SocketChannel.open(address);
+					socketChannel.socket().setTcpNoDelay(true);
+					if (loop != null)
+						socketChannel.configureBlocking(false);
+					writeLock.lock();
+					try
+					{
+						channel = socketChannel;
+					}
+					finally
+					{
+						writeLock.unlock();
+					}
+					if (closed)
+					{
+						socketChannel.close();
+						throw new IOException("RTSP connection closed");
+					}
+				}
+				catch (IOException ioe)
+				{
+					connected.completeExceptionally(ioe);
+					return;
+				}
+
+				if (loop != null)
+				{
+					loop.register(RtspConnection.this);
+					connected.complete(address);
+				}
+				else
+				{
+					connected.complete(address);
+					readBlocking();
+				}
+			}
+		}).start();
+		return connected;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Sends a request; the connection adds the request line and the CSeq header.
+	 * @param method - e.g. SETUP
+	 * @param headers - further header lines, each ending with CRLF
+	 * @return the response with the same CSeq
+	 * --------------------------------------------------------------------------------------------*/
+	CompletableFuture<RtspResponse> send(String method, String headers)
+	{
+		writeLock.lock();
+		try
+		{
+			if (channel == null || closed)
+				return failed(new IOException("RTSP connection not open"));
+
+			final int cseq = ++sequenceNumber;
+			Pending request = new Pending();
+			request.timeout = timer.schedule(new Runnable() {
+				@Override
+				public void run()
+				{
+					complete(cseq, null, new TimeoutException("No response to RTSP CSeq " + cseq));
+				}
+			}, responseTimeout, TimeUnit.MILLISECONDS);
+			synchronized (pending)
+			{
+				pending.put(cseq, request);
+			}
+
+			requestText.setLength(0);
+			requestText.append(method).append(' ').append(uri).append(" RTSP/1.0").append(CRLF);
+			requestText.append("CSeq: ").append(cseq).append(CRLF);
+			requestText.append(headers);
+			if (!legacyFraming)
+				requestText.append(CRLF);
+			try
+			{
+				// a packet started must be finished first, the server would lose the framing
+				write(frame);
+				write(ByteBuffer.wrap(requestText.toString().getBytes(StandardCharsets.ISO_8859_1)));
+			}
+			catch (IOException ioe)
+			{
+				complete(cseq, null, ioe);
+			}
+			return request.future;
+		}
+		finally
+		{
+			writeLock.unlock();
+		}
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Sends a packet on an interleaved channel ('$', channel, length) without blocking the
+	 * calling thread, so it may be a shared one; the packet is copied before the call returns.
+	 * A non-blocking connection writes it right away, a packet the send buffer does not take whole
+	 * or a request being written make it fail (the rest of a partly written packet goes out
+	 * before the next one). A blocking connection hands the write over to a thread of its own,
+	 * failing while the previous packet is still being written.
+	 * @return completes once the packet is written
+	 * --------------------------------------------------------------------------------------------*/
+	CompletableFuture<Void> sendInterleaved(int channelId, ByteBuffer packet)
+	{
+		if (loop == null)
+			return handOverInterleaved(channelId, packet);
+		if (!writeLock.tryLock())
+			return failed(new IOException("RTSP connection busy"));
+		try
+		{
+			if (channel == null || closed)
+				return failed(new IOException("RTSP connection not open"));
+			if (frame.hasRemaining())
+				channel.write(frame);
+			if (frame.hasRemaining())
+				return failed(new IOException("RTSP send buffer full"));
+
+			frame = putFrame(frame, channelId, packet);
+			channel.write(frame);
+			if (frame.hasRemaining())
+			{
+				// keep only a packet started, one not written at all is dropped
+				if (frame.position() == 0)
+					frame.limit(0);
+				return failed(new IOException("RTSP send buffer full"));
+			}
+			return CompletableFuture.completedFuture(null);
+		}
+		catch (IOException ioe)
+		{
+			return failed(ioe);
+		}
+		finally
+		{
+			writeLock.unlock();
+		}
+	}
+
+	/** Writes an interleaved packet on a thread of the factory (blocking connections). */
+	private CompletableFuture<Void> handOverInterleaved(int channelId, ByteBuffer packet)
+	{
+		if (closed)
+			return failed(new IOException("RTSP connection not open"));
+		if (!handingOver.compareAndSet(false, true))
+			return failed(new IOException("RTSP connection busy"));
+		handedOver = putFrame(handedOver, channelId, packet);
+
+		final CompletableFuture<Void> sent = new CompletableFuture<Void>();
+		threadFactory.newThread(new Runnable() {
+			@Override
+			public void run()
+			{
+				writeLock.lock();
+				try
+				{
+					if (channel == null || closed)
+						throw new IOException("RTSP connection not open");
+					write(handedOver);
+					sent.complete(null);
+				}
+				catch (IOException ioe)
+				{
+					sent.completeExceptionally(ioe);
+				}
+				finally
+				{
+					writeLock.unlock();
+					handingOver.set(false);
+				}
+			}
+		}).start();
+		return sent;
+	}
+
+	/** Returns the buffer (or a larger one) holding the framed packet, ready to be written. */
+	private static ByteBuffer putFrame(ByteBuffer buffer, int channelId, ByteBuffer packet)
+	{
+		int length = packet.remaining();
+		if (buffer.capacity() < 4 + length)
+			buffer = ByteBuffer.allocate(4 + length);
+		buffer.clear();
+		buffer.put((byte) InterleavedTransport.MAGIC).put((byte) channelId).putShort((short) length).put(packet);
+		buffer.flip();
+		return buffer;
+	}
+
+	private static ByteBuffer emptyFrame()
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(4 + 1500);
+		buffer.limit(0);
+		return buffer;
+	}
+
+	/** Writes everything, waiting out a full send buffer in non-blocking mode (writeLock held). */
+	private void write(ByteBuffer data) throws IOException
+	{
+		long deadline = 0;
+		while (data.hasRemaining())
+		{
+			if (channel.write(data) > 0)
+				continue;
+
+			// the server is not reading; requests are small, this should not last
+			long now = System.nanoTime();
+			if (deadline == 0)
+				deadline = now + WRITE_TIMEOUT;
+			else if (now > deadline)
+				throw new IOException("RTSP send timed out");
+			LockSupport.parkNanos(1000000L);
+		}
+	}
+
+	/** Sets the handler of interleaved packets, null to skip them. */
+	void setInterleavedHandler(InterleavedHandler handler)
+	{
+		this.interleavedHandler = handler;
+	}
+
+	@Override
+	public void onReadable()
+	{
+		try
+		{
+			while (true)
+			{
+				int count = channel.read(input);
+				if (count < 0)
+				{
+					onClosed(new IOException("RTSP connection closed by the server"));
+					return;
+				}
+				if (count == 0)
+					return;
+				parseInput();
+			}
+		}
+		catch (IOException ioe)
+		{
+			onClosed(ioe);
+		}
+	}
+
+	/** Blocking mode read loop; ends when the connection is closed. */
+	private void readBlocking()
+	{
+		try
+		{
+			while (!closed)
+			{
+				if (channel.read(input) < 0)
+					break;
+				parseInput();
+			}
+			onClosed(new IOException("RTSP connection closed by the server"));
+		}
+		catch (IOException ioe)
+		{
+			onClosed(ioe);
+		}
+	}
+
+	/** Parses the read data and keeps the incomplete rest at the buffer start. */
+	private void parseInput() throws IOException
+	{
+		input.flip();
+		int required;
+		synchronized (parser)
+		{
+			required = parser.parse(input);
+			scheduleResponseEnd();
+		}
+		input.compact();
+		if (required > input.capacity())
+		{
+			ByteBuffer larger = ByteBuffer.allocate(Math.max(required, 2 * input.capacity()));
+			input.flip();
+			larger.put(input);
+			input = larger;
+		}
+	}
+
+	/** Ends a response without empty line once no data followed it for idleTimeout (parser lock held). */
+	private void scheduleResponseEnd()
+	{
+		if (responseEnd != null)
+		{
+			responseEnd.cancel(false);
+			responseEnd = null;
+		}
+		final RtspResponse open = parser.getOpenResponse();
+		if (open == null)
+			return;
+
+		responseEnd = timer.schedule(new Runnable() {
+			@Override
+			public void run()
+			{
+				synchronized (parser)
+				{
+					if (!closed)
+						parser.endResponse(open);
+				}
+			}
+		}, idleTimeout, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public void onResponse(RtspResponse response)
+	{
+		int cseq = response.getCSeq();
+		if (cseq < 0)
+		{
+			// without CSeq, responses arrive in request order
+			synchronized (pending)
+			{
+				Iterator<Integer> oldest = pending.keySet().iterator();
+				cseq = oldest.hasNext() ? oldest.next() : -1;
+			}
+		}
+		if (!complete(cseq, response, null))
+			LOG.warn("Unexpected RTSP response: {}", response);
+	}
+
+	@Override
+	public void onInterleaved(int channelId, ByteBuffer packet)
+	{
+		InterleavedHandler handler = interleavedHandler;
+		if (handler != null)
+			handler.onInterleaved(channelId, packet);
+	}
+
+	/** Completes a pending request; returns false if it was not pending. */
+	private boolean complete(int cseq, RtspResponse response, Throwable failure)
+	{
+		Pending request;
+		synchronized (pending)
+		{
+			request = pending.remove(cseq);
+		}
+		if (request == null)
+			return false;
+
+		if (request.timeout != null)
+			request.timeout.cancel(false);
+		if (failure != null)
+			request.future.completeExceptionally(failure);
+		else
+			request.future.complete(response);
+		return true;
+	}
+
+	/** Fails every pending request, e.g. when the connection broke. */
+	private void onClosed(IOException cause)
+	{
+		boolean wasClosed = closed;
+		close();
+		if (!wasClosed)
+			LOG.error("Exception caught: {}", cause);
+
+		List<Pending> failed;
+		synchronized (pending)
+		{
+			failed = new ArrayList<Pending>(pending.values());
+			pending.clear();
+		}
+		for (Pending request : failed)
+		{
+			if (request.timeout != null)
+				request.timeout.cancel(false);
+			request.future.completeExceptionally(cause);
+		}
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Closes the connection; pending requests fail.
+	 * --------------------------------------------------------------------------------------------*/
+	void close()
+	{
+		SocketChannel socketChannel;
+		writeLock.lock();
+		try
+		{
+			if (closed)
+				return;
+			closed = true;
+			socketChannel = channel;
+		}
+		finally
+		{
+			writeLock.unlock();
+		}
+		if (socketChannel == null)
+			return;
+
+		if (loop != null)
+			loop.deregister(this);
+		try
+		{
+			// also unblocks a blocking read, which then fails the pending requests
+			socketChannel.close();
+		}
+		catch (IOException ioe)
+		{
+			LOG.error("Exception caught: {}", ioe);
+		}
+		if (loop != null)
+			onClosed(new IOException("RTSP connection closed"));
+	}
+
+	@Override
+	public void onDeregistered()
+	{
+		// nothing pooled
+	}
+
+	@Override
+	public SocketChannel getChannel()
+	{
+		return channel;
+	}
+
+	boolean isOpen()
+	{
+		return channel != null && !closed;
+	}
+
+	private static <T> CompletableFuture<T> failed(Throwable failure)
+	{
+		CompletableFuture<T> future = new CompletableFuture<T>();
+		future.completeExceptionally(failure);
+		return future;
+	}
+}
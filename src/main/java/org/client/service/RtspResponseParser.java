@@ -0,0 +1,254 @@
+package org.client.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.client.model.RtspResponse;
+
+/**--------------------------------------------------------------------------------------------
+ * Incremental RTSP response parser.
+ * Consumes whatever part of the connection's byte stream has been received: the status line,
+ * headers up to the empty line, then Content-Length bytes of body. Interleaved packets ('$',
+ * channel, 16 bit length, RFC 2326 10.12) between messages are handed over as they complete.
+ * In lenient mode, responses of servers omitting the empty line after the headers (like the
+ * reference server) end with the next message, or once no data arrived for a while: the
+ * connection then calls #endResponse(), headers arriving before that still count. Where the
+ * received data happens to end does not matter, a response may be split anywhere.
+ * --------------------------------------------------------------------------------------------*/
+class RtspResponseParser
+{
+	private static final Log LOG = Log.get("rtsp");
+
+	/**--------------------------------------------------------------------------------------------
+	 * Receives the parsed messages on the reading thread.
+	 * --------------------------------------------------------------------------------------------*/
+	interface Listener
+	{
+		void onResponse(RtspResponse response);
+
+		/** The packet is only valid during the call (position 0 is its first byte). */
+		void onInterleaved(int channel, ByteBuffer packet);
+	}
+
+	static final int MAX_LINE_LENGTH = 8192;
+	static final int MAX_BODY_SIZE = 1 << 20;
+
+	private static final int IDLE = 0;		// between messages
+	private static final int HEADERS = 1;	// status line read
+	private static final int BODY = 2;		// empty line read, body pending
+
+	private final Listener listener;
+	private final boolean lenient;
+
+	private int state = IDLE;
+	private RtspResponse response;			// message being parsed
+	private String lastHeader;				// name of the last header, for folded lines
+	private int required;					// bytes the pending element needs, 0 if unknown
+
+	RtspResponseParser(Listener listener, boolean lenient)
+	{
+		this.listener = listener;
+		this.lenient = lenient;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Parses the heap buffer between position and limit. An incomplete line, body or packet is
+	 * left in the buffer from its new position, to be completed by the next call.
+	 * @return bytes the incomplete element needs from the position, 0 if unknown; a buffer with
+	 *         less capacity must grow
+	 * @throws IOException on malformed data, the stream can not be resynchronized
+	 * --------------------------------------------------------------------------------------------*/
+	int parse(ByteBuffer input) throws IOException
+	{
+		required = 0;
+		while (input.hasRemaining())
+		{
+			if (state == BODY)
+			{
+				int bodyLength = response.body.length;
+				if (input.remaining() < bodyLength)
+				{
+					required = bodyLength;
+					break;
+				}
+				input.get(response.body);
+				complete();
+				continue;
+			}
+
+			if (state == HEADERS && lenient && input.get(input.position()) == InterleavedTransport.MAGIC)
+				complete();		// a packet follows a response without empty line
+			if (state == IDLE && input.get(input.position()) == InterleavedTransport.MAGIC)
+			{
+				if (!parsePacket(input))
+					break;
+				continue;
+			}
+
+			String line = readLine(input);
+			if (line == null)
+				break;
+			if (state == IDLE)
+				parseIdleLine(line);
+			else
+				parseHeaderLine(line);
+		}
+		return required;
+	}
+
+	/** Hands over a complete interleaved packet; returns false if it is incomplete. */
+	private boolean parsePacket(ByteBuffer input)
+	{
+		if (input.remaining() < 4)
+		{
+			required = 4;
+			return false;
+		}
+
+		int start = input.position();
+		int channel = input.get(start + 1) & 0xFF;
+		int length = (input.get(start + 2) & 0xFF) << 8 | input.get(start + 3) & 0xFF;
+		if (input.remaining() < 4 + length)
+		{
+			required = 4 + length;
+			return false;
+		}
+
+		int limit = input.limit();
+		input.position(start + 4).limit(start + 4 + length);
+		ByteBuffer packet = input.slice();
+		input.limit(limit).position(start + 4 + length);
+		listener.onInterleaved(channel, packet);
+		return true;
+	}
+
+	private void parseIdleLine(String line) throws IOException
+	{
+		if (line.isEmpty())
+		{
+			// e.g. between pipelined responses
+			return;
+		}
+
+		if (!line.startsWith("RTSP/"))
+		{
+			LOG.warn("Unexpected RTSP line: {}", line);
+			return;
+		}
+
+		int codeStart = line.indexOf(' ');
+		int codeEnd = codeStart < 0 ? -1 : line.indexOf(' ', codeStart + 1);
+		if (codeStart < 0)
+			throw new IOException("Malformed RTSP status line: " + line);
+
+		response = new RtspResponse();
+		response.version = line.substring(0, codeStart);
+		try
+		{
+			response.statusCode = Integer.parseInt(codeEnd < 0 ? line.substring(codeStart + 1) : line.substring(codeStart + 1, codeEnd));
+		}
+		catch (NumberFormatException nfe)
+		{
+			throw new IOException("Malformed RTSP status line: " + line);
+		}
+		response.reasonPhrase = codeEnd < 0 ? "" : line.substring(codeEnd + 1);
+		lastHeader = null;
+		state = HEADERS;
+	}
+
+	private void parseHeaderLine(String line) throws IOException
+	{
+		if (line.isEmpty())
+		{
+			int contentLength = response.getContentLength();
+			if (contentLength > MAX_BODY_SIZE)
+				throw new IOException("RTSP body too large: " + contentLength);
+			if (contentLength == 0)
+				complete();
+			else
+			{
+				response.body = new byte[contentLength];
+				state = BODY;
+			}
+			return;
+		}
+
+		if (line.startsWith("RTSP/"))
+		{
+			// the previous response had no empty line, a pipelined one follows
+			complete();
+			parseIdleLine(line);
+			return;
+		}
+
+		char first = line.charAt(0);
+		if ((first == ' ' || first == '\t') && lastHeader != null)
+			response.headers.put(lastHeader, response.getHeader(lastHeader) + " " + line.trim());
+		else
+		{
+			int colon = line.indexOf(':');
+			if (colon <= 0)
+				throw new IOException("Malformed RTSP header: " + line);
+			lastHeader = line.substring(0, colon).trim();
+			response.addHeader(lastHeader, line.substring(colon + 1).trim());
+		}
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns the response whose headers may be complete without an empty line (lenient mode: it
+	 * has a CSeq and no body), for the connection to end by #endResponse() once no more data
+	 * arrived for a while; null if there is none.
+	 * --------------------------------------------------------------------------------------------*/
+	RtspResponse getOpenResponse()
+	{
+		if (!lenient || state != HEADERS || response.getCSeq() < 0 || response.getHeader("Content-Length") != null)
+			return null;
+		return response;
+	}
+
+	/** Completes the response returned by #getOpenResponse(), unless it ended meanwhile. */
+	void endResponse(RtspResponse open)
+	{
+		if (state == HEADERS && response == open)
+			complete();
+	}
+
+	private void complete()
+	{
+		RtspResponse completed = response;
+		response = null;
+		state = IDLE;
+		listener.onResponse(completed);
+	}
+
+	/** Returns the next line without its terminator, or null if it is incomplete. */
+	private String readLine(ByteBuffer input) throws IOException
+	{
+		byte[] bytes = input.array();
+		int offset = input.arrayOffset();
+		int start = input.position();
+		int limit = input.limit();
+		for (int i = start; i < limit; i++)
+		{
+			if (bytes[offset + i] != '\n')
+				continue;
+
+			input.position(i + 1);
+			int end = i > start && bytes[offset + i - 1] == '\r' ? i - 1 : i;
+			return new String(bytes, offset + start, end - start, StandardCharsets.ISO_8859_1);
+		}
+
+		if (limit - start >= MAX_LINE_LENGTH)
+			throw new IOException("RTSP line too long");
+		required = limit - start + 1;
+		return null;
+	}
+
+	/** Forgets a partially parsed message (the connection was reset). */
+	void reset()
+	{
+		state = IDLE;
+		response = null;
+	}
+}
@@ -0,0 +1,123 @@
+package org.client.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+import org.client.model.RtspResponse;
+
+
+/**----------------------------------------------------------------------------------------------
+ * RtspService implementation
+ * Is responsible for building the RTSP requests of the session and interpreting their responses.
+ * Every request returns right after it was written, with a future of the response; requests
+ * can be pipelined. The session identifier and the interleaved channels are taken from the
+ * SETUP response.
+ * ----------------------------------------------------------------------------------------------*/
+class RtspService
+{
+	private static final Log LOG = Log.get("rtsp");
+
+	private final RtspConnection connection;		// one connection per session
+
+	volatile String rtspId;						// RTSP session ID (given by the RTSP Server), null before SETUP
+	volatile int rtpChannel = 0;				// interleaved RTP channel, RTCP on rtcpChannel
+	volatile int rtcpChannel = 1;
+	static final String CRLF = RtspConnection.CRLF;
+
+	public RtspService(RtspConnection connection)
+	{
+		this.connection = connection;
+	}
+
+	/**----------------------------------------------------------------------------------------------
+	 * Sends SETUP with the client RTP port, or asking for RTP/RTCP interleaved on this connection.
+	 * ----------------------------------------------------------------------------------------------*/
+	CompletableFuture<RtspResponse> setup(int rtpReceivePort, boolean interleaved)
+	{
+		String transport;
+		if (interleaved)
+			transport = "Transport: RTP/AVP/TCP;interleaved=" + rtpChannel + "-" + rtcpChannel + CRLF;
+		else
+			transport = "Transport: RTP/UDP; client_port= " + rtpReceivePort + CRLF;
+
+		return connection.send("SETUP", transport).thenApply(new Function<RtspResponse, RtspResponse>() {
+			@Override
+			public RtspResponse apply(RtspResponse response)
+			{
+				if (response.isSuccess())
+				{
+					rtspId = response.getSession();
+					if (interleaved)
+						parseInterleavedChannels(response.getHeader("Transport"));
+				}
+				return response;
+			}
+		});
+	}
+
+	CompletableFuture<RtspResponse> play()
+	{
+		return sendInSession("PLAY");
+	}
+
+	CompletableFuture<RtspResponse> pause()
+	{
+		return sendInSession("PAUSE");
+	}
+
+	CompletableFuture<RtspResponse> teardown()
+	{
+		return sendInSession("TEARDOWN");
+	}
+
+	/**----------------------------------------------------------------------------------------------
+	 * Asks for the session description (application/sdp body).
+	 * @param etag - ETag of a cached description, answered with 304 Not Modified if still
+	 *               current, or null
+	 * ----------------------------------------------------------------------------------------------*/
+	CompletableFuture<RtspResponse> describe(String etag)
+	{
+		String headers = "Accept: application/sdp" + CRLF;
+		if (etag != null)
+			headers += "If-None-Match: " + etag + CRLF;
+		return connection.send("DESCRIBE", headers);
+	}
+
+	private CompletableFuture<RtspResponse> sendInSession(String method)
+	{
+		//write the Session line from the RTSPid field
+		String session = rtspId;
+		return connection.send(method, session == null ? "" : "Session: " + session + CRLF);
+	}
+
+	/** Takes the channels the server assigned, e.g. "RTP/AVP/TCP;interleaved=2-3". */
+	private void parseInterleavedChannels(String transport)
+	{
+		if (transport == null)
+			return;
+		int start = transport.indexOf("interleaved=");
+		if (start < 0)
+			return;
+
+		String channels = transport.substring(start + 12);
+		int end = channels.indexOf(';');
+		if (end >= 0)
+			channels = channels.substring(0, end);
+		channels = channels.trim();
+		try
+		{
+			int dash = channels.indexOf('-');
+			rtpChannel = Integer.parseInt(dash < 0 ? channels : channels.substring(0, dash));
+			rtcpChannel = dash < 0 ? rtpChannel + 1 : Integer.parseInt(channels.substring(dash + 1));
+		}
+		catch (NumberFormatException nfe)
+		{
+			LOG.warn("Invalid interleaved channels: {}", transport);
+		}
+	}
+
+	RtspConnection getConnection()
+	{
+		return connection;
+	}
+}
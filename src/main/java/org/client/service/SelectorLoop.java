@@ -0,0 +1,176 @@
+package org.client.service;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**--------------------------------------------------------------------------------------------
+ * Selector thread multiplexing the RTP, RTCP and RTSP channels of any number of sessions.
+ * Registration requests from other threads are queued and applied by the loop itself; on every
+ * wakeup each readable channel's handler drains it completely.
+ * --------------------------------------------------------------------------------------------*/
+public class SelectorLoop implements Runnable
+{
+	private static final Log LOG = Log.get("selector");
+
+	/**--------------------------------------------------------------------------------------------
+	 * Non-blocking channel served by the loop; callbacks run on the selector thread.
+	 * --------------------------------------------------------------------------------------------*/
+	public interface Handler
+	{
+		SelectableChannel getChannel();
+
+		/** Reads everything available on the channel. */
+		void onReadable();
+
+		/** Called once the loop no longer selects the channel. */
+		void onDeregistered();
+	}
+
+	private static final long SELECT_TIMEOUT = 100;		// stop-flag check interval, ms
+
+	private final String name;
+	private final Selector selector;
+	private final ConcurrentLinkedQueue<Handler> registrations = new ConcurrentLinkedQueue<Handler>();
+	private final ConcurrentLinkedQueue<Handler> cancellations = new ConcurrentLinkedQueue<Handler>();
+
+	private volatile boolean running;
+	private Thread thread;
+	private volatile int channelCount;
+
+	public SelectorLoop(String name) throws IOException
+	{
+		this.name = name;
+		selector = Selector.open();
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Starts the selector thread (no-op if already running).
+	 * --------------------------------------------------------------------------------------------*/
+	public synchronized void start()
+	{
+		if (running)
+			return;
+
+		running = true;
+		thread = new Thread(this, name);
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Stops the selector thread and closes the selector; registered channels stay open.
+	 * --------------------------------------------------------------------------------------------*/
+	public synchronized void stop()
+	{
+		running = false;
+		selector.wakeup();
+		if (thread != null)
+		{
+			try { thread.join(1000); }
+			catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
+			thread = null;
+		}
+
+		try
+		{
+			selector.close();
+		}
+		catch (IOException ioe)
+		{
+			LOG.error("Exception caught: {}", ioe);
+		}
+	}
+
+	/** Adds a handler's channel to this loop (any thread). */
+	void register(Handler handler)
+	{
+		registrations.add(handler);
+		selector.wakeup();
+	}
+
+	/** Removes a handler's channel from this loop (any thread). */
+	void deregister(Handler handler)
+	{
+		cancellations.add(handler);
+		selector.wakeup();
+	}
+
+	@Override
+	public void run()
+	{
+		while (running)
+		{
+			try
+			{
+				applyRegistrations();
+				if (selector.select(SELECT_TIMEOUT) == 0)
+					continue;
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext())
+				{
+					SelectionKey key = keys.next();
+					keys.remove();
+					if (key.isValid() && key.isReadable())
+						((Handler) key.attachment()).onReadable();
+				}
+			}
+			catch (IOException ioe)
+			{
+				if (!selector.isOpen())
+					break;
+				LOG.error("Exception caught: {}", ioe);
+			}
+		}
+		running = false;
+	}
+
+	private void applyRegistrations()
+	{
+		Handler handler;
+		while ((handler = cancellations.poll()) != null)
+		{
+			SelectionKey key = handler.getChannel().keyFor(selector);
+			if (key != null)
+			{
+				key.cancel();
+				channelCount--;
+			}
+			handler.onDeregistered();
+		}
+
+		while ((handler = registrations.poll()) != null)
+		{
+			try
+			{
+				handler.getChannel().register(selector, SelectionKey.OP_READ, handler);
+				channelCount++;
+			}
+			catch (ClosedChannelException cce)
+			{
+				LOG.error("Exception caught: {}", cce);
+			}
+		}
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	/** Returns the number of channels currently registered. */
+	public int getChannelCount()
+	{
+		return channelCount;
+	}
+
+	public boolean isRunning()
+	{
+		return running;
+	}
+}
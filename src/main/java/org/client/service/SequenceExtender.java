@@ -0,0 +1,63 @@
+package org.client.service;
+
+/**--------------------------------------------------------------------------------------------
+ * RTP sequence number extender.
+ * Maps 16-bit sequence numbers onto a monotonic 64-bit space by choosing, for each number,
+ * the extended value closest to the highest one seen so far (RFC 3550 wraparound handling).
+ * Packets up to 32767 numbers behind or ahead are interpreted correctly across the wrap.
+ * --------------------------------------------------------------------------------------------*/
+public class SequenceExtender
+{
+	public static final int SEQUENCE_MOD = 1 << 16;
+
+	private long highest = Long.MIN_VALUE;	// highest extended sequence number seen
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns the extended sequence number and advances the highest one if needed.
+	 * --------------------------------------------------------------------------------------------*/
+	public long extend(int sequenceNumber)
+	{
+		sequenceNumber &= 0xFFFF;
+		if (highest == Long.MIN_VALUE)
+		{
+			highest = sequenceNumber;
+			return highest;
+		}
+
+		long extended = highest + delta(sequenceNumber, (int) highest);
+		if (extended > highest)
+			highest = extended;
+		return extended;
+	}
+
+	/** Returns the highest extended sequence number, or -1 if none was seen. */
+	public long getHighest()
+	{
+		return highest == Long.MIN_VALUE ? -1 : highest;
+	}
+
+	/** Returns the number of times the 16-bit sequence number wrapped. */
+	public long getCycles()
+	{
+		return highest == Long.MIN_VALUE ? 0 : highest >>> 16;
+	}
+
+	public void reset()
+	{
+		highest = Long.MIN_VALUE;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns the signed wrap-safe distance from b to a (positive if a is newer).
+	 * --------------------------------------------------------------------------------------------*/
+	public static int delta(int a, int b)
+	{
+		return (short) (a - b);
+	}
+
+	/** Returns true if sequence number a is newer than b, taking the wrap into account. */
+	public static boolean isNewer(int a, int b)
+	{
+		return delta(a, b) > 0;
+	}
+}
@@ -0,0 +1,175 @@
+package org.client.service;
+
+import java.io.File;
+
+/**--------------------------------------------------------------------------------------------
+ * Stream session configuration.
+ * Defaults match the original client; #fromSystemProperties() applies the -Dclient.* overrides.
+ * --------------------------------------------------------------------------------------------*/
+public class SessionConfig
+{
+	public static final String RTP_TRANSPORT_NIO = "nio";
+	public static final String RTP_TRANSPORT_SOCKET = "socket";
+	public static final String RTP_TRANSPORT_TCP = "tcp";
+
+	// RTSP
+	public String serverHost = "localhost";			// -Dclient.server.host
+	public int rtspPort = 13569;					// -Dclient.server.port
+	public String videoFileName = "movie.Mjpeg";	// -Dclient.video
+	public long rtspTimeout = 10000;				// -Dclient.rtsp.timeout, ms a request waits for its response
+	public boolean rtspLegacyFraming = true;		// -Dclient.rtsp.legacy, no empty line ending messages (reference server)
+	public long rtspLegacyIdle = 50;				// -Dclient.rtsp.legacyIdle, ms without data that end a response lacking the empty line (above the delayed ACK)
+	public String sdpCacheDir = new File(System.getProperty("java.io.tmpdir"), "rtsp-client-sdp").getPath();	// -Dclient.sdp.cache, empty disables
+
+	// RTP transport
+	public String rtpTransport = RTP_TRANSPORT_NIO;	// -Dclient.rtp.transport=nio|socket|tcp (interleaved on the RTSP connection)
+	public int rtpPort = 25000;						// local RTP port, 0 binds any free RTP/RTCP pair in the range below
+	public int rtpPortRangeStart = 25000;			// first port tried by the allocator
+	public int rtpPortRangeEnd = 45000;				// last port tried by the allocator
+	public int rtpReceiveBufferSize = 1 << 20;		// -Dclient.rtp.rcvbuf, SO_RCVBUF requested by the NIO transport
+	public int rtpSocketTimeout = 100;				// socket and tcp transport stop-flag check interval, ms
+	public int rtpBufferSize = 15000;				// -Dclient.rtp.bufsize, max datagram size, larger ones are dropped as truncated
+	public int ringCapacity = 256;					// packets buffered between receiver and playout
+	public int rtpClockRate = 1000;					// -Dclient.rtp.clockrate, timestamp units/s (reference server: ms; RFC 2435 JPEG: 90000)
+
+	// threads
+	public String threadMode = SessionThreads.MODE_PLATFORM;	// -Dclient.threads=platform|virtual, session loop threads
+
+	// RTCP
+	public int rtcpServerPort = 19001;				// server port receiving RTCP receiver reports
+	public long rtcpMinInterval = 5000;				// -Dclient.rtcp.interval, minimum report interval, ms (RFC 3550: 5 s, halved for the first report)
+	public double rtcpBandwidthFraction = 0.05;		// -Dclient.rtcp.fraction, share of the session bandwidth taken by RTCP
+	public double rtcpSessionBandwidth;				// -Dclient.rtcp.bandwidth, bytes/s, 0 uses the measured data rate
+
+	// playout
+	public int playoutPeriod = 50;					// playout tick, ms
+	public int jitterBufferCapacity = 512;			// packets (fragmented frames take several)
+	public long reassemblyTimeout = 500;			// incomplete frames are discarded after, ms
+	public long playoutDelay = 100;					// -Dclient.playout.delay, target playout delay, ms
+	public long playoutMaxDelay = 1000;				// -Dclient.playout.maxdelay, ms
+	public boolean adaptivePlayout = true;			// -Dclient.playout.adaptive, size the delay from measured jitter and loss
+	public long playoutMinDelay = 20;				// lower bound of the adaptive delay, ms
+	public long playoutDelayCeiling = 500;			// -Dclient.playout.ceiling, upper bound of the adaptive delay, ms
+	public long playoutDelayMargin = 10;			// added to the measured delay spread, ms
+	public boolean pacedPresentation = true;		// -Dclient.presentation.paced, release frames by RTP timestamp
+	public long presentationLateness = 20;			// -Dclient.presentation.lateness, later frames are dropped, ms
+	public long decodeAhead = 30;					// frames leave the jitter buffer this long before they are due (plus one tick), ms
+
+	// decoding
+	public boolean decode = true;					// decode frames, or only deliver raw payloads
+	public int decodeThreads = DecodePipeline.defaultThreads();	// -Dclient.decode.threads
+	public int decodeWarmup = 10;					// -Dclient.decode.warmup, synthetic frames each decoder decodes on connect, 0 disables
+
+	// channel switching (SessionPool)
+	public int standbySessions = 2;					// -Dclient.standby.count, warm sessions kept besides the active one
+	public boolean standbyPrebuffer = true;			// -Dclient.standby.prebuffer, standby sessions play and retain their latest frame
+
+	// diagnostics
+	public boolean traceStages = true;				// -Dclient.trace.stages, per-stage latency tracing (StageTracer)
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns a configuration with defaults overridden by system properties.
+	 * --------------------------------------------------------------------------------------------*/
+	public static SessionConfig fromSystemProperties()
+	{
+		SessionConfig config = new SessionConfig();
+		config.serverHost = System.getProperty("client.server.host", config.serverHost);
+		config.rtspPort = Integer.getInteger("client.server.port", config.rtspPort);
+		config.videoFileName = System.getProperty("client.video", config.videoFileName);
+		config.rtspTimeout = Long.getLong("client.rtsp.timeout", config.rtspTimeout);
+		config.rtspLegacyFraming = Boolean.parseBoolean(System.getProperty("client.rtsp.legacy", String.valueOf(config.rtspLegacyFraming)));
+		config.rtspLegacyIdle = Long.getLong("client.rtsp.legacyIdle", config.rtspLegacyIdle);
+		config.sdpCacheDir = System.getProperty("client.sdp.cache", config.sdpCacheDir);
+		config.rtpTransport = System.getProperty("client.rtp.transport", config.rtpTransport);
+		config.rtpReceiveBufferSize = Integer.getInteger("client.rtp.rcvbuf", config.rtpReceiveBufferSize);
+		config.rtpBufferSize = Integer.getInteger("client.rtp.bufsize", config.rtpBufferSize);
+		config.rtpClockRate = Integer.getInteger("client.rtp.clockrate", config.rtpClockRate);
+		config.playoutDelay = Long.getLong("client.playout.delay", config.playoutDelay);
+		config.playoutMaxDelay = Long.getLong("client.playout.maxdelay", config.playoutMaxDelay);
+		config.adaptivePlayout = Boolean.parseBoolean(System.getProperty("client.playout.adaptive", String.valueOf(config.adaptivePlayout)));
+		config.playoutDelayCeiling = Long.getLong("client.playout.ceiling", config.playoutDelayCeiling);
+		config.pacedPresentation = Boolean.parseBoolean(System.getProperty("client.presentation.paced", String.valueOf(config.pacedPresentation)));
+		config.presentationLateness = Long.getLong("client.presentation.lateness", config.presentationLateness);
+		config.decodeThreads = Integer.getInteger("client.decode.threads", config.decodeThreads);
+		config.decodeWarmup = Integer.getInteger("client.decode.warmup", config.decodeWarmup);
+		config.standbySessions = Integer.getInteger("client.standby.count", config.standbySessions);
+		config.standbyPrebuffer = Boolean.parseBoolean(System.getProperty("client.standby.prebuffer", String.valueOf(config.standbyPrebuffer)));
+		config.traceStages = Boolean.parseBoolean(System.getProperty("client.trace.stages", String.valueOf(config.traceStages)));
+		config.threadMode = System.getProperty("client.threads", config.threadMode);
+		config.rtcpMinInterval = Long.getLong("client.rtcp.interval", config.rtcpMinInterval);
+		config.rtcpBandwidthFraction = Double.parseDouble(System.getProperty("client.rtcp.fraction", String.valueOf(config.rtcpBandwidthFraction)));
+		config.rtcpSessionBandwidth = Double.parseDouble(System.getProperty("client.rtcp.bandwidth", String.valueOf(config.rtcpSessionBandwidth)));
+		return config;
+	}
+
+	/** Returns a copy of this configuration, e.g. to derive per-session settings from a template. */
+	public SessionConfig copy()
+	{
+		SessionConfig copy = new SessionConfig();
+		copy.serverHost = serverHost;
+		copy.rtspPort = rtspPort;
+		copy.videoFileName = videoFileName;
+		copy.rtspTimeout = rtspTimeout;
+		copy.rtspLegacyFraming = rtspLegacyFraming;
+		copy.rtspLegacyIdle = rtspLegacyIdle;
+		copy.sdpCacheDir = sdpCacheDir;
+		copy.rtpTransport = rtpTransport;
+		copy.rtpPort = rtpPort;
+		copy.rtpPortRangeStart = rtpPortRangeStart;
+		copy.rtpPortRangeEnd = rtpPortRangeEnd;
+		copy.rtpReceiveBufferSize = rtpReceiveBufferSize;
+		copy.rtpSocketTimeout = rtpSocketTimeout;
+		copy.rtpBufferSize = rtpBufferSize;
+		copy.ringCapacity = ringCapacity;
+		copy.rtpClockRate = rtpClockRate;
+		copy.threadMode = threadMode;
+		copy.rtcpServerPort = rtcpServerPort;
+		copy.rtcpMinInterval = rtcpMinInterval;
+		copy.rtcpBandwidthFraction = rtcpBandwidthFraction;
+		copy.rtcpSessionBandwidth = rtcpSessionBandwidth;
+		copy.playoutPeriod = playoutPeriod;
+		copy.jitterBufferCapacity = jitterBufferCapacity;
+		copy.reassemblyTimeout = reassemblyTimeout;
+		copy.playoutDelay = playoutDelay;
+		copy.playoutMaxDelay = playoutMaxDelay;
+		copy.adaptivePlayout = adaptivePlayout;
+		copy.playoutMinDelay = playoutMinDelay;
+		copy.playoutDelayCeiling = playoutDelayCeiling;
+		copy.playoutDelayMargin = playoutDelayMargin;
+		copy.pacedPresentation = pacedPresentation;
+		copy.presentationLateness = presentationLateness;
+		copy.decodeAhead = decodeAhead;
+		copy.decode = decode;
+		copy.decodeThreads = decodeThreads;
+		copy.decodeWarmup = decodeWarmup;
+		copy.standbySessions = standbySessions;
+		copy.standbyPrebuffer = standbyPrebuffer;
+		copy.traceStages = traceStages;
+		return copy;
+	}
+
+	/** Returns the presentation URL, the key of its cached session description. */
+	public String getUrl()
+	{
+		return "rtsp://" + serverHost + ":" + rtspPort + "/" + videoFileName;
+	}
+
+	/** Returns true if the blocking socket fallback transport is selected. */
+	public boolean isSocketTransport()
+	{
+		return RTP_TRANSPORT_SOCKET.equals(rtpTransport);
+	}
+
+	/** Returns true if RTP and RTCP are interleaved on the RTSP connection. */
+	public boolean isInterleaved()
+	{
+		return RTP_TRANSPORT_TCP.equals(rtpTransport);
+	}
+
+	/** Returns true if the session loops should run on virtual threads. */
+	public boolean isVirtualThreads()
+	{
+		return SessionThreads.MODE_VIRTUAL.equals(threadMode);
+	}
+
+}
@@ -0,0 +1,155 @@
+package org.client.service;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Properties;
+
+/**--------------------------------------------------------------------------------------------
+ * On-disk cache of session descriptions, one file per presentation URL.
+ * A reconnecting session configures itself from the cached description before the server
+ * answers, and revalidates it with a conditional DESCRIBE (the entry's ETag, or the SDP origin
+ * version). Files are replaced atomically, so concurrent sessions may share a directory.
+ * --------------------------------------------------------------------------------------------*/
+public class SessionDescriptionCache
+{
+	private static final Log LOG = Log.get("sdp");
+
+	/**--------------------------------------------------------------------------------------------
+	 * Cached description with its validator.
+	 * --------------------------------------------------------------------------------------------*/
+	public static class Entry
+	{
+		public final String url;
+		public final String etag;			// ETag of the DESCRIBE response, or null
+		public final String text;			// SDP as received
+		public final long storedMillis;		// wall clock time of the DESCRIBE response
+
+		public Entry(String url, String etag, String text, long storedMillis)
+		{
+			this.url = url;
+			this.etag = etag;
+			this.text = text;
+			this.storedMillis = storedMillis;
+		}
+	}
+
+	private final File directory;
+
+	public SessionDescriptionCache(File directory)
+	{
+		this.directory = directory;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns the cached description of a URL, or null if there is none (or it is unreadable).
+	 * --------------------------------------------------------------------------------------------*/
+	public Entry get(String url)
+	{
+		File file = file(url);
+		if (!file.isFile())
+			return null;
+
+		Properties properties = new Properties();
+		try (InputStream in = new FileInputStream(file))
+		{
+			properties.load(in);
+		}
+		catch (IOException ioe)
+		{
+			LOG.error("Exception caught: {}", ioe);
+			return null;
+		}
+
+		// a hash collision or a foreign file
+		String text = properties.getProperty("sdp");
+		if (!url.equals(properties.getProperty("url")) || text == null)
+			return null;
+		return new Entry(url, properties.getProperty("etag"), text, parseLong(properties.getProperty("stored")));
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Stores the description of a URL, replacing the previous one.
+	 * --------------------------------------------------------------------------------------------*/
+	public void put(String url, String etag, String text)
+	{
+		Properties properties = new Properties();
+		properties.setProperty("url", url);
+		if (etag != null)
+			properties.setProperty("etag", etag);
+		properties.setProperty("stored", String.valueOf(System.currentTimeMillis()));
+		properties.setProperty("sdp", text);
+
+		File temporary = null;
+		try
+		{
+			if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory())
+				throw new IOException("Can not create " + directory);
+
+			temporary = File.createTempFile("sdp", ".tmp", directory);
+			try (OutputStream out = new FileOutputStream(temporary))
+			{
+				properties.store(out, null);
+			}
+			Files.move(temporary.toPath(), file(url).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			temporary = null;
+		}
+		catch (IOException ioe)
+		{
+			LOG.error("Exception caught: {}", ioe);
+		}
+		finally
+		{
+			if (temporary != null)
+				temporary.delete();
+		}
+	}
+
+	/** Removes the description of a URL, e.g. when the server no longer has it. */
+	public void remove(String url)
+	{
+		file(url).delete();
+	}
+
+	public File getDirectory()
+	{
+		return directory;
+	}
+
+	private File file(String url)
+	{
+		try
+		{
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(url.getBytes(StandardCharsets.UTF_8));
+			StringBuilder name = new StringBuilder(2 * digest.length + 4);
+			for (byte b : digest)
+				name.append(Character.forDigit(b >> 4 & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			return new File(directory, name.append(".sdp").toString());
+		}
+		catch (NoSuchAlgorithmException nsae)
+		{
+			// every Java platform has SHA-1
+			throw new IllegalStateException(nsae);
+		}
+	}
+
+	private static long parseLong(String value)
+	{
+		try
+		{
+			return value == null ? 0 : Long.parseLong(value);
+		}
+		catch (NumberFormatException nfe)
+		{
+			return 0;
+		}
+	}
+}
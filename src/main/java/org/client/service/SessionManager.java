@@ -0,0 +1,211 @@
+package org.client.service;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**--------------------------------------------------------------------------------------------
+ * Multi-session manager.
+ * Runs many independent stream sessions in one process: sessions get their own RTSP connection,
+ * RTP/RTCP port pair (when the configuration asks for port 0), jitter buffer and statistics,
+ * while the receive and playout threads are shared. RTP channels are spread round-robin over a
+ * fixed set of selector loops and playout ticks run on one scheduled pool, so the thread count
+ * does not grow with the number of sessions.
+ * RTSP connections are read by the same loops, and control calls return futures instead of
+ * holding a thread. Sessions configured for virtual threads instead run blocking RTSP and RTP
+ * receive loops on virtual threads of their own (see SessionThreads). RTCP reports of all
+ * sessions are timed by one RtcpScheduler on the playout pool, their interval growing with
+ * the number of sessions.
+ * --------------------------------------------------------------------------------------------*/
+public class SessionManager
+{
+	private static final Log LOG = Log.get("session");
+
+	private final SelectorLoop[] selectorLoops;
+	private final ScheduledThreadPoolExecutor playoutExecutor;
+	private final RtcpScheduler rtcpScheduler;
+	private final List<StreamSession> sessions = new CopyOnWriteArrayList<StreamSession>();
+	private final AtomicInteger nextLoop = new AtomicInteger();
+
+	private final ThreadFactory platformControlThreads = SessionThreads.newFactory("rtsp-control", false);
+	private final ThreadFactory virtualThreads = SessionThreads.newFactory("stream-session", true);
+
+	/**--------------------------------------------------------------------------------------------
+	 * Aggregate statistics over all managed sessions.
+	 * --------------------------------------------------------------------------------------------*/
+	public static class Snapshot
+	{
+		public int sessions;
+		public int playing;
+		public long totalBytes;
+		public long lostPackets;
+		public long receivedPackets;
+		public double dataRate;				// sum of the session rates, bytes/s
+		public final Histogram.Snapshot receiveToDisplay = new Histogram.Snapshot();	// us, all sessions
+
+		@Override
+		public String toString()
+		{
+			return "[Sessions] Count: " + sessions + ", Playing: " + playing + ", Bytes: " + totalBytes
+				   + ", Packets: " + receivedPackets + ", Lost: " + lostPackets + ", Data Rate: " + (long) dataRate + " B/s"
+				   + ", Receive to display: {" + receiveToDisplay + "} us";
+		}
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * @param selectorThreads - number of shared NIO receive loops
+	 * @param playoutThreads - number of shared playout threads
+	 * --------------------------------------------------------------------------------------------*/
+	public SessionManager(int selectorThreads, int playoutThreads) throws IOException
+	{
+		selectorLoops = new SelectorLoop[Math.max(1, selectorThreads)];
+		for (int i = 0; i < selectorLoops.length; i++)
+		{
+			selectorLoops[i] = new SelectorLoop("rtp-nio-receiver-" + i);
+			selectorLoops[i].start();
+		}
+
+		final AtomicInteger threadCount = new AtomicInteger();
+		playoutExecutor = new ScheduledThreadPoolExecutor(Math.max(1, playoutThreads), new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "stream-playout-" + threadCount.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		// paused and closed sessions cancel their tick, do not keep it queued
+		playoutExecutor.setRemoveOnCancelPolicy(true);
+		rtcpScheduler = new RtcpScheduler(playoutExecutor);
+	}
+
+	/** Creates a manager sized for the machine: one selector loop and one playout thread per core. */
+	public SessionManager() throws IOException
+	{
+		this(Runtime.getRuntime().availableProcessors(), Runtime.getRuntime().availableProcessors());
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Creates a session on the shared threads. The caller drives it (connect, setup, play...);
+	 * set config.rtpPort to 0 so every session binds its own port pair.
+	 * --------------------------------------------------------------------------------------------*/
+	public StreamSession createSession(SessionConfig config, StreamListener listener)
+	{
+		StreamSession session;
+		if (config.isVirtualThreads())
+			session = new StreamSession(config, listener, playoutExecutor, null, virtualThreads, rtcpScheduler);
+		else
+		{
+			SelectorLoop loop = selectorLoops[(nextLoop.getAndIncrement() & Integer.MAX_VALUE) % selectorLoops.length];
+			session = new StreamSession(config, listener, playoutExecutor, loop, null, rtcpScheduler);
+		}
+		sessions.add(session);
+		return session;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Connects, sets up and plays a session; the caller never blocks on RTSP. Completes with
+	 * false if the server refused a request.
+	 * --------------------------------------------------------------------------------------------*/
+	public CompletableFuture<Boolean> open(final StreamSession session)
+	{
+		return session.connect()
+				.thenCompose(connected -> session.setup())
+				.thenCompose(ready -> ready ? session.play() : CompletableFuture.completedFuture(false));
+	}
+
+	/** Runs every control call on a fresh thread; idle sessions hold no control thread. */
+	private Executor controlExecutor(StreamSession session)
+	{
+		final ThreadFactory threads = session.getConfig().isVirtualThreads() ? virtualThreads : platformControlThreads;
+		return runnable -> threads.newThread(runnable).start();
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Closes a session (without notifying the server) and stops managing it.
+	 * --------------------------------------------------------------------------------------------*/
+	public void closeSession(StreamSession session)
+	{
+		if (sessions.remove(session))
+			session.close();
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Tears down every playing or ready session (concurrently, on control threads), then
+	 * releases the shared threads.
+	 * --------------------------------------------------------------------------------------------*/
+	public void closeAll()
+	{
+		List<CompletableFuture<Void>> closing = new ArrayList<CompletableFuture<Void>>(sessions.size());
+		for (final StreamSession session : sessions)
+		{
+			CompletableFuture<Boolean> teardown = session.getState() != StreamSession.INIT
+					? session.teardown() : CompletableFuture.completedFuture(false);
+			closing.add(teardown.handleAsync((confirmed, failure) -> {
+				session.close();
+				return null;
+			}, controlExecutor(session)));
+		}
+		try
+		{
+			CompletableFuture.allOf(closing.toArray(new CompletableFuture<?>[closing.size()])).join();
+		}
+		catch (CompletionException ce)
+		{
+			LOG.error("Exception caught: {}", ce.getCause());
+		}
+		sessions.clear();
+
+		playoutExecutor.shutdownNow();
+		for (SelectorLoop loop : selectorLoops)
+			loop.stop();
+	}
+
+	/** Returns the managed sessions. */
+	public List<StreamSession> getSessions()
+	{
+		return Collections.unmodifiableList(sessions);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns statistics summed over all sessions. Each session's statistics are copied
+	 * consistently without locking, but sessions keep playing while the next ones are read.
+	 * --------------------------------------------------------------------------------------------*/
+	public Snapshot getSnapshot()
+	{
+		Snapshot snapshot = new Snapshot();
+		StreamStats stats = new StreamStats();
+		Histogram.Snapshot latencies = new Histogram.Snapshot();
+		for (StreamSession session : sessions)
+		{
+			session.getStats().copyTo(stats);
+			session.getReceiveToDisplay().snapshot(latencies);
+			snapshot.receiveToDisplay.add(latencies);
+			snapshot.sessions++;
+			if (session.getState() == StreamSession.PLAYING)
+				snapshot.playing++;
+			snapshot.totalBytes += stats.getTotalBytes();
+			snapshot.lostPackets += stats.getLostPackets();
+			snapshot.dataRate += stats.getDataRate();
+			RtpReceiver receiver = session.getRtpReceiver();
+			if (receiver != null)
+				snapshot.receivedPackets += receiver.getReceivedPackets();
+		}
+		return snapshot;
+	}
+
+	/** Returns the shared selector loops. */
+	public SelectorLoop[] getSelectorLoops()
+	{
+		return selectorLoops;
+	}
+}
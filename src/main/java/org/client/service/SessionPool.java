@@ -0,0 +1,312 @@
+package org.client.service;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+import org.client.model.DecodedFrame;
+
+/**--------------------------------------------------------------------------------------------
+ * Standby session pool for fast channel switching.
+ * Keeps up to K warm sessions besides the active one, on the threads of a SessionManager: set
+ * up (READY, sockets bound) or, when prebuffering, already PLAYING on standby (see
+ * StreamSession#setStandby()). Switching to a warm channel then only sends PLAY, or nothing at
+ * all when prebuffered, instead of connecting and setting up. The consumer only receives the
+ * frames, statistics and state changes of the active session. The previous session becomes the
+ * most recent standby one, so switching back is as fast; least recently used standby sessions
+ * beyond K are torn down. A session is a channel, i.e. a video on the template's server.
+ * --------------------------------------------------------------------------------------------*/
+public class SessionPool
+{
+	private final SessionManager manager;
+	private final SessionConfig template;
+	private final StreamListener consumer;
+	private final int capacity;					// standby sessions kept besides the active one
+	private final boolean prebuffer;			// standby sessions play, retaining their latest frame
+
+	private final LinkedHashMap<String, Entry> standby = new LinkedHashMap<String, Entry>();	// by channel, least recently used first, guarded by this
+	private Entry activeEntry;					// guarded by this
+	private volatile StreamSession active;
+
+	private volatile long switchStarted;		// System.nanoTime() of the last switch, 0 once its first frame arrived
+	private volatile long lastSwitchNanos = -1;	// last switch to the first frame of the new channel
+
+	/** Pooled session of a channel, with its last state transition. */
+	private static class Entry
+	{
+		final String channel;
+		final StreamSession session;
+		CompletableFuture<Boolean> transition;	// completes with true once the session reached its target state, guarded by the pool
+
+		Entry(String channel, StreamSession session)
+		{
+			this.channel = channel;
+			this.session = session;
+		}
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * @param manager - manager running the pooled sessions
+	 * @param template - configuration of every session, but for the video file name (the channel)
+	 * @param consumer - receives the callbacks of the active session
+	 * @param capacity - number of warm standby sessions kept
+	 * @param prebuffer - standby sessions keep playing and retain their latest frame, instead of
+	 *                    waiting in READY
+	 * --------------------------------------------------------------------------------------------*/
+	public SessionPool(SessionManager manager, SessionConfig template, StreamListener consumer, int capacity, boolean prebuffer)
+	{
+		this.manager = manager;
+		this.template = template;
+		this.consumer = consumer;
+		this.capacity = Math.max(0, capacity);
+		this.prebuffer = prebuffer;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Warms up a session of the channel on standby, unless there is one already. Completes with
+	 * true once it is primed; may evict the least recently used standby session.
+	 * --------------------------------------------------------------------------------------------*/
+	public CompletableFuture<Boolean> warm(String channel)
+	{
+		List<Entry> evicted = new ArrayList<Entry>();
+		CompletableFuture<Boolean> primed;
+		synchronized (this)
+		{
+			if (activeEntry != null && activeEntry.channel.equals(channel))
+				return CompletableFuture.completedFuture(true);
+
+			Entry entry = takeStandby(channel, evicted);
+			if (entry == null)
+			{
+				final Entry opened = open(channel);
+				opened.transition = then(opened, () -> park(opened));
+				entry = opened;
+			}
+			standby.put(channel, entry);
+			primed = entry.transition;
+			evicted.addAll(trim());
+		}
+		retire(evicted);
+		return primed;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Makes the channel's session the active one, opening a session if none is warm, and puts
+	 * the previously active session on standby. Completes with the new session once it plays.
+	 * --------------------------------------------------------------------------------------------*/
+	public CompletableFuture<StreamSession> switchTo(String channel)
+	{
+		final Entry entry;
+		List<Entry> evicted = new ArrayList<Entry>();
+		synchronized (this)
+		{
+			final Entry previous = activeEntry;
+			if (previous != null && previous.channel.equals(channel))
+				return playing(previous);
+
+			Entry warm = takeStandby(channel, evicted);
+			entry = warm != null ? warm : open(channel);
+			entry.transition = then(entry, () -> activate(entry));
+			activeEntry = entry;
+			active = entry.session;
+			switchStarted = System.nanoTime();
+
+			if (previous != null)
+			{
+				// drains down, and is ready for a switch back
+				previous.transition = then(previous, () -> park(previous));
+				standby.put(previous.channel, previous);
+			}
+			evicted.addAll(trim());
+		}
+		retire(evicted);
+		return playing(entry);
+	}
+
+	/** Removes the channel's standby session; one that failed is retired instead (lock held). */
+	private Entry takeStandby(String channel, List<Entry> failed)
+	{
+		Entry entry = standby.remove(channel);
+		if (entry != null && entry.transition.isDone()
+				&& (entry.transition.isCompletedExceptionally() || !entry.transition.join()))
+		{
+			failed.add(entry);
+			return null;
+		}
+		return entry;
+	}
+
+	/** Chains a transition after the pending one of the entry, if that one succeeded. */
+	private static CompletableFuture<Boolean> then(Entry entry, Supplier<CompletableFuture<Boolean>> next)
+	{
+		return entry.transition.handle((done, failure) -> done != null && done)
+				.thenCompose(done -> done ? next.get() : CompletableFuture.completedFuture(false));
+	}
+
+	private static CompletableFuture<StreamSession> playing(final Entry entry)
+	{
+		return entry.transition.thenApply(playing -> {
+			if (!playing)
+				throw new IllegalStateException("Channel " + entry.channel + " can not be played");
+			return entry.session;
+		});
+	}
+
+	/** Creates and sets up a session of the channel; its transition completes with true once READY. */
+	private Entry open(String channel)
+	{
+		SessionConfig config = template.copy();
+		config.videoFileName = channel;
+		config.rtpPort = 0;
+		final Entry entry = new Entry(channel, manager.createSession(config, new Router()));
+		entry.transition = entry.session.connect().thenCompose(connected -> entry.session.setup());
+		return entry;
+	}
+
+	/** Brings a primed session to PLAYING as the active one. */
+	private CompletableFuture<Boolean> activate(Entry entry)
+	{
+		StreamSession session = entry.session;
+		session.setStandby(false);
+		if (session.getState() == StreamSession.PLAYING)
+			return CompletableFuture.completedFuture(true);
+		return session.getState() == StreamSession.READY ? session.play() : CompletableFuture.completedFuture(false);
+	}
+
+	/** Brings a session to its standby state: playing on standby, or paused in READY. */
+	private CompletableFuture<Boolean> park(Entry entry)
+	{
+		StreamSession session = entry.session;
+		if (prebuffer)
+		{
+			session.setStandby(true);
+			if (session.getState() == StreamSession.READY)
+				return session.play();
+			return CompletableFuture.completedFuture(session.getState() == StreamSession.PLAYING);
+		}
+		if (session.getState() == StreamSession.PLAYING)
+			return session.pause();
+		return CompletableFuture.completedFuture(session.getState() == StreamSession.READY);
+	}
+
+	/** Removes the least recently used standby sessions beyond the capacity (lock held). */
+	private List<Entry> trim()
+	{
+		List<Entry> evicted = new ArrayList<Entry>();
+		Iterator<Entry> iterator = standby.values().iterator();
+		while (standby.size() - evicted.size() > capacity && iterator.hasNext())
+			evicted.add(iterator.next());
+		for (Entry entry : evicted)
+			standby.remove(entry.channel);
+		return evicted;
+	}
+
+	/** Tears sessions down once their pending transition is over, then closes them. */
+	private void retire(List<Entry> entries)
+	{
+		for (final Entry entry : entries)
+		{
+			entry.transition.handle((done, failure) -> null)
+					.thenCompose(done -> entry.session.getState() != StreamSession.INIT
+							? entry.session.teardown() : CompletableFuture.completedFuture(false))
+					.handle((confirmed, failure) -> {
+						manager.closeSession(entry.session);
+						return null;
+					});
+		}
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Tears down the active and every standby session.
+	 * --------------------------------------------------------------------------------------------*/
+	public void close()
+	{
+		List<Entry> entries;
+		synchronized (this)
+		{
+			entries = new ArrayList<Entry>(standby.values());
+			standby.clear();
+			if (activeEntry != null)
+				entries.add(activeEntry);
+			activeEntry = null;
+			active = null;
+		}
+		retire(entries);
+	}
+
+	/** Returns the active session, or null before the first switch. */
+	public StreamSession getActive()
+	{
+		return active;
+	}
+
+	/** Returns the channels of the standby sessions, least recently used first. */
+	public synchronized List<String> getStandbyChannels()
+	{
+		return new ArrayList<String>(standby.keySet());
+	}
+
+	/** Returns the time from the last switch to the first frame of the new channel, ms, or -1. */
+	public long getLastSwitchMillis()
+	{
+		long nanos = lastSwitchNanos;
+		return nanos < 0 ? -1 : nanos / 1000000L;
+	}
+
+	/** First frame of the active session after a switch. */
+	private void onActiveFrame()
+	{
+		long started = switchStarted;
+		if (started != 0)
+		{
+			lastSwitchNanos = System.nanoTime() - started;
+			switchStarted = 0;
+		}
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Forwards the callbacks of the active session to the consumer; frames of the other sessions
+	 * (still draining, or on standby) go back to their pool.
+	 * --------------------------------------------------------------------------------------------*/
+	private class Router implements StreamListener
+	{
+		@Override
+		public void onStateChanged(StreamSession session, int state)
+		{
+			if (session == active)
+				consumer.onStateChanged(session, state);
+		}
+
+		@Override
+		public void onRawFrame(StreamSession session, int sequenceNumber, byte[] payload, int length)
+		{
+			if (session != active)
+				return;
+			if (session.getDecodePipeline() == null)
+				onActiveFrame();
+			consumer.onRawFrame(session, sequenceNumber, payload, length);
+		}
+
+		@Override
+		public void onFrame(StreamSession session, DecodedFrame frame)
+		{
+			if (session != active)
+			{
+				session.getFramePool().release(frame);
+				return;
+			}
+			onActiveFrame();
+			consumer.onFrame(session, frame);
+		}
+
+		@Override
+		public void onStatistics(StreamSession session, StreamStats stats)
+		{
+			if (session == active)
+				consumer.onStatistics(session, stats);
+		}
+	}
+}
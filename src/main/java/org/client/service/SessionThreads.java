@@ -0,0 +1,85 @@
+package org.client.service;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**--------------------------------------------------------------------------------------------
+ * Thread factories for the per-session blocking loops (RTSP control, RTP and RTCP receive).
+ * In virtual mode the loops run on virtual threads, so thousands of sessions cost a few KB of
+ * stack each instead of one platform thread per loop. The sources stay Java 8 compatible:
+ * Thread.ofVirtual() is looked up reflectively and platform threads are used when the running
+ * JVM does not provide it (before Java 21).
+ * --------------------------------------------------------------------------------------------*/
+public class SessionThreads
+{
+	public static final String MODE_PLATFORM = "platform";
+	public static final String MODE_VIRTUAL = "virtual";
+
+	private static final Log LOG = Log.get("threads");
+
+	private static final Method OF_VIRTUAL;			// Thread.ofVirtual()
+	private static final Method BUILDER_NAME;		// Thread.Builder.name(String, long)
+	private static final Method BUILDER_FACTORY;	// Thread.Builder.factory()
+
+	static
+	{
+		Method ofVirtual = null;
+		Method builderName = null;
+		Method builderFactory = null;
+		try
+		{
+			Class<?> builder = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			builderName = builder.getMethod("name", String.class, long.class);
+			builderFactory = builder.getMethod("factory");
+		}
+		catch (ReflectiveOperationException roe)
+		{
+			// pre-21 runtime, virtual threads are not available
+			ofVirtual = null;
+		}
+		OF_VIRTUAL = ofVirtual;
+		BUILDER_NAME = builderName;
+		BUILDER_FACTORY = builderFactory;
+	}
+
+	private SessionThreads() {}
+
+	/** Returns true if the running JVM supports virtual threads. */
+	public static boolean isVirtualSupported()
+	{
+		return OF_VIRTUAL != null;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns a factory of threads named prefix-0, prefix-1...
+	 * @param virtual - virtual threads if supported, daemon platform threads otherwise
+	 * --------------------------------------------------------------------------------------------*/
+	public static ThreadFactory newFactory(final String prefix, boolean virtual)
+	{
+		if (virtual && OF_VIRTUAL != null)
+		{
+			try
+			{
+				Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), prefix + "-", 0L);
+				return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+			}
+			catch (ReflectiveOperationException roe)
+			{
+				LOG.warn("Virtual threads unavailable, using platform threads: {}", roe);
+			}
+		}
+
+		final AtomicInteger threadCount = new AtomicInteger();
+		return new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, prefix + "-" + threadCount.getAndIncrement());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+}
@@ -0,0 +1,133 @@
+package org.client.service;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+
+/**--------------------------------------------------------------------------------------------
+ * Blocking DatagramSocket RTP receiver implementation (fallback transport).
+ * Runs on a dedicated thread that continuously drains the RTP socket into a ring buffer,
+ * which decouples network ingest from the rendering cadence.
+ * Datagrams are received straight into pooled heap buffers (position 0, limit = length);
+ * the consumer owns each polled buffer and must release it back to the pool.
+ * The socket timeout is only used to periodically check the stop flag.
+ * --------------------------------------------------------------------------------------------*/
+public class SocketRtpReceiver implements RtpReceiver, Runnable
+{
+	private static final Log LOG = Log.get("rtp");
+
+	private final DatagramSocket socket;
+	private final SpscRingBuffer<ByteBuffer> ring;
+	private final ByteBufferPool pool;
+
+	private volatile boolean running;
+	private Thread thread;
+	private volatile long receivedPackets;	// written by receiver thread only
+	private ReceptionStatistics statistics;	// null when not collected
+
+	public SocketRtpReceiver(DatagramSocket socket, SpscRingBuffer<ByteBuffer> ring, ByteBufferPool pool)
+	{
+		if (pool.isDirect())
+			throw new IllegalArgumentException("DatagramSocket receive requires a heap buffer pool");
+
+		this.socket = socket;
+		this.ring = ring;
+		this.pool = pool;
+	}
+
+	@Override
+	public synchronized void start()
+	{
+		if (running)
+			return;
+
+		running = true;
+		thread = new Thread(this, "rtp-receiver");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	@Override
+	public synchronized void stop()
+	{
+		running = false;
+		if (thread != null)
+		{
+			try { thread.join(1000); }
+			catch (InterruptedException ie) { Thread.currentThread().interrupt(); }
+			thread = null;
+		}
+	}
+
+	@Override
+	public void run()
+	{
+		DatagramPacket datagram = new DatagramPacket(new byte[0], 0);
+		ByteBuffer buffer = null;
+
+		while (running)
+		{
+			try
+			{
+				if (buffer == null)
+					buffer = pool.acquire();
+
+				datagram.setData(buffer.array(), buffer.arrayOffset(), buffer.capacity());
+				socket.receive(datagram);
+				receivedPackets++;
+
+				buffer.limit(datagram.getLength());
+				if (statistics != null)
+					statistics.onRtpPacket(buffer, System.nanoTime());
+
+				// a full ring drops the packet (the overflow is counted by the ring) and keeps the buffer
+				if (ring.offer(buffer))
+					buffer = null;
+			}
+			catch (SocketTimeoutException ste)
+			{
+				// idle, re-check the stop flag
+			}
+			catch (IOException ioe)
+			{
+				if (socket.isClosed())
+					break;
+				LOG.error("Exception caught: {}", ioe);
+			}
+		}
+		pool.release(buffer);
+		running = false;
+	}
+
+	@Override
+	public boolean isRunning()
+	{
+		return running;
+	}
+
+	@Override
+	public long getReceivedPackets()
+	{
+		return receivedPackets;
+	}
+
+	@Override
+	public ByteBufferPool getPool()
+	{
+		return pool;
+	}
+
+	@Override
+	public SpscRingBuffer<ByteBuffer> getRing()
+	{
+		return ring;
+	}
+
+	@Override
+	public void setStatistics(ReceptionStatistics statistics)
+	{
+		this.statistics = statistics;
+	}
+}
@@ -0,0 +1,264 @@
+package org.client.service;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.client.model.RtcpPacket;
+
+/**--------------------------------------------------------------------------------------------
+ * RFC 3550 reception statistics of one synchronization source (SSRC).
+ * Implements the reference algorithms of appendix A: sequence number validation and extension
+ * with probation (A.1), expected and lost packet counts including the per-report interval
+ * (A.3) and the interarrival jitter estimate (A.8), plus the LSR/DLSR bookkeeping of the last
+ * Sender Report. Reordered packets are never counted as lost, duplicates can make the
+ * cumulative loss negative, exactly as the RFC specifies.
+ * Updated by the RTP receiver thread, read by the RTCP threads; methods are synchronized.
+ * --------------------------------------------------------------------------------------------*/
+public class SourceStatistics
+{
+	private static final int RTP_SEQ_MOD = 1 << 16;
+	private static final int MAX_DROPOUT = 3000;
+	private static final int MAX_MISORDER = 100;
+	private static final int MIN_SEQUENTIAL = 2;
+
+	private final int ssrc;
+	private final int clockRate;			// RTP timestamp units per second
+
+	// A.1 sequence state
+	private boolean initialized;
+	private int maxSeq;						// highest seq. number seen
+	private long cycles;					// shifted count of seq. number cycles
+	private long baseSeq;					// base seq number
+	private int badSeq = RTP_SEQ_MOD + 1;	// last 'bad' seq number + 1
+	private int probation = MIN_SEQUENTIAL;	// sequ. packets till source is valid
+	private long received;					// packets received
+	private long expectedPrior;				// packet expected at last interval
+	private long receivedPrior;				// packet received at last interval
+	private long misordered;				// packets older than the highest seq. number (reordered or duplicated)
+
+	// A.8 jitter state
+	private long arrivalBase = Long.MIN_VALUE;	// arrival clock origin, ns
+	private long transit = Long.MIN_VALUE;	// relative trans time for prev pkt
+	private long jitter;					// estimated jitter, scaled by 16
+
+	// last Sender Report
+	private int lastSrNtp;					// middle 32 bits of its NTP timestamp
+	private long lastSrArrival = Long.MIN_VALUE;	// its arrival time, ns
+	private long senderReports;
+
+	public SourceStatistics(int ssrc, int clockRate)
+	{
+		this.ssrc = ssrc;
+		this.clockRate = clockRate;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Accounts for a received RTP packet.
+	 * @param arrivalNanos - System.nanoTime() when the packet was received
+	 * @return false if the packet was rejected by sequence validation (probation or a jump)
+	 * --------------------------------------------------------------------------------------------*/
+	public synchronized boolean onPacket(int sequenceNumber, int rtpTimestamp, long arrivalNanos)
+	{
+		int seq = sequenceNumber & 0xFFFF;
+		if (!updateSequence(seq))
+			return false;
+
+		// A.8: transit time in timestamp units against a local arrival clock
+		if (arrivalBase == Long.MIN_VALUE)
+			arrivalBase = arrivalNanos;
+		long arrival = TimeUnit.NANOSECONDS.toMicros(arrivalNanos - arrivalBase) * clockRate / 1000000;
+		long packetTransit = arrival - (rtpTimestamp & 0xFFFFFFFFL);
+		if (transit != Long.MIN_VALUE)
+		{
+			// modulo 2^32 like the timestamps, so a timestamp wrap does not show up as jitter
+			int d = (int) (packetTransit - transit);
+			if (d < 0)
+				d = -d;
+			jitter += d - ((jitter + 8) >> 4);
+		}
+		transit = packetTransit;
+		return true;
+	}
+
+	/** RFC 3550 A.1 update_seq(). */
+	private boolean updateSequence(int seq)
+	{
+		if (!initialized)
+		{
+			// first packet: start probation as if its predecessor had been received
+			initialized = true;
+			initSequence(seq);
+			maxSeq = (seq - 1) & 0xFFFF;
+			probation = MIN_SEQUENTIAL;
+		}
+		int udelta = (seq - maxSeq) & 0xFFFF;
+
+		// source is not valid until MIN_SEQUENTIAL packets with sequential numbers have been received
+		if (probation > 0)
+		{
+			if (seq == ((maxSeq + 1) & 0xFFFF))
+			{
+				probation--;
+				maxSeq = seq;
+				if (probation == 0)
+				{
+					initSequence(seq);
+					received++;
+					return true;
+				}
+			}
+			else
+			{
+				probation = MIN_SEQUENTIAL - 1;
+				maxSeq = seq;
+			}
+			return false;
+		}
+		else if (udelta < MAX_DROPOUT)
+		{
+			// in order, with permissible gap
+			if (seq < maxSeq)
+				cycles += RTP_SEQ_MOD;		// sequence number wrapped
+			maxSeq = seq;
+		}
+		else if (udelta <= RTP_SEQ_MOD - MAX_MISORDER)
+		{
+			// the sequence number made a very large jump
+			if (seq == badSeq)
+			{
+				// two sequential packets: assume the other side restarted without telling us
+				initSequence(seq);
+			}
+			else
+			{
+				badSeq = (seq + 1) & (RTP_SEQ_MOD - 1);
+				return false;
+			}
+		}
+		else
+			misordered++;					// duplicate or reordered packet
+		received++;
+		return true;
+	}
+
+	/** RFC 3550 A.1 init_seq(). */
+	private void initSequence(int seq)
+	{
+		baseSeq = seq;
+		maxSeq = seq;
+		badSeq = RTP_SEQ_MOD + 1;
+		cycles = 0;
+		received = 0;
+		receivedPrior = 0;
+		expectedPrior = 0;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Records a Sender Report of this source.
+	 * @param middleNtp - middle 32 bits of the SR NTP timestamp
+	 * --------------------------------------------------------------------------------------------*/
+	public synchronized void onSenderReport(int middleNtp, long arrivalNanos)
+	{
+		lastSrNtp = middleNtp;
+		lastSrArrival = arrivalNanos;
+		senderReports++;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Writes this source's reception report block and starts a new reporting interval.
+	 * --------------------------------------------------------------------------------------------*/
+	public synchronized void writeReportBlock(ByteBuffer buffer, long nowNanos)
+	{
+		long expected = getExpected();
+		long lost = expected - received;
+
+		// A.3: fraction lost over the interval since the previous report
+		long expectedInterval = expected - expectedPrior;
+		long receivedInterval = received - receivedPrior;
+		long lostInterval = expectedInterval - receivedInterval;
+		expectedPrior = expected;
+		receivedPrior = received;
+		int fraction = expectedInterval == 0 || lostInterval <= 0 ? 0 : (int) ((lostInterval << 8) / expectedInterval);
+
+		RtcpPacket.writeReportBlock(buffer, ssrc, fraction, (int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, lost)),
+				(int) getExtendedHighest(), (int) getJitter(), getLsr(), getDlsr(nowNanos));
+	}
+
+	/** Returns the extended highest sequence number received. */
+	public synchronized long getExtendedHighest()
+	{
+		return cycles + maxSeq;
+	}
+
+	/** Returns the number of packets expected since the source became valid. */
+	public synchronized long getExpected()
+	{
+		return probation > 0 ? 0 : cycles + maxSeq - baseSeq + 1;
+	}
+
+	/** Returns the number of packets received (duplicates included) since the source became valid. */
+	public synchronized long getReceived()
+	{
+		return probation > 0 ? 0 : received;
+	}
+
+	/** Returns the cumulative number of packets lost (negative with duplicates). */
+	public synchronized long getLost()
+	{
+		return getExpected() - getReceived();
+	}
+
+	/** Returns the number of packets that arrived after a higher sequence number (reordered or duplicated). */
+	public synchronized long getMisordered()
+	{
+		return misordered;
+	}
+
+	/** Returns the interarrival jitter in RTP timestamp units. */
+	public synchronized long getJitter()
+	{
+		return jitter >> 4;
+	}
+
+	/** Returns the interarrival jitter in milliseconds. */
+	public synchronized double getJitterMillis()
+	{
+		return (jitter >> 4) * 1000.0 / clockRate;
+	}
+
+	/** Returns the LSR field: middle NTP bits of the last SR, 0 if none was received. */
+	public synchronized int getLsr()
+	{
+		return lastSrArrival == Long.MIN_VALUE ? 0 : lastSrNtp;
+	}
+
+	/** Returns the DLSR field: delay since the last SR in 1/65536 seconds, 0 if none was received. */
+	public synchronized int getDlsr(long nowNanos)
+	{
+		if (lastSrArrival == Long.MIN_VALUE)
+			return 0;
+		return (int) (((nowNanos - lastSrArrival) << 16) / 1000000000L);
+	}
+
+	public synchronized long getSenderReports()
+	{
+		return senderReports;
+	}
+
+	public int getSsrc()
+	{
+		return ssrc;
+	}
+
+	public int getClockRate()
+	{
+		return clockRate;
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		return "[Source " + Integer.toHexString(ssrc) + "] Expected: " + getExpected() + ", Received: " + getReceived()
+			   + ", Lost: " + getLost() + ", Highest: " + getExtendedHighest() + ", Jitter: " + getJitter();
+	}
+}
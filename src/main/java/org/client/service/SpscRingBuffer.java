@@ -0,0 +1,120 @@
+package org.client.service;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**--------------------------------------------------------------------------------------------
+ * Bounded single-producer/single-consumer lock-free ring buffer.
+ * One thread may call #offer(), one (other) thread may call #poll().
+ * Elements are published through ordered (lazySet) index writes, so neither side ever blocks.
+ * The ring keeps depth and overflow counters for instrumentation.
+ * --------------------------------------------------------------------------------------------*/
+public class SpscRingBuffer<E>
+{
+	private final Object[] buffer;
+	private final int capacity;
+	private final int mask;
+
+	private final AtomicLong head = new AtomicLong();	// next slot to read, written by consumer only
+	private final AtomicLong tail = new AtomicLong();	// next slot to write, written by producer only
+
+	private long producerHeadCache;		// producer's last seen head, avoids reading the shared counter
+	private long consumerTailCache;		// consumer's last seen tail, avoids reading the shared counter
+
+	private final AtomicLong overflowCount = new AtomicLong();	// elements rejected because the ring was full
+	private volatile int maxDepth;								// highest depth observed by the producer
+
+	/**--------------------------------------------------------------------------------------------
+	 * Creates a ring; capacity is rounded up to the next power of two.
+	 * --------------------------------------------------------------------------------------------*/
+	public SpscRingBuffer(int requestedCapacity)
+	{
+		if (requestedCapacity < 1)
+			throw new IllegalArgumentException("Capacity must be positive: " + requestedCapacity);
+
+		int size = 1;
+		while (size < requestedCapacity)
+			size <<= 1;
+
+		capacity = size;
+		mask = capacity - 1;
+		buffer = new Object[capacity];
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Adds an element (producer thread only).
+	 * Returns false and counts an overflow if the ring is full.
+	 * --------------------------------------------------------------------------------------------*/
+	public boolean offer(E element)
+	{
+		long currentTail = tail.get();
+		if (currentTail - producerHeadCache >= capacity)
+		{
+			producerHeadCache = head.get();
+			if (currentTail - producerHeadCache >= capacity)
+			{
+				overflowCount.lazySet(overflowCount.get() + 1);
+				return false;
+			}
+		}
+
+		buffer[(int) currentTail & mask] = element;
+		tail.lazySet(currentTail + 1);
+
+		int depth = (int) (currentTail + 1 - producerHeadCache);
+		if (depth > maxDepth)
+			maxDepth = depth;
+		return true;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Removes and returns the oldest element, or null if the ring is empty (consumer thread only).
+	 * --------------------------------------------------------------------------------------------*/
+	@SuppressWarnings("unchecked")
+	public E poll()
+	{
+		long currentHead = head.get();
+		if (currentHead >= consumerTailCache)
+		{
+			consumerTailCache = tail.get();
+			if (currentHead >= consumerTailCache)
+				return null;
+		}
+
+		int index = (int) currentHead & mask;
+		E element = (E) buffer[index];
+		buffer[index] = null;
+		head.lazySet(currentHead + 1);
+		return element;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns the current number of queued elements (approximate when called concurrently).
+	 * --------------------------------------------------------------------------------------------*/
+	public int size()
+	{
+		long depth = tail.get() - head.get();
+		return depth < 0 ? 0 : (int) Math.min(depth, capacity);
+	}
+
+	public boolean isEmpty()
+	{
+		return size() == 0;
+	}
+
+	public int capacity()
+	{
+		return capacity;
+	}
+
+	/** Returns the number of elements dropped because the ring was full. */
+	public long getOverflowCount()
+	{
+		return overflowCount.get();
+	}
+
+	/** Returns the highest depth observed since creation. */
+	public int getMaxDepth()
+	{
+		return maxDepth;
+	}
+}
@@ -0,0 +1,242 @@
+package org.client.service;
+
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**--------------------------------------------------------------------------------------------
+ * Per-stage latency tracer of a session's pipeline.
+ * Each thread stamps the stages it runs into its own preallocated ring (no locks, no
+ * allocation, no shared cache lines): the playout thread the packet arrival (as stamped by the
+ * receiver), parse, jitter buffer enqueue and dequeue; the decoder threads decode start and
+ * end; the playout or presentation thread the hand-over to the listener; the renderer the FX
+ * pulse that displayed the frame. Events are keyed by RTP sequence number, a frame by the one
+ * of its first packet. #drain() (the playout tick) joins the events of each frame and records
+ * the time spent between stages into rolling windows of the last packets or frames, summarized
+ * by #toString(), and emits a FrameLatencyEvent per frame while a JFR recording asks for it.
+ * --------------------------------------------------------------------------------------------*/
+public class StageTracer
+{
+	public static final int RECEIVE = 0;		// datagram received (receiver thread timestamp)
+	public static final int PARSE = 1;			// RTP header parsed by the playout thread
+	public static final int ENQUEUE = 2;		// inserted into the jitter buffer
+	public static final int DEQUEUE = 3;		// left the jitter buffer
+	public static final int DECODE_START = 4;
+	public static final int DECODE_END = 5;
+	public static final int PRESENT = 6;		// handed over to the listener
+	public static final int RENDER = 7;			// displayed by an FX pulse
+	static final int STAGES = 8;
+
+	// time between two stages, recorded once both are known for a frame; Total is recorded once the frame
+	// is complete: from its arrival to display, or to the hand-over when the listener does not render
+	static final String[] INTERVALS = { "Hand-off", "Parse", "Jitter buffer", "Assembly", "Decode", "Presentation",
+										"Render", "Total" };
+	private static final int[] INTERVAL_FROM = { RECEIVE, PARSE, ENQUEUE, DEQUEUE, DECODE_START, DECODE_END, PRESENT };
+	private static final int[] INTERVAL_TO = { PARSE, ENQUEUE, DEQUEUE, DECODE_START, DECODE_END, PRESENT, RENDER };
+	private static final int TOTAL = 7;
+
+	private static final int RING_SIZE = 256;	// events per thread between two drains
+	private static final int SLOTS = 256;		// frames being joined, by sequence number
+	private static final int WINDOW = 256;		// samples of the rolling percentiles
+
+	private static final FrameSink JFR_EVENTS = loadJfrEvents();
+
+	/**--------------------------------------------------------------------------------------------
+	 * Receives the stage times of every completed frame, on the draining thread.
+	 * --------------------------------------------------------------------------------------------*/
+	interface FrameSink
+	{
+		/** The stage times of the frame are times[row + stage], 0 where unknown. */
+		void emit(int sequenceNumber, long[] times, int row);
+	}
+
+	private final CopyOnWriteArrayList<Ring> rings = new CopyOnWriteArrayList<Ring>();
+	private final ThreadLocal<Ring> localRing = new ThreadLocal<Ring>() {
+		@Override
+		protected Ring initialValue()
+		{
+			Ring ring = new Ring(Thread.currentThread());
+			rings.add(ring);
+			return ring;
+		}
+	};
+
+	// joined by the draining thread, guarded by this
+	private final int[] slotKeys = new int[SLOTS];
+	private final long[] slotTimes = new long[SLOTS * STAGES];
+	private final int[][] samples = new int[INTERVALS.length][WINDOW];	// us, rolling
+	private final long[] sampleCounts = new long[INTERVALS.length];
+	private final int[] sorted = new int[WINDOW];
+	private boolean rendering;				// the listener renders, frames are complete once displayed
+	private long lostEvents;				// overwritten in a ring before they were drained
+
+	/**--------------------------------------------------------------------------------------------
+	 * Events of one thread. The owner writes, the draining thread reads behind it; entries the
+	 * owner lapped while they were read are discarded.
+	 * --------------------------------------------------------------------------------------------*/
+	private static final class Ring
+	{
+		final Thread owner;
+		final int[] events = new int[RING_SIZE];		// stage << 16 | sequence number
+		final long[] times = new long[RING_SIZE];
+		final AtomicLong head = new AtomicLong();		// next event written, published lazily
+		long written;									// owner's copy of head
+		long tail;										// next event read (draining thread)
+
+		Ring(Thread owner)
+		{
+			this.owner = owner;
+		}
+
+		void record(int stage, int sequenceNumber, long nanos)
+		{
+			int index = (int) written & (RING_SIZE - 1);
+			events[index] = stage << 16 | sequenceNumber & 0xFFFF;
+			times[index] = nanos;
+			head.lazySet(++written);
+		}
+	}
+
+	public StageTracer()
+	{
+		Arrays.fill(slotKeys, -1);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Stamps a stage of the packet or frame with the given sequence number (any thread).
+	 * @param nanos - System.nanoTime() the stage was reached
+	 * --------------------------------------------------------------------------------------------*/
+	public void record(int stage, int sequenceNumber, long nanos)
+	{
+		localRing.get().record(stage, sequenceNumber, nanos);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Joins the events recorded since the last call into frame timelines (any thread, usually the
+	 * playout tick). Rings of threads that ended are dropped once drained.
+	 * --------------------------------------------------------------------------------------------*/
+	public synchronized void drain()
+	{
+		for (Ring ring : rings)
+		{
+			long head = ring.head.get();
+			// the entry RING_SIZE behind head is the next one the owner overwrites
+			long start = Math.max(ring.tail, head - RING_SIZE + 1);
+			lostEvents += start - ring.tail;
+			for (long position = start; position < head; position++)
+			{
+				int index = (int) position & (RING_SIZE - 1);
+				int event = ring.events[index];
+				long nanos = ring.times[index];
+				// the owner may have lapped this entry meanwhile, or be writing it
+				if (ring.head.get() - position >= RING_SIZE)
+				{
+					lostEvents++;
+					continue;
+				}
+				join(event >>> 16, event & 0xFFFF, nanos);
+			}
+			ring.tail = head;
+			if (!ring.owner.isAlive())
+				rings.remove(ring);
+		}
+	}
+
+	/** Adds a stage to the timeline of its frame, recording every interval it completes. */
+	private void join(int stage, int key, long nanos)
+	{
+		int slot = key & (SLOTS - 1);
+		int row = slot * STAGES;
+		if (slotKeys[slot] != key)
+		{
+			slotKeys[slot] = key;
+			Arrays.fill(slotTimes, row, row + STAGES, 0);
+		}
+		slotTimes[row + stage] = nanos;
+		if (stage == RENDER)
+			rendering = true;
+
+		for (int i = 0; i < INTERVAL_FROM.length; i++)
+		{
+			if (INTERVAL_FROM[i] != stage && INTERVAL_TO[i] != stage)
+				continue;
+			long from = slotTimes[row + INTERVAL_FROM[i]];
+			long to = slotTimes[row + INTERVAL_TO[i]];
+			if (from != 0 && to != 0 && to >= from)
+				addSample(i, (to - from) / 1000);
+		}
+
+		if (stage == (rendering ? RENDER : PRESENT))
+		{
+			long received = slotTimes[row + RECEIVE];
+			if (received != 0 && nanos >= received)
+				addSample(TOTAL, (nanos - received) / 1000);
+			if (JFR_EVENTS != null)
+				JFR_EVENTS.emit(key, slotTimes, row);
+		}
+	}
+
+	private void addSample(int interval, long micros)
+	{
+		samples[interval][(int) (sampleCounts[interval] % WINDOW)] = (int) Math.min(Integer.MAX_VALUE, micros);
+		sampleCounts[interval]++;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns the given percentile (0 to 100) of an interval over the last frames, us, or -1 if
+	 * no frame went through it yet.
+	 * --------------------------------------------------------------------------------------------*/
+	synchronized long getPercentile(int interval, double percentile)
+	{
+		int count = (int) Math.min(WINDOW, sampleCounts[interval]);
+		if (count == 0)
+			return -1;
+		System.arraycopy(samples[interval], 0, sorted, 0, count);
+		Arrays.sort(sorted, 0, count);
+		int rank = (int) Math.ceil(count * percentile / 100.0);
+		return sorted[Math.max(0, Math.min(count, rank) - 1)];
+	}
+
+	/** Returns the number of events overwritten before they could be joined. */
+	public synchronized long getLostEvents()
+	{
+		return lostEvents;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns the emitter of FrameLatencyEvents, or null without jdk.jfr or when the JFR sources
+	 * (src/jfr) were not built. The main sources do not refer to jdk.jfr, they stay Java 8.
+	 * --------------------------------------------------------------------------------------------*/
+	private static FrameSink loadJfrEvents()
+	{
+		try
+		{
+			Class.forName("jdk.jfr.Event");
+			return (FrameSink) Class.forName("org.client.service.FrameLatencyEvent$Emitter").getDeclaredConstructor().newInstance();
+		}
+		catch (ReflectiveOperationException | LinkageError e)
+		{
+			return null;
+		}
+	}
+
+	/** Returns the rolling p50/p99/max of every interval a frame went through, us. */
+	@Override
+	public synchronized String toString()
+	{
+		drain();
+		StringBuilder text = new StringBuilder("[Stages] (p50/p99/max us)");
+		String separator = " ";
+		for (int i = 0; i < INTERVALS.length; i++)
+		{
+			if (sampleCounts[i] == 0)
+				continue;
+			text.append(separator).append(INTERVALS[i]).append(": ").append(getPercentile(i, 50)).append('/')
+				.append(getPercentile(i, 99)).append('/').append(getPercentile(i, 100));
+			separator = ", ";
+		}
+		if (lostEvents > 0)
+			text.append(", Lost events: ").append(lostEvents);
+		return text.toString();
+	}
+}
@@ -0,0 +1,100 @@
+package org.client.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**--------------------------------------------------------------------------------------------
+ * Time-to-first-frame of a session, broken down by phase.
+ * Every startup milestone is stamped once (System.nanoTime()), by whichever thread reaches it:
+ * the RTSP connection and the transport binding and decoder warm-up run concurrently from
+ * #START, then SETUP, PLAY, the first packet, the first reassembled frame and the first frame
+ * handed over to the listener follow one another. Time spent waiting for the caller between
+ * requests (e.g. for a button press) is reported apart. Thread safe.
+ * --------------------------------------------------------------------------------------------*/
+public class StartupTimes
+{
+	public static final int START = 0;				// connect() called
+	public static final int CONNECTED = 1;			// RTSP connection established
+	public static final int TRANSPORT_BOUND = 2;	// RTP/RTCP sockets bound and receiving
+	public static final int DECODER_WARMED = 3;		// decoder threads done with the synthetic frame
+	public static final int SETUP_SENT = 4;
+	public static final int READY = 5;
+	public static final int PLAY_SENT = 6;
+	public static final int PLAYING = 7;
+	public static final int FIRST_PACKET = 8;		// arrival of the first RTP packet (may precede PLAYING)
+	public static final int FIRST_FRAME = 9;		// first frame reassembled out of the jitter buffer
+	public static final int FIRST_PRESENTED = 10;	// first decoded frame handed over to the listener
+	private static final int PHASES = 11;
+
+	private final AtomicLongArray marks = new AtomicLongArray(PHASES);	// 0 until reached
+	private volatile long firstDecodeNanos;			// decode time of the first presented frame
+
+	/**--------------------------------------------------------------------------------------------
+	 * Stamps a milestone with the current time, unless it was already reached.
+	 * @return true if this call reached it
+	 * --------------------------------------------------------------------------------------------*/
+	public boolean mark(int phase)
+	{
+		return mark(phase, System.nanoTime());
+	}
+
+	/** Stamps a milestone reached at the given System.nanoTime(), unless it already was. */
+	public boolean mark(int phase, long nanos)
+	{
+		return marks.get(phase) == 0 && marks.compareAndSet(phase, 0, nanos);
+	}
+
+	/** Returns true if the milestone was reached. */
+	public boolean isReached(int phase)
+	{
+		return marks.get(phase) != 0;
+	}
+
+	/** Records the decode time of the first presented frame, ns. */
+	void setFirstDecodeNanos(long decodeNanos)
+	{
+		firstDecodeNanos = decodeNanos;
+	}
+
+	/** Returns the time from one milestone to another, ms, or -1 if either was not reached. */
+	public long getMillis(int from, int to)
+	{
+		long start = marks.get(from);
+		long end = marks.get(to);
+		return start == 0 || end == 0 ? -1 : TimeUnit.NANOSECONDS.toMillis(end - start);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Returns the time to the first frame, ms: to the first presented frame, or to the first
+	 * reassembled one when frames are not decoded; -1 before it.
+	 * --------------------------------------------------------------------------------------------*/
+	public long getTimeToFirstFrame()
+	{
+		return getMillis(START, isReached(FIRST_PRESENTED) ? FIRST_PRESENTED : FIRST_FRAME);
+	}
+
+	/** Returns the time spent waiting for the caller to send SETUP and PLAY, ms. */
+	public long getWaitingMillis()
+	{
+		long prepared = Math.max(marks.get(CONNECTED), marks.get(TRANSPORT_BOUND));
+		long waiting = 0;
+		if (prepared != 0 && isReached(SETUP_SENT))
+			waiting += Math.max(0, marks.get(SETUP_SENT) - prepared);
+		if (isReached(READY) && isReached(PLAY_SENT))
+			waiting += Math.max(0, marks.get(PLAY_SENT) - marks.get(READY));
+		return TimeUnit.NANOSECONDS.toMillis(waiting);
+	}
+
+	@Override
+	public String toString()
+	{
+		long decode = TimeUnit.NANOSECONDS.toMillis(firstDecodeNanos);
+		long presentation = getMillis(FIRST_FRAME, FIRST_PRESENTED);
+		return "[TTFF] Total: " + getTimeToFirstFrame() + " ms, Waiting: " + getWaitingMillis()
+			   + " ms, Connect: " + getMillis(START, CONNECTED) + " ms, Bind: " + getMillis(START, TRANSPORT_BOUND)
+			   + " ms, Warm-up: " + getMillis(START, DECODER_WARMED) + " ms, Setup: " + getMillis(SETUP_SENT, READY)
+			   + " ms, Play: " + getMillis(PLAY_SENT, PLAYING) + " ms, First packet: " + getMillis(PLAY_SENT, FIRST_PACKET)
+			   + " ms, Buffering: " + getMillis(FIRST_PACKET, FIRST_FRAME) + " ms, Decode: " + (presentation < 0 ? -1 : decode)
+			   + " ms, Presentation: " + (presentation < 0 ? -1 : Math.max(0, presentation - decode)) + " ms";
+	}
+}
@@ -0,0 +1,34 @@
+package org.client.service;
+
+import org.client.model.DecodedFrame;
+
+/**--------------------------------------------------------------------------------------------
+ * Stream session callbacks.
+ * All methods are invoked on the session's playout thread and must return quickly, except
+ * #onFrame() which runs on the presentation thread when presentation is paced.
+ * --------------------------------------------------------------------------------------------*/
+public interface StreamListener
+{
+	/** Called after every RTSP state change (StreamSession.INIT, READY or PLAYING). */
+	default void onStateChanged(StreamSession session, int state) {}
+
+	/**
+	 * Called for every frame reassembled from the packets leaving the jitter buffer, in sequence
+	 * order, before decoding. The payload array is pooled: it must not be modified or retained
+	 * after the call, and only its first length bytes are valid.
+	 */
+	default void onRawFrame(StreamSession session, int sequenceNumber, byte[] payload, int length) {}
+
+	/**
+	 * Called for every decoded frame, in sequence order (only when decoding is enabled); when
+	 * presentation is paced, at the frame's presentation time, and late frames are skipped.
+	 * The listener owns the frame and must release it to the session's frame pool when done.
+	 */
+	default void onFrame(StreamSession session, DecodedFrame frame)
+	{
+		session.getFramePool().release(frame);
+	}
+
+	/** Called once per playout tick, after all packets and frames were processed. */
+	default void onStatistics(StreamSession session, StreamStats stats) {}
+}
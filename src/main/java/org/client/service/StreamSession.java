@@ -0,0 +1,1362 @@
+package org.client.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.client.model.DecodedFrame;
+import org.client.model.MediaDescription;
+import org.client.model.RtpPacketView;
+import org.client.model.RtpPayload;
+import org.client.model.RtspResponse;
+import org.client.model.SessionDescription;
+
+/**--------------------------------------------------------------------------------------------
+ * Headless stream session (the streaming engine).
+ * Owns the RTSP control connection and state machine, the RTP receive transport, the jitter
+ * buffer, the optional decode pipeline, RTCP feedback and statistics. Frames are delivered to
+ * a StreamListener, so any number of consumers (UI, load generator, recorder) can drive it.
+ * Control methods never block: they return a future completed (on a control thread) once the
+ * server responded and the state changed; frames are processed on a playout thread.
+ * With paced presentation, decoded frames are released at their RTP timestamp mapped to local
+ * time plus the playout delay by a presentation thread, and frames missing it are dropped.
+ * With the tcp transport, RTP and RTCP are interleaved on the RTSP connection.
+ * The session description (DESCRIBE, pipelined ahead of SETUP, or the cached one of a previous
+ * connection) selects the depacketizers, the RTP clock rate and the pool sizes before PLAY.
+ * Whatever does not depend on the server is readied while connecting: the RTP/RTCP sockets are
+ * bound and the decoders warmed up with a synthetic frame (see StartupTimes).
+ * A playing session can be put on standby, keeping only its latest frame (see SessionPool).
+ * --------------------------------------------------------------------------------------------*/
+public class StreamSession
+{
+	/**--------------------------------------------------------------------------------------------
+	 * State machine
+	 * --------------------------------------------------------------------------------------------*/
+	public final static int INIT = 0;
+	public final static int READY = 1;
+	public final static int PLAYING = 2;
+
+	private static final Log LOG = Log.get("session");
+	private static final Log PACKET_LOG = Log.get("packets");	// per RTP packet, traced at TRACE only
+
+	private static final int NOT_MODIFIED = 304;	// answer to a conditional DESCRIBE
+	private static final int WARM_UP_WIDTH = 320;	// synthetic frame size when the description has none
+	private static final int WARM_UP_HEIGHT = 240;
+
+	private final SessionConfig config;
+	private final StreamListener listener;
+	private final StreamStats stats = new StreamStats();
+	private final StartupTimes startupTimes = new StartupTimes();
+	private final MetricsRegistry metrics = new MetricsRegistry();
+	private final Histogram receiveToDisplay = new Histogram();	// us from the arrival of a frame's last packet to its hand-over
+	private final StageTracer tracer;			// per-stage latencies, null when disabled
+
+	/**--------------------------------------------------------------------------------------------
+	 * RTSP variables
+	 * --------------------------------------------------------------------------------------------*/
+	private volatile RtspService rtspService;
+	private volatile RtspConnection rtspConnection;	// RTSP messages and interleaved RTP/RTCP (send/receive)
+	private volatile InetAddress serverIp;
+	private volatile CompletableFuture<Void> connection;	// completes once connected and prepared, null before connect()
+	private volatile int currentState;		// RTSP states: INIT or READY or PLAYING
+	private final AtomicBoolean transitionPending = new AtomicBoolean();	// a state changing request awaits its response
+	private final SessionDescriptionCache descriptionCache;	// null when disabled
+	private volatile SessionDescription sessionDescription;	// the applied description, cached or described
+	private volatile SessionDescription pendingDescription;	// described while playing, applied once paused
+	private final Object descriptionLock = new Object();	// applying and deferring descriptions
+	private volatile String descriptionEtag;	// validator of the cached description
+	private volatile boolean described;			// the server described the session on this connection
+
+	/**--------------------------------------------------------------------------------------------
+	 * RTCP variables
+	 * --------------------------------------------------------------------------------------------*/
+	private final RtcpService rtcpSender;
+	// the transport is bound by prepare() on the control thread, or by setup(), and released by any thread
+	private volatile RtcpReceiver rtcpReceiver;		// feeds Sender Reports into the reception statistics
+	private volatile DatagramChannel rtcpChannel;	// UDP channel sending receiver reports, receiving sender reports, null when interleaved
+	private final ReceptionStatistics receptionStatistics;	// RFC 3550 per-SSRC statistics
+	private final int ssrc = new Random().nextInt();		// SSRC of this receiver in RTCP reports
+
+	/**--------------------------------------------------------------------------------------------
+	 * RTP and playout variables
+	 * --------------------------------------------------------------------------------------------*/
+	private volatile DatagramSocket rtpSocket;			// UDP socket of the socket fallback transport
+	private final ByteBufferPool rtpBufferPool;			// recycled datagram buffers
+	private final SpscRingBuffer<ByteBuffer> rtpRing;	// packets handed over from the receiver thread
+	private volatile RtpReceiver rtpReceiver;			// drains the RTP transport on a receiver thread
+	private final SelectorLoop selectorLoop;			// shared NIO loop, null for a dedicated one
+	private volatile PortAllocator.PortPair portPair;	// allocated RTP/RTCP ports, null for a fixed port
+	private final RtpPacketView rtpPacket = new RtpPacketView();
+
+	private final JitterBuffer<RtpPayload> jitterBuffer;			// orders packets by sequence number
+	private final ArrayDeque<RtpPayload> freePayloads = new ArrayDeque<RtpPayload>();	// recycled packet payloads
+	private final FrameBufferPool frameBufferPool;				// reassembled frames recycled between depacketizers and decoders
+	private final Depacketizer[] depacketizers = new Depacketizer[128];	// by payload type, created on first use
+	private final List<Depacketizer> activeDepacketizers = new ArrayList<Depacketizer>();
+	private long truncatedCount;						// datagrams larger than the receive buffers
+	private final PlayoutController playoutController;	// sizes the jitter buffer delay, null for a fixed delay
+	private final MediaClock mediaClock;				// maps RTP timestamps to local time, null when not paced
+	private final PresentationScheduler presentationScheduler;	// releases decoded frames when due, or null
+	private final long decodeAhead;						// frames leave the jitter buffer this early, ns
+	private volatile boolean resyncPlayout;				// set by play(), handled by the next tick
+	private long lateSkipCount;							// frames already late when leaving the jitter buffer
+	private long decodeRateStart;						// System.nanoTime() the current decode rate period began
+	private long decodeRateFrames;						// frames decoded when it began
+	private final FramePool framePool;					// decoded frames recycled between decoders and listener
+	private final DecodePipeline decodePipeline;		// null when decoding is disabled
+	private final RtpPayload pendingFrame = new RtpPayload(0);	// reassembled frame on its way to the decoders
+	private boolean framePending;						// pendingFrame holds a frame the decoders had no room for
+	private boolean pendingImmediate;					// pendingFrame was retained on standby, it is due at once
+	private volatile boolean standby;					// frames are retained instead of decoded and delivered
+	private final RtpPayload retainedFrame = new RtpPayload(0);	// latest frame reassembled on standby
+	private boolean frameRetained;						// retainedFrame holds a frame
+
+	private final ThreadFactory sessionThreads;			// RTP receive and RTCP threads, null for the defaults
+	private final ThreadFactory connectionThreads;		// RTSP connect and blocking read threads
+	private final Executor controlExecutor;				// applies the RTSP responses to the session
+	private final ScheduledExecutorService playoutExecutor;
+	private final boolean ownsPlayoutExecutor;			// false when shared by a SessionManager
+	private ScheduledFuture<?> playoutTask;
+
+	public StreamSession(SessionConfig config, StreamListener listener)
+	{
+		this(config, listener, null, null,
+			 config.isVirtualThreads() ? SessionThreads.newFactory("stream-session", true) : null, null);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Creates a session running on shared resources (see SessionManager).
+	 * @param playoutExecutor - shared playout executor, or null for a dedicated thread
+	 * @param selectorLoop - shared NIO receive loop, or null for a dedicated one
+	 * @param sessionThreads - factory of the blocking RTP receive and RTCP threads, or null
+	 * @param rtcpScheduler - shared RTCP report scheduler, or null to report on the playout executor
+	 * --------------------------------------------------------------------------------------------*/
+	StreamSession(SessionConfig config, StreamListener listener, ScheduledExecutorService playoutExecutor,
+			SelectorLoop selectorLoop, ThreadFactory sessionThreads, RtcpScheduler rtcpScheduler)
+	{
+		this.config = config;
+		this.selectorLoop = selectorLoop;
+		this.sessionThreads = sessionThreads;
+		this.listener = listener;
+
+		// the NIO transport receives into direct buffers, the socket fallback and interleaved reader copy from heap arrays
+		rtpBufferPool = new ByteBufferPool(config.ringCapacity + 1, config.rtpBufferSize,
+				!config.isSocketTransport() && !config.isInterleaved());
+		rtpRing = new SpscRingBuffer<ByteBuffer>(config.ringCapacity);
+		receptionStatistics = new ReceptionStatistics(config.rtpClockRate);
+		jitterBuffer = new JitterBuffer<RtpPayload>(config.jitterBufferCapacity, config.playoutDelay, config.playoutMaxDelay);
+		jitterBuffer.setDiscardHandler(new Consumer<RtpPayload>() {
+			@Override
+			public void accept(RtpPayload payload)
+			{
+				freePayloads.push(payload);
+			}
+		});
+		playoutController = !config.adaptivePlayout ? null : new PlayoutController(config.playoutDelay, config.playoutMinDelay,
+				Math.min(config.playoutDelayCeiling, config.playoutMaxDelay), config.playoutDelayMargin, config.rtpClockRate);
+
+		tracer = config.traceStages ? new StageTracer() : null;
+		framePool = new FramePool(2 * config.decodeThreads + 2);
+		decodePipeline = config.decode ? new DecodePipeline(config.decodeThreads, 2 * config.decodeThreads, framePool) : null;
+		frameBufferPool = new FrameBufferPool(2 * config.decodeThreads + 4);
+		if (decodePipeline != null)
+		{
+			decodePipeline.setTracer(tracer);
+			decodePipeline.setDataReleaseHandler(new Consumer<byte[]>() {
+				@Override
+				public void accept(byte[] data)
+				{
+					frameBufferPool.release(data);
+				}
+			});
+		}
+
+		// paced presentation: frames are due at their RTP timestamp mapped to local time plus the playout delay
+		mediaClock = config.pacedPresentation ? new MediaClock(config.rtpClockRate) : null;
+		decodeAhead = decodePipeline == null ? 0 : (config.playoutPeriod + config.decodeAhead) * 1000000L;
+		presentationScheduler = mediaClock == null || decodePipeline == null ? null : new PresentationScheduler(decodePipeline,
+				new Consumer<DecodedFrame>() {
+					@Override
+					public void accept(DecodedFrame frame)
+					{
+						presentFrame(frame);
+					}
+				},
+				sessionThreads != null ? sessionThreads : SessionThreads.newFactory("stream-presentation", false),
+				config.presentationLateness);
+
+		descriptionCache = config.sdpCacheDir == null || config.sdpCacheDir.isEmpty() ? null
+				: new SessionDescriptionCache(new File(config.sdpCacheDir));
+		connectionThreads = sessionThreads != null ? sessionThreads : SessionThreads.newFactory("rtsp-connection", false);
+		final ThreadFactory controlThreads = sessionThreads != null ? sessionThreads : SessionThreads.newFactory("rtsp-control", false);
+		controlExecutor = new Executor() {
+			@Override
+			public void execute(Runnable command)
+			{
+				controlThreads.newThread(command).start();
+			}
+		};
+		ownsPlayoutExecutor = playoutExecutor == null;
+		this.playoutExecutor = !ownsPlayoutExecutor ? playoutExecutor : Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable)
+			{
+				Thread thread = new Thread(runnable, "stream-playout");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		rtcpSender = new RtcpService(this, rtcpScheduler != null ? rtcpScheduler : new RtcpScheduler(this.playoutExecutor));
+
+		stats.registerMetrics(metrics);
+		receptionStatistics.registerMetrics(metrics);
+		rtcpSender.registerMetrics(metrics);
+		if (decodePipeline != null)
+			decodePipeline.registerMetrics(metrics);
+		metrics.register("receive_to_display_us", "Arrival of the last packet of a frame to its hand-over to the listener",
+				receiveToDisplay);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Establishes communication with the server.
+	 * Connects in the background; the future fails if the server is not available.
+	 * --------------------------------------------------------------------------------------------*/
+	public CompletableFuture<Void> connect()
+	{
+		startupTimes.mark(StartupTimes.START);
+
+		// RTSP connection joins the receive loop, or is read by a thread of its own
+		rtspConnection = new RtspConnection(config.videoFileName, config.rtspLegacyFraming, selectorLoop,
+				connectionThreads, playoutExecutor, config.rtspTimeout, config.rtspLegacyIdle);
+		rtspService = new RtspService(rtspConnection);
+		described = false;
+
+		// meanwhile the sockets are bound and the decoders warmed up
+		CompletableFuture<Void> prepared = CompletableFuture.runAsync(new Runnable() {
+			@Override
+			public void run()
+			{
+				prepare();
+			}
+		}, controlExecutor);
+		CompletableFuture<InetSocketAddress> connected = rtspConnection.connect(config.serverHost, config.rtspPort)
+				.thenApply(new Function<InetSocketAddress, InetSocketAddress>() {
+			@Override
+			public InetSocketAddress apply(InetSocketAddress address)
+			{
+				startupTimes.mark(StartupTimes.CONNECTED);
+				return address;
+			}
+		});
+		connection = connected.thenAcceptBothAsync(prepared, new BiConsumer<InetSocketAddress, Void>() {
+			@Override
+			public void accept(InetSocketAddress address, Void prepared)
+			{
+				serverIp = address.getAddress();
+				changeState(INIT);
+			}
+		}, controlExecutor);
+		return connection;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Readies everything that does not depend on the server, while connecting (control thread):
+	 * applies the cached description, binds and starts the RTP/RTCP transport and has the
+	 * decoders warmed up in the background. A failed bind is retried, and reported, by setup().
+	 * --------------------------------------------------------------------------------------------*/
+	private void prepare()
+	{
+		loadCachedDescription();
+		controlExecutor.execute(new Runnable() {
+			@Override
+			public void run()
+			{
+				warmUpDecoders();
+			}
+		});
+		if (!config.isInterleaved())
+		{
+			try
+			{
+				bindTransport();
+			}
+			catch (IOException ioe)
+			{
+				LOG.error("Exception caught: {}", ioe);
+			}
+		}
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Creates the RTP receiver and starts receiving; interleaved receivers start once SETUP assigned
+	 * their channels. The receiver is only kept once started, a partly bound transport is closed
+	 * again, so setup() binds anew.
+	 * --------------------------------------------------------------------------------------------*/
+	private void bindTransport() throws IOException
+	{
+		RtpReceiver receiver = null;
+		try
+		{
+			receiver = createRtpReceiver();
+			receiver.setStatistics(receptionStatistics);
+			if (!config.isInterleaved())
+			{
+				startRtcpReceiver(receiver);
+				receiver.start();
+				startupTimes.mark(StartupTimes.TRANSPORT_BOUND);
+			}
+		}
+		catch (IOException | RuntimeException ex)
+		{
+			releaseTransport(receiver);
+			throw ex;
+		}
+		rtpReceiver = receiver;
+	}
+
+	/** Stops the receivers and closes the sockets of a failed bind. */
+	private void releaseTransport(RtpReceiver receiver)
+	{
+		if (rtcpReceiver != null)
+		{
+			rtcpReceiver.stop();
+			rtcpReceiver = null;
+		}
+		if (receiver != null)
+			receiver.stop();
+		if (rtpSocket != null)
+		{
+			rtpSocket.close();
+			rtpSocket = null;
+		}
+		if (portPair != null)
+		{
+			portPair.close();
+			portPair = null;
+		}
+		try
+		{
+			if (rtcpChannel != null)
+				rtcpChannel.close();
+		}
+		catch (IOException ioe)
+		{
+			LOG.error("Exception caught: {}", ioe);
+		}
+		rtcpChannel = null;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Has every decoder thread decode a synthetic frame (of the described size if known), so the
+	 * first frame does not pay for ImageIO plugin discovery, reader creation and a cold JIT.
+	 * --------------------------------------------------------------------------------------------*/
+	private void warmUpDecoders()
+	{
+		if (decodePipeline == null || config.decodeWarmup <= 0)
+			return;
+
+		SessionDescription description = sessionDescription;
+		MediaDescription video = description == null ? null : description.getMedia("video");
+		boolean sized = video != null && video.width > 0 && video.height > 0;
+		try
+		{
+			byte[] frame = JpegDecoder.createTestFrame(sized ? video.width : WARM_UP_WIDTH, sized ? video.height : WARM_UP_HEIGHT);
+			decodePipeline.warmUp(frame, config.decodeWarmup).thenRun(new Runnable() {
+				@Override
+				public void run()
+				{
+					startupTimes.mark(StartupTimes.DECODER_WARMED);
+				}
+			});
+		}
+		catch (IOException | RuntimeException ex)
+		{
+			LOG.error("Exception caught: {}", ex);
+		}
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Performs RTSP setup routine. Completes with true if the session is READY. Called while
+	 * connecting, it waits for connect() to complete, so the transport prepare() binds is used.
+	 * --------------------------------------------------------------------------------------------*/
+	public CompletableFuture<Boolean> setup()
+	{
+		CompletableFuture<Void> connecting = connection;
+		if (connecting == null)
+		{
+			CompletableFuture<Boolean> failed = new CompletableFuture<Boolean>();
+			failed.completeExceptionally(new IOException("RTSP connection not open"));
+			return failed;
+		}
+		if (!connecting.isDone() || connecting.isCompletedExceptionally())
+		{
+			return connecting.thenCompose(new Function<Void, CompletionStage<Boolean>>() {
+				@Override
+				public CompletionStage<Boolean> apply(Void connected)
+				{
+					return setup();
+				}
+			});
+		}
+
+		if (currentState != INIT || !transitionPending.compareAndSet(false, true))
+			return CompletableFuture.completedFuture(false);
+
+		try
+		{
+			// RTP transport is usually bound while connecting, the interleaved one needs the connection
+			receptionStatistics.reset();
+			if (rtpReceiver == null)
+				bindTransport();
+		}
+		catch (IOException ioe)
+		{
+			transitionPending.set(false);
+			CompletableFuture<Boolean> failed = new CompletableFuture<Boolean>();
+			failed.completeExceptionally(ioe);
+			return failed;
+		}
+
+		// DESCRIBE pipelined ahead of SETUP costs no round trip, a server answering it answers it first
+		final CompletableFuture<RtspResponse> describeResponse = described ? null : sendDescribe();
+		final CompletableFuture<Boolean> describeApplied = describeResponse == null ? null : onDescribe(describeResponse);
+
+		//Send SETUP message to the server, announcing the bound RTP port or asking for interleaved channels
+		startupTimes.mark(StartupTimes.SETUP_SENT);
+		CompletableFuture<RtspResponse> setupResponse = rtspService.setup(getRtpPort(), config.isInterleaved());
+		if (describeResponse != null)
+		{
+			setupResponse = setupResponse.thenCompose(new Function<RtspResponse, CompletionStage<RtspResponse>>() {
+				@Override
+				public CompletionStage<RtspResponse> apply(final RtspResponse response)
+				{
+					// the description applies before READY, unless the server ignores DESCRIBE
+					if (!describeResponse.isDone())
+						return CompletableFuture.completedFuture(response);
+					return describeApplied.handle(new BiFunction<Boolean, Throwable, RtspResponse>() {
+						@Override
+						public RtspResponse apply(Boolean applied, Throwable failure)
+						{
+							return response;
+						}
+					});
+				}
+			});
+		}
+		return onResponse(setupResponse, true, new Consumer<RtspResponse>() {
+			@Override
+			public void accept(RtspResponse response)
+			{
+				if (rtpReceiver instanceof InterleavedTransport)
+				{
+					// on the channels the server assigned
+					((InterleavedTransport) rtpReceiver).setChannels(rtspService.rtpChannel, rtspService.rtcpChannel);
+					rtpReceiver.start();
+				}
+				changeState(READY);
+			}
+		});
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Initiates or resumes data transfer b/w server and client. Completes with true if PLAYING.
+	 * --------------------------------------------------------------------------------------------*/
+	public CompletableFuture<Boolean> play()
+	{
+		// initialize/reset stats time
+		stats.resetStartTime();
+
+		if (currentState != READY || !transitionPending.compareAndSet(false, true))
+			return CompletableFuture.completedFuture(false);
+
+		startupTimes.mark(StartupTimes.PLAY_SENT);
+		return onResponse(rtspService.play(), true, new Consumer<RtspResponse>() {
+			@Override
+			public void accept(RtspResponse response)
+			{
+				changeState(PLAYING);
+				startPlayout();
+			}
+		});
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Suspends data transfer b/w server and client. Completes with true if READY.
+	 * --------------------------------------------------------------------------------------------*/
+	public CompletableFuture<Boolean> pause()
+	{
+		if (currentState != PLAYING || !transitionPending.compareAndSet(false, true))
+			return CompletableFuture.completedFuture(false);
+
+		return onResponse(rtspService.pause(), true, new Consumer<RtspResponse>() {
+			@Override
+			public void accept(RtspResponse response)
+			{
+				changeState(READY);
+				stopPlayout();
+				applyPendingDescription();
+			}
+		});
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Retrieves session info (see #getSessionDescription()). Completes with true if the server
+	 * answered; may be pipelined with the other requests.
+	 * --------------------------------------------------------------------------------------------*/
+	public CompletableFuture<Boolean> describe()
+	{
+		return onDescribe(sendDescribe());
+	}
+
+	/** Sends DESCRIBE, conditional on the cached description's ETag if there is one. */
+	private CompletableFuture<RtspResponse> sendDescribe()
+	{
+		// the reference server reads a fixed number of header lines per request
+		return rtspService.describe(config.rtspLegacyFraming ? null : descriptionEtag);
+	}
+
+	private CompletableFuture<Boolean> onDescribe(CompletableFuture<RtspResponse> response)
+	{
+		return onResponse(response, false, new Consumer<RtspResponse>() {
+			@Override
+			public void accept(RtspResponse response)
+			{
+				onDescription(response);
+				LOG.info("Received response for DESCRIBE");
+			}
+		});
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Tears the session down and releases its resources. Completes with true if the server
+	 * confirmed; may be sent while another request is pending.
+	 * --------------------------------------------------------------------------------------------*/
+	public CompletableFuture<Boolean> teardown()
+	{
+		return onResponse(rtspService.teardown(), false, new Consumer<RtspResponse>() {
+			@Override
+			public void accept(RtspResponse response)
+			{
+				changeState(INIT);
+				close();
+			}
+		});
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Applies a response on a control thread: an accepted request runs its action, a refused
+	 * one completes with false.
+	 * @param transition - the request changes the state, and was marked pending
+	 * --------------------------------------------------------------------------------------------*/
+	private CompletableFuture<Boolean> onResponse(CompletableFuture<RtspResponse> request, final boolean transition,
+			final Consumer<RtspResponse> onAccepted)
+	{
+		return request.thenApplyAsync(new Function<RtspResponse, Boolean>() {
+			@Override
+			public Boolean apply(RtspResponse response)
+			{
+				LOG.info("RTSP Client - Received from Server:{}{}", System.lineSeparator(), response);
+				if (!response.isSuccess() && response.statusCode != NOT_MODIFIED)
+				{
+					LOG.warn("Invalid Server Response");
+					return false;
+				}
+				onAccepted.accept(response);
+				return true;
+			}
+		}, controlExecutor).whenComplete(new BiConsumer<Boolean, Throwable>() {
+			@Override
+			public void accept(Boolean accepted, Throwable failure)
+			{
+				if (transition)
+					transitionPending.set(false);
+			}
+		});
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Configures the session from the cached description of its URL, before the server answers.
+	 * --------------------------------------------------------------------------------------------*/
+	private void loadCachedDescription()
+	{
+		if (descriptionCache == null || sessionDescription != null)
+			return;
+
+		SessionDescriptionCache.Entry entry = descriptionCache.get(config.getUrl());
+		if (entry == null)
+			return;
+		LOG.info("Using cached session description of {}", entry.url);
+		descriptionEtag = entry.etag;
+		applyDescription(SessionDescription.parse(entry.text));
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Takes a DESCRIBE response: a new version of the description is applied and cached.
+	 * --------------------------------------------------------------------------------------------*/
+	private void onDescription(RtspResponse response)
+	{
+		described = true;
+		if (response.statusCode == NOT_MODIFIED)
+			return;
+
+		String text = response.getBodyText();
+		SessionDescription description = SessionDescription.parse(text);
+		if (description.media.isEmpty())
+			return;
+
+		String etag = response.getHeader("ETag");
+		SessionDescription latest = pendingDescription;
+		boolean changed = !description.isSameVersion(latest != null ? latest : sessionDescription);
+		if (descriptionCache != null && (changed || etag != null && !etag.equals(descriptionEtag)))
+			descriptionCache.put(config.getUrl(), etag, text);
+		descriptionEtag = etag;
+		if (changed)
+			applyDescription(description);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Configures the session for the described video stream: the depacketizers of its dynamic
+	 * payload types, its RTP clock rate and the pool sizes. A description arriving while playing
+	 * is kept pending and applied once paused.
+	 * --------------------------------------------------------------------------------------------*/
+	private void applyDescription(SessionDescription description)
+	{
+		synchronized (descriptionLock)
+		{
+			if (currentState == PLAYING)
+			{
+				pendingDescription = description;
+				LOG.warn("Session description changed while playing, applied once paused");
+				return;
+			}
+			pendingDescription = null;
+			sessionDescription = description;
+			configure(description);
+		}
+	}
+
+	/** Applies a description deferred while playing, once playout stopped. */
+	private void applyPendingDescription()
+	{
+		synchronized (descriptionLock)
+		{
+			if (pendingDescription != null)
+				applyDescription(pendingDescription);
+		}
+	}
+
+	/** Configures the session for the video stream of a description (descriptionLock held). */
+	private void configure(SessionDescription description)
+	{
+		MediaDescription video = description.getMedia("video");
+		if (video == null)
+			return;
+
+		for (int payloadType : video.formats)
+		{
+			Depacketizers.Factory factory = payloadType < 96 ? null : Depacketizers.getEncoding(video.getEncodingName(payloadType));
+			if (factory != null)
+				setDepacketizer(payloadType, factory.create(frameBufferPool, config.reassemblyTimeout));
+		}
+
+		// only an explicit rtpmap overrides the configured rate, the reference server stamps milliseconds
+		int primaryFormat = video.getPrimaryFormat();
+		if (video.isMapped(primaryFormat))
+		{
+			int clockRate = video.getClockRate(primaryFormat);
+			receptionStatistics.setClockRate(clockRate);
+			if (mediaClock != null)
+				mediaClock.setClockRate(clockRate);
+			if (playoutController != null)
+				playoutController.setClockRate(clockRate);
+		}
+
+		// frames of the announced size are ready before the first packet (JPEG: about 2 bits per pixel)
+		if (video.width > 0 && video.height > 0)
+		{
+			frameBufferPool.preallocate(video.width * video.height / 4);
+			if (decodePipeline != null)
+				framePool.preallocate(video.width, video.height);
+		}
+		LOG.info("{}", description);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Stops all threads and closes all sockets without notifying the server.
+	 * --------------------------------------------------------------------------------------------*/
+	public void close()
+	{
+		// pending requests fail
+		if (rtspConnection != null)
+			rtspConnection.close();
+		stopPlayout();
+		if (ownsPlayoutExecutor)
+			playoutExecutor.shutdownNow();
+		if (presentationScheduler != null)
+			presentationScheduler.stop();
+		if (decodePipeline != null)
+			decodePipeline.shutdown();
+		if (rtcpReceiver != null)
+			rtcpReceiver.stop();
+		if (rtpReceiver != null)
+			rtpReceiver.stop();
+		if (rtpSocket != null)
+			rtpSocket.close();
+		if (portPair != null)
+			portPair.close();
+		try
+		{
+			if (rtcpChannel != null)
+				rtcpChannel.close();
+		}
+		catch (IOException ioe)
+		{
+			LOG.error("Exception caught: {}", ioe);
+		}
+	}
+
+	private void startPlayout()
+	{
+		resyncPlayout = true;
+		if (presentationScheduler != null)
+			presentationScheduler.start();
+		playoutTask = playoutExecutor.scheduleAtFixedRate(new Runnable() {
+			@Override
+			public void run()
+			{
+				playoutTick();
+			}
+		}, config.playoutPeriod, config.playoutPeriod, TimeUnit.MILLISECONDS);
+		rtcpSender.startSend();
+	}
+
+	private void stopPlayout()
+	{
+		if (playoutTask != null)
+		{
+			playoutTask.cancel(false);
+			playoutTask = null;
+		}
+		rtcpSender.stopSend();
+	}
+
+	private void changeState(int state)
+	{
+		currentState = state;
+		if (state == READY)
+			startupTimes.mark(StartupTimes.READY);
+		else if (state == PLAYING)
+			startupTimes.mark(StartupTimes.PLAYING);
+		LOG.info("New RTSP state: {}", state == INIT ? "INIT" : state == READY ? "READY" : "PLAYING");
+		listener.onStateChanged(this, state);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Creates the RTP receiver for the configured transport.
+	 * --------------------------------------------------------------------------------------------*/
+	private RtpReceiver createRtpReceiver() throws IOException
+	{
+		if (config.isInterleaved())
+			return new InterleavedTransport(rtspConnection, rtspService.rtpChannel, rtspService.rtcpChannel, rtpRing, rtpBufferPool);
+
+		if (config.rtpPort == 0)
+		{
+			// many sessions per process: bind a free even/odd pair, RTCP is sent from the odd port
+			portPair = PortAllocator.allocate(config.rtpPortRangeStart, config.rtpPortRangeEnd);
+			rtcpChannel = portPair.rtcpChannel;
+			if (config.isSocketTransport())
+			{
+				rtpSocket = portPair.rtpChannel.socket();
+				rtpSocket.setSoTimeout(config.rtpSocketTimeout);
+				return new SocketRtpReceiver(rtpSocket, rtpRing, rtpBufferPool);
+			}
+			return createChannelReceiver(portPair.rtpChannel);
+		}
+
+		// UDP channel for QoS RTCP packets, on the next port by convention if it is free
+		rtcpChannel = openRtcpChannel(config.rtpPort + 1);
+
+		if (config.isSocketTransport())
+		{
+			// construct a new DatagramSocket to receive RTP packets from the server
+			rtpSocket = new DatagramSocket(config.rtpPort);
+			// set TimeOut value of the socket, bounds receiver shutdown latency
+			rtpSocket.setSoTimeout(config.rtpSocketTimeout);
+			return new SocketRtpReceiver(rtpSocket, rtpRing, rtpBufferPool);
+		}
+		return createChannelReceiver(ChannelRtpReceiver.openChannel(config.rtpPort));
+	}
+
+	private static DatagramChannel openRtcpChannel(int port) throws IOException
+	{
+		try
+		{
+			return ChannelRtpReceiver.openChannel(port);
+		}
+		catch (IOException ioe)
+		{
+			return ChannelRtpReceiver.openChannel(0);
+		}
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Starts receiving RTCP, on the RTP receiver's selector loop if it has one.
+	 * --------------------------------------------------------------------------------------------*/
+	private void startRtcpReceiver(RtpReceiver receiver) throws IOException
+	{
+		rtcpReceiver = new RtcpReceiver(rtcpChannel, receptionStatistics);
+		SelectorLoop loop = receiver instanceof ChannelRtpReceiver ? ((ChannelRtpReceiver) receiver).getLoop() : null;
+		if (loop != null)
+		{
+			rtcpChannel.configureBlocking(false);
+			rtcpReceiver.start(loop);
+		}
+		else
+			rtcpReceiver.start(sessionThreads != null ? sessionThreads : SessionThreads.newFactory("rtcp-receiver", false));
+	}
+
+	private RtpReceiver createChannelReceiver(DatagramChannel channel) throws IOException
+	{
+		// session threads (virtual ones) block in receive, otherwise the channel joins a selector loop
+		if (sessionThreads != null)
+			return new ChannelRtpReceiver(channel, config.rtpReceiveBufferSize, sessionThreads, rtpRing, rtpBufferPool);
+		return new ChannelRtpReceiver(channel, config.rtpReceiveBufferSize, selectorLoop, rtpRing, rtpBufferPool);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Playout tick, performs the following work:
+	 * 1. delivers the frames decoded (in sequence order) since the previous tick to the listener,
+	 *    unless the presentation scheduler releases them at their due time;
+	 * 2. reassembles the due payloads from the jitter buffer into frames (by payload type) and hands
+	 *    them over to the listener and the decode pipeline;
+	 * 3. drains all RTP packets queued in the ring buffer, parses them in place and retrieves their payload;
+	 * 4. calculates statistical data and orders payloads in the jitter buffer;
+	 * 5. discards frames whose reassembly timed out.
+	 * While the decoders are saturated the ring is not drained, so backpressure reaches the receiver.
+	 * --------------------------------------------------------------------------------------------*/
+	void playoutTick()
+	{
+		try
+		{
+			if (resyncPlayout)
+				resyncPlayout();
+
+			// frames are presented by the scheduler when paced, otherwise on this tick
+			if (decodePipeline != null && presentationScheduler == null)
+			{
+				DecodedFrame decoded;
+				while ((decoded = decodePipeline.poll()) != null)
+					presentFrame(decoded);
+			}
+
+			//submit due frames; stop draining the network while decoders are busy
+			if (submitDueFrames())
+				drainPackets();
+
+			long now = System.nanoTime();
+			long incomplete = 0;
+			for (int i = 0; i < activeDepacketizers.size(); i++)
+			{
+				Depacketizer depacketizer = activeDepacketizers.get(i);
+				depacketizer.expire(now);
+				incomplete += depacketizer.getDiscardedCount();
+			}
+			stats.onAssembly(incomplete, truncatedCount);
+
+			SourceStatistics source = receptionStatistics.getActiveSource();
+			if (source != null)
+				stats.onReception(source.getLost(), source.getExpected(), source.getExtendedHighest(), source.getJitterMillis(),
+						source.getMisordered());
+			stats.onBuffer(jitterBuffer.getOccupancy());
+			if (decodePipeline != null)
+				updateDecodeRate(now);
+
+			if (playoutController != null)
+			{
+				playoutController.onTick(jitterBuffer, System.nanoTime());
+				stats.onPlayout(playoutController.getTargetDelay(), playoutController.getUnderruns(),
+						playoutController.getTimeStretchEvents());
+			}
+			if (presentationScheduler != null)
+				stats.onPresentation(presentationScheduler.getPresentedCount(),
+						presentationScheduler.getLateDropCount() + lateSkipCount);
+
+			if (tracer != null)
+				tracer.drain();
+
+			listener.onStatistics(this, stats);
+		}
+		catch (RuntimeException ex)
+		{
+			// keep the periodic task alive
+			LOG.error("Exception caught: {}", ex);
+		}
+	}
+
+	/** Takes over the decode counters, with the decode rate of the last second once one has passed. */
+	private void updateDecodeRate(long now)
+	{
+		long decoded = decodePipeline.getDecodedCount();
+		double rate = stats.getDecodeRate();
+		if (decodeRateStart == 0)
+		{
+			decodeRateStart = now;
+			decodeRateFrames = decoded;
+		}
+		else if (now - decodeRateStart >= 1000000000L)
+		{
+			rate = (decoded - decodeRateFrames) * 1e9 / (now - decodeRateStart);
+			decodeRateStart = now;
+			decodeRateFrames = decoded;
+		}
+		stats.onDecoding(decoded, decodePipeline.getFailedCount(), rate);
+	}
+
+	/** Forgets the timing state after (re)starting playout, the stream time continues but the wall clock moved on. */
+	private void resyncPlayout()
+	{
+		resyncPlayout = false;
+		jitterBuffer.reset();
+		releasePendingFrame();
+		releaseRetainedFrame();
+		for (int i = 0; i < activeDepacketizers.size(); i++)
+			activeDepacketizers.get(i).reset();
+		if (mediaClock != null)
+			mediaClock.reset();
+		if (playoutController != null)
+			playoutController.reset();
+	}
+
+	/** Reassembles the payloads leaving the jitter buffer and submits complete frames to the
+	 *  listener and the decode pipeline.
+	 *  @return false if the pipeline is saturated */
+	private boolean submitDueFrames()
+	{
+		while (true)
+		{
+			long now = System.nanoTime();
+			if (!framePending && frameRetained && !standby)
+			{
+				// back from standby: the retained frame goes first
+				takeRetainedFrame();
+				if (!startupTimes.isReached(StartupTimes.FIRST_FRAME))
+					onFirstFrame(now);
+				listener.onRawFrame(this, pendingFrame.sequenceNumber, pendingFrame.data, pendingFrame.length);
+			}
+			if (!framePending)
+			{
+				RtpPayload payload = jitterBuffer.pop(now);
+				if (payload == null)
+					return true;
+				if (tracer != null)
+					tracer.record(StageTracer.DEQUEUE, payload.sequenceNumber, now);
+				boolean complete = getDepacketizer(payload.payloadType).push(payload, pendingFrame, now);
+				pendingFrame.arrivalNanos = payload.arrivalNanos;
+				freePayloads.push(payload);
+				if (!complete)
+					continue;
+
+				framePending = true;
+				if (standby)
+				{
+					retainPendingFrame();
+					continue;
+				}
+				if (!startupTimes.isReached(StartupTimes.FIRST_FRAME))
+					onFirstFrame(now);
+				if (decodePipeline == null)
+				{
+					receiveToDisplay.record((now - pendingFrame.arrivalNanos) / 1000);
+					if (tracer != null)
+						tracer.record(StageTracer.PRESENT, pendingFrame.sequenceNumber, now);
+				}
+				listener.onRawFrame(this, pendingFrame.sequenceNumber, pendingFrame.data, pendingFrame.length);
+			}
+
+			if (decodePipeline != null)
+			{
+				long presentationTime = 0;
+				if (mediaClock != null && !pendingImmediate)
+				{
+					presentationTime = mediaClock.toLocal(pendingFrame.timeStamp) + jitterBuffer.getTargetDelay() * 1000000L;
+					if (now - presentationTime > config.presentationLateness * 1000000L)
+					{
+						// would be dropped after decoding anyway
+						lateSkipCount++;
+						releasePendingFrame();
+						continue;
+					}
+				}
+				if (!decodePipeline.offer(pendingFrame.data, 0, pendingFrame.length, pendingFrame.sequenceNumber,
+						pendingFrame.timeStamp, presentationTime, pendingImmediate ? 0 : pendingFrame.arrivalNanos))
+					return false;
+
+				// the decoders release the buffer
+				pendingFrame.data = null;
+				framePending = false;
+				pendingImmediate = false;
+			}
+			else
+				releasePendingFrame();
+		}
+	}
+
+	/** Completes the startup times up to the first reassembled frame, the last phase when not decoding. */
+	private void onFirstFrame(long now)
+	{
+		long firstArrival = receptionStatistics.getFirstArrivalNanos();
+		if (firstArrival != 0)
+			startupTimes.mark(StartupTimes.FIRST_PACKET, firstArrival);
+		if (startupTimes.mark(StartupTimes.FIRST_FRAME, now) && decodePipeline == null)
+			LOG.info("{}", startupTimes.toString());
+	}
+
+	/** Hands a decoded frame over to the listener (playout or presentation thread). */
+	private void presentFrame(DecodedFrame frame)
+	{
+		if (!startupTimes.isReached(StartupTimes.FIRST_PRESENTED))
+		{
+			startupTimes.setFirstDecodeNanos(frame.decodeNanos);
+			if (startupTimes.mark(StartupTimes.FIRST_PRESENTED))
+				LOG.info("{}", startupTimes.toString());
+		}
+		long now = System.nanoTime();
+		if (frame.arrivalNanos != 0)
+			receiveToDisplay.record((now - frame.arrivalNanos) / 1000);
+		if (tracer != null)
+			tracer.record(StageTracer.PRESENT, frame.sequenceNumber, now);
+		listener.onFrame(this, frame);
+	}
+
+	private void releasePendingFrame()
+	{
+		if (framePending)
+		{
+			frameBufferPool.release(pendingFrame.data);
+			pendingFrame.data = null;
+			framePending = false;
+			pendingImmediate = false;
+		}
+	}
+
+	/** Keeps the frame just reassembled on standby, in place of the one retained before. */
+	private void retainPendingFrame()
+	{
+		byte[] replaced = frameRetained ? retainedFrame.data : null;
+		retainedFrame.data = pendingFrame.data;
+		retainedFrame.length = pendingFrame.length;
+		retainedFrame.sequenceNumber = pendingFrame.sequenceNumber;
+		retainedFrame.timeStamp = pendingFrame.timeStamp;
+		frameRetained = true;
+		pendingFrame.data = null;
+		framePending = false;
+		if (replaced != null)
+			frameBufferPool.release(replaced);
+	}
+
+	/** Moves the retained frame to pendingFrame, due at once. */
+	private void takeRetainedFrame()
+	{
+		pendingFrame.data = retainedFrame.data;
+		pendingFrame.length = retainedFrame.length;
+		pendingFrame.sequenceNumber = retainedFrame.sequenceNumber;
+		pendingFrame.timeStamp = retainedFrame.timeStamp;
+		retainedFrame.data = null;
+		frameRetained = false;
+		framePending = true;
+		pendingImmediate = true;
+	}
+
+	private void releaseRetainedFrame()
+	{
+		if (frameRetained)
+		{
+			frameBufferPool.release(retainedFrame.data);
+			retainedFrame.data = null;
+			frameRetained = false;
+		}
+	}
+
+	/** Returns the depacketizer of a payload type, creating it on first use. */
+	private Depacketizer getDepacketizer(int payloadType)
+	{
+		Depacketizer depacketizer = depacketizers[payloadType];
+		if (depacketizer == null)
+		{
+			depacketizer = Depacketizers.create(payloadType, frameBufferPool, config.reassemblyTimeout);
+			depacketizers[payloadType] = depacketizer;
+			activeDepacketizers.add(depacketizer);
+		}
+		return depacketizer;
+	}
+
+	private void tracePacket(int sequenceNumber, int timestamp)
+	{
+		PACKET_LOG.at(Log.TRACE, "Got RTP packet with SeqNum # {} TimeStamp {} ms, of type {}")
+			.arg(sequenceNumber).arg(timestamp).arg(rtpPacket.getPayloadType()).log();
+		PACKET_LOG.at(Log.TRACE, "[RTP-Header]")
+			.field("Version", rtpPacket.getVersion()).field("Padding", rtpPacket.getPadding())
+			.field("Extension", rtpPacket.getExtension()).field("CC", rtpPacket.getCsrcCount())
+			.field("Marker", rtpPacket.getMarker()).field("PayloadType", rtpPacket.getPayloadType())
+			.field("SequenceNumber", sequenceNumber).field("TimeStamp", timestamp).log();
+	}
+
+	/** Consumes everything the receiver queued since the last tick. */
+	private void drainPackets()
+	{
+		ByteBuffer datagram;
+		while ((datagram = rtpRing.poll()) != null)
+		{
+			if (!rtpPacket.wrap(datagram))
+			{
+				rtpBufferPool.release(datagram);
+				continue;
+			}
+
+			int sequenceNumber = rtpPacket.getSequenceNumber();
+			int timestamp = rtpPacket.getTimestamp();
+
+			//trace the header fields of the RTP packet received, off unless -Dclient.log.packets=trace
+			if (PACKET_LOG.isTraceEnabled())
+				tracePacket(sequenceNumber, timestamp);
+
+			//a datagram filling the whole receive buffer was most likely cut off by the receive call
+			if (rtpPacket.getLength() >= datagram.capacity())
+			{
+				truncatedCount++;
+				rtpBufferPool.release(datagram);
+				continue;
+			}
+
+			//copy the payload into a recycled holder, so the datagram buffer is recycled right away
+			int payloadLength = rtpPacket.getPayloadLength();
+			RtpPayload payload = freePayloads.isEmpty() ? new RtpPayload(payloadLength) : freePayloads.pop();
+			rtpPacket.copyPayload(payload.ensureCapacity(payloadLength), 0);
+			payload.length = payloadLength;
+			payload.payloadType = rtpPacket.getPayloadType();
+			payload.marker = rtpPacket.getMarker();
+			payload.sequenceNumber = sequenceNumber;
+			payload.timeStamp = timestamp;
+			rtpBufferPool.release(datagram);
+
+			//compute stats and order the payload by sequence number
+			long now = System.nanoTime();
+			long arrival = receptionStatistics.getArrivalNanos(sequenceNumber);
+			payload.arrivalNanos = arrival != 0 && arrival <= now ? arrival : now;
+			stats.onPacket(sequenceNumber, payloadLength);
+			if (playoutController != null)
+				playoutController.onPacket(timestamp, now);
+
+			// paced: hold the payload relative to its media time rather than its arrival
+			long reference = now;
+			if (mediaClock != null)
+			{
+				mediaClock.onPacket(timestamp, now);
+				reference = mediaClock.toLocal(timestamp) - decodeAhead;
+			}
+			jitterBuffer.insert(payload, sequenceNumber, timestamp, reference);
+			if (tracer != null)
+			{
+				tracer.record(StageTracer.RECEIVE, sequenceNumber, payload.arrivalNanos);
+				tracer.record(StageTracer.PARSE, sequenceNumber, now);
+				tracer.record(StageTracer.ENQUEUE, sequenceNumber, System.nanoTime());
+			}
+		}
+	}
+
+	public SessionConfig getConfig()
+	{
+		return config;
+	}
+
+	public int getState()
+	{
+		return currentState;
+	}
+
+	public StreamStats getStats()
+	{
+		return stats;
+	}
+
+	/** Returns the counters, gauges and latency histograms of the session. */
+	public MetricsRegistry getMetrics()
+	{
+		return metrics;
+	}
+
+	/** Returns the times from the arrival of the last packet of a frame to its hand-over to the listener, us. */
+	public Histogram getReceiveToDisplay()
+	{
+		return receiveToDisplay;
+	}
+
+	/** Returns the per-stage latency tracer of the session, or null when tracing is disabled. */
+	public StageTracer getTracer()
+	{
+		return tracer;
+	}
+
+	/** Returns the time-to-first-frame of this session, by phase. */
+	public StartupTimes getStartupTimes()
+	{
+		return startupTimes;
+	}
+
+	/** Returns the pool decoded frames must be released to. */
+	public FramePool getFramePool()
+	{
+		return framePool;
+	}
+
+	public JitterBuffer<RtpPayload> getJitterBuffer()
+	{
+		return jitterBuffer;
+	}
+
+	/** Returns the pool reassembled (encoded) frames are written to. */
+	public FrameBufferPool getFrameBufferPool()
+	{
+		return frameBufferPool;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Binds a payload type to a depacketizer, e.g. a dynamic type announced in the session
+	 * description (playout thread or before play()).
+	 * --------------------------------------------------------------------------------------------*/
+	public void setDepacketizer(int payloadType, Depacketizer depacketizer)
+	{
+		Depacketizer previous = depacketizers[payloadType];
+		if (previous != null)
+			activeDepacketizers.remove(previous);
+		depacketizers[payloadType] = depacketizer;
+		activeDepacketizers.add(depacketizer);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Puts the session on standby, or makes it active again (any thread). On standby, packets are
+	 * still received, buffered and reassembled, so the timing stays warm, but frames are neither
+	 * decoded nor delivered: only the latest one is retained (every JPEG frame is a keyframe),
+	 * and it is delivered at once when the session becomes active.
+	 * --------------------------------------------------------------------------------------------*/
+	public void setStandby(boolean standby)
+	{
+		this.standby = standby;
+	}
+
+	public boolean isStandby()
+	{
+		return standby;
+	}
+
+	/** Returns the applied session description (described or cached), or null. */
+	public SessionDescription getSessionDescription()
+	{
+		return sessionDescription;
+	}
+
+	/** Returns the adaptive playout controller, or null when the playout delay is fixed. */
+	public PlayoutController getPlayoutController()
+	{
+		return playoutController;
+	}
+
+	/** Returns the media clock, or null when presentation is not paced. */
+	public MediaClock getMediaClock()
+	{
+		return mediaClock;
+	}
+
+	/** Returns the presentation scheduler, or null when presentation is not paced or decoding is disabled. */
+	public PresentationScheduler getPresentationScheduler()
+	{
+		return presentationScheduler;
+	}
+
+	/** Returns the decode pipeline, or null when decoding is disabled. */
+	public DecodePipeline getDecodePipeline()
+	{
+		return decodePipeline;
+	}
+
+	/** Returns the local RTP port, the allocated one if the configuration asked for any free port. */
+	public int getRtpPort()
+	{
+		return portPair != null ? portPair.rtpPort : config.rtpPort;
+	}
+
+	/** Returns the RTP receiver, or null before setup. */
+	public RtpReceiver getRtpReceiver()
+	{
+		return rtpReceiver;
+	}
+
+	public InetAddress getServerIp()
+	{
+		return serverIp;
+	}
+
+	/** Returns the RFC 3550 reception statistics of every source. */
+	public ReceptionStatistics getReceptionStatistics()
+	{
+		return receptionStatistics;
+	}
+
+	/** Returns the SSRC identifying this receiver in RTCP reports. */
+	public int getSsrc()
+	{
+		return ssrc;
+	}
+
+	DatagramChannel getRtcpChannel()
+	{
+		return rtcpChannel;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Sends an RTCP packet to the server, on the RTCP channel of the RTSP connection when
+	 * interleaved, to the given address otherwise. Never blocks the calling thread for long: a
+	 * datagram is sent right away, an interleaved packet as RtspConnection#sendInterleaved().
+	 * @return completes once the packet is sent, exceptionally if it could not be
+	 * --------------------------------------------------------------------------------------------*/
+	CompletableFuture<Void> sendRtcp(ByteBuffer packet, InetSocketAddress address)
+	{
+		if (rtcpChannel == null)
+			return rtspConnection.sendInterleaved(rtspService.rtcpChannel, packet);
+
+		CompletableFuture<Void> sent = new CompletableFuture<Void>();
+		try
+		{
+			// a non-blocking channel sends nothing while its send buffer is full
+			if (rtcpChannel.send(packet, address) == 0)
+				throw new IOException("RTCP send buffer full");
+			sent.complete(null);
+		}
+		catch (IOException ioe)
+		{
+			sent.completeExceptionally(ioe);
+		}
+		return sent;
+	}
+}
@@ -0,0 +1,313 @@
+package org.client.service;
+
+/**--------------------------------------------------------------------------------------------
+ * Stream session statistics.
+ * Byte counts and data rate are updated by the playout thread for every RTP packet received;
+ * loss and jitter are taken over from the RFC 3550 statistics of the active source once per
+ * playout tick, as are the playout delay metrics of the adaptive playout controller.
+ * The playout thread is the only writer. Every update is bracketed by a sequence counter
+ * (odd while writing), so other threads read single values untorn and take a consistent copy
+ * of all of them with #copyTo(), retrying instead of locking.
+ * --------------------------------------------------------------------------------------------*/
+public class StreamStats
+{
+	private volatile long version;			//Odd while the playout thread is updating
+
+	volatile double startTime;				//Time in milliseconds when start is pressed
+	volatile double dataRate;				//Rate of video data received in bytes/s
+	volatile long totalBytes;				//Total number of bytes received in a session
+	volatile long totalPackets;				//Total number of RTP packets received in a session
+	volatile double totalPlayTime;			//Time in milliseconds of video playing since beginning
+	volatile float fractionLost;			//Fraction of RTP data packets from sender lost since the beginning of reception
+	volatile long lostPackets;				//Number of packets lost (cumulative, RFC 3550)
+	volatile long misorderedPackets;		//Number of packets received after a higher sequence number (reordered or duplicated)
+	volatile int highestSequenceNumber;		//Highest sequence number received in session
+	volatile long extendedHighestSequenceNumber;	//Highest extended sequence number (with wrap cycles)
+	volatile double jitter;					//Interarrival jitter in milliseconds
+	volatile long targetDelay;				//Playout delay targeted by the jitter buffer in milliseconds
+	volatile long underruns;				//Number of times playout ran dry
+	volatile long timeStretchEvents;		//Number of playout delay adjustments
+	volatile long presentedFrames;			//Number of frames presented at their due time
+	volatile long lateFrames;				//Number of frames dropped for missing their presentation time
+	volatile long incompleteFrames;			//Number of frames discarded for missing fragments
+	volatile long truncatedPackets;			//Number of datagrams larger than the receive buffer
+	volatile int bufferedPackets;			//Packets waiting in the jitter buffer
+	volatile long decodedFrames;			//Number of frames decoded
+	volatile long failedFrames;				//Number of frames that failed to decode
+	volatile double decodeRate;				//Frames decoded per second over the last second
+
+	/** Initializes (resets) statistics start time. */
+	public void resetStartTime()
+	{
+		startTime = System.currentTimeMillis();
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Accounts for a received RTP packet.
+	 * --------------------------------------------------------------------------------------------*/
+	public void onPacket(int sequenceNumber, int payloadLength)
+	{
+		double curTime = System.currentTimeMillis();
+		version++;
+		totalPlayTime += curTime - startTime;
+		startTime = curTime;
+
+		dataRate = totalPlayTime == 0 ? 0 : (totalBytes / (totalPlayTime/1000.0));
+		totalBytes += payloadLength;
+		totalPackets++;
+		version++;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Takes over the reception statistics of the active source.
+	 * --------------------------------------------------------------------------------------------*/
+	public void onReception(long lost, long expected, long extendedHighest, double jitterMillis, long misordered)
+	{
+		version++;
+		lostPackets = Math.max(0, lost);
+		misorderedPackets = misordered;
+		fractionLost = expected <= 0 ? 0f : (float) Math.max(0, lost) / expected;
+		extendedHighestSequenceNumber = extendedHighest;
+		highestSequenceNumber = (int) (extendedHighest & 0xFFFF);
+		jitter = jitterMillis;
+		version++;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Takes over the state of the adaptive playout controller.
+	 * --------------------------------------------------------------------------------------------*/
+	public void onPlayout(long targetDelay, long underruns, long timeStretchEvents)
+	{
+		version++;
+		this.targetDelay = targetDelay;
+		this.underruns = underruns;
+		this.timeStretchEvents = timeStretchEvents;
+		version++;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Takes over the counters of the presentation scheduler.
+	 * --------------------------------------------------------------------------------------------*/
+	public void onPresentation(long presentedFrames, long lateFrames)
+	{
+		version++;
+		this.presentedFrames = presentedFrames;
+		this.lateFrames = lateFrames;
+		version++;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Takes over the frame reassembly counters.
+	 * --------------------------------------------------------------------------------------------*/
+	public void onAssembly(long incompleteFrames, long truncatedPackets)
+	{
+		version++;
+		this.incompleteFrames = incompleteFrames;
+		this.truncatedPackets = truncatedPackets;
+		version++;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Takes over the jitter buffer occupancy.
+	 * --------------------------------------------------------------------------------------------*/
+	public void onBuffer(int bufferedPackets)
+	{
+		version++;
+		this.bufferedPackets = bufferedPackets;
+		version++;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Takes over the decode pipeline counters and the current decode rate (frames/s).
+	 * --------------------------------------------------------------------------------------------*/
+	public void onDecoding(long decodedFrames, long failedFrames, double decodeRate)
+	{
+		version++;
+		this.decodedFrames = decodedFrames;
+		this.failedFrames = failedFrames;
+		this.decodeRate = decodeRate;
+		version++;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Copies all values at once, consistent with each other: the copy is retried while the
+	 * playout thread updates them. Any thread; the target must not be shared with other readers.
+	 * @return the target
+	 * --------------------------------------------------------------------------------------------*/
+	public StreamStats copyTo(StreamStats target)
+	{
+		while (true)
+		{
+			long before = version;
+			if ((before & 1) == 0)
+			{
+				target.startTime = startTime;
+				target.dataRate = dataRate;
+				target.totalBytes = totalBytes;
+				target.totalPackets = totalPackets;
+				target.totalPlayTime = totalPlayTime;
+				target.fractionLost = fractionLost;
+				target.lostPackets = lostPackets;
+				target.misorderedPackets = misorderedPackets;
+				target.highestSequenceNumber = highestSequenceNumber;
+				target.extendedHighestSequenceNumber = extendedHighestSequenceNumber;
+				target.jitter = jitter;
+				target.targetDelay = targetDelay;
+				target.underruns = underruns;
+				target.timeStretchEvents = timeStretchEvents;
+				target.presentedFrames = presentedFrames;
+				target.lateFrames = lateFrames;
+				target.incompleteFrames = incompleteFrames;
+				target.truncatedPackets = truncatedPackets;
+				target.bufferedPackets = bufferedPackets;
+				target.decodedFrames = decodedFrames;
+				target.failedFrames = failedFrames;
+				target.decodeRate = decodeRate;
+				if (version == before)
+					return target;
+			}
+			Thread.yield();
+		}
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Adds the statistics to a registry, totals as counters and the rest as gauges; each one reads
+	 * its value as it is now. The RFC 3550 loss is a gauge: reordered, late and duplicate packets
+	 * lower it again.
+	 * --------------------------------------------------------------------------------------------*/
+	public void registerMetrics(MetricsRegistry registry)
+	{
+		registry.counter("bytes_received", "RTP payload bytes received", this::getTotalBytes);
+		registry.counter("packets_received", "RTP packets received", this::getTotalPackets);
+		registry.gauge("packets_lost", "RTP packets lost (RFC 3550), lowered by late and duplicate packets", this::getLostPackets);
+		registry.counter("packets_misordered", "RTP packets received after a higher sequence number", this::getMisorderedPackets);
+		registry.gauge("fraction_lost", "Fraction of RTP packets lost", this::getFractionLost);
+		registry.gauge("jitter_ms", "Interarrival jitter (RFC 3550)", this::getJitter);
+		registry.gauge("data_rate_bytes", "Payload bytes received per second", this::getDataRate);
+		registry.gauge("playout_delay_ms", "Playout delay targeted by the jitter buffer", this::getTargetDelay);
+		registry.gauge("jitter_buffer_packets", "Packets waiting in the jitter buffer", this::getBufferedPackets);
+		registry.gauge("decode_fps", "Frames decoded per second", this::getDecodeRate);
+		registry.counter("playout_underruns", "Times playout ran dry", this::getUnderruns);
+		registry.counter("frames_presented", "Frames presented at their due time", this::getPresentedFrames);
+		registry.counter("frames_late", "Frames dropped for missing their presentation time", this::getLateFrames);
+		registry.counter("frames_incomplete", "Frames discarded for missing fragments", this::getIncompleteFrames);
+	}
+
+	/** Returns a consistent copy of all values, see #copyTo(). */
+	public StreamStats snapshot()
+	{
+		return copyTo(new StreamStats());
+	}
+
+	public long getTotalBytes()
+	{
+		return totalBytes;
+	}
+
+	public double getDataRate()
+	{
+		return dataRate;
+	}
+
+	public float getFractionLost()
+	{
+		return fractionLost;
+	}
+
+	public long getTotalPackets()
+	{
+		return totalPackets;
+	}
+
+	public long getLostPackets()
+	{
+		return lostPackets;
+	}
+
+	public long getMisorderedPackets()
+	{
+		return misorderedPackets;
+	}
+
+	public int getHighestSequenceNumber()
+	{
+		return highestSequenceNumber;
+	}
+
+	public long getExtendedHighestSequenceNumber()
+	{
+		return extendedHighestSequenceNumber;
+	}
+
+	/** Returns the interarrival jitter in milliseconds. */
+	public double getJitter()
+	{
+		return jitter;
+	}
+
+	/** Returns the playout delay targeted by the jitter buffer in milliseconds. */
+	public long getTargetDelay()
+	{
+		return targetDelay;
+	}
+
+	public long getUnderruns()
+	{
+		return underruns;
+	}
+
+	public long getTimeStretchEvents()
+	{
+		return timeStretchEvents;
+	}
+
+	public long getPresentedFrames()
+	{
+		return presentedFrames;
+	}
+
+	public long getLateFrames()
+	{
+		return lateFrames;
+	}
+
+	public long getIncompleteFrames()
+	{
+		return incompleteFrames;
+	}
+
+	public long getTruncatedPackets()
+	{
+		return truncatedPackets;
+	}
+
+	public int getBufferedPackets()
+	{
+		return bufferedPackets;
+	}
+
+	public long getDecodedFrames()
+	{
+		return decodedFrames;
+	}
+
+	public long getFailedFrames()
+	{
+		return failedFrames;
+	}
+
+	/** Returns the frames decoded per second over the last second. */
+	public double getDecodeRate()
+	{
+		return decodeRate;
+	}
+
+	@Override
+	public String toString() {
+		return "[Stats] Bytes: " + totalBytes + ", Lost: " + lostPackets
+			   + ", Fraction Lost: " + fractionLost + ", Jitter: " + String.format("%.2f", jitter) + " ms"
+			   + ", Data Rate: " + (long) dataRate + " B/s"
+			   + ", Delay: " + targetDelay + " ms, Underruns: " + underruns + ", Late: " + lateFrames
+			   + ", Incomplete: " + incompleteFrames;
+	}
+}
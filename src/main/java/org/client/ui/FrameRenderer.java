@@ -0,0 +1,177 @@
+package org.client.ui;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.nio.IntBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javafx.animation.AnimationTimer;
+import javafx.scene.image.ImageView;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import org.client.model.DecodedFrame;
+import org.client.service.FramePool;
+import org.client.service.StageTracer;
+
+/**--------------------------------------------------------------------------------------------
+ * Native JavaFX frame renderer.
+ * Decoded frames may be submitted from any thread; on every FX pulse only the latest one is
+ * written into a reused WritableImage shown by an ImageView, older ones are coalesced away.
+ * Pixels are converted into a reused ARGB array, so steady-state rendering does not allocate;
+ * rendered and coalesced frames go back to the frame pool.
+ * --------------------------------------------------------------------------------------------*/
+public class FrameRenderer extends AnimationTimer
+{
+	private static final PixelFormat<IntBuffer> ARGB_FORMAT = PixelFormat.getIntArgbInstance();
+
+	private final ImageView imageView;
+	private volatile FramePool framePool;
+	private volatile StageTracer tracer;		// stamps every rendered frame, may be null
+	private final AtomicReference<DecodedFrame> latestFrame = new AtomicReference<DecodedFrame>();
+
+	// FX thread only
+	private WritableImage image;
+	private int[] pixels;
+
+	private final AtomicLong submittedFrames = new AtomicLong();
+	private final AtomicLong coalescedFrames = new AtomicLong();
+	private volatile long renderedFrames;
+
+	public FrameRenderer(ImageView imageView, FramePool framePool)
+	{
+		this.imageView = imageView;
+		this.framePool = framePool;
+		imageView.setPreserveRatio(true);
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Queues a frame for the next pulse, replacing any frame not rendered yet (any thread).
+	 * --------------------------------------------------------------------------------------------*/
+	public void submit(DecodedFrame frame)
+	{
+		submittedFrames.incrementAndGet();
+		DecodedFrame replaced = latestFrame.getAndSet(frame);
+		if (replaced != null)
+		{
+			coalescedFrames.incrementAndGet();
+			framePool.release(replaced);
+		}
+	}
+
+	@Override
+	public void handle(long now)
+	{
+		DecodedFrame frame = latestFrame.getAndSet(null);
+		if (frame != null)
+		{
+			if (frame.image != null)
+			{
+				render(frame.image);
+				StageTracer stageTracer = tracer;
+				if (stageTracer != null)
+					stageTracer.record(StageTracer.RENDER, frame.sequenceNumber, System.nanoTime());
+			}
+			framePool.release(frame);
+		}
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Writes the decoded pixels into the displayed image (FX thread).
+	 * --------------------------------------------------------------------------------------------*/
+	private void render(BufferedImage source)
+	{
+		int width = source.getWidth();
+		int height = source.getHeight();
+
+		// the destination image is only re-created when the stream resolution changes
+		if (image == null || (int) image.getWidth() != width || (int) image.getHeight() != height)
+		{
+			image = new WritableImage(width, height);
+			pixels = new int[width * height];
+			imageView.setImage(image);
+		}
+
+		toArgb(source, pixels);
+		image.getPixelWriter().setPixels(0, 0, width, height, ARGB_FORMAT, pixels, 0, width);
+		renderedFrames++;
+	}
+
+	/**--------------------------------------------------------------------------------------------
+	 * Converts the source pixels to opaque ARGB, reading the raster directly for the layouts the
+	 * JPEG decoder produces.
+	 * --------------------------------------------------------------------------------------------*/
+	static void toArgb(BufferedImage source, int[] destination)
+	{
+		int width = source.getWidth();
+		int height = source.getHeight();
+		int count = width * height;
+		DataBuffer dataBuffer = source.getRaster().getDataBuffer();
+		boolean packed = source.getRaster().getParent() == null && dataBuffer.getNumBanks() == 1;
+
+		if (packed && source.getType() == BufferedImage.TYPE_3BYTE_BGR && dataBuffer instanceof DataBufferByte)
+		{
+			byte[] bgr = ((DataBufferByte) dataBuffer).getData();
+			for (int i = 0, k = 0; i < count; i++, k += 3)
+			{
+				destination[i] = 0xFF000000 | (bgr[k + 2] & 0xFF) << 16 | (bgr[k + 1] & 0xFF) << 8 | (bgr[k] & 0xFF);
+			}
+		}
+		else if (packed && (source.getType() == BufferedImage.TYPE_INT_RGB || source.getType() == BufferedImage.TYPE_INT_ARGB)
+				&& dataBuffer instanceof DataBufferInt)
+		{
+			int[] rgb = ((DataBufferInt) dataBuffer).getData();
+			int alpha = source.getType() == BufferedImage.TYPE_INT_RGB ? 0xFF000000 : 0;
+			for (int i = 0; i < count; i++)
+				destination[i] = rgb[i] | alpha;
+		}
+		else if (packed && source.getType() == BufferedImage.TYPE_BYTE_GRAY && dataBuffer instanceof DataBufferByte)
+		{
+			byte[] gray = ((DataBufferByte) dataBuffer).getData();
+			for (int i = 0; i < count; i++)
+			{
+				int g = gray[i] & 0xFF;
+				destination[i] = 0xFF000000 | g << 16 | g << 8 | g;
+			}
+		}
+		else
+			source.getRGB(0, 0, width, height, destination, 0, width);
+	}
+
+	/** Sets the pool rendered frames go back to, e.g. after switching to another session. */
+	public void setFramePool(FramePool framePool)
+	{
+		this.framePool = framePool;
+	}
+
+	/** Sets the tracer of the session whose frames are rendered, or null. */
+	public void setTracer(StageTracer tracer)
+	{
+		this.tracer = tracer;
+	}
+
+	/** Forgets the pending frame. */
+	public void clear()
+	{
+		framePool.release(latestFrame.getAndSet(null));
+	}
+
+	public long getSubmittedFrames()
+	{
+		return submittedFrames.get();
+	}
+
+	/** Returns the number of frames replaced before they could be rendered. */
+	public long getCoalescedFrames()
+	{
+		return coalescedFrames.get();
+	}
+
+	public long getRenderedFrames()
+	{
+		return renderedFrames;
+	}
+}
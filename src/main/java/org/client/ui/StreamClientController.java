@@ -1,82 +1,45 @@
 package org.client.ui;
 
-import java.awt.Toolkit;
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.InterruptedIOException;
-import java.io.OutputStreamWriter;
-import java.net.DatagramPacket;
-import java.net.DatagramSocket;
-import java.net.InetAddress;
-import java.net.Socket;
-import java.net.SocketException;
 import java.text.DecimalFormat;
+import java.util.concurrent.CompletableFuture;
 
 import javafx.application.Platform;
-import javafx.concurrent.ScheduledService;
-import javafx.concurrent.Task;
-import javafx.embed.swing.SwingNode;
 import javafx.fxml.FXML;
 import javafx.scene.control.Label;
-import javafx.scene.image.Image;
+import javafx.scene.control.TextField;
+import javafx.scene.image.ImageView;
 import javafx.scene.layout.HBox;
-import javafx.util.Duration;
-
-import javax.swing.ImageIcon;
-import javax.swing.JLabel;
 
 import org.client.MainApp;
-import org.client.model.RtpPacket;
-import org.client.service.FrameSynchronizer;
-
-public class StreamClientController
+import org.client.model.DecodedFrame;
+import org.client.service.Log;
+import org.client.service.SessionConfig;
+import org.client.service.SessionManager;
+import org.client.service.SessionPool;
+import org.client.service.StreamListener;
+import org.client.service.StreamSession;
+import org.client.service.StreamStats;
+
+/**--------------------------------------------------------------------------------------------
+ * Stream client UI controller.
+ * Thin JavaFX consumer of a StreamSession: buttons drive the session's RTSP state machine,
+ * decoded frames go to the FX renderer and statistics to the labels. RTSP requests never block
+ * the FX thread, their outcome is applied with Platform.runLater().
+ * Switching channels moves playback to a SessionPool, whose warm standby sessions make switches
+ * back and forth nearly instant; the buttons then drive the active session.
+ * --------------------------------------------------------------------------------------------*/
+public class StreamClientController implements StreamListener
 {
+	private static final Log LOG = Log.get("ui");
+
 	@SuppressWarnings("unused")
 	private MainApp application;
 
-	private static final int RTSP_SERVER_PORT = 13569;
-	private static final String SERVER_HOST = "localhost";
-
-	/**--------------------------------------------------------------------------------------------
-	 * State machine
-	 * --------------------------------------------------------------------------------------------*/
-	final static int INIT = 0;
-	final static int READY = 1;
-	final static int PLAYING = 2;
-
-	/**--------------------------------------------------------------------------------------------
-	 * RTSP variables
-	 * --------------------------------------------------------------------------------------------*/
-	private RtspService rtspService;
-	private InetAddress serverIp;
-	private Socket rtspSocket;			// RTSP messages socket (send/receive)
-	static int currentState;			// RTSP states: INIT or READY or PLAYING
-
-	/**--------------------------------------------------------------------------------------------
-	 * RTCP variables
-	 * --------------------------------------------------------------------------------------------*/
-	RtcpService rtcpSender;
-	DatagramSocket rtcpSocket;			// UDP socket for sending RTCP packets
-
-	private byte[] rcvBuffer;					// buffer used to store data received from the server
-	private DatagramPacket rcvUdpPacket;		// UDP packet received from the server
-	private DatagramSocket rtpSocket;			// UDP packets send/receive socket
-
-	private DataService dataService;
-
-	/**--------------------------------------------------------------------------------------------
-	 * Statistics variables
-	 * --------------------------------------------------------------------------------------------*/
-	double statStartTime;				//Time in milliseconds when start is pressed
-	double statDataRate;				//Rate of video data received in bytes/s
-	int statTotalBytes;					//Total number of bytes received in a session
-	double statTotalPlayTime;			//Time in milliseconds of video playing since beginning
-	float statFractionLost;				//Fraction of RTP data packets from sender lost since the prev packet was sent
-	int statLostPackets;				//Number of packets lost
-	int statExpectedRtpCounter;			//Expected Sequence number of RTP messages within the session
-	int statHighestSequenceNumber;		//Highest sequence number received in session
+	private volatile StreamSession session;		// the active session
+	private FrameRenderer frameRenderer;
+	private SessionManager sessionManager;		// created on the first channel switch (FX thread)
+	private SessionPool sessionPool;
 
 	/**--------------------------------------------------------------------------------------------
 	 * UI variables
@@ -85,26 +48,30 @@ public class StreamClientController
 	@FXML private Label bytesReceived;
 	@FXML private Label packetsLost;
 	@FXML private Label dataRate;
+	@FXML private TextField channel;
 
 	/**--------------------------------------------------------------------------------------------
-	 * Constructor, is called before #initialize()
+	 * Constructor, is called before #initialize(); the session may connect before the layout is
+	 * loaded (see MainApp).
 	 --------------------------------------------------------------------------------------------*/
-	public StreamClientController() {}
+	public StreamClientController()
+	{
+		session = new StreamSession(SessionConfig.fromSystemProperties(), this);
+	}
 
    /**--------------------------------------------------------------------------------------------
     * Initializes the controller class.
     * This method is automatically called after the fxml file has been loaded.
-    * @throws IOException
     * --------------------------------------------------------------------------------------------*/
 	@FXML
 	private void initialize()
 	{
 		updateStatValues(0, 0, 0);
 
-		rcvBuffer = new byte[15000];
-		rtspService = new RtspService();
-		rtcpSender = new RtcpService(this);
-		dataService = new DataService(100);
+		ImageView imageView = new ImageView();
+		imageContainer.getChildren().add(imageView);
+		frameRenderer = new FrameRenderer(imageView, session.getFramePool());
+		frameRenderer.setTracer(session.getTracer());
 	}
 
 	/** Handles "setup" button operation.
@@ -112,28 +79,8 @@ public class StreamClientController
 	@FXML
 	private void setup()
 	{
-		System.out.println("Setup Button pressed !");
-		if (currentState == INIT)
-		{
-			// initialize RTPsocket to receive packets
-			initializeRtpSocket(RtspService.RTP_RCV_PORT, 5);
-
-			//init RTSP sequence number
-			rtspService.rtspSequenceNumber = 1;
-
-			//Send SETUP message to the server
-			rtspService.sendRtspRequest("SETUP");
-
-			//Wait for the response
-			if (rtspService.parseServerResponse(currentState) != 200)
-				System.out.println("Invalid Server Response");
-			else
-			{
-				//change RTSP state and print new state
-				currentState = READY;
-				System.out.println("New RTSP state: READY");
-			}
-		}
+		LOG.info("Setup Button pressed !");
+		onResponse(session.setup(), null);
 	}
 
 	/** Handles "play" button operation.
@@ -141,27 +88,9 @@ public class StreamClientController
 	@FXML
 	private void play()
 	{
-		System.out.println("Play Button pressed!");
-
-		// initialize/reset stats time
-		dataService.resetStatStartTime();
+		LOG.info("Play Button pressed!");
 
-		if (currentState == READY)
-		{
-			rtspService.rtspSequenceNumber++;
-			rtspService.sendRtspRequest("PLAY");
-
-			if (rtspService.parseServerResponse(currentState) != 200)
-				System.out.println("Invalid Server Response");
-			else
-			{
-				currentState = PLAYING;
-				System.out.println("New RTSP state: PLAYING");
-
-				dataService.restart();
-				rtcpSender.startSend();
-			}
-		}
+		onResponse(session.play(), () -> frameRenderer.start());
 	}
 
 	/** Handles "pause" button operation.
@@ -169,24 +98,9 @@ public class StreamClientController
 	@FXML
 	private void pause()
 	{
-		System.out.println("Pause Button pressed!");
-
-		if (currentState == PLAYING)
-		{
-			rtspService.rtspSequenceNumber++;
-			rtspService.sendRtspRequest("PAUSE");
-
-			if (rtspService.parseServerResponse(currentState) != 200)
-				System.out.println("Invalid Server Response");
-			else
-			{
-				currentState = READY;
-				System.out.println("New RTSP state: READY");
+		LOG.info("Pause Button pressed!");
 
-				dataService.cancel();
-				rtcpSender.stopSend();
-			}
-		}
+		onResponse(session.pause(), () -> frameRenderer.stop());
 	}
 
 	/** Handles "session" button operation.
@@ -194,188 +108,122 @@ public class StreamClientController
 	@FXML
 	private void session()
 	{
-		System.out.println("Sending DESCRIBE request");
+		LOG.info("Sending DESCRIBE request");
+		onResponse(session.describe(), null);
+	}
 
-		rtspService.rtspSequenceNumber++;
-		rtspService.sendRtspRequest("DESCRIBE");
+	/** Handles "switch" button operation.
+	 *  Plays the channel (video) entered, keeping the previous one warm for a switch back. */
+	@FXML
+	private void switchChannel()
+	{
+		String name = channel.getText().trim();
+		if (name.isEmpty())
+			return;
+		LOG.info("Switching to {}", name);
 
-		if (rtspService.parseServerResponse(currentState) != 200)
-			System.out.println("Invalid Server Response");
-		else
-			System.out.println("Received response for DESCRIBE");
+		if (sessionPool == null)
+		{
+			try
+			{
+				sessionManager = new SessionManager();
+			}
+			catch (IOException ioe)
+			{
+				LOG.error("Exception caught: {}", ioe);
+				return;
+			}
+			SessionConfig config = session.getConfig().copy();
+			sessionPool = new SessionPool(sessionManager, config, this, config.standbySessions, config.standbyPrebuffer);
+
+			// the first session is not pooled
+			StreamSession first = session;
+			first.teardown().whenComplete((confirmed, failure) -> first.close());
+		}
+
+		CompletableFuture<StreamSession> switched = sessionPool.switchTo(name);
+		session = sessionPool.getActive();
+		frameRenderer.setFramePool(session.getFramePool());
+		frameRenderer.setTracer(session.getTracer());
+		switched.whenComplete((active, failure) -> {
+			if (failure != null)
+				LOG.error("Exception caught: {}", failure);
+			else
+				Platform.runLater(() -> frameRenderer.start());
+		});
 	}
 
 	/** Handles close operation. */
 	@FXML
 	private void close()
 	{
-		System.out.println("Close Button pressed !");
+		LOG.info("Close Button pressed !");
 
-		rtspService.rtspSequenceNumber++;
-		rtspService.sendRtspRequest("TEARDOWN");
-
-		if (rtspService.parseServerResponse(currentState) != 200)
-			System.out.println("Invalid Server Response");
-		else
+		if (sessionPool != null)
 		{
-			currentState = INIT;
-			System.out.println("New RTSP state: INIT");
-
-			dataService.cancel();
-			rtcpSender.stopSend();
+			frameRenderer.stop();
+			frameRenderer.clear();
+			// tears down the pooled sessions as well
+			sessionManager.closeAll();
 			Platform.exit();
+			return;
 		}
+		onResponse(session.teardown(), () -> {
+			frameRenderer.stop();
+			frameRenderer.clear();
+			Platform.exit();
+		});
 	}
 
 	/**
-	 * Establishes communication with the server.
-	 * Blocks execution if the server is not available.
-	 * @throws IOException
+	 * Establishes communication with the server in the background.
+	 * The application exits if the server is not available.
 	 */
-	public void connect() throws IOException
+	public void connect()
 	{
-		// initialize client
-		setServerIp(InetAddress.getByName(SERVER_HOST));
-
-		// Establish a TCP connection with the server to exchange RTSP messages (blocking)
-		rtspSocket = new Socket(getServerIp(), RTSP_SERVER_PORT);
-
-		// Establish a UDP connection with the server to exchange RTCP control packets
-		// Set input and output stream filters and initial state.
-		RtspService.rtspBufferedReader = new BufferedReader(new InputStreamReader(rtspSocket.getInputStream()));
-		RtspService.rtspBufferedWriter = new BufferedWriter(new OutputStreamWriter(rtspSocket.getOutputStream()));
-		currentState = INIT;
+		session.connect().whenComplete((connected, failure) -> {
+			if (failure != null)
+			{
+				LOG.error("Socket exception: {}", failure.getCause());
+				System.exit(0);
+			}
+		});
 	}
 
-	/** Initializes non-blocking RTP socket that will be used to receive data.
-	 *  @param port - datagram socket port
-	 *  @param timeout - socket timeout interval */
-	public void initializeRtpSocket(int port, int timeout)
+	/** Runs the action on the FX thread once the server accepted the request. */
+	private void onResponse(CompletableFuture<Boolean> request, Runnable onAccepted)
 	{
-		try
-		{
-			// construct a new DatagramSocket to receive RTP packets from the server, on port RTP_RCV_PORT
-			rtpSocket = new DatagramSocket(port);
-			// UDP socket for sending QoS RTCP packets
-			rtcpSocket = new DatagramSocket();
-			// set TimeOut value of the socket to 5msec.
-			rtpSocket.setSoTimeout(timeout);
-		}
-		catch (SocketException se)
-		{
-			System.out.println("Socket exception: "+se);
-			System.exit(0);
-		}
+		request.whenComplete((accepted, failure) -> {
+			if (failure != null)
+				LOG.error("Exception caught: {}", failure);
+			else if (accepted && onAccepted != null)
+				Platform.runLater(onAccepted);
+		});
 	}
 
-	/**
-	 * Implements a service that encapsulates raw data retrieval and processing task.
-	 * The following work is performed by the service on each call:
-	 * 1. constructs a datagram packet and receives data from UDP socket;
-	 * 2. constructs an RTP packet object from the datagram packet created in 1.;
-	 * 3. retrieves payload (raw data) from the RTP packet;
-	 * 4. builds an Image from raw data and wraps it into the ImageView node, which is finally returned;
-	 * 5. calculates and populates statistical data.
-	 */
-	class DataService extends ScheduledService<Image>
+	/** Hands decoded frames over to the renderer, which displays the latest one on the next pulse. */
+	@Override
+	public void onFrame(StreamSession session, DecodedFrame frame)
 	{
-		private FrameSynchronizer frameSynchronizer;
-		SwingNode swingNode = new SwingNode();
-		JLabel iconLabel = new JLabel();
-		ImageIcon icon;
-
-		public DataService(double period)
-		{
-			frameSynchronizer = new FrameSynchronizer(100);
-			this.setPeriod(Duration.millis(50));
-			this.setDelay(this.getPeriod());
-			imageContainer.getChildren().add(swingNode);
-
-			// update UI components
-			this.setOnSucceeded(state -> {
-				swingNode.setContent(iconLabel);
-				updateStatValues(statTotalBytes, statFractionLost, statDataRate);
-			});
-		}
-
-		@Override
-		protected Task<Image> createTask()
+		// frames of a session switched away from
+		if (session != this.session)
 		{
-			return new Task<Image>() {
-				@Override
-				protected Image call() throws Exception
-				{
-					try
-					{
-						// Construct a DatagramPacket to receive data from the UDP socket
-						rcvUdpPacket = new DatagramPacket(rcvBuffer, rcvBuffer.length);
-
-						//receive the DP from the socket, save time for stats
-						rtpSocket.receive(rcvUdpPacket);
-
-						double curTime = System.currentTimeMillis();
-						statTotalPlayTime += curTime - statStartTime;
-						statStartTime = curTime;
-
-						//create an RTPpacket object from the DP
-						RtpPacket rtpPacket = new RtpPacket(rcvUdpPacket.getData(), rcvUdpPacket.getLength());
-						int sequenceNumber = rtpPacket.getSequenceNumber();
-
-						//this is the highest seq num received
-
-						//print important header fields of the RTP packet received:
-						System.out.println("Got RTP packet with SeqNum # " + sequenceNumber
-										   + " TimeStamp " + rtpPacket.getTimestamp() + " ms, of type "
-										   + rtpPacket.getPayloadType());
-
-						//print header bitstream:
-						rtpPacket.printHeader();
-
-						//get the payload bitstream from the RTPpacket object
-						int payloadLength = rtpPacket.getPayloadLength();
-						byte [] payload = new byte[payloadLength];
-						rtpPacket.getpayload(payload);
-
-						//compute stats and update the label in GUI
-						statExpectedRtpCounter++;
-						if (sequenceNumber > statHighestSequenceNumber)
-						{
-							statHighestSequenceNumber = sequenceNumber;
-						}
-						if (statExpectedRtpCounter != sequenceNumber)
-						{
-							statLostPackets++;
-						}
-						statDataRate = statTotalPlayTime == 0 ? 0 : (statTotalBytes / (statTotalPlayTime/1000.0));
-						statFractionLost = (float)statLostPackets / statHighestSequenceNumber;
-						statTotalBytes += payloadLength;
-
-						//get an Image object from the payload bitstream
-						Toolkit toolkit = Toolkit.getDefaultToolkit();
-						frameSynchronizer.addFrame(toolkit.createImage(payload, 0, payloadLength), sequenceNumber);
-
-						//display the image as an ImageIcon object
-						icon = new ImageIcon(frameSynchronizer.nextFrame());
-						iconLabel.setIcon(icon);
-					}
-					catch (InterruptedIOException iioe)
-					{
-						System.out.println("Nothing to read");
-					}
-					catch (IOException ioe)
-					{
-						System.out.println("Exception caught: "+ ioe);
-					}
-					return null;
-				}
-			};
+			session.getFramePool().release(frame);
+			return;
 		}
+		frameRenderer.submit(frame);
+	}
 
-		/** Initializes (resets) statistics start time. */
-		public void resetStatStartTime()
-		{
-			statStartTime = System.currentTimeMillis();
-		}
+	/** Updates UI components once per playout tick. */
+	@Override
+	public void onStatistics(StreamSession session, StreamStats stats)
+	{
+		if (session != this.session)
+			return;
+		final long received = stats.getTotalBytes();
+		final float lost = stats.getFractionLost();
+		final double rate = stats.getDataRate();
+		Platform.runLater(() -> updateStatValues(received, lost, rate));
 	}
 
 	/**
@@ -384,7 +232,7 @@ public class StreamClientController
 	 * @param fractionLost
 	 * @param dataRate
 	 */
-	public void updateStatValues(int received, float lost, double rate)
+	public void updateStatValues(long received, float lost, double rate)
 	{
 		DecimalFormat formatter = new DecimalFormat("###,###.##");
 		this.bytesReceived.setText(String.valueOf(received));
@@ -399,13 +247,9 @@ public class StreamClientController
 		this.application = app;
 	}
 
-	public InetAddress getServerIp()
-	{
-		return serverIp;
-	}
-
-	public void setServerIp(InetAddress serverIp)
+	/** Returns the stream session driven by this controller. */
+	public StreamSession getSession()
 	{
-		this.serverIp = serverIp;
+		return session;
 	}
-}
\ No newline at end of file
+}